@@ -0,0 +1,55 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.bulk;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+
+/**
+ * One create, update or delete of a bulk request. An action whose source line
+ * could not be read carries the error instead of a course.
+ */
+public class BulkAction {
+
+    public enum Type {
+        CREATE, UPDATE, DELETE;
+
+        public String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final Type type;
+    // 0 when the request gave no id
+    private final int id;
+    private final Course course;
+    private final String error;
+
+    public BulkAction(Type type, int id, Course course) {
+        this(type, id, course, null);
+    }
+
+    private BulkAction(Type type, int id, Course course, String error) {
+        this.type = type;
+        this.id = id;
+        this.course = course;
+        this.error = error;
+    }
+
+    public static BulkAction invalid(Type type, int id, String error) {
+        return new BulkAction(type, id, null, error);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Course getCourse() {
+        return course;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
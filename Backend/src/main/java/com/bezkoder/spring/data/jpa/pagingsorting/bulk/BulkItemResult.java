@@ -0,0 +1,48 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.bulk;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/** Outcome of one bulk action, with an HTTP-style status per item. */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkItemResult {
+
+    private final String action;
+    private final int id;
+    private final int status;
+    private final String error;
+
+    private BulkItemResult(BulkAction.Type type, int id, int status, String error) {
+        this.action = type.label();
+        this.id = id;
+        this.status = status;
+        this.error = error;
+    }
+
+    public static BulkItemResult ok(BulkAction.Type type, int id, int status) {
+        return new BulkItemResult(type, id, status, null);
+    }
+
+    public static BulkItemResult failed(BulkAction.Type type, int id, int status, String error) {
+        return new BulkItemResult(type, id, status, error);
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+}
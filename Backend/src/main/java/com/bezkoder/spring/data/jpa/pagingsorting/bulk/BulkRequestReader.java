@@ -0,0 +1,98 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.bulk;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a bulk request body incrementally, a batch of actions at a time.
+ *
+ * The body is NDJSON: each action is a line such as {@code {"create":{}}},
+ * {@code {"update":{"_id":5}}} or {@code {"delete":{"_id":7}}}, and create
+ * and update are followed by a line holding the course. A course line that is
+ * not a valid course fails only its own action; a malformed action line
+ * makes the rest of the body unreadable and throws
+ * {@link IllegalArgumentException}.
+ */
+public class BulkRequestReader {
+
+    private final BufferedReader lines;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader courseReader;
+    private int lineNumber;
+
+    public BulkRequestReader(InputStream in, ObjectMapper objectMapper) {
+        this.lines = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        this.objectMapper = objectMapper;
+        this.courseReader = objectMapper.readerFor(Course.class);
+    }
+
+    /** Returns the next batch of at most {@code max} actions, empty at the end. */
+    public List<BulkAction> next(int max) throws IOException {
+        List<BulkAction> batch = new ArrayList<>();
+        String line;
+        while (batch.size() < max && (line = nextLine()) != null) {
+            batch.add(parse(line));
+        }
+        return batch;
+    }
+
+    private BulkAction parse(String actionLine) throws IOException {
+        JsonNode action;
+        try {
+            action = objectMapper.readTree(actionLine);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed action on line " + lineNumber);
+        }
+        if (action == null || !action.isObject() || action.size() != 1) {
+            throw new IllegalArgumentException("Expected a single action on line " + lineNumber);
+        }
+        Map.Entry<String, JsonNode> entry = action.fields().next();
+        BulkAction.Type type;
+        try {
+            type = BulkAction.Type.valueOf(entry.getKey().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown action '" + entry.getKey() + "' on line " + lineNumber);
+        }
+        JsonNode id = entry.getValue().get("_id");
+        if (id != null && !id.canConvertToInt()) {
+            throw new IllegalArgumentException("Invalid _id on line " + lineNumber);
+        }
+        int courseId = id == null ? 0 : id.asInt();
+        if (type == BulkAction.Type.DELETE) {
+            return new BulkAction(type, courseId, null);
+        }
+
+        String source = nextLine();
+        if (source == null) {
+            throw new IllegalArgumentException("Missing course after line " + lineNumber);
+        }
+        try {
+            return new BulkAction(type, courseId, courseReader.readValue(source));
+        } catch (JsonProcessingException e) {
+            return BulkAction.invalid(type, courseId, "Invalid course on line " + lineNumber + ": " + e.getOriginalMessage());
+        }
+    }
+
+    private String nextLine() throws IOException {
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            if (!line.isBlank()) {
+                return line;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,132 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.bulk;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Streams courses out of a JSON array or an NDJSON source (one course per
+ * line) and hands them on in chunks, so the source is never read into a
+ * single tree or string.
+ *
+ * A JSON array is read token by token, one course at a time. NDJSON lines are
+ * independent, so each chunk of lines is parsed in parallel.
+ */
+public class CourseLoader {
+
+    public static final int DEFAULT_CHUNK_SIZE = 10_000;
+
+    private final ObjectReader reader;
+    private final int chunkSize;
+
+    public CourseLoader(ObjectMapper objectMapper) {
+        this(objectMapper, DEFAULT_CHUNK_SIZE);
+    }
+
+    public CourseLoader(ObjectMapper objectMapper, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.reader = objectMapper.readerFor(Course.class);
+        this.chunkSize = chunkSize;
+    }
+
+    /** Reads every course of the source into one list. */
+    public List<Course> readAll(InputStream in) throws IOException {
+        List<Course> courses = new ArrayList<>();
+        read(in, courses::addAll);
+        return courses;
+    }
+
+    /**
+     * Reads the source and passes its courses to {@code sink} in chunks of at
+     * most the chunk size. Returns the number of courses read.
+     */
+    public long read(InputStream in, Consumer<List<Course>> sink) throws IOException {
+        PushbackInputStream source = new PushbackInputStream(in, 1);
+        int first = source.read();
+        while (first != -1 && Character.isWhitespace(first)) {
+            first = source.read();
+        }
+        if (first == -1) {
+            return 0;
+        }
+        source.unread(first);
+        return first == '[' ? readArray(source, sink) : readLines(source, sink);
+    }
+
+    private long readArray(InputStream in, Consumer<List<Course>> sink) throws IOException {
+        long count = 0;
+        try (JsonParser parser = reader.getFactory().createParser(in)) {
+            parser.nextToken();
+            List<Course> chunk = new ArrayList<>(chunkSize);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                chunk.add(reader.readValue(parser));
+                if (chunk.size() == chunkSize) {
+                    sink.accept(chunk);
+                    count += chunk.size();
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new IOException("Expected a course object at " + parser.getCurrentLocation());
+            }
+            if (!chunk.isEmpty()) {
+                sink.accept(chunk);
+                count += chunk.size();
+            }
+        }
+        return count;
+    }
+
+    private long readLines(InputStream in, Consumer<List<Course>> sink) throws IOException {
+        long count = 0;
+        BufferedReader lines = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<String> chunk = new ArrayList<>(chunkSize);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            chunk.add(line);
+            if (chunk.size() == chunkSize) {
+                sink.accept(parse(chunk));
+                count += chunk.size();
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            sink.accept(parse(chunk));
+            count += chunk.size();
+        }
+        return count;
+    }
+
+    private List<Course> parse(List<String> lines) throws IOException {
+        try {
+            return lines.parallelStream().map(line -> {
+                try {
+                    return reader.<Course>readValue(line);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.cache;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pre-encoded UTF-8 JSON of recently listed courses, keyed by course id.
+ *
+ * Courses are encoded with the application's ObjectMapper, so a fragment is
+ * byte for byte what the response would hold otherwise. The repository
+ * invalidates the ids it changes, and a fragment is only used for a course
+ * with the same values it was encoded from, so a reader still holding an
+ * older or newer snapshot never gets another version's JSON. Once the cache
+ * holds max-courses fragments, further courses are encoded per response.
+ */
+@Component
+public class CourseJsonCache {
+
+    private final ObjectWriter writer;
+    private final int maxCourses;
+    private final ConcurrentHashMap<Integer, JsonFragment> fragments = new ConcurrentHashMap<>();
+
+    public CourseJsonCache(ObjectMapper objectMapper,
+                           @Value("${courses.json-cache.max-courses:100000}") int maxCourses) {
+        this.writer = objectMapper.writerFor(Course.class);
+        this.maxCourses = maxCourses;
+    }
+
+    public boolean isEnabled() {
+        return maxCourses > 0;
+    }
+
+    /** Wraps a page of courses for serialization from cached fragments. */
+    public CourseJsonList encode(List<Course> courses) {
+        return encode(courses, null);
+    }
+
+    /** Wraps a page of courses to serialize with only the projected properties; null for all. */
+    public CourseJsonList encode(List<Course> courses, CourseProjection projection) {
+        return new CourseJsonList(courses, this, projection);
+    }
+
+    JsonFragment fragment(Course course) {
+        JsonFragment fragment = fragments.get(course.getId());
+        if (fragment != null && fragment.encodes(course)) {
+            return fragment;
+        }
+        try {
+            fragment = new JsonFragment(course, writer.writeValueAsBytes(course));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (isEnabled() && (fragments.size() < maxCourses || fragments.containsKey(course.getId()))) {
+            fragments.put(course.getId(), fragment);
+        }
+        return fragment;
+    }
+
+    /** Drops the fragment of a course that was updated or deleted. */
+    public void invalidate(int id) {
+        fragments.remove(id);
+    }
+
+    public void clear() {
+        fragments.clear();
+    }
+}
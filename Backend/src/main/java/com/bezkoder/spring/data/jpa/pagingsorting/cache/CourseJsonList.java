@@ -0,0 +1,74 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.cache;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.metrics.QueryPhase;
+import com.bezkoder.spring.data.jpa.pagingsorting.metrics.QueryTrace;
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A page of courses that serializes as the same JSON array Jackson would
+ * write for the list, assembled from the cached fragments of its courses.
+ *
+ * With a {@link CourseProjection}, or for a binary generator (Smile, CBOR)
+ * that cannot embed raw JSON, the courses are written property by property.
+ */
+public final class CourseJsonList implements JsonSerializable {
+
+    private final List<Course> courses;
+    private final CourseJsonCache cache;
+    // null for every property
+    private final CourseProjection projection;
+
+    CourseJsonList(List<Course> courses, CourseJsonCache cache, CourseProjection projection) {
+        this.courses = courses;
+        this.cache = cache;
+        this.projection = projection;
+    }
+
+    public List<Course> getCourses() {
+        return courses;
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        QueryTrace trace = QueryTrace.current();
+        trace.mark();
+        gen.writeStartArray(courses, courses.size());
+        if (projection == null && writesJsonText(gen)) {
+            for (Course course : courses) {
+                gen.writeRawValue(cache.fragment(course));
+            }
+        } else {
+            CourseProjection fields = projection == null ? CourseProjection.ALL : projection;
+            for (Course course : courses) {
+                fields.write(course, gen, serializers);
+            }
+        }
+        gen.writeEndArray();
+        trace.lap(QueryPhase.SERIALIZE);
+    }
+
+    // The fragments are JSON text, so only a JSON generator can embed them:
+    // one whose codec (the mapper that created it) has a JSON factory. A
+    // TokenBuffer reports native binary, as Smile and CBOR do, and is
+    // excluded too, since it may be replayed into any format.
+    private static boolean writesJsonText(JsonGenerator gen) {
+        ObjectCodec codec = gen.getCodec();
+        return codec != null && !gen.canWriteBinaryNatively()
+                && JsonFactory.FORMAT_NAME_JSON.equals(codec.getFactory().getFormatName());
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+            throws IOException {
+        serialize(gen, serializers);
+    }
+}
@@ -0,0 +1,129 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.cache;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The course properties a list response holds, from its fields parameter
+ * (or _source, as Elasticsearch names it): a comma-separated list of
+ * property names, or for _source, true for all and false for none. The id
+ * is always written, like a document's _id.
+ *
+ * A course is written property by property, in the order Jackson writes
+ * them, so this also encodes whole courses for generators that cannot take
+ * the cached JSON fragments, such as Smile and CBOR.
+ */
+public final class CourseProjection {
+
+    private enum Field {
+        ID("id"),
+        TITLE("title"),
+        DESCRIPTION("description"),
+        CATEGORY("category"),
+        TYPE("type"),
+        GRADE_RANGE("gradeRange"),
+        MIN_AGE("minAge"),
+        MAX_AGE("maxAge"),
+        PRICE("price"),
+        NEXT_SESSION_DATE("nextSessionDate");
+
+        private static final Map<String, Field> BY_NAME = Stream.of(values())
+                .collect(Collectors.toMap(field -> field.property.toLowerCase(Locale.ROOT), Function.identity()));
+
+        private final String property;
+
+        Field(String property) {
+            this.property = property;
+        }
+    }
+
+    /** Every property, as Jackson writes a course. */
+    public static final CourseProjection ALL = new CourseProjection(EnumSet.allOf(Field.class));
+
+    private final Set<Field> fields;
+
+    private CourseProjection(Set<Field> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * The projection a request asks for, {@code null} when it asks for every
+     * property. {@code fields} wins when both are given.
+     *
+     * @throws IllegalArgumentException for an unknown property
+     */
+    public static CourseProjection of(String fields, String source) {
+        if (fields == null && source != null) {
+            if (source.isBlank() || source.equalsIgnoreCase("true")) {
+                return null;
+            }
+            fields = source.equalsIgnoreCase("false") ? "" : source;
+        }
+        if (fields == null) {
+            return null;
+        }
+        EnumSet<Field> selected = EnumSet.of(Field.ID);
+        for (String name : fields.split(",")) {
+            if (name.isBlank()) {
+                continue;
+            }
+            Field field = Field.BY_NAME.get(name.strip().toLowerCase(Locale.ROOT));
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown course field: " + name.strip());
+            }
+            selected.add(field);
+        }
+        return selected.size() == Field.values().length ? null : new CourseProjection(selected);
+    }
+
+    /** Writes the selected properties of a course as an object. */
+    public void write(Course course, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        gen.writeStartObject(course, fields.size());
+        for (Field field : fields) {
+            switch (field) {
+                case ID:
+                    gen.writeNumberField(field.property, course.getId());
+                    break;
+                case TITLE:
+                    gen.writeStringField(field.property, course.getTitle());
+                    break;
+                case DESCRIPTION:
+                    gen.writeStringField(field.property, course.getDescription());
+                    break;
+                case CATEGORY:
+                    gen.writeStringField(field.property, course.getCategory());
+                    break;
+                case TYPE:
+                    gen.writeStringField(field.property, course.getType());
+                    break;
+                case GRADE_RANGE:
+                    gen.writeStringField(field.property, course.getGradeRange());
+                    break;
+                case MIN_AGE:
+                    gen.writeNumberField(field.property, course.getMinAge());
+                    break;
+                case MAX_AGE:
+                    gen.writeNumberField(field.property, course.getMaxAge());
+                    break;
+                case PRICE:
+                    gen.writeNumberField(field.property, course.getPrice());
+                    break;
+                case NEXT_SESSION_DATE:
+                    // through the mapper, so dates come out as its configuration says
+                    serializers.defaultSerializeField(field.property, course.getNextSessionDate(), gen);
+                    break;
+            }
+        }
+        gen.writeEndObject();
+    }
+}
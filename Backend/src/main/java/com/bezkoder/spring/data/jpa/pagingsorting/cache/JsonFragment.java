@@ -0,0 +1,141 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.cache;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * A course encoded once as UTF-8 JSON, together with the course it was
+ * encoded from.
+ *
+ * Written with JsonGenerator.writeRawValue, the byte generator copies the
+ * bytes straight into its output buffer. The quoted forms are only there to
+ * complete SerializableString and are not used for responses.
+ */
+final class JsonFragment implements SerializableString {
+
+    private final Course source;
+    private final byte[] utf8;
+
+    JsonFragment(Course source, byte[] utf8) {
+        this.source = source;
+        this.utf8 = utf8;
+    }
+
+    // true when the course still has the values this fragment was encoded from
+    boolean encodes(Course course) {
+        if (course == source) {
+            return true;
+        }
+        return course.getId() == source.getId()
+                && course.getMinAge() == source.getMinAge()
+                && course.getMaxAge() == source.getMaxAge()
+                && Double.compare(course.getPrice(), source.getPrice()) == 0
+                && Objects.equals(course.getTitle(), source.getTitle())
+                && Objects.equals(course.getDescription(), source.getDescription())
+                && Objects.equals(course.getCategory(), source.getCategory())
+                && Objects.equals(course.getType(), source.getType())
+                && Objects.equals(course.getGradeRange(), source.getGradeRange())
+                && Objects.equals(course.getNextSessionDate(), source.getNextSessionDate());
+    }
+
+    @Override
+    public String getValue() {
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int charLength() {
+        return getValue().length();
+    }
+
+    @Override
+    public char[] asQuotedChars() {
+        return JsonStringEncoder.getInstance().quoteAsString(getValue());
+    }
+
+    @Override
+    public byte[] asUnquotedUTF8() {
+        return utf8;
+    }
+
+    @Override
+    public byte[] asQuotedUTF8() {
+        return JsonStringEncoder.getInstance().quoteAsUTF8(getValue());
+    }
+
+    @Override
+    public int appendQuotedUTF8(byte[] buffer, int offset) {
+        return append(asQuotedUTF8(), buffer, offset);
+    }
+
+    @Override
+    public int appendQuoted(char[] buffer, int offset) {
+        char[] quoted = asQuotedChars();
+        if (offset + quoted.length > buffer.length) {
+            return -1;
+        }
+        System.arraycopy(quoted, 0, buffer, offset, quoted.length);
+        return quoted.length;
+    }
+
+    @Override
+    public int appendUnquotedUTF8(byte[] buffer, int offset) {
+        return append(utf8, buffer, offset);
+    }
+
+    @Override
+    public int appendUnquoted(char[] buffer, int offset) {
+        String value = getValue();
+        if (offset + value.length() > buffer.length) {
+            return -1;
+        }
+        value.getChars(0, value.length(), buffer, offset);
+        return value.length();
+    }
+
+    @Override
+    public int writeQuotedUTF8(OutputStream out) throws IOException {
+        byte[] quoted = asQuotedUTF8();
+        out.write(quoted);
+        return quoted.length;
+    }
+
+    @Override
+    public int writeUnquotedUTF8(OutputStream out) throws IOException {
+        out.write(utf8);
+        return utf8.length;
+    }
+
+    @Override
+    public int putQuotedUTF8(ByteBuffer buffer) {
+        return put(asQuotedUTF8(), buffer);
+    }
+
+    @Override
+    public int putUnquotedUTF8(ByteBuffer buffer) {
+        return put(utf8, buffer);
+    }
+
+    private static int append(byte[] bytes, byte[] buffer, int offset) {
+        if (offset + bytes.length > buffer.length) {
+            return -1;
+        }
+        System.arraycopy(bytes, 0, buffer, offset, bytes.length);
+        return bytes.length;
+    }
+
+    private static int put(byte[] bytes, ByteBuffer buffer) {
+        if (bytes.length > buffer.remaining()) {
+            return -1;
+        }
+        buffer.put(bytes);
+        return bytes.length;
+    }
+}
@@ -0,0 +1,123 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded LRU cache of query results, weighed by the number of courses they
+ * hold.
+ *
+ * Every result is stored with the repository generation it was computed at.
+ * The repository bumps its generation whenever a change becomes visible to
+ * queries, and the first lookup or store at a newer generation drops every
+ * entry at once; results computed at an older generation are not cached.
+ * Results are computed outside the cache lock, so two readers missing on the
+ * same key at the same time may both compute it.
+ */
+@Component
+public class QueryCache {
+
+    private final long maxWeight;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long weight;
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public QueryCache(@Value("${courses.query-cache.max-courses:10000}") long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    public boolean isEnabled() {
+        return maxWeight > 0;
+    }
+
+    /**
+     * Returns the cached result for the key at this generation, or computes,
+     * caches and returns it. A result heavier than the whole cache is returned
+     * without being cached.
+     */
+    public <T> T get(String key, long generation, Supplier<T> loader, ToLongFunction<T> weigher) {
+        synchronized (this) {
+            advance(generation);
+            Entry entry = entries.get(key);
+            if (entry != null && entry.generation == generation) {
+                hits++;
+                @SuppressWarnings("unchecked")
+                T value = (T) entry.value;
+                return value;
+            }
+            misses++;
+        }
+        T value = loader.get();
+        long valueWeight = weigher.applyAsLong(value) + 1;
+        if (valueWeight > maxWeight) {
+            return value;
+        }
+        synchronized (this) {
+            advance(generation);
+            if (generation == this.generation) {
+                Entry previous = entries.put(key, new Entry(value, generation, valueWeight));
+                weight += valueWeight - (previous == null ? 0 : previous.weight);
+                evict();
+            }
+        }
+        return value;
+    }
+
+    /** Hit, miss, eviction and invalidation counts and the current size. */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        stats.put("evictions", evictions);
+        stats.put("invalidations", invalidations);
+        stats.put("entries", entries.size());
+        stats.put("weight", weight);
+        stats.put("maxWeight", maxWeight);
+        stats.put("generation", generation);
+        return stats;
+    }
+
+    // drops everything once a newer generation is seen
+    private void advance(long generation) {
+        if (generation > this.generation) {
+            if (!entries.isEmpty()) {
+                invalidations += entries.size();
+                entries.clear();
+                weight = 0;
+            }
+            this.generation = generation;
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            weight -= eldest.next().weight;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private static final class Entry {
+        final Object value;
+        final long generation;
+        final long weight;
+
+        Entry(Object value, long generation, long weight) {
+            this.value = value;
+            this.generation = generation;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.cluster;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.bulk.BulkAction;
+import com.bezkoder.spring.data.jpa.pagingsorting.bulk.BulkItemResult;
+import com.bezkoder.spring.data.jpa.pagingsorting.index.Suggestion;
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.repository.CourseRepository;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.Aggregation;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.QueryExecutor;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.ScoredPage;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.TermsAggregation;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves the course endpoints of a cluster coordinator, a node started with
+ * courses.cluster.shards set to the base URLs of the shard nodes, in shard
+ * order. The coordinator holds no courses of its own: it sends each request
+ * to the shard nodes' REST endpoints and merges their answers.
+ *
+ * Queries go to every shard in parallel. For page p of size n each shard
+ * returns its first (p + 1) * n matches, since any of them may land on the
+ * page, and the sorted runs are merged and cut to the page; with a
+ * searchAfter cursor each shard only returns the n matches after it, so
+ * cursors are the cheap way to page deep. Offset pages are refused past
+ * {@value #MAX_RESULT_WINDOW} matches, as every shard would have to send
+ * them all. Totals are summed and aggregations
+ * are reduced (see {@link Aggregation#reduce}). Search results are merged by
+ * their BM25 scores, which each shard computes from its own term
+ * frequencies; with courses spread evenly by id the shards' statistics, and
+ * so their scores, agree closely.
+ *
+ * Lookups and writes go to the one shard that owns the id (see
+ * {@link ShardRouter}); courses created without an id go to the shards in
+ * turn, which pick an id that routes to themselves. Any shard failing fails
+ * the request.
+ */
+@Component
+public class ShardCoordinator {
+
+    private static final TypeReference<Map<String, Object>> MAP = new TypeReference<Map<String, Object>>() {};
+    // the most completions the suggest endpoint returns
+    private static final int MAX_SUGGESTIONS = 100;
+    // the deepest (page + 1) * size an offset page may reach
+    static final int MAX_RESULT_WINDOW = 10_000;
+
+    private final List<String> shards = new ArrayList<>();
+    private final ShardRouter router;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader courseReader;
+    private final HttpClient client;
+    private final Duration timeout;
+    // shard of the next course created without an id
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    public ShardCoordinator(ObjectMapper objectMapper,
+                            @Value("${courses.cluster.shards:}") String shards,
+                            @Value("${courses.cluster.timeout-ms:5000}") long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("courses.cluster.timeout-ms must be positive");
+        }
+        for (String shard : shards.split(",")) {
+            if (!shard.isBlank()) {
+                this.shards.add(shard.strip().replaceAll("/+$", ""));
+            }
+        }
+        this.router = this.shards.isEmpty() ? ShardRouter.single() : new ShardRouter(0, this.shards.size());
+        this.objectMapper = objectMapper;
+        this.courseReader = objectMapper.readerFor(Course.class);
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return !shards.isEmpty();
+    }
+
+    /** Every course, sorted, as GET /api/sortedcourses lists them. */
+    public List<Course> findAllSorted(Map<String, List<String>> params, Sort sort) {
+        List<List<Course>> runs = new ArrayList<>();
+        for (JsonNode response : getAll("/api/sortedcourses", wholeCourses(params))) {
+            // a shard without courses answers 204
+            runs.add(response == null ? List.of() : courses(response));
+        }
+        return merge(runs, comparator(sort), Integer.MAX_VALUE);
+    }
+
+    /**
+     * A page of GET /api/courses, /api/courses/type/{type} or
+     * /api/courses/query, whose request parameters are passed on to the
+     * shards but for the page, the size, the aggregation specs and the
+     * projection, which the coordinator applies to the merged page.
+     */
+    public ShardedPage findPage(String path, Map<String, List<String>> params, Pageable pageable,
+                                List<Aggregation> aggregations) {
+        boolean cursor = params.containsKey("searchAfter");
+        int window = cursor ? pageable.getPageSize() : window(pageable, "page deeper with searchAfter");
+        Map<String, List<String>> shardParams = wholeCourses(params);
+        shardParams.put("page", List.of("0"));
+        shardParams.put("size", List.of(Integer.toString(window)));
+        if (params.containsKey("aggs")) {
+            shardParams.put("aggs", shardSpecs(params.get("aggs")));
+        }
+
+        List<JsonNode> responses = getAll(path, shardParams);
+        List<List<Course>> runs = new ArrayList<>();
+        long total = 0;
+        for (JsonNode response : responses) {
+            runs.add(courses(response.get("courses")));
+            total += response.get("totalItems").asLong();
+        }
+        List<Course> merged = merge(runs, comparator(pageable.getSort()), window);
+        int from = cursor ? 0 : (int) Math.min(pageable.getOffset(), merged.size());
+        List<Course> content = new ArrayList<>(merged.subList(from, merged.size()));
+        return new ShardedPage(content, pageable, total,
+                aggregations.isEmpty() ? null : reduce(responses, aggregations));
+    }
+
+    /** A page of GET /api/courses/type/{type}. */
+    public ShardedPage findByType(String type, Map<String, List<String>> params, Pageable pageable) {
+        return findPage("/api/courses/type/" + encode(type), params, pageable, List.of());
+    }
+
+    /** A page of GET /api/courses/search, best score first. */
+    public ScoredPage search(String query, Pageable pageable) {
+        int window = window(pageable, "narrow the query");
+        Map<String, List<String>> params = new LinkedHashMap<>();
+        params.put("q", List.of(query));
+        params.put("page", List.of("0"));
+        params.put("size", List.of(Integer.toString(window)));
+
+        List<ScoredCourse> hits = new ArrayList<>();
+        long total = 0;
+        for (JsonNode response : getAll("/api/courses/search", params)) {
+            List<Course> courses = courses(response.get("courses"));
+            JsonNode scores = response.get("scores");
+            for (int i = 0; i < courses.size(); i++) {
+                hits.add(new ScoredCourse(courses.get(i), scores.get(i).asDouble()));
+            }
+            total += response.get("totalItems").asLong();
+        }
+        // the order InvertedIndex.search ranks by
+        hits.sort((a, b) -> a.score != b.score
+                ? Double.compare(b.score, a.score)
+                : Integer.compare(a.course.getId(), b.course.getId()));
+
+        int from = (int) Math.min(pageable.getOffset(), hits.size());
+        int to = Math.min(window, hits.size());
+        List<Course> content = new ArrayList<>(Math.max(to - from, 0));
+        double[] scores = new double[Math.max(to - from, 0)];
+        for (int i = from; i < to; i++) {
+            content.add(hits.get(i).course);
+            scores[i - from] = hits.get(i).score;
+        }
+        return new ScoredPage(content, pageable, total, scores);
+    }
+
+    // the matches each shard returns for an offset page
+    private static int window(Pageable pageable, String instead) {
+        long window = (pageable.getPageNumber() + 1L) * pageable.getPageSize();
+        if (window > MAX_RESULT_WINDOW) {
+            throw new IllegalArgumentException("(page + 1) * size must not exceed " + MAX_RESULT_WINDOW
+                    + "; " + instead);
+        }
+        return (int) window;
+    }
+
+    /**
+     * Completions for GET /api/courses/suggest, weighed by the courses of
+     * every shard. Shards are asked for extra completions, like for terms
+     * aggregations, as a word's weight sums only the shards that return it.
+     */
+    public List<Suggestion> suggest(String text, int size) {
+        Map<String, List<String>> params = new LinkedHashMap<>();
+        params.put("q", List.of(text));
+        params.put("size", List.of(Integer.toString(Math.min(TermsAggregation.shardSize(size), MAX_SUGGESTIONS))));
+
+        Map<String, Integer> weights = new HashMap<>();
+        for (JsonNode response : getAll("/api/courses/suggest", params)) {
+            for (JsonNode suggestion : response.get("suggestions")) {
+                weights.merge(suggestion.get("text").asText(), suggestion.get("weight").asInt(), Integer::sum);
+            }
+        }
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>(weights.entrySet());
+        // heaviest first and alphabetically among equal weights, as SuggestIndex ranks them
+        ranked.sort((a, b) -> !a.getValue().equals(b.getValue())
+                ? Integer.compare(b.getValue(), a.getValue())
+                : a.getKey().compareTo(b.getKey()));
+        List<Suggestion> suggestions = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : ranked.subList(0, Math.min(size, ranked.size()))) {
+            suggestions.add(new Suggestion(entry.getKey(), entry.getValue()));
+        }
+        return suggestions;
+    }
+
+    public Optional<Course> findById(int id) {
+        JsonNode course = send(router.shardOf(id), HttpRequest.newBuilder(uri(router.shardOf(id),
+                "/api/courses/" + id, Map.of())).GET());
+        return Optional.ofNullable(course == null ? null : course(course));
+    }
+
+    /** Creates a course, or replaces the course with its id. */
+    public Course save(Course course) {
+        int shard = course.getId() == 0 ? nextShard() : router.shardOf(course.getId());
+        return course(send(shard, HttpRequest.newBuilder(uri(shard, "/api/courses", Map.of()))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(json(course)))));
+    }
+
+    /** Updates an existing course, returning empty when there is none. */
+    public Optional<Course> update(int id, Course course) {
+        int shard = router.shardOf(id);
+        JsonNode updated = send(shard, HttpRequest.newBuilder(uri(shard, "/api/courses/" + id, Map.of()))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(json(course))));
+        return Optional.ofNullable(updated == null ? null : course(updated));
+    }
+
+    public void deleteById(int id) {
+        int shard = router.shardOf(id);
+        send(shard, HttpRequest.newBuilder(uri(shard, "/api/courses/" + id, Map.of())).DELETE());
+    }
+
+    public void deleteAll() {
+        List<CompletableFuture<JsonNode>> responses = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            responses.add(sendAsync(shard, HttpRequest.newBuilder(uri(shard, "/api/courses", Map.of())).DELETE()));
+        }
+        join(responses);
+    }
+
+    public void refresh() {
+        List<CompletableFuture<JsonNode>> responses = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            responses.add(sendAsync(shard, HttpRequest.newBuilder(uri(shard, "/api/courses/_refresh", Map.of()))
+                    .POST(HttpRequest.BodyPublishers.noBody())));
+        }
+        join(responses);
+    }
+
+    /**
+     * Applies a batch of bulk actions: each shard gets the actions on its
+     * courses, in request order, as one bulk request, and the results are put
+     * back in the order of the batch. Actions that could not be read fail
+     * here, as they would on a single node.
+     */
+    public List<BulkItemResult> bulk(List<BulkAction> actions) {
+        BulkItemResult[] results = new BulkItemResult[actions.size()];
+        List<List<Integer>> positions = new ArrayList<>();
+        List<StringBuilder> bodies = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            positions.add(new ArrayList<>());
+            bodies.add(new StringBuilder());
+        }
+        for (int i = 0; i < actions.size(); i++) {
+            BulkAction action = actions.get(i);
+            if (action.getError() != null) {
+                results[i] = BulkItemResult.failed(action.getType(), action.getId(), 400, action.getError());
+                continue;
+            }
+            int shard = action.getType() == BulkAction.Type.CREATE && action.getId() == 0
+                    ? nextShard() : router.shardOf(action.getId());
+            StringBuilder body = bodies.get(shard);
+            body.append("{\"").append(action.getType().label()).append("\":{");
+            if (action.getId() != 0) {
+                body.append("\"_id\":").append(action.getId());
+            }
+            body.append("}}\n");
+            if (action.getCourse() != null) {
+                body.append(new String(json(action.getCourse()), StandardCharsets.UTF_8)).append('\n');
+            }
+            positions.get(shard).add(i);
+        }
+
+        List<Integer> sent = new ArrayList<>();
+        List<CompletableFuture<JsonNode>> responses = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            if (positions.get(shard).isEmpty()) {
+                continue;
+            }
+            Map<String, List<String>> params = Map.of("batchSize",
+                    List.of(Integer.toString(positions.get(shard).size())));
+            sent.add(shard);
+            responses.add(sendAsync(shard, HttpRequest.newBuilder(uri(shard, "/api/courses/_bulk", params))
+                    .header("Content-Type", "application/x-ndjson")
+                    .POST(HttpRequest.BodyPublishers.ofString(bodies.get(shard).toString()))));
+        }
+        List<JsonNode> answers = join(responses);
+        for (int s = 0; s < sent.size(); s++) {
+            List<Integer> shardPositions = positions.get(sent.get(s));
+            JsonNode items = answers.get(s).get("items");
+            for (int i = 0; i < shardPositions.size(); i++) {
+                results[shardPositions.get(i)] = item(items.get(i));
+            }
+        }
+        return List.of(results);
+    }
+
+    private int nextShard() {
+        return Math.floorMod(nextShard.getAndIncrement(), shards.size());
+    }
+
+    private static BulkItemResult item(JsonNode item) {
+        BulkAction.Type type = BulkAction.Type.valueOf(item.get("action").asText().toUpperCase());
+        int id = item.get("id").asInt();
+        int status = item.get("status").asInt();
+        JsonNode error = item.get("error");
+        return error == null || error.isNull()
+                ? BulkItemResult.ok(type, id, status)
+                : BulkItemResult.failed(type, id, status, error.asText());
+    }
+
+    // the parameters without a projection, since merging needs the sort properties
+    private static Map<String, List<String>> wholeCourses(Map<String, List<String>> params) {
+        Map<String, List<String>> shardParams = new LinkedHashMap<>(params);
+        shardParams.remove("fields");
+        shardParams.remove("_source");
+        return shardParams;
+    }
+
+    // terms aggregations ask every shard for extra buckets, see TermsAggregation
+    private static List<String> shardSpecs(List<String> specs) {
+        List<String> shardSpecs = new ArrayList<>(specs.size());
+        for (String spec : specs) {
+            String[] parts = spec.split(":");
+            if (parts.length >= 2 && parts[0].equals("terms")) {
+                int size = parts.length > 2 ? Integer.parseInt(parts[2]) : TermsAggregation.DEFAULT_SIZE;
+                spec = "terms:" + parts[1] + ":" + TermsAggregation.shardSize(size);
+            }
+            shardSpecs.add(spec);
+        }
+        return shardSpecs;
+    }
+
+    private Map<String, Object> reduce(List<JsonNode> responses, List<Aggregation> aggregations) {
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (Aggregation aggregation : aggregations) {
+            List<Map<String, Object>> shardResults = new ArrayList<>(responses.size());
+            for (JsonNode response : responses) {
+                shardResults.add(objectMapper.convertValue(
+                        response.get("aggregations").get(aggregation.getName()), MAP));
+            }
+            results.put(aggregation.getName(), aggregation.reduce(shardResults));
+        }
+        return results;
+    }
+
+    // the order every shard sorted its run in; courses with unsupported sort keys by id
+    private static Comparator<Course> comparator(Sort sort) {
+        Comparator<Course> comparator = CourseRepository.comparatorFor(sort);
+        return comparator != null ? comparator : Comparator.comparingInt(Course::getId);
+    }
+
+    private static List<Course> merge(List<List<Course>> runs, Comparator<Course> comparator, int limit) {
+        List<Course> merged = List.of();
+        for (List<Course> run : runs) {
+            merged = QueryExecutor.merge(merged, run, comparator, limit);
+        }
+        return merged;
+    }
+
+    private List<Course> courses(JsonNode array) {
+        List<Course> courses = new ArrayList<>(array.size());
+        for (JsonNode course : array) {
+            courses.add(course(course));
+        }
+        return courses;
+    }
+
+    private Course course(JsonNode course) {
+        try {
+            return courseReader.readValue(course);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] json(Course course) {
+        try {
+            return objectMapper.writeValueAsBytes(course);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private URI uri(int shard, String path, Map<String, List<String>> params) {
+        StringBuilder uri = new StringBuilder(shards.get(shard)).append(path);
+        char separator = '?';
+        for (Map.Entry<String, List<String>> param : params.entrySet()) {
+            for (String value : param.getValue()) {
+                uri.append(separator).append(encode(param.getKey())).append('=').append(encode(value));
+                separator = '&';
+            }
+        }
+        return URI.create(uri.toString());
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    private List<JsonNode> getAll(String path, Map<String, List<String>> params) {
+        List<CompletableFuture<JsonNode>> responses = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            responses.add(sendAsync(shard, HttpRequest.newBuilder(uri(shard, path, params)).GET()));
+        }
+        return join(responses);
+    }
+
+    private JsonNode send(int shard, HttpRequest.Builder request) {
+        return join(List.of(sendAsync(shard, request))).get(0);
+    }
+
+    private CompletableFuture<JsonNode> sendAsync(int shard, HttpRequest.Builder request) {
+        return client.sendAsync(request.timeout(timeout).header("Accept", "application/json").build(),
+                HttpResponse.BodyHandlers.ofByteArray()).thenApply(response -> read(shard, response));
+    }
+
+    // the body of a successful response; null for 204 No Content and 404 Not Found
+    private JsonNode read(int shard, HttpResponse<byte[]> response) {
+        int status = response.statusCode();
+        if (status == 204 || status == 404) {
+            return null;
+        }
+        if (status == 400) {
+            throw new IllegalArgumentException("Shard " + shards.get(shard) + " rejected " + response.uri());
+        }
+        if (status / 100 != 2) {
+            throw new IllegalStateException("Shard " + shards.get(shard) + " answered " + status + " to "
+                    + response.uri());
+        }
+        try {
+            return objectMapper.readTree(response.body());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // waits for every response, so no request is left running when one fails
+    private static List<JsonNode> join(List<CompletableFuture<JsonNode>> responses) {
+        List<JsonNode> nodes = new ArrayList<>(responses.size());
+        RuntimeException failure = null;
+        for (CompletableFuture<JsonNode> response : responses) {
+            try {
+                nodes.add(response.join());
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause()
+                            : e.getCause() instanceof IOException
+                            ? new UncheckedIOException("Shard request failed", (IOException) e.getCause())
+                            : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return nodes;
+    }
+
+    private static final class ScoredCourse {
+
+        final Course course;
+        final double score;
+
+        ScoredCourse(Course course, double score) {
+            this.course = course;
+            this.score = score;
+        }
+    }
+}
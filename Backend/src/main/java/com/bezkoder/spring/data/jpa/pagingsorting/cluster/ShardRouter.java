@@ -0,0 +1,70 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.cluster;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Assigns every course id to one of a fixed number of shards by hashing it.
+ *
+ * Each shard node holds the courses whose ids route to it
+ * (courses.shard.index of courses.shard.count) and the coordinator uses the
+ * same function to send a lookup or write to the one shard that owns the id.
+ * Ids are mixed before taking the remainder, so ids that share a stride
+ * (every 4th, say) still spread over all shards. With a single shard every id
+ * routes to it.
+ */
+@Component
+public class ShardRouter {
+
+    private final int index;
+    private final int count;
+
+    public ShardRouter(@Value("${courses.shard.index:0}") int index,
+                       @Value("${courses.shard.count:1}") int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("courses.shard.count must be positive");
+        }
+        if (index < 0 || index >= count) {
+            throw new IllegalArgumentException("courses.shard.index must be between 0 and courses.shard.count - 1");
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    /** A router for a node holding the whole catalog. */
+    public static ShardRouter single() {
+        return new ShardRouter(0, 1);
+    }
+
+    /** True when this node holds one shard of several. */
+    public boolean isEnabled() {
+        return count > 1;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int shardOf(int id) {
+        return count == 1 ? 0 : Math.floorMod(mix(id), count);
+    }
+
+    /** True when the id routes to this node's shard. */
+    public boolean owns(int id) {
+        return shardOf(id) == index;
+    }
+
+    // the finalizer of MurmurHash3: every input bit affects every output bit
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,27 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.cluster;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A page merged from the pages of every shard, with the aggregations of the
+ * request reduced across the shards.
+ */
+public class ShardedPage extends PageImpl<Course> {
+
+    private final Map<String, Object> aggregations;
+
+    ShardedPage(List<Course> content, Pageable pageable, long total, Map<String, Object> aggregations) {
+        super(content, pageable, total);
+        this.aggregations = aggregations;
+    }
+
+    /** Reduced aggregations by name, or {@code null} when none were requested. */
+    public Map<String, Object> getAggregations() {
+        return aggregations;
+    }
+}
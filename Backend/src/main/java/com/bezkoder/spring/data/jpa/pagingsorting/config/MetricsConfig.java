@@ -0,0 +1,30 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.config;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.metrics.QueryMetrics;
+import com.bezkoder.spring.data.jpa.pagingsorting.metrics.QueryMetricsInterceptor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Times the API's requests into {@link QueryMetrics}, unless
+ * courses.metrics.enabled is false.
+ */
+@Configuration
+@ConditionalOnProperty(name = "courses.metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class MetricsConfig implements WebMvcConfigurer {
+
+    private final QueryMetrics metrics;
+
+    public MetricsConfig(QueryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new QueryMetricsInterceptor(metrics))
+                .addPathPatterns("/api/**")
+                .excludePathPatterns("/api/courses/_metrics", "/api/courses/_health");
+    }
+}
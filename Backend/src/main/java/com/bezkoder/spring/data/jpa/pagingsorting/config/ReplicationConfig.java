@@ -0,0 +1,44 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.config;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.replication.ReplicaFollower;
+import com.bezkoder.spring.data.jpa.pagingsorting.replication.ReplicationInterceptor;
+import com.bezkoder.spring.data.jpa.pagingsorting.replication.ReplicationLog;
+import com.bezkoder.spring.data.jpa.pagingsorting.repository.CourseRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Puts the course endpoints behind {@link ReplicationInterceptor} when
+ * courses.replication.role is PRIMARY or REPLICA.
+ */
+@Configuration
+public class ReplicationConfig implements WebMvcConfigurer {
+
+    private final ReplicationLog replication;
+    private final CourseRepository repository;
+    private final ReplicaFollower follower;
+    private final long minSeqTimeoutMillis;
+
+    public ReplicationConfig(ReplicationLog replication, CourseRepository repository, ReplicaFollower follower,
+                             @Value("${courses.replication.min-seq-timeout-ms:5000}") long minSeqTimeoutMillis) {
+        if (minSeqTimeoutMillis < 0) {
+            throw new IllegalArgumentException("courses.replication.min-seq-timeout-ms must not be negative");
+        }
+        this.replication = replication;
+        this.repository = repository;
+        this.follower = follower;
+        this.minSeqTimeoutMillis = minSeqTimeoutMillis;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (!replication.isEnabled()) {
+            return;
+        }
+        registry.addInterceptor(new ReplicationInterceptor(repository, follower, minSeqTimeoutMillis))
+                .addPathPatterns("/api/**")
+                .excludePathPatterns("/api/courses/_metrics", "/api/courses/_cache", "/api/courses/_replication/**");
+    }
+}
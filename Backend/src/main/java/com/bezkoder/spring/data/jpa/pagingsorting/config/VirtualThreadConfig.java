@@ -0,0 +1,38 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.config;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Opt-in (courses.virtual-threads=true) execution of requests on virtual
+ * threads.
+ *
+ * Tomcat then starts a virtual thread per request instead of taking one of
+ * its pool threads, and the application task executor, which runs the async
+ * search endpoints, does the same. A request blocked on disk or on another
+ * node no longer holds a scarce platform thread. Without it, requests run on
+ * Tomcat's pool and async searches on Spring Boot's default task executor
+ * (spring.task.execution.pool.*).
+ */
+@Configuration
+@ConditionalOnProperty(name = "courses.virtual-threads", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadRequests() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    // replaces Spring Boot's pooled applicationTaskExecutor
+    @Bean(name = "applicationTaskExecutor")
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(Executors.newVirtualThreadPerTaskExecutor());
+    }
+}
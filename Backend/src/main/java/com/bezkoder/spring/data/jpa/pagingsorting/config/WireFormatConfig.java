@@ -0,0 +1,37 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Answers requests that accept application/x-jackson-smile or
+ * application/cbor in those binary encodings of the JSON responses, with
+ * copies of the application's ObjectMapper so the modules and settings are
+ * the same. JSON stays the default for any other Accept header.
+ */
+@Configuration
+public class WireFormatConfig implements WebMvcConfigurer {
+
+    private final ObjectMapper objectMapper;
+
+    public WireFormatConfig(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Spring adds its own when the formats are on the classpath, with default mappers
+        converters.removeIf(converter -> converter instanceof MappingJackson2SmileHttpMessageConverter
+                || converter instanceof MappingJackson2CborHttpMessageConverter);
+        converters.add(new MappingJackson2SmileHttpMessageConverter(objectMapper.copyWith(new SmileFactory())));
+        converters.add(new MappingJackson2CborHttpMessageConverter(objectMapper.copyWith(new CBORFactory())));
+    }
+}
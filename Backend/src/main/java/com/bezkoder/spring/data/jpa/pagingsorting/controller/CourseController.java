@@ -1,23 +1,41 @@
 package com.bezkoder.spring.data.jpa.pagingsorting.controller;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.NestedRuntimeException;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Order;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.ErrorResponse;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -26,18 +44,85 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.bulk.BulkAction;
+import com.bezkoder.spring.data.jpa.pagingsorting.bulk.BulkItemResult;
+import com.bezkoder.spring.data.jpa.pagingsorting.bulk.BulkRequestReader;
+import com.bezkoder.spring.data.jpa.pagingsorting.cache.CourseJsonCache;
+import com.bezkoder.spring.data.jpa.pagingsorting.cache.CourseJsonList;
+import com.bezkoder.spring.data.jpa.pagingsorting.cache.CourseProjection;
+import com.bezkoder.spring.data.jpa.pagingsorting.cluster.ShardCoordinator;
+import com.bezkoder.spring.data.jpa.pagingsorting.cluster.ShardedPage;
+import com.bezkoder.spring.data.jpa.pagingsorting.index.Suggestion;
+import com.bezkoder.spring.data.jpa.pagingsorting.metrics.QueryMetrics;
 import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.persistence.CoursePersistence;
+import com.bezkoder.spring.data.jpa.pagingsorting.replication.ReplicaFollower;
+import com.bezkoder.spring.data.jpa.pagingsorting.replication.ReplicationInterceptor;
+import com.bezkoder.spring.data.jpa.pagingsorting.replication.ReplicationLog;
 import com.bezkoder.spring.data.jpa.pagingsorting.repository.CourseRepository;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.Aggregation;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.CourseQuery;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.ScoredPage;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.SearchAfter;
 
 @CrossOrigin(origins = "*") 
 @RestController
 @RequestMapping("/api")
 public class CourseController {
 
+  private static final Logger log = LoggerFactory.getLogger(CourseController.class);
+
   @Autowired
   CourseRepository courseRepository;
 
+  @Autowired
+  ObjectMapper objectMapper;
+
+  // list responses write each course from its cached, pre-encoded JSON
+  @Autowired
+  CourseJsonCache jsonCache;
+
+  // runs the async search endpoints, on virtual threads when enabled (see
+  // VirtualThreadConfig)
+  @Autowired
+  @Qualifier("applicationTaskExecutor")
+  AsyncTaskExecutor taskExecutor;
+
+  @Autowired
+  QueryMetrics queryMetrics;
+
+  // on a cluster coordinator the course endpoints are answered by the shard
+  // nodes instead of courseRepository (see ShardCoordinator)
+  @Autowired
+  ShardCoordinator shardCoordinator;
+
+  // a primary ships its changes to replicas from this log; a replica rejects
+  // writes (see ReplicationInterceptor) and applies the primary's log instead
+  @Autowired
+  ReplicationLog replicationLog;
+
+  @Autowired
+  ReplicaFollower replicaFollower;
+
+  @Autowired
+  CoursePersistence coursePersistence;
+
+  // On a primary, the log position a write has reached; a read with minSeq
+  // set to it sees the write, on the primary and on every replica.
+  private HttpHeaders writeSeq() {
+    HttpHeaders headers = new HttpHeaders();
+    if (replicationLog.isPrimary()) {
+      headers.set(ReplicationInterceptor.SEQ_HEADER, Long.toString(replicationLog.lastSeq()));
+    }
+    return headers;
+  }
+
   private Sort.Direction getSortDirection(String direction) {
     if (direction.equals("asc")) {
       return Sort.Direction.ASC;
@@ -47,76 +132,107 @@ public class CourseController {
     return Sort.Direction.ASC;
   }
 
+  // Token for the page after this one, or null when this is the last page.
+  private String nextSearchAfter(Page<Course> pageCourses, Sort sort) {
+    List<Course> courses = pageCourses.getContent();
+    if (courses.isEmpty() || courses.size() < pageCourses.getSize()) {
+      return null;
+    }
+    return SearchAfter.encode(courses.get(courses.size() - 1), sort);
+  }
+
+  // The properties asked for with fields= (or _source=), null for all of them.
+  private CourseProjection projection(MultiValueMap<String, String> params) {
+    return CourseProjection.of(params.getFirst("fields"), params.getFirst("_source"));
+  }
+
   @GetMapping("/sortedcourses")
-  public ResponseEntity<List<Course>> getAllCourses(@RequestParam(defaultValue = "id,desc") String[] sort) {
+  public ResponseEntity<CourseJsonList> getAllCourses(@RequestParam(defaultValue = "id,desc") String[] sort,
+      @RequestParam MultiValueMap<String, String> params) {
 
-    try {
-      List<Order> orders = new ArrayList<Order>();
+    CourseProjection projection = projection(params);
+    List<Order> orders = new ArrayList<Order>();
 
-      if (sort[0].contains(",")) {
-        for (String sortOrder : sort) {
-          String[] _sort = sortOrder.split(",");
-          orders.add(new Order(getSortDirection(_sort[1]), _sort[0]));
-        }
-      } else {
-        orders.add(new Order(getSortDirection(sort[1]), sort[0]));
+    if (sort[0].contains(",")) {
+      for (String sortOrder : sort) {
+        String[] _sort = sortOrder.split(",");
+        orders.add(new Order(getSortDirection(_sort[1]), _sort[0]));
       }
+    } else {
+      orders.add(new Order(getSortDirection(sort[1]), sort[0]));
+    }
 
-  
-      List<Course> courses = courseRepository.findByTitleContaining("", Sort.by(orders));
 
-      if (courses.isEmpty()) {
-        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
-      }
+    List<Course> courses = shardCoordinator.isEnabled()
+        ? shardCoordinator.findAllSorted(params, Sort.by(orders))
+        : courseRepository.findByTitleContaining("", Sort.by(orders));
 
-      return new ResponseEntity<>(courses, HttpStatus.OK);
-    } catch (Exception e) {
-      e.printStackTrace();
-      return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+    if (courses.isEmpty()) {
+      return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
+
+    return new ResponseEntity<>(jsonCache.encode(courses, projection), HttpStatus.OK);
   }
 
+  // fuzziness (0 to 2) lets title words match with that many typos
   @GetMapping("/courses")
   public ResponseEntity<Map<String, Object>> getAllCoursesPage(
       @RequestParam(required = false) String title,
+      @RequestParam(defaultValue = "0") int fuzziness,
       @RequestParam(defaultValue = "0") int page,
       @RequestParam(defaultValue = "3") int size,
-      @RequestParam(defaultValue = "id,desc") String[] sort) {
+      @RequestParam(defaultValue = "id,desc") String[] sort,
+      @RequestParam(required = false) String searchAfter,
+      @RequestParam MultiValueMap<String, String> params) {
 
-    try {
-      List<Order> orders = new ArrayList<Order>();
+    CourseProjection projection = projection(params);
+    List<Order> orders = new ArrayList<Order>();
 
-      if (sort[0].contains(",")) {
-        for (String sortOrder : sort) {
-          String[] _sort = sortOrder.split(",");
-          orders.add(new Order(getSortDirection(_sort[1]), _sort[0]));
-        }
-      } else {
-        orders.add(new Order(getSortDirection(sort[1]), sort[0]));
+    if (sort[0].contains(",")) {
+      for (String sortOrder : sort) {
+        String[] _sort = sortOrder.split(",");
+        orders.add(new Order(getSortDirection(_sort[1]), _sort[0]));
       }
+    } else {
+      orders.add(new Order(getSortDirection(sort[1]), sort[0]));
+    }
 
-      Pageable pagingSort = PageRequest.of(page, size, Sort.by(orders));
+    Pageable pagingSort = PageRequest.of(page, size, Sort.by(orders));
+    Course after = searchAfter == null ? null : SearchAfter.decode(searchAfter, pagingSort.getSort());
 
-      Page<Course> pageCourses;
-      if (title == null || title.isEmpty()) {
-        pageCourses = courseRepository.findAll(pagingSort);
-      } else {
-        pageCourses = courseRepository.findByTitleContaining(title, pagingSort);
-      }
+    Page<Course> pageCourses;
+    if (shardCoordinator.isEnabled()) {
+      pageCourses = shardCoordinator.findPage("/api/courses", params, pagingSort, List.of());
+    } else if (title == null || title.isEmpty()) {
+      pageCourses = courseRepository.findAll(pagingSort, after);
+    } else {
+      pageCourses = courseRepository.findByTitleContaining(title, fuzziness, pagingSort, after);
+    }
 
-      List<Course> courses = pageCourses.getContent();
+    List<Course> courses = pageCourses.getContent();
 
-      Map<String, Object> response = new HashMap<>();
-      response.put("courses", courses);
-      response.put("currentPage", pageCourses.getNumber());
-      response.put("totalItems", pageCourses.getTotalElements());
-      response.put("totalPages", pageCourses.getTotalPages());
+    Map<String, Object> response = new HashMap<>();
+    response.put("courses", jsonCache.encode(courses, projection));
+    response.put("currentPage", pageCourses.getNumber());
+    response.put("totalItems", pageCourses.getTotalElements());
+    response.put("totalPages", pageCourses.getTotalPages());
+    response.put("searchAfter", nextSearchAfter(pageCourses, pagingSort.getSort()));
 
-      return new ResponseEntity<>(response, HttpStatus.OK);
-    } catch (Exception e) {
-      e.printStackTrace();
-      return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
-    }
+    return new ResponseEntity<>(response, HttpStatus.OK);
+  }
+
+  // Same as GET /courses, computed off the request thread.
+  @GetMapping("/courses/async")
+  public CompletableFuture<ResponseEntity<Map<String, Object>>> getAllCoursesPageAsync(
+      @RequestParam(required = false) String title,
+      @RequestParam(defaultValue = "0") int fuzziness,
+      @RequestParam(defaultValue = "0") int page,
+      @RequestParam(defaultValue = "3") int size,
+      @RequestParam(defaultValue = "id,desc") String[] sort,
+      @RequestParam(required = false) String searchAfter,
+      @RequestParam MultiValueMap<String, String> params) {
+    return CompletableFuture.supplyAsync(
+        () -> getAllCoursesPage(title, fuzziness, page, size, sort, searchAfter, params), taskExecutor);
   }
 
   @GetMapping("/courses/type/{type}")
@@ -124,43 +240,318 @@ public class CourseController {
       @PathVariable("type") String type,
       @RequestParam(defaultValue = "0") int page,
       @RequestParam(defaultValue = "3") int size,
-      @RequestParam(defaultValue = "id,desc") String[] sort) {
+      @RequestParam(defaultValue = "id,desc") String[] sort,
+      @RequestParam(required = false) String searchAfter,
+      @RequestParam MultiValueMap<String, String> params) {
 
-    try {
-      List<Order> orders = new ArrayList<Order>();
+    CourseProjection projection = projection(params);
+    List<Order> orders = new ArrayList<Order>();
 
-      if (sort[0].contains(",")) {
-        for (String sortOrder : sort) {
-          String[] _sort = sortOrder.split(",");
-          orders.add(new Order(getSortDirection(_sort[1]), _sort[0]));
-        }
-      } else {
-        orders.add(new Order(getSortDirection(sort[1]), sort[0]));
+    if (sort[0].contains(",")) {
+      for (String sortOrder : sort) {
+        String[] _sort = sortOrder.split(",");
+        orders.add(new Order(getSortDirection(_sort[1]), _sort[0]));
       }
+    } else {
+      orders.add(new Order(getSortDirection(sort[1]), sort[0]));
+    }
+
+    Pageable pagingSort = PageRequest.of(page, size, Sort.by(orders));
+    Course after = searchAfter == null ? null : SearchAfter.decode(searchAfter, pagingSort.getSort());
+
+
+    Page<Course> pageCourses = shardCoordinator.isEnabled()
+        ? shardCoordinator.findByType(type, params, pagingSort)
+        : courseRepository.findByType(type, pagingSort, after);
+
+    List<Course> courses = pageCourses.getContent();
+
+    Map<String, Object> response = new HashMap<>();
+    response.put("courses", jsonCache.encode(courses, projection));
+    response.put("currentPage", pageCourses.getNumber());
+    response.put("totalItems", pageCourses.getTotalElements());
+    response.put("totalPages", pageCourses.getTotalPages());
+    response.put("searchAfter", nextSearchAfter(pageCourses, pagingSort.getSort()));
+
+    return new ResponseEntity<>(response, HttpStatus.OK);
+  }
+
+  // Combines an optional title match with keyword filters (any of the given
+  // values) and inclusive ranges. minAge/maxAge bound the course's own age
+  // band; age keeps courses whose band includes that age. Each aggs spec
+  // (see Aggregation) adds a facet over all matches, not just the page.
+  @GetMapping("/courses/query")
+  public ResponseEntity<Map<String, Object>> queryCourses(
+      @RequestParam(required = false) String title,
+      @RequestParam(required = false) List<String> category,
+      @RequestParam(required = false) List<String> type,
+      @RequestParam(required = false) List<String> gradeRange,
+      @RequestParam(required = false) Double minPrice,
+      @RequestParam(required = false) Double maxPrice,
+      @RequestParam(required = false) Integer minAge,
+      @RequestParam(required = false) Integer maxAge,
+      @RequestParam(required = false) Integer age,
+      @RequestParam(required = false) String from,
+      @RequestParam(required = false) String to,
+      @RequestParam(defaultValue = "0") int page,
+      @RequestParam(defaultValue = "3") int size,
+      @RequestParam(defaultValue = "id,desc") String[] sort,
+      @RequestParam(required = false) String searchAfter,
+      @RequestParam(required = false) List<String> aggs,
+      @RequestParam MultiValueMap<String, String> params) {
+
+    CourseProjection projection = projection(params);
+    List<Order> orders = new ArrayList<Order>();
+
+    if (sort[0].contains(",")) {
+      for (String sortOrder : sort) {
+        String[] _sort = sortOrder.split(",");
+        orders.add(new Order(getSortDirection(_sort[1]), _sort[0]));
+      }
+    } else {
+      orders.add(new Order(getSortDirection(sort[1]), sort[0]));
+    }
+
+    Pageable pagingSort = PageRequest.of(page, size, Sort.by(orders));
+    Course after = searchAfter == null ? null : SearchAfter.decode(searchAfter, pagingSort.getSort());
+
+    List<Aggregation> aggregations = new ArrayList<>();
+    if (aggs != null) {
+      for (String spec : aggs) {
+        aggregations.add(Aggregation.parse(spec));
+      }
+    }
+
+    CourseQuery query = new CourseQuery()
+        .title(title)
+        .term("category", category)
+        .term("type", type)
+        .term("gradeRange", gradeRange)
+        .priceBetween(minPrice, maxPrice)
+        .minAgeBetween(minAge, null)
+        .maxAgeBetween(null, maxAge)
+        .nextSessionBetween(from == null ? null : OffsetDateTime.parse(from), to == null ? null : OffsetDateTime.parse(to));
+    if (age != null) {
+      query.suitableForAge(age);
+    }
+
+    Page<Course> pageCourses;
+    Map<String, Object> aggregationResults = null;
+    if (shardCoordinator.isEnabled()) {
+      ShardedPage sharded = shardCoordinator.findPage("/api/courses/query", params, pagingSort, aggregations);
+      pageCourses = sharded;
+      aggregationResults = sharded.getAggregations();
+    } else {
+      pageCourses = courseRepository.findByQuery(query, pagingSort, after);
+      if (!aggregations.isEmpty()) {
+        aggregationResults = courseRepository.aggregate(query, aggregations);
+      }
+    }
+
+    Map<String, Object> response = new HashMap<>();
+    response.put("courses", jsonCache.encode(pageCourses.getContent(), projection));
+    response.put("currentPage", pageCourses.getNumber());
+    response.put("totalItems", pageCourses.getTotalElements());
+    response.put("totalPages", pageCourses.getTotalPages());
+    response.put("searchAfter", nextSearchAfter(pageCourses, pagingSort.getSort()));
+    if (aggregationResults != null) {
+      response.put("aggregations", aggregationResults);
+    }
+
+    return new ResponseEntity<>(response, HttpStatus.OK);
+  }
+
+  // Same as GET /courses/query, computed off the request thread.
+  @GetMapping("/courses/query/async")
+  public CompletableFuture<ResponseEntity<Map<String, Object>>> queryCoursesAsync(
+      @RequestParam(required = false) String title,
+      @RequestParam(required = false) List<String> category,
+      @RequestParam(required = false) List<String> type,
+      @RequestParam(required = false) List<String> gradeRange,
+      @RequestParam(required = false) Double minPrice,
+      @RequestParam(required = false) Double maxPrice,
+      @RequestParam(required = false) Integer minAge,
+      @RequestParam(required = false) Integer maxAge,
+      @RequestParam(required = false) Integer age,
+      @RequestParam(required = false) String from,
+      @RequestParam(required = false) String to,
+      @RequestParam(defaultValue = "0") int page,
+      @RequestParam(defaultValue = "3") int size,
+      @RequestParam(defaultValue = "id,desc") String[] sort,
+      @RequestParam(required = false) String searchAfter,
+      @RequestParam(required = false) List<String> aggs,
+      @RequestParam MultiValueMap<String, String> params) {
+    return CompletableFuture.supplyAsync(
+        () -> queryCourses(title, category, type, gradeRange, minPrice, maxPrice, minAge, maxAge, age, from, to,
+            page, size, sort, searchAfter, aggs, params),
+        taskExecutor);
+  }
+
+  @GetMapping("/courses/search")
+  public ResponseEntity<Map<String, Object>> searchCourses(
+      @RequestParam("q") String query,
+      @RequestParam(defaultValue = "0") int page,
+      @RequestParam(defaultValue = "3") int size,
+      @RequestParam MultiValueMap<String, String> params) {
+
+    CourseProjection projection = projection(params);
+    ScoredPage pageCourses = shardCoordinator.isEnabled()
+        ? shardCoordinator.search(query, PageRequest.of(page, size))
+        : courseRepository.search(query, PageRequest.of(page, size));
+
+    Map<String, Object> response = new HashMap<>();
+    response.put("courses", jsonCache.encode(pageCourses.getContent(), projection));
+    response.put("scores", pageCourses.getScores());
+    response.put("currentPage", pageCourses.getNumber());
+    response.put("totalItems", pageCourses.getTotalElements());
+    response.put("totalPages", pageCourses.getTotalPages());
+
+    return new ResponseEntity<>(response, HttpStatus.OK);
+  }
+
+  // Same as GET /courses/search, computed off the request thread.
+  @GetMapping("/courses/search/async")
+  public CompletableFuture<ResponseEntity<Map<String, Object>>> searchCoursesAsync(
+      @RequestParam("q") String query,
+      @RequestParam(defaultValue = "0") int page,
+      @RequestParam(defaultValue = "3") int size,
+      @RequestParam MultiValueMap<String, String> params) {
+    return CompletableFuture.supplyAsync(() -> searchCourses(query, page, size, params), taskExecutor);
+  }
 
-      Pageable pagingSort = PageRequest.of(page, size, Sort.by(orders));
+  // Completions for a search box: the last word of q is completed with the
+  // title words found in the most courses, the rest of q is kept as typed.
+  @GetMapping("/courses/suggest")
+  public ResponseEntity<Map<String, Object>> suggest(
+      @RequestParam("q") String query,
+      @RequestParam(defaultValue = "5") int size) {
 
+    if (size <= 0 || size > 100) {
+      throw new IllegalArgumentException("size must be between 1 and 100");
+    }
+    List<Suggestion> suggestions = shardCoordinator.isEnabled()
+        ? shardCoordinator.suggest(query, size)
+        : courseRepository.suggest(query, size);
+
+    Map<String, Object> response = new HashMap<>();
+    response.put("suggestions", suggestions);
+
+    return new ResponseEntity<>(response, HttpStatus.OK);
+  }
+
+  // Hit, miss, eviction and invalidation counters of the query cache.
+  @GetMapping("/courses/_cache")
+  public ResponseEntity<Map<String, Object>> queryCacheStats() {
+    Map<String, Object> stats = courseRepository.queryCacheStats();
+    if (stats == null) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    return new ResponseEntity<>(stats, HttpStatus.OK);
+  }
+
+  // Latency percentiles per endpoint and per query phase, matched and
+  // returned course counts, and the latest slow queries.
+  @GetMapping("/courses/_metrics")
+  public ResponseEntity<Map<String, Object>> metrics() {
+    if (!queryMetrics.isEnabled()) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    Map<String, Object> stats = queryMetrics.stats();
+    if (replicationLog.isEnabled()) {
+      stats.put("replication", replicationStats());
+    }
+    return new ResponseEntity<>(stats, HttpStatus.OK);
+  }
+
+  // UP, or DOWN with 503 once the write-ahead log has failed and writes are
+  // refused, so a load balancer or orchestrator takes the node out.
+  @GetMapping("/courses/_health")
+  public ResponseEntity<Map<String, Object>> health() {
+    Map<String, Object> health = new LinkedHashMap<>();
+    IOException failure = coursePersistence.failure();
+    if (failure != null) {
+      health.put("status", "DOWN");
+      health.put("error", "Write-ahead log failed: " + failure);
+      return new ResponseEntity<>(health, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+    health.put("status", "UP");
+    return new ResponseEntity<>(health, HttpStatus.OK);
+  }
+
+  @DeleteMapping("/courses/_metrics")
+  public ResponseEntity<HttpStatus> resetMetrics() {
+    if (!queryMetrics.isEnabled()) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    queryMetrics.reset();
+    return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+  }
 
-      Page<Course> pageCourses = courseRepository.findByType(type, pagingSort);
+  // Role and log position of the node; on a replica also the primary's
+  // position and the replication lag in changes and in milliseconds.
+  @GetMapping("/courses/_replication")
+  public ResponseEntity<Map<String, Object>> replication() {
+    if (!replicationLog.isEnabled()) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    return new ResponseEntity<>(replicationStats(), HttpStatus.OK);
+  }
 
-      List<Course> courses = pageCourses.getContent();
+  private Map<String, Object> replicationStats() {
+    Map<String, Object> stats = new LinkedHashMap<>(replicationLog.stats());
+    stats.put("visibleSeq", courseRepository.visibleSeq());
+    if (replicaFollower.isEnabled()) {
+      stats.putAll(replicaFollower.stats());
+    }
+    return stats;
+  }
 
-      Map<String, Object> response = new HashMap<>();
-      response.put("courses", courses);
-      response.put("currentPage", pageCourses.getNumber());
-      response.put("totalItems", pageCourses.getTotalElements());
-      response.put("totalPages", pageCourses.getTotalPages());
+  // Up to max mutations after the given position of the primary's log, in
+  // the binary encoding of ReplicationLog.Batch, waiting up to waitMs for one
+  // when there are none yet. 410 Gone tells the replica to copy the catalog
+  // again.
+  @GetMapping("/courses/_replication/log")
+  public ResponseEntity<byte[]> replicationLog(@RequestParam long epoch,
+      @RequestParam long after,
+      @RequestParam(defaultValue = "1000") int max,
+      @RequestParam(defaultValue = "0") long waitMs) throws IOException, InterruptedException {
+    if (!replicationLog.isPrimary()) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    ReplicationLog.Batch batch = replicationLog.read(epoch, after, max, Math.max(0, waitMs));
+    if (batch == null) {
+      return new ResponseEntity<>(HttpStatus.GONE);
+    }
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    batch.write(new DataOutputStream(body));
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+    return new ResponseEntity<>(body.toByteArray(), headers, HttpStatus.OK);
+  }
 
-      return new ResponseEntity<>(response, HttpStatus.OK);
-    } catch (Exception e) {
-      e.printStackTrace();
-      return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+  // The primary's whole catalog at its current log position, in the binary
+  // encoding of ReplicationLog.Snapshot, for a replica to start from.
+  @GetMapping("/courses/_replication/snapshot")
+  public ResponseEntity<StreamingResponseBody> replicationSnapshot() {
+    if (!replicationLog.isPrimary()) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
     }
+    ReplicationLog.Snapshot snapshot = courseRepository.replicationSnapshot();
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+    StreamingResponseBody body = out -> {
+      DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+      snapshot.write(data);
+      data.flush();
+    };
+    return new ResponseEntity<>(body, headers, HttpStatus.OK);
   }
 
   @GetMapping("/courses/{id}")
   public ResponseEntity<Course> getCourseById(@PathVariable("id") int id) { 
-    Optional<Course> courseData = courseRepository.findById(id);
+    Optional<Course> courseData = shardCoordinator.isEnabled()
+        ? shardCoordinator.findById(id)
+        : courseRepository.findById(id);
 
     if (courseData.isPresent()) {
       return new ResponseEntity<>(courseData.get(), HttpStatus.OK);
@@ -171,22 +562,75 @@ public class CourseController {
 
   @PostMapping("/courses")
   public ResponseEntity<Course> createCourse(@RequestBody Course course) {
+    Course _course = shardCoordinator.isEnabled() ? shardCoordinator.save(course) : courseRepository.save(course);
+    return new ResponseEntity<>(_course, writeSeq(), HttpStatus.CREATED);
+  }
+
+  // Streams an NDJSON body of create/update/delete actions and applies them
+  // in batches; the response lists one result per action, in request order.
+  @PostMapping("/courses/_bulk")
+  public ResponseEntity<Map<String, Object>> bulk(InputStream body,
+      @RequestParam(defaultValue = "1000") int batchSize,
+      @RequestParam(defaultValue = "false") boolean refresh) throws IOException {
+    long start = System.nanoTime();
+    List<BulkItemResult> items = new ArrayList<>();
+    Map<String, Object> response = new HashMap<>();
+    response.put("items", items);
     try {
-      
-      Course _course = courseRepository.save(course);
-      return new ResponseEntity<>(_course, HttpStatus.CREATED);
-    } catch (Exception e) {
-      e.printStackTrace();
-      return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+      if (batchSize <= 0) {
+        throw new IllegalArgumentException("batchSize must be positive");
+      }
+      BulkRequestReader reader = new BulkRequestReader(body, objectMapper);
+      List<BulkAction> batch;
+      while (!(batch = reader.next(batchSize)).isEmpty()) {
+        items.addAll(shardCoordinator.isEnabled() ? shardCoordinator.bulk(batch) : courseRepository.bulk(batch));
+      }
+      if (refresh) {
+        if (shardCoordinator.isEnabled()) {
+          shardCoordinator.refresh();
+        } else {
+          courseRepository.refresh();
+        }
+      }
+
+      response.put("took", (System.nanoTime() - start) / 1_000_000);
+      response.put("errors", items.stream().anyMatch(BulkItemResult::isFailed));
+      return new ResponseEntity<>(response, writeSeq(), HttpStatus.OK);
+    } catch (IllegalArgumentException e) {
+      // the batches before the malformed line have been applied
+      response.put("took", (System.nanoTime() - start) / 1_000_000);
+      response.put("errors", true);
+      response.put("error", e.getMessage());
+      return new ResponseEntity<>(response, writeSeq(), HttpStatus.BAD_REQUEST);
     }
   }
 
+  // Makes every write so far visible to listings and searches without
+  // waiting for the next scheduled refresh.
+  @PostMapping("/courses/_refresh")
+  public ResponseEntity<HttpStatus> refresh() {
+    if (shardCoordinator.isEnabled()) {
+      shardCoordinator.refresh();
+    } else {
+      courseRepository.refresh();
+    }
+    return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+  }
+
   @PutMapping("/courses/{id}")
   public ResponseEntity<Course> updateCourse(@PathVariable("id") int id, @RequestBody Course course) { 
+    if (shardCoordinator.isEnabled()) {
+      // the shard holding the course checks that it exists
+      return shardCoordinator.update(id, course)
+          .map(updated -> new ResponseEntity<>(updated, HttpStatus.OK))
+          .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
     Optional<Course> courseData = courseRepository.findById(id);
 
     if (courseData.isPresent()) {
-      Course _course = courseData.get();
+      // build the update from the request body; the stored course is shared
+      // with concurrent readers and must not be modified in place
+      Course _course = new Course();
       _course.setId(id);
       _course.setTitle(course.getTitle());
       _course.setDescription(course.getDescription());
@@ -199,7 +643,7 @@ public class CourseController {
       _course.setNextSessionDate(course.getNextSessionDate());
       
       Course updatedCourse = courseRepository.save(_course);
-      return new ResponseEntity<>(updatedCourse, HttpStatus.OK);
+      return new ResponseEntity<>(updatedCourse, writeSeq(), HttpStatus.OK);
     } else {
       return new ResponseEntity<>(HttpStatus.NOT_FOUND);
     }
@@ -207,23 +651,40 @@ public class CourseController {
 
   @DeleteMapping("/courses/{id}")
   public ResponseEntity<HttpStatus> deleteCourse(@PathVariable("id") int id) {
-    try {
+    if (shardCoordinator.isEnabled()) {
+      shardCoordinator.deleteById(id);
+    } else {
       courseRepository.deleteById(id);
-      return new ResponseEntity<>(HttpStatus.NO_CONTENT);
-    } catch (Exception e) {
-      e.printStackTrace();
-      return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
     }
+    return new ResponseEntity<>(null, writeSeq(), HttpStatus.NO_CONTENT);
   }
 
   @DeleteMapping("/courses")
   public ResponseEntity<HttpStatus> deleteAllCourses() {
-    try {
+    if (shardCoordinator.isEnabled()) {
+      shardCoordinator.deleteAll();
+    } else {
       courseRepository.deleteAll();
-      return new ResponseEntity<>(HttpStatus.NO_CONTENT);
-    } catch (Exception e) {
-      e.printStackTrace();
-      return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
     }
+    return new ResponseEntity<>(null, writeSeq(), HttpStatus.NO_CONTENT);
+  }
+
+  // A bad parameter, however deep in the request it is found, is a 400.
+  @ExceptionHandler({ IllegalArgumentException.class, DateTimeParseException.class })
+  public ResponseEntity<HttpStatus> badRequest(RuntimeException e) {
+    return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+  }
+
+  // Anything else an endpoint throws is logged here and answered with a 500,
+  // which QueryMetricsInterceptor counts as an error. Spring's own request
+  // errors (a missing or mistyped parameter, an unreadable body) are thrown
+  // on so they keep their usual status.
+  @ExceptionHandler(Exception.class)
+  public ResponseEntity<HttpStatus> internalError(Exception e, HttpServletRequest request) throws Exception {
+    if (e instanceof ErrorResponse || e instanceof NestedRuntimeException) {
+      throw e;
+    }
+    log.error("{} {} failed", request.getMethod(), request.getRequestURI(), e);
+    return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
   }
-}
\ No newline at end of file
+}
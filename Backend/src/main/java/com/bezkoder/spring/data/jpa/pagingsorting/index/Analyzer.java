@@ -0,0 +1,63 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits text into lowercased, lightly stemmed terms.
+ *
+ * Tokens are runs of letters or digits; anything else is a separator. Stemming
+ * only strips English plural endings so that "courses" and "course" share a
+ * term while prefixes typed by the user still line up with indexed terms.
+ */
+public class Analyzer {
+
+    public List<String> analyze(String text) {
+        List<String> terms = tokenize(text);
+        terms.replaceAll(this::stem);
+        return terms;
+    }
+
+    /** Lowercased tokens of the text, without stemming. */
+    public List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean tokenChar = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (tokenChar && start < 0) {
+                start = i;
+            } else if (!tokenChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    String stem(String term) {
+        int len = term.length();
+        if (len < 3 || term.charAt(len - 1) != 's') {
+            return term;
+        }
+        switch (term.charAt(len - 2)) {
+            case 'u':
+            case 's':
+                return term;
+            case 'e':
+                if (len > 3 && term.charAt(len - 3) == 'i' && term.charAt(len - 4) != 'a' && term.charAt(len - 4) != 'e') {
+                    return term.substring(0, len - 3) + "y";
+                }
+                char c = term.charAt(len - 3);
+                if (c == 'i' || c == 'a' || c == 'o' || c == 'e') {
+                    return term;
+                }
+                return term.substring(0, len - 1);
+            default:
+                return term.substring(0, len - 1);
+        }
+    }
+}
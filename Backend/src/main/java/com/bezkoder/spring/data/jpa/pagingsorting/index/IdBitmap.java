@@ -0,0 +1,370 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable compressed set of course ids, laid out like a roaring bitmap.
+ *
+ * Ids are split into a high 16-bit key and a low 16-bit value. Each key owns a
+ * container: a sorted {@code char[]} while it holds at most 4096 values, and a
+ * 65536-bit {@code long[]} bitmap above that. Intersections and unions work
+ * container by container, so sparse and dense id ranges are both cheap.
+ *
+ * {@link #with} and {@link #without} return a new bitmap that shares every
+ * container except the one they touch.
+ */
+public final class IdBitmap {
+
+    public static final IdBitmap EMPTY = new IdBitmap(new int[0], new Object[0], new int[0]);
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    // sorted high keys; containers[i] is a char[] or long[] for keys[i]
+    private final int[] keys;
+    private final Object[] containers;
+    private final int[] cardinalities;
+
+    private IdBitmap(int[] keys, Object[] containers, int[] cardinalities) {
+        this.keys = keys;
+        this.containers = containers;
+        this.cardinalities = cardinalities;
+    }
+
+    /** Builds a bitmap from ids in any order; duplicates are ignored. */
+    public static IdBitmap of(int[] ids, int length) {
+        int[] sorted = Arrays.copyOf(ids, length);
+        Arrays.sort(sorted);
+        int[] keys = new int[length];
+        Object[] containers = new Object[length];
+        int[] cardinalities = new int[length];
+        int n = 0;
+        int i = 0;
+        while (i < length) {
+            int key = sorted[i] >> 16;
+            int j = i;
+            while (j < length && sorted[j] >> 16 == key) {
+                j++;
+            }
+            char[] values = new char[j - i];
+            int count = 0;
+            for (int k = i; k < j; k++) {
+                char low = (char) sorted[k];
+                if (count == 0 || values[count - 1] != low) {
+                    values[count++] = low;
+                }
+            }
+            keys[n] = key;
+            containers[n] = count > ARRAY_MAX ? toBitmap(values, count) : Arrays.copyOf(values, count);
+            cardinalities[n] = count;
+            n++;
+            i = j;
+        }
+        return new IdBitmap(Arrays.copyOf(keys, n), Arrays.copyOf(containers, n), Arrays.copyOf(cardinalities, n));
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (int c : cardinalities) {
+            total += c;
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    public boolean contains(int id) {
+        int i = Arrays.binarySearch(keys, id >> 16);
+        if (i < 0) {
+            return false;
+        }
+        char low = (char) id;
+        Object container = containers[i];
+        if (container instanceof char[] values) {
+            return Arrays.binarySearch(values, low) >= 0;
+        }
+        return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+    }
+
+    public IdBitmap with(int id) {
+        int key = id >> 16;
+        char low = (char) id;
+        int i = Arrays.binarySearch(keys, key);
+        if (i < 0) {
+            int pos = -i - 1;
+            return insertContainer(pos, key, new char[]{low}, 1);
+        }
+        Object container = containers[i];
+        if (container instanceof char[] values) {
+            int pos = Arrays.binarySearch(values, low);
+            if (pos >= 0) {
+                return this;
+            }
+            pos = -pos - 1;
+            char[] grown = new char[values.length + 1];
+            System.arraycopy(values, 0, grown, 0, pos);
+            grown[pos] = low;
+            System.arraycopy(values, pos, grown, pos + 1, values.length - pos);
+            return replaceContainer(i, grown.length > ARRAY_MAX ? toBitmap(grown, grown.length) : grown, grown.length);
+        }
+        long[] words = (long[]) container;
+        if ((words[low >>> 6] & (1L << low)) != 0) {
+            return this;
+        }
+        long[] copy = words.clone();
+        copy[low >>> 6] |= 1L << low;
+        return replaceContainer(i, copy, cardinalities[i] + 1);
+    }
+
+    public IdBitmap without(int id) {
+        int i = Arrays.binarySearch(keys, id >> 16);
+        if (i < 0) {
+            return this;
+        }
+        char low = (char) id;
+        Object container = containers[i];
+        if (container instanceof char[] values) {
+            int pos = Arrays.binarySearch(values, low);
+            if (pos < 0) {
+                return this;
+            }
+            if (values.length == 1) {
+                return removeContainer(i);
+            }
+            char[] shrunk = new char[values.length - 1];
+            System.arraycopy(values, 0, shrunk, 0, pos);
+            System.arraycopy(values, pos + 1, shrunk, pos, values.length - pos - 1);
+            return replaceContainer(i, shrunk, shrunk.length);
+        }
+        long[] words = (long[]) container;
+        if ((words[low >>> 6] & (1L << low)) == 0) {
+            return this;
+        }
+        long[] copy = words.clone();
+        copy[low >>> 6] &= ~(1L << low);
+        int cardinality = cardinalities[i] - 1;
+        return replaceContainer(i, cardinality <= ARRAY_MAX ? toArray(copy, cardinality) : copy, cardinality);
+    }
+
+    public IdBitmap and(IdBitmap other) {
+        int[] newKeys = new int[Math.min(keys.length, other.keys.length)];
+        Object[] newContainers = new Object[newKeys.length];
+        int[] newCardinalities = new int[newKeys.length];
+        int n = 0;
+        int i = 0, j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Object container = and(containers[i], other.containers[j]);
+                int cardinality = cardinality(container);
+                if (cardinality > 0) {
+                    newKeys[n] = keys[i];
+                    newContainers[n] = container;
+                    newCardinalities[n] = cardinality;
+                    n++;
+                }
+                i++;
+                j++;
+            }
+        }
+        return new IdBitmap(Arrays.copyOf(newKeys, n), Arrays.copyOf(newContainers, n), Arrays.copyOf(newCardinalities, n));
+    }
+
+    public IdBitmap or(IdBitmap other) {
+        int[] newKeys = new int[keys.length + other.keys.length];
+        Object[] newContainers = new Object[newKeys.length];
+        int[] newCardinalities = new int[newKeys.length];
+        int n = 0;
+        int i = 0, j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                newKeys[n] = keys[i];
+                newContainers[n] = containers[i];
+                newCardinalities[n++] = cardinalities[i++];
+            } else if (i == keys.length || other.keys[j] < keys[i]) {
+                newKeys[n] = other.keys[j];
+                newContainers[n] = other.containers[j];
+                newCardinalities[n++] = other.cardinalities[j++];
+            } else {
+                Object container = or(containers[i], other.containers[j]);
+                newKeys[n] = keys[i];
+                newContainers[n] = container;
+                newCardinalities[n++] = cardinality(container);
+                i++;
+                j++;
+            }
+        }
+        return new IdBitmap(Arrays.copyOf(newKeys, n), Arrays.copyOf(newContainers, n), Arrays.copyOf(newCardinalities, n));
+    }
+
+    /** Visits every id in ascending order. */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            int high = keys[i] << 16;
+            Object container = containers[i];
+            if (container instanceof char[] values) {
+                for (char low : values) {
+                    action.accept(high | low);
+                }
+            } else {
+                long[] words = (long[]) container;
+                for (int w = 0; w < words.length; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        action.accept(high | (w << 6) + Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            }
+        }
+    }
+
+    private IdBitmap insertContainer(int pos, int key, Object container, int cardinality) {
+        int[] newKeys = new int[keys.length + 1];
+        Object[] newContainers = new Object[keys.length + 1];
+        int[] newCardinalities = new int[keys.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, pos);
+        System.arraycopy(containers, 0, newContainers, 0, pos);
+        System.arraycopy(cardinalities, 0, newCardinalities, 0, pos);
+        newKeys[pos] = key;
+        newContainers[pos] = container;
+        newCardinalities[pos] = cardinality;
+        System.arraycopy(keys, pos, newKeys, pos + 1, keys.length - pos);
+        System.arraycopy(containers, pos, newContainers, pos + 1, keys.length - pos);
+        System.arraycopy(cardinalities, pos, newCardinalities, pos + 1, keys.length - pos);
+        return new IdBitmap(newKeys, newContainers, newCardinalities);
+    }
+
+    private IdBitmap replaceContainer(int i, Object container, int cardinality) {
+        Object[] newContainers = containers.clone();
+        int[] newCardinalities = cardinalities.clone();
+        newContainers[i] = container;
+        newCardinalities[i] = cardinality;
+        return new IdBitmap(keys, newContainers, newCardinalities);
+    }
+
+    private IdBitmap removeContainer(int i) {
+        int[] newKeys = new int[keys.length - 1];
+        Object[] newContainers = new Object[keys.length - 1];
+        int[] newCardinalities = new int[keys.length - 1];
+        System.arraycopy(keys, 0, newKeys, 0, i);
+        System.arraycopy(containers, 0, newContainers, 0, i);
+        System.arraycopy(cardinalities, 0, newCardinalities, 0, i);
+        System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+        System.arraycopy(containers, i + 1, newContainers, i, keys.length - i - 1);
+        System.arraycopy(cardinalities, i + 1, newCardinalities, i, keys.length - i - 1);
+        return new IdBitmap(newKeys, newContainers, newCardinalities);
+    }
+
+    private static Object and(Object a, Object b) {
+        if (a instanceof long[] wa && b instanceof long[] wb) {
+            long[] words = new long[BITMAP_WORDS];
+            int cardinality = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                words[w] = wa[w] & wb[w];
+                cardinality += Long.bitCount(words[w]);
+            }
+            return cardinality <= ARRAY_MAX ? toArray(words, cardinality) : words;
+        }
+        if (a instanceof long[] || b instanceof long[]) {
+            char[] values = (char[]) (a instanceof char[] ? a : b);
+            long[] words = (long[]) (a instanceof long[] ? a : b);
+            char[] out = new char[values.length];
+            int n = 0;
+            for (char low : values) {
+                if ((words[low >>> 6] & (1L << low)) != 0) {
+                    out[n++] = low;
+                }
+            }
+            return Arrays.copyOf(out, n);
+        }
+        char[] va = (char[]) a;
+        char[] vb = (char[]) b;
+        char[] out = new char[Math.min(va.length, vb.length)];
+        int n = 0, i = 0, j = 0;
+        while (i < va.length && j < vb.length) {
+            if (va[i] < vb[j]) {
+                i++;
+            } else if (va[i] > vb[j]) {
+                j++;
+            } else {
+                out[n++] = va[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static Object or(Object a, Object b) {
+        if (a instanceof char[] va && b instanceof char[] vb && va.length + vb.length <= ARRAY_MAX) {
+            char[] out = new char[va.length + vb.length];
+            int n = 0, i = 0, j = 0;
+            while (i < va.length || j < vb.length) {
+                if (j == vb.length || (i < va.length && va[i] < vb[j])) {
+                    out[n++] = va[i++];
+                } else if (i == va.length || vb[j] < va[i]) {
+                    out[n++] = vb[j++];
+                } else {
+                    out[n++] = va[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(out, n);
+        }
+        long[] words = a instanceof long[] wa ? wa.clone() : toBitmap((char[]) a, ((char[]) a).length);
+        if (b instanceof long[] wb) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                words[w] |= wb[w];
+            }
+        } else {
+            for (char low : (char[]) b) {
+                words[low >>> 6] |= 1L << low;
+            }
+        }
+        int cardinality = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+        return cardinality <= ARRAY_MAX ? toArray(words, cardinality) : words;
+    }
+
+    private static int cardinality(Object container) {
+        if (container instanceof char[] values) {
+            return values.length;
+        }
+        int cardinality = 0;
+        for (long word : (long[]) container) {
+            cardinality += Long.bitCount(word);
+        }
+        return cardinality;
+    }
+
+    private static long[] toBitmap(char[] values, int count) {
+        long[] words = new long[BITMAP_WORDS];
+        for (int i = 0; i < count; i++) {
+            words[values[i] >>> 6] |= 1L << values[i];
+        }
+        return words;
+    }
+
+    private static char[] toArray(long[] words, int cardinality) {
+        char[] values = new char[cardinality];
+        int n = 0;
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                values[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,228 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.index;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing int to int hash map with linear probing.
+ *
+ * Keys and values live in parallel primitive arrays so lookups never box. Key
+ * {@code 0} marks a free slot, so a real {@code 0} key is stored on the side.
+ *
+ * The arrays are split into pages so that {@link #fork()} can hand out a copy
+ * that shares every page with this map; either side copies a page the first
+ * time it writes to it. Published maps that are never written again can be
+ * read from any number of threads.
+ */
+public class IntIntHashMap {
+
+    private static final int PHI = 0x9E3779B9;
+    private static final int MAX_PAGE_SHIFT = 10;
+
+    private int[][] keyPages;
+    private int[][] valuePages;
+    private boolean[] ownedPages;
+    private int pageShift;
+    private int pageMask;
+    private int mask;
+    private int assigned;
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public IntIntHashMap() {
+        this(16);
+    }
+
+    public IntIntHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    private IntIntHashMap(IntIntHashMap other) {
+        keyPages = other.keyPages.clone();
+        valuePages = other.valuePages.clone();
+        ownedPages = new boolean[keyPages.length];
+        pageShift = other.pageShift;
+        pageMask = other.pageMask;
+        mask = other.mask;
+        assigned = other.assigned;
+        hasZeroKey = other.hasZeroKey;
+        zeroValue = other.zeroValue;
+    }
+
+    /**
+     * Returns a copy sharing all pages with this map. Costs one pointer per
+     * page; pages are copied lazily by whichever map writes to them first.
+     */
+    public IntIntHashMap fork() {
+        Arrays.fill(ownedPages, false);
+        return new IntIntHashMap(this);
+    }
+
+    public int size() {
+        return assigned + (hasZeroKey ? 1 : 0);
+    }
+
+    public boolean containsKey(int key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        int slot = slot(key);
+        int existing;
+        while ((existing = key(slot)) != 0) {
+            if (existing == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int get(int key, int missingValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : missingValue;
+        }
+        int slot = slot(key);
+        int existing;
+        while ((existing = key(slot)) != 0) {
+            if (existing == key) {
+                return value(slot);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    public void put(int key, int value) {
+        if (key == 0) {
+            hasZeroKey = true;
+            zeroValue = value;
+            return;
+        }
+        int slot = slot(key);
+        int existing;
+        while ((existing = key(slot)) != 0) {
+            if (existing == key) {
+                set(slot, key, value);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        set(slot, key, value);
+        if (++assigned > loadLimit()) {
+            rehash((mask + 1) * 2);
+        }
+    }
+
+    public int remove(int key, int missingValue) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return missingValue;
+            }
+            hasZeroKey = false;
+            return zeroValue;
+        }
+        int slot = slot(key);
+        int existing;
+        while ((existing = key(slot)) != 0) {
+            if (existing == key) {
+                int previous = value(slot);
+                shiftConflictingKeys(slot);
+                assigned--;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    public void clear() {
+        allocate(capacityFor(0));
+        assigned = 0;
+        hasZeroKey = false;
+    }
+
+    private int key(int slot) {
+        return keyPages[slot >>> pageShift][slot & pageMask];
+    }
+
+    private int value(int slot) {
+        return valuePages[slot >>> pageShift][slot & pageMask];
+    }
+
+    private void set(int slot, int key, int value) {
+        int page = slot >>> pageShift;
+        if (!ownedPages[page]) {
+            keyPages[page] = keyPages[page].clone();
+            valuePages[page] = valuePages[page].clone();
+            ownedPages[page] = true;
+        }
+        keyPages[page][slot & pageMask] = key;
+        valuePages[page][slot & pageMask] = value;
+    }
+
+    private int slot(int key) {
+        int h = key * PHI;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private int loadLimit() {
+        int capacity = mask + 1;
+        return (capacity >> 1) + (capacity >> 2);
+    }
+
+    /** Backward-shift deletion so probe chains stay intact without tombstones. */
+    private void shiftConflictingKeys(int gap) {
+        int distance = 0;
+        while (true) {
+            int slot = (gap + (++distance)) & mask;
+            int existing = key(slot);
+            if (existing == 0) {
+                break;
+            }
+            int idealSlot = slot(existing);
+            int shift = (slot - idealSlot) & mask;
+            if (shift >= distance) {
+                set(gap, existing, value(slot));
+                gap = slot;
+                distance = 0;
+            }
+        }
+        set(gap, 0, 0);
+    }
+
+    private void rehash(int newCapacity) {
+        int[][] oldKeys = keyPages;
+        int[][] oldValues = valuePages;
+        allocate(newCapacity);
+        for (int p = 0; p < oldKeys.length; p++) {
+            for (int i = 0; i < oldKeys[p].length; i++) {
+                int key = oldKeys[p][i];
+                if (key != 0) {
+                    int slot = slot(key);
+                    while (key(slot) != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    set(slot, key, oldValues[p][i]);
+                }
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        pageShift = Math.min(Integer.numberOfTrailingZeros(capacity), MAX_PAGE_SHIFT);
+        pageMask = (1 << pageShift) - 1;
+        int pages = capacity >>> pageShift;
+        keyPages = new int[pages][1 << pageShift];
+        valuePages = new int[pages][1 << pageShift];
+        ownedPages = new boolean[pages];
+        Arrays.fill(ownedPages, true);
+        mask = capacity - 1;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
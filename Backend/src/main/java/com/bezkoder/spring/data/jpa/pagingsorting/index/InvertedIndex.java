@@ -0,0 +1,519 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.index;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory inverted index over course titles and descriptions.
+ *
+ * The index is a list of immutable {@link Segment}s, each with a sorted term
+ * dictionary per field, so exact terms are a map lookup and prefixes a range
+ * scan of every segment. An update marks the old version of a course deleted
+ * in its segment and indexes the new version in a new segment; small trailing
+ * segments are folded together as they are written, and {@link #maybeMerge}
+ * compacts the rest as the {@link MergePolicy} decides. Field lengths are
+ * tracked per course for BM25 scoring.
+ *
+ * Writers must be serialized by the caller; merges synchronize with them on
+ * the index. Readers run without locks: the segment list is published through
+ * a volatile reference and segments never change apart from their deleted ids.
+ */
+public class InvertedIndex {
+
+    public static final int TITLE = 0;
+    public static final int DESCRIPTION = 1;
+    // most edits a fuzzy title term may be away from a matching term
+    public static final int MAX_FUZZINESS = 2;
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double[] FIELD_BOOST = {2.0, 1.0};
+
+    private final Analyzer analyzer;
+    private final MergePolicy mergePolicy = new MergePolicy();
+    private volatile List<Segment> segments = List.of();
+    private final Map<Integer, int[]> fieldLengths = new ConcurrentHashMap<>();
+    private final AtomicLongArray totalFieldLength = new AtomicLongArray(2);
+
+    public InvertedIndex(Analyzer analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    public Analyzer getAnalyzer() {
+        return analyzer;
+    }
+
+    public int docCount() {
+        return fieldLengths.size();
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    public void add(Course course) {
+        update(List.of(), List.of(course));
+    }
+
+    /**
+     * Indexes many courses at once into one new segment, analyzing them in
+     * parallel chunks. None of the courses may be indexed yet.
+     */
+    public synchronized void addAll(List<Course> courses) {
+        if (courses.isEmpty()) {
+            return;
+        }
+        List<Segment> next = new ArrayList<>(segments);
+        next.add(buildSegment(courses));
+        segments = List.copyOf(next);
+    }
+
+    /**
+     * Removes a course using the text it was indexed with. Callers must pass the
+     * course before applying any update to it.
+     */
+    public void remove(Course course) {
+        update(List.of(course), List.of());
+    }
+
+    /**
+     * Applies a batch of changes: removed courses are marked deleted in their
+     * segments and added ones are indexed into one new segment. An id in both
+     * lists is updated; removed courses must be passed with the text they were
+     * indexed with.
+     */
+    public synchronized void update(List<Course> removed, List<Course> added) {
+        IntStream.Builder removedIds = IntStream.builder();
+        for (Course course : removed) {
+            int[] lengths = fieldLengths.remove(course.getId());
+            if (lengths != null) {
+                removedIds.add(course.getId());
+                for (int f = 0; f < lengths.length; f++) {
+                    totalFieldLength.addAndGet(f, -lengths[f]);
+                }
+            }
+        }
+        int[] ids = removedIds.build().toArray();
+        List<Segment> next = new ArrayList<>(segments.size() + 1);
+        IdBitmap deletes = IdBitmap.of(ids, ids.length);
+        for (Segment segment : segments) {
+            IdBitmap hit = deletes.isEmpty() ? IdBitmap.EMPTY : segment.docs.and(deletes);
+            if (!hit.isEmpty()) {
+                segment.deleted = segment.deleted.or(hit);
+            }
+            if (segment.liveCount() > 0) {
+                next.add(segment);
+            }
+        }
+        if (!added.isEmpty()) {
+            Segment segment = buildSegment(added);
+            Segment tail = next.isEmpty() ? null : next.get(next.size() - 1);
+            if (tail != null && tail.docCount < MergePolicy.MIN_SEGMENT_DOCS) {
+                // keep refreshes of a few courses from piling up tiny segments
+                segment = merge(List.of(tail, segment), List.of(tail.deleted, segment.deleted));
+                next.set(next.size() - 1, segment);
+            } else {
+                next.add(segment);
+            }
+        }
+        segments = List.copyOf(next);
+    }
+
+    /**
+     * Performs the next merge the merge policy picks, if any, and returns
+     * whether there was one. The merged segment is built without blocking
+     * writers; courses deleted from its sources in the meantime are carried
+     * over when it is swapped in. Call repeatedly, from a background thread,
+     * until it returns {@code false}.
+     */
+    public boolean maybeMerge() {
+        List<Segment> sources = mergePolicy.findMerge(segments);
+        if (sources == null) {
+            return false;
+        }
+        List<IdBitmap> deletes = sources.stream().map(segment -> segment.deleted).collect(Collectors.toList());
+        Segment merged = merge(sources, deletes);
+        synchronized (this) {
+            List<Segment> current = segments;
+            List<Segment> next = new ArrayList<>(current.size());
+            boolean placed = false;
+            int found = 0;
+            for (Segment segment : current) {
+                if (!sources.contains(segment)) {
+                    next.add(segment);
+                    continue;
+                }
+                found++;
+                if (!placed) {
+                    next.add(merged);
+                    placed = true;
+                }
+            }
+            if (found != sources.size()) {
+                // a writer folded one of the sources away; the policy will pick again
+                return true;
+            }
+            IntStream.Builder newlyDeleted = IntStream.builder();
+            for (int i = 0; i < sources.size(); i++) {
+                IdBitmap before = deletes.get(i);
+                IdBitmap now = sources.get(i).deleted;
+                if (now != before) {
+                    now.forEach(id -> {
+                        if (!before.contains(id)) {
+                            newlyDeleted.add(id);
+                        }
+                    });
+                }
+            }
+            int[] ids = newlyDeleted.build().toArray();
+            merged.deleted = IdBitmap.of(ids, ids.length);
+            if (merged.liveCount() == 0) {
+                next.remove(merged);
+            }
+            segments = List.copyOf(next);
+        }
+        return true;
+    }
+
+    public synchronized void clear() {
+        segments = List.of();
+        fieldLengths.clear();
+        for (int f = 0; f < totalFieldLength.length(); f++) {
+            totalFieldLength.set(f, 0);
+        }
+    }
+
+    private Segment buildSegment(List<Course> courses) {
+        int chunkSize = Math.max(1024, courses.size() / (4 * ForkJoinPool.getCommonPoolParallelism()) + 1);
+        List<ChunkPostings> partials;
+        if (courses.size() <= chunkSize) {
+            partials = List.of(analyze(courses));
+        } else {
+            List<List<Course>> chunks = new ArrayList<>();
+            for (int from = 0; from < courses.size(); from += chunkSize) {
+                chunks.add(courses.subList(from, Math.min(courses.size(), from + chunkSize)));
+            }
+            partials = chunks.parallelStream().map(this::analyze).collect(Collectors.toList());
+        }
+
+        List<NavigableMap<String, PostingList>> fields = new ArrayList<>(2);
+        for (int f = 0; f < 2; f++) {
+            Map<String, List<Postings>> byTerm = new HashMap<>();
+            for (ChunkPostings partial : partials) {
+                partial.fields.get(f).forEach((term, postings) ->
+                        byTerm.computeIfAbsent(term, t -> new ArrayList<>()).add(postings));
+            }
+            Map<String, PostingList> lists = byTerm.entrySet().parallelStream().collect(Collectors.toMap(
+                    Map.Entry::getKey, e -> merge(e.getValue())));
+            fields.add(Collections.unmodifiableNavigableMap(new TreeMap<>(lists)));
+        }
+        int[] ids = new int[courses.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = courses.get(i).getId();
+        }
+        for (ChunkPostings partial : partials) {
+            fieldLengths.putAll(partial.lengths);
+            for (int f = 0; f < partial.totalLengths.length; f++) {
+                totalFieldLength.addAndGet(f, partial.totalLengths[f]);
+            }
+        }
+        return new Segment(fields, IdBitmap.of(ids, ids.length));
+    }
+
+    private ChunkPostings analyze(List<Course> chunk) {
+        ChunkPostings partial = new ChunkPostings();
+        for (Course course : chunk) {
+            int[] lengths = new int[2];
+            String[] texts = {course.getTitle(), course.getDescription()};
+            for (int f = 0; f < texts.length; f++) {
+                List<String> terms = analyzer.analyze(texts[f]);
+                Map<String, Integer> freqs = new HashMap<>();
+                for (String term : terms) {
+                    freqs.merge(term, 1, Integer::sum);
+                }
+                Map<String, Postings> field = partial.fields.get(f);
+                freqs.forEach((term, freq) -> field.computeIfAbsent(term, t -> new Postings()).add(course.getId(), freq));
+                lengths[f] = terms.size();
+                partial.totalLengths[f] += terms.size();
+            }
+            partial.lengths.put(course.getId(), lengths);
+        }
+        return partial;
+    }
+
+    private static PostingList merge(List<Postings> parts) {
+        int length = 0;
+        for (Postings part : parts) {
+            length += part.size;
+        }
+        long[] all = new long[length];
+        int n = 0;
+        for (Postings part : parts) {
+            System.arraycopy(part.postings, 0, all, n, part.size);
+            n += part.size;
+        }
+        return PostingList.of(all, n);
+    }
+
+    // rewrites the live courses of the sources, as of the given deleted ids, into one segment
+    private static Segment merge(List<Segment> sources, List<IdBitmap> deletes) {
+        List<NavigableMap<String, PostingList>> fields = new ArrayList<>(2);
+        for (int f = 0; f < 2; f++) {
+            Map<String, Postings> byTerm = new HashMap<>();
+            for (int s = 0; s < sources.size(); s++) {
+                IdBitmap deleted = deletes.get(s);
+                for (Map.Entry<String, PostingList> entry : sources.get(s).fields.get(f).entrySet()) {
+                    PostingList postings = entry.getValue();
+                    Postings live = null;
+                    for (int i = 0; i < postings.size(); i++) {
+                        if (deleted.isEmpty() || !deleted.contains(postings.doc(i))) {
+                            if (live == null) {
+                                live = byTerm.computeIfAbsent(entry.getKey(), t -> new Postings());
+                            }
+                            live.add(postings.doc(i), postings.freq(i));
+                        }
+                    }
+                }
+            }
+            TreeMap<String, PostingList> dictionary = new TreeMap<>();
+            byTerm.forEach((term, postings) -> dictionary.put(term, PostingList.of(postings.postings, postings.size)));
+            fields.add(Collections.unmodifiableNavigableMap(dictionary));
+        }
+        IntStream.Builder ids = IntStream.builder();
+        for (int s = 0; s < sources.size(); s++) {
+            IdBitmap deleted = deletes.get(s);
+            sources.get(s).docs.forEach(id -> {
+                if (!deleted.contains(id)) {
+                    ids.add(id);
+                }
+            });
+        }
+        int[] docs = ids.build().toArray();
+        return new Segment(fields, IdBitmap.of(docs, docs.length));
+    }
+
+    /** Postings of one chunk of courses, per field and term. */
+    private static final class ChunkPostings {
+        final List<Map<String, Postings>> fields = List.of(new HashMap<>(), new HashMap<>());
+        final Map<Integer, int[]> lengths = new HashMap<>();
+        final long[] totalLengths = new long[2];
+    }
+
+    private static final class Postings {
+        long[] postings = new long[4];
+        int size;
+
+        void add(int doc, int freq) {
+            if (size == postings.length) {
+                postings = Arrays.copyOf(postings, size * 2);
+            }
+            postings[size++] = PostingList.pack(doc, freq);
+        }
+    }
+
+    /**
+     * Returns the sorted ids of courses whose title contains every query term,
+     * treating the last term as a prefix so partially typed words still match.
+     * Returns {@code null} when the query has no terms, meaning "match all".
+     */
+    public int[] matchTitle(String query) {
+        return matchTitle(query, 0);
+    }
+
+    /**
+     * Like {@link #matchTitle(String)}, but a query term also matches title
+     * terms up to {@code fuzziness} (0 to 2) edits away. Short terms allow
+     * fewer edits: none up to 2 characters and one up to 5, so that "ab" does
+     * not match every two-letter word.
+     */
+    public int[] matchTitle(String query, int fuzziness) {
+        if (fuzziness < 0 || fuzziness > MAX_FUZZINESS) {
+            throw new IllegalArgumentException("fuzziness must be between 0 and " + MAX_FUZZINESS);
+        }
+        List<String> terms = analyzer.analyze(query);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        List<Segment> current = segments;
+        List<int[]> clauses = new ArrayList<>(terms.size());
+        for (int i = 0; i < terms.size(); i++) {
+            String term = terms.get(i);
+            boolean last = i == terms.size() - 1;
+            int maxEdits = maxEdits(term, fuzziness);
+            int[] docs;
+            if (maxEdits > 0) {
+                docs = fuzzyDocs(current, new LevenshteinAutomaton(term, maxEdits, last));
+            } else {
+                docs = last ? prefixDocs(current, term) : termDocs(current, term);
+            }
+            if (docs.length == 0) {
+                return docs;
+            }
+            clauses.add(docs);
+        }
+        clauses.sort((a, b) -> Integer.compare(a.length, b.length));
+        int[] result = clauses.get(0);
+        for (int i = 1; i < clauses.size() && result.length > 0; i++) {
+            result = intersect(result, clauses.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Scores every course matching at least one query term in its title or
+     * description with BM25 and returns them best first.
+     */
+    public List<ScoreDoc> search(String query) {
+        List<String> terms = analyzer.analyze(query);
+        List<Segment> current = segments;
+        Map<Integer, double[]> scores = new LinkedHashMap<>();
+        int docCount = docCount();
+        for (int f = 0; f < 2; f++) {
+            double avgLength = docCount == 0 ? 0 : (double) totalFieldLength.get(f) / docCount;
+            for (String term : terms) {
+                // live postings of the term across segments, for its document frequency
+                Postings matches = new Postings();
+                for (Segment segment : current) {
+                    PostingList postings = segment.fields.get(f).get(term);
+                    if (postings != null) {
+                        IdBitmap deleted = segment.deleted;
+                        for (int i = 0; i < postings.size(); i++) {
+                            if (deleted.isEmpty() || !deleted.contains(postings.doc(i))) {
+                                matches.add(postings.doc(i), postings.freq(i));
+                            }
+                        }
+                    }
+                }
+                if (matches.size == 0) {
+                    continue;
+                }
+                double idf = Math.log(1 + (docCount - matches.size + 0.5) / (matches.size + 0.5));
+                for (int i = 0; i < matches.size; i++) {
+                    int doc = (int) (matches.postings[i] >> 32);
+                    int tf = (int) matches.postings[i];
+                    int[] lengths = fieldLengths.get(doc);
+                    if (lengths == null) {
+                        // removed by a concurrent writer after we read the postings
+                        continue;
+                    }
+                    double norm = avgLength == 0 ? 1 : 1 - B + B * lengths[f] / avgLength;
+                    double score = FIELD_BOOST[f] * idf * (tf * (K1 + 1)) / (tf + K1 * norm);
+                    scores.computeIfAbsent(doc, d -> new double[1])[0] += score;
+                }
+            }
+        }
+        List<ScoreDoc> hits = new ArrayList<>(scores.size());
+        scores.forEach((doc, score) -> hits.add(new ScoreDoc(doc, score[0])));
+        hits.sort((a, b) -> a.getScore() != b.getScore()
+                ? Double.compare(b.getScore(), a.getScore())
+                : Integer.compare(a.getId(), b.getId()));
+        return hits;
+    }
+
+    static int maxEdits(String term, int fuzziness) {
+        return Math.min(fuzziness, term.length() < 3 ? 0 : term.length() < 6 ? 1 : 2);
+    }
+
+    // ids of courses with any title term the automaton accepts
+    private static int[] fuzzyDocs(List<Segment> segments, LevenshteinAutomaton automaton) {
+        DocSet docs = new DocSet();
+        for (Segment segment : segments) {
+            IdBitmap deleted = segment.deleted;
+            automaton.forEachMatch(segment.fields.get(TITLE), postings -> docs.addLive(postings, deleted));
+        }
+        return docs.toSortedIds();
+    }
+
+    private static int[] termDocs(List<Segment> segments, String term) {
+        DocSet docs = new DocSet();
+        for (Segment segment : segments) {
+            PostingList postings = segment.fields.get(TITLE).get(term);
+            if (postings != null) {
+                docs.addLive(postings, segment.deleted);
+            }
+        }
+        return docs.toSortedIds();
+    }
+
+    private static int[] prefixDocs(List<Segment> segments, String prefix) {
+        DocSet docs = new DocSet();
+        for (Segment segment : segments) {
+            IdBitmap deleted = segment.deleted;
+            for (PostingList postings : segment.fields.get(TITLE).subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+                docs.addLive(postings, deleted);
+            }
+        }
+        return docs.toSortedIds();
+    }
+
+    /**
+     * The live docs of any number of posting lists, collected into one buffer
+     * and sorted and deduplicated once, so a prefix expanding to thousands of
+     * terms costs one sort of its matches rather than a merge per term.
+     */
+    private static final class DocSet {
+        int[] docs = new int[16];
+        int size;
+        int lists;
+
+        void addLive(PostingList postings, IdBitmap deleted) {
+            if (size + postings.size() > docs.length) {
+                docs = Arrays.copyOf(docs, Math.max(docs.length * 2, size + postings.size()));
+            }
+            boolean masked = !deleted.isEmpty();
+            for (int i = 0; i < postings.size(); i++) {
+                int doc = postings.doc(i);
+                if (!masked || !deleted.contains(doc)) {
+                    docs[size++] = doc;
+                }
+            }
+            lists++;
+        }
+
+        int[] toSortedIds() {
+            // a single posting list is already sorted and unique
+            if (lists <= 1) {
+                return Arrays.copyOf(docs, size);
+            }
+            Arrays.sort(docs, 0, size);
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (n == 0 || docs[n - 1] != docs[i]) {
+                    docs[n++] = docs[i];
+                }
+            }
+            return Arrays.copyOf(docs, n);
+        }
+    }
+
+    static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
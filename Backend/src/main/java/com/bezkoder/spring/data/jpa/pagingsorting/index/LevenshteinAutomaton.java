@@ -0,0 +1,121 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.index;
+
+import java.util.NavigableMap;
+import java.util.function.Consumer;
+
+/**
+ * Finds the terms of a sorted dictionary within a number of edits
+ * (insertions, deletions or substitutions) of a query term.
+ *
+ * The automaton runs as rows of the edit-distance table: the row after
+ * reading a prefix of a dictionary term is the automaton's state for that
+ * prefix. Walking the dictionary in order, each term reuses the rows of the
+ * prefix it shares with the previous one. A row with every cell over the limit
+ * is a dead state, so no term with that prefix can match and the walk seeks
+ * straight past them; only a thin band of the dictionary around the query term
+ * is ever read.
+ *
+ * In prefix mode a term also matches when some prefix of it is within the
+ * limit, for the last word of a query that may still be being typed.
+ */
+final class LevenshteinAutomaton {
+
+    private final String term;
+    private final int maxEdits;
+    private final boolean prefix;
+    private int[][] rows;
+
+    LevenshteinAutomaton(String term, int maxEdits, boolean prefix) {
+        this.term = term;
+        this.maxEdits = maxEdits;
+        this.prefix = prefix;
+        this.rows = new int[term.length() + maxEdits + 1][];
+        rows[0] = new int[term.length() + 1];
+        for (int i = 0; i <= term.length(); i++) {
+            rows[0][i] = i;
+        }
+    }
+
+    /** Passes the value of every matching term to the consumer, in term order. */
+    <V> void forEachMatch(NavigableMap<String, V> dictionary, Consumer<V> consumer) {
+        int m = term.length();
+        String previous = "";
+        // rows[0..valid] hold the states for the prefixes of previous
+        int valid = 0;
+        String key = dictionary.isEmpty() ? null : dictionary.firstKey();
+        while (key != null) {
+            int depth = Math.min(valid, commonPrefix(previous, key));
+            String next = null;
+            boolean skipped = false;
+            while (depth < key.length()) {
+                step(depth, key.charAt(depth));
+                depth++;
+                if (prefix && rows[depth][m] <= maxEdits) {
+                    // every term from here on starts with a match
+                    String start = key.substring(0, depth);
+                    String end = start + Character.MAX_VALUE;
+                    dictionary.subMap(start, true, end, false).values().forEach(consumer);
+                    next = dictionary.ceilingKey(end);
+                    skipped = true;
+                    break;
+                }
+                if (isDead(depth)) {
+                    next = dictionary.ceilingKey(key.substring(0, depth) + Character.MAX_VALUE);
+                    skipped = true;
+                    break;
+                }
+            }
+            if (!skipped) {
+                if (rows[depth][m] <= maxEdits) {
+                    consumer.accept(dictionary.get(key));
+                }
+                next = dictionary.higherKey(key);
+            }
+            if (next != null && next.compareTo(key) <= 0) {
+                // only for terms holding Character.MAX_VALUE itself
+                next = dictionary.higherKey(key);
+            }
+            previous = key;
+            valid = depth;
+            key = next;
+        }
+    }
+
+    // fills in the row after reading c on top of rows[depth]
+    private void step(int depth, char c) {
+        if (depth + 1 == rows.length) {
+            int[][] grown = new int[rows.length * 2][];
+            System.arraycopy(rows, 0, grown, 0, rows.length);
+            rows = grown;
+        }
+        int[] row = rows[depth];
+        int[] next = rows[depth + 1];
+        if (next == null) {
+            next = new int[row.length];
+            rows[depth + 1] = next;
+        }
+        next[0] = depth + 1;
+        for (int i = 1; i < row.length; i++) {
+            int cost = term.charAt(i - 1) == c ? 0 : 1;
+            next[i] = Math.min(Math.min(next[i - 1] + 1, row[i] + 1), row[i - 1] + cost);
+        }
+    }
+
+    private boolean isDead(int depth) {
+        for (int distance : rows[depth]) {
+            if (distance <= maxEdits) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < n && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,50 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides which segments of the inverted index to merge.
+ *
+ * Segments are grouped into levels by live size, each level
+ * {@link #MERGE_FACTOR} times larger than the one below, and a level holding
+ * {@code MERGE_FACTOR} segments is merged into one segment of the next level.
+ * Every course is therefore rewritten about once per level, and the number of
+ * segments stays logarithmic in the catalog size. A segment that is mostly
+ * deleted courses is rewritten on its own to reclaim them.
+ */
+final class MergePolicy {
+
+    static final int MERGE_FACTOR = 10;
+    // segments smaller than this are folded into on every refresh instead
+    static final int MIN_SEGMENT_DOCS = 256;
+
+    /** Returns the segments to merge next, or {@code null} if none should be. */
+    List<Segment> findMerge(List<Segment> segments) {
+        List<List<Segment>> levels = new ArrayList<>();
+        for (Segment segment : segments) {
+            int live = segment.liveCount();
+            if (segment.docCount >= MIN_SEGMENT_DOCS && live * 2 < segment.docCount) {
+                return List.of(segment);
+            }
+            int level = level(live);
+            while (levels.size() <= level) {
+                levels.add(new ArrayList<>());
+            }
+            List<Segment> peers = levels.get(level);
+            peers.add(segment);
+            if (peers.size() == MERGE_FACTOR) {
+                return peers;
+            }
+        }
+        return null;
+    }
+
+    private static int level(int liveCount) {
+        int level = 0;
+        for (long size = (long) MIN_SEGMENT_DOCS * MERGE_FACTOR; liveCount >= size; size *= MERGE_FACTOR) {
+            level++;
+        }
+        return level;
+    }
+}
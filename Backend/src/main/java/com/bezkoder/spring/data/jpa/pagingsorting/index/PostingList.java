@@ -0,0 +1,91 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.index;
+
+import java.util.Arrays;
+
+/**
+ * Sorted course ids containing a term, with the term frequency for each id.
+ *
+ * Posting lists are immutable; {@link #with} and {@link #without} return a new
+ * list, so a reader holding a list never sees it change.
+ */
+public final class PostingList {
+
+    static final PostingList EMPTY = new PostingList(new int[0], new int[0]);
+
+    private final int[] docs;
+    private final int[] freqs;
+
+    private PostingList(int[] docs, int[] freqs) {
+        this.docs = docs;
+        this.freqs = freqs;
+    }
+
+    /**
+     * Builds a list from postings in any order, packed as {@code doc << 32 | freq}.
+     * Each doc must appear once.
+     */
+    static PostingList of(long[] postings, int length) {
+        Arrays.sort(postings, 0, length);
+        int[] docs = new int[length];
+        int[] freqs = new int[length];
+        for (int i = 0; i < length; i++) {
+            docs[i] = (int) (postings[i] >> 32);
+            freqs[i] = (int) postings[i];
+        }
+        return new PostingList(docs, freqs);
+    }
+
+    static long pack(int doc, int freq) {
+        return (long) doc << 32 | freq;
+    }
+
+    public int size() {
+        return docs.length;
+    }
+
+    public int doc(int i) {
+        return docs[i];
+    }
+
+    public int freq(int i) {
+        return freqs[i];
+    }
+
+    public PostingList with(int doc, int freq) {
+        int pos = Arrays.binarySearch(docs, doc);
+        if (pos >= 0) {
+            int[] newFreqs = freqs.clone();
+            newFreqs[pos] = freq;
+            return new PostingList(docs, newFreqs);
+        }
+        pos = -pos - 1;
+        int[] newDocs = new int[docs.length + 1];
+        int[] newFreqs = new int[docs.length + 1];
+        System.arraycopy(docs, 0, newDocs, 0, pos);
+        System.arraycopy(freqs, 0, newFreqs, 0, pos);
+        newDocs[pos] = doc;
+        newFreqs[pos] = freq;
+        System.arraycopy(docs, pos, newDocs, pos + 1, docs.length - pos);
+        System.arraycopy(freqs, pos, newFreqs, pos + 1, docs.length - pos);
+        return new PostingList(newDocs, newFreqs);
+    }
+
+    public PostingList without(int doc) {
+        int pos = Arrays.binarySearch(docs, doc);
+        if (pos < 0) {
+            return this;
+        }
+        int[] newDocs = new int[docs.length - 1];
+        int[] newFreqs = new int[docs.length - 1];
+        System.arraycopy(docs, 0, newDocs, 0, pos);
+        System.arraycopy(freqs, 0, newFreqs, 0, pos);
+        System.arraycopy(docs, pos + 1, newDocs, pos, docs.length - pos - 1);
+        System.arraycopy(freqs, pos + 1, newFreqs, pos, docs.length - pos - 1);
+        return new PostingList(newDocs, newFreqs);
+    }
+
+    /** Returns the sorted ids; callers must not modify the array. */
+    public int[] docIds() {
+        return docs;
+    }
+}
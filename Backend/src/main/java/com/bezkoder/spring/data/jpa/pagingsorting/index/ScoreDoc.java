@@ -0,0 +1,20 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.index;
+
+public class ScoreDoc {
+
+    private final int id;
+    private final double score;
+
+    public ScoreDoc(int id, double score) {
+        this.id = id;
+        this.score = score;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
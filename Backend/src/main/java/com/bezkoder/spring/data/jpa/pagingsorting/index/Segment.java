@@ -0,0 +1,31 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.index;
+
+import java.util.List;
+import java.util.NavigableMap;
+
+/**
+ * An immutable slice of the inverted index: a term dictionary per field over
+ * the courses indexed by one refresh or merge.
+ *
+ * A segment never changes after it is built except for its deleted ids. A
+ * course that is updated or removed later is only marked deleted here, and
+ * readers skip it, until a merge rewrites the segment without it.
+ */
+final class Segment {
+
+    final List<NavigableMap<String, PostingList>> fields;
+    final IdBitmap docs;
+    final int docCount;
+    // replaced, never modified, by the index's writers; always a subset of docs
+    volatile IdBitmap deleted = IdBitmap.EMPTY;
+
+    Segment(List<NavigableMap<String, PostingList>> fields, IdBitmap docs) {
+        this.fields = fields;
+        this.docs = docs;
+        this.docCount = docs.cardinality();
+    }
+
+    int liveCount() {
+        return docCount - deleted.cardinality();
+    }
+}
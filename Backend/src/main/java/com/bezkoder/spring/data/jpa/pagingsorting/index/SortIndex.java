@@ -0,0 +1,132 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.index;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Courses kept in sorted order for every sortable field, so a sorted page can
+ * be read straight off the front (or back) of a skip list instead of sorting.
+ *
+ * Entries are ordered by field value and then by id, which makes every key
+ * unique. Stored courses are immutable, so a course's position never changes
+ * while it is in the index; updates remove the old instance and add the new.
+ *
+ * Writers must be serialized by the caller. Readers iterate without locks and
+ * see a weakly consistent view, so they should check each course against the
+ * snapshot they are serving.
+ */
+public class SortIndex {
+
+    private static final Map<String, Comparator<Course>> FIELD_COMPARATORS = new LinkedHashMap<>();
+
+    static {
+        FIELD_COMPARATORS.put("id", Comparator.comparingInt(Course::getId));
+        FIELD_COMPARATORS.put("title", Comparator.comparing(Course::getTitle, Comparator.nullsFirst(Comparator.naturalOrder())));
+        FIELD_COMPARATORS.put("category", Comparator.comparing(Course::getCategory, Comparator.nullsFirst(Comparator.naturalOrder())));
+        FIELD_COMPARATORS.put("type", Comparator.comparing(Course::getType, Comparator.nullsFirst(Comparator.naturalOrder())));
+        FIELD_COMPARATORS.put("minAge", Comparator.comparingInt(Course::getMinAge));
+        FIELD_COMPARATORS.put("maxAge", Comparator.comparingInt(Course::getMaxAge));
+        FIELD_COMPARATORS.put("price", Comparator.comparingDouble(Course::getPrice));
+        FIELD_COMPARATORS.put("nextSessionDate", Comparator.comparing(Course::getNextSessionDate, Comparator.nullsFirst(Comparator.naturalOrder())));
+    }
+
+    private final Map<String, NavigableSet<Course>> fields = new LinkedHashMap<>();
+
+    public SortIndex() {
+        FIELD_COMPARATORS.forEach((field, comparator) ->
+                fields.put(field, new ConcurrentSkipListSet<>(comparator.thenComparingInt(Course::getId))));
+    }
+
+    /** Returns the ascending comparator for a sortable field, or {@code null}. */
+    public static Comparator<Course> comparator(String field) {
+        return FIELD_COMPARATORS.get(field);
+    }
+
+    public void add(Course course) {
+        for (NavigableSet<Course> ordered : fields.values()) {
+            ordered.add(course);
+        }
+    }
+
+    /**
+     * Adds many courses at once, building the sets of the different fields in
+     * parallel and feeding each one its courses presorted.
+     */
+    public void addAll(Collection<Course> courses) {
+        Course[] all = courses.toArray(new Course[0]);
+        fields.values().parallelStream().forEach(ordered -> {
+            Course[] sorted = all.clone();
+            Arrays.sort(sorted, (Comparator<? super Course>) ordered.comparator());
+            for (Course course : sorted) {
+                ordered.add(course);
+            }
+        });
+    }
+
+    /**
+     * Applies a batch of changes, one field per task. Removed courses must be
+     * the instances that were added; an id in both lists is updated.
+     */
+    public void update(Collection<Course> removed, Collection<Course> added) {
+        fields.values().parallelStream().forEach(ordered -> {
+            for (Course course : removed) {
+                ordered.remove(course);
+            }
+            for (Course course : added) {
+                ordered.add(course);
+            }
+        });
+    }
+
+    /** Removes a course; pass the exact instance (values) that was added. */
+    public void remove(Course course) {
+        for (NavigableSet<Course> ordered : fields.values()) {
+            ordered.remove(course);
+        }
+    }
+
+    public void clear() {
+        for (NavigableSet<Course> ordered : fields.values()) {
+            ordered.clear();
+        }
+    }
+
+    /**
+     * Returns the courses whose field value lies between the probes, in
+     * ascending order. A {@code null} probe leaves that end open. Probes should
+     * carry ids below (from) and above (to) every real id.
+     */
+    public NavigableSet<Course> range(String field, Course from, Course to) {
+        NavigableSet<Course> ordered = fields.get(field);
+        if (from != null && to != null) {
+            if (ordered.comparator().compare(from, to) > 0) {
+                return Collections.emptyNavigableSet();
+            }
+            return ordered.subSet(from, true, to, true);
+        }
+        if (from != null) {
+            return ordered.tailSet(from, true);
+        }
+        return to != null ? ordered.headSet(to, true) : ordered;
+    }
+
+    /**
+     * Returns the courses ordered by the field, ties broken by id in the same
+     * direction, or {@code null} if the field is not sortable.
+     */
+    public NavigableSet<Course> ordered(String field, boolean descending) {
+        NavigableSet<Course> ordered = fields.get(field);
+        if (ordered == null) {
+            return null;
+        }
+        return descending ? ordered.descendingSet() : ordered;
+    }
+}
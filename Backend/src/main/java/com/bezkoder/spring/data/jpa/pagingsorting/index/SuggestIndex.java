@@ -0,0 +1,217 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.index;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Prefix trie over the words of course titles, each weighted by the number of
+ * courses whose title has it, for completing what a user is typing.
+ *
+ * Words are tokenized like the inverted index but not stemmed, so completions
+ * read as whole words. Every node keeps the highest weight below it, and the
+ * best completions of a prefix come from a best-first walk that only opens
+ * the branches that can still beat what it has found.
+ *
+ * Nodes are immutable. An update counts the change in weight per word, copies
+ * only the nodes on the paths of the changed words and publishes the new root
+ * through a volatile reference, so readers never lock. Writers must be
+ * serialized by the caller.
+ */
+public class SuggestIndex {
+
+    private final Analyzer analyzer;
+    private volatile Node root = Node.EMPTY;
+
+    public SuggestIndex(Analyzer analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    public void addAll(Collection<Course> courses) {
+        update(List.of(), courses);
+    }
+
+    /** Replaces the words of the removed courses with those of the added ones. */
+    public void update(Collection<Course> removed, Collection<Course> added) {
+        Map<String, Integer> deltas = new HashMap<>();
+        count(removed, -1, deltas);
+        count(added, 1, deltas);
+        deltas.values().removeIf(delta -> delta == 0);
+        if (deltas.isEmpty()) {
+            return;
+        }
+        String[] words = deltas.keySet().toArray(new String[0]);
+        Arrays.sort(words);
+        int[] weights = new int[words.length];
+        for (int i = 0; i < words.length; i++) {
+            weights[i] = deltas.get(words[i]);
+        }
+        root = apply(root, words, weights, 0, words.length, 0);
+    }
+
+    public void clear() {
+        root = Node.EMPTY;
+    }
+
+    /**
+     * Completes the last word of the text with the heaviest words starting
+     * with it, heaviest first and alphabetically among equal weights. The
+     * text before the last word is kept as typed; text ending in a separator
+     * has nothing to complete.
+     */
+    public List<Suggestion> suggest(String text, int size) {
+        List<Suggestion> suggestions = new ArrayList<>();
+        if (text == null || text.isEmpty() || size <= 0
+                || !Character.isLetterOrDigit(text.charAt(text.length() - 1))) {
+            return suggestions;
+        }
+        int start = text.length();
+        while (start > 0 && Character.isLetterOrDigit(text.charAt(start - 1))) {
+            start--;
+        }
+        String head = text.substring(0, start);
+        String prefix = text.substring(start).toLowerCase();
+
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        if (node == null) {
+            return suggestions;
+        }
+        PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        queue.add(new Candidate(prefix, node, node.max));
+        while (!queue.isEmpty() && suggestions.size() < size) {
+            Candidate candidate = queue.poll();
+            if (candidate.node == null) {
+                suggestions.add(new Suggestion(head + candidate.word, candidate.weight));
+                continue;
+            }
+            Node current = candidate.node;
+            if (current.weight > 0) {
+                queue.add(new Candidate(candidate.word, null, current.weight));
+            }
+            for (int i = 0; i < current.labels.length; i++) {
+                Node child = current.children[i];
+                queue.add(new Candidate(candidate.word + current.labels[i], child, child.max));
+            }
+        }
+        return suggestions;
+    }
+
+    private void count(Collection<Course> courses, int delta, Map<String, Integer> deltas) {
+        for (Course course : courses) {
+            List<String> words = analyzer.tokenize(course.getTitle());
+            for (int i = 0; i < words.size(); i++) {
+                String word = words.get(i);
+                // a word repeated in one title counts once
+                if (words.subList(0, i).contains(word)) {
+                    continue;
+                }
+                deltas.merge(word, delta, Integer::sum);
+            }
+        }
+    }
+
+    // applies the weight changes of words[from, to), which all start with the
+    // depth characters leading to node, and returns the node's replacement
+    // (null once it has no words left)
+    private static Node apply(Node node, String[] words, int[] deltas, int from, int to, int depth) {
+        int weight = node.weight;
+        int i = from;
+        if (words[i].length() == depth) {
+            weight += deltas[i++];
+        }
+        char[] labels = new char[node.labels.length + to - i];
+        Node[] children = new Node[labels.length];
+        int n = 0;
+        int existing = 0;
+        while (i < to) {
+            char label = words[i].charAt(depth);
+            int end = i + 1;
+            while (end < to && words[end].charAt(depth) == label) {
+                end++;
+            }
+            while (existing < node.labels.length && node.labels[existing] < label) {
+                labels[n] = node.labels[existing];
+                children[n++] = node.children[existing++];
+            }
+            Node child = Node.EMPTY;
+            if (existing < node.labels.length && node.labels[existing] == label) {
+                child = node.children[existing++];
+            }
+            child = apply(child, words, deltas, i, end, depth + 1);
+            if (child != null) {
+                labels[n] = label;
+                children[n++] = child;
+            }
+            i = end;
+        }
+        while (existing < node.labels.length) {
+            labels[n] = node.labels[existing];
+            children[n++] = node.children[existing++];
+        }
+        if (weight <= 0 && n == 0) {
+            return depth == 0 ? Node.EMPTY : null;
+        }
+        return new Node(Math.max(weight, 0), Arrays.copyOf(labels, n), Arrays.copyOf(children, n));
+    }
+
+    private static final class Node {
+
+        static final Node EMPTY = new Node(0, new char[0], new Node[0]);
+
+        // number of courses with this word in the title, 0 for a bare prefix
+        final int weight;
+        // highest weight in this subtree
+        final int max;
+        // child labels in ascending order
+        final char[] labels;
+        final Node[] children;
+
+        Node(int weight, char[] labels, Node[] children) {
+            this.weight = weight;
+            this.labels = labels;
+            this.children = children;
+            int max = weight;
+            for (Node child : children) {
+                max = Math.max(max, child.max);
+            }
+            this.max = max;
+        }
+
+        Node child(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            return i < 0 ? null : children[i];
+        }
+    }
+
+    // a subtree still to open, or a finished word when node is null
+    private static final class Candidate implements Comparable<Candidate> {
+
+        final String word;
+        final Node node;
+        final int weight;
+
+        Candidate(String word, Node node, int weight) {
+            this.word = word;
+            this.node = node;
+            this.weight = weight;
+        }
+
+        // a subtree sorts before the words in it, so ties come out alphabetically
+        @Override
+        public int compareTo(Candidate other) {
+            if (weight != other.weight) {
+                return Integer.compare(other.weight, weight);
+            }
+            return word.compareTo(other.word);
+        }
+    }
+}
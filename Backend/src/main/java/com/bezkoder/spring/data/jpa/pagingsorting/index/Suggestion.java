@@ -0,0 +1,20 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.index;
+
+public class Suggestion {
+
+    private final String text;
+    private final int weight;
+
+    public Suggestion(String text, int weight) {
+        this.text = text;
+        this.weight = weight;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+}
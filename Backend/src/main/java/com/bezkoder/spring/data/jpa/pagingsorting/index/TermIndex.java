@@ -0,0 +1,124 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.index;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Id bitmaps per value of the low-cardinality keyword fields (category, type
+ * and gradeRange). Values are matched case-insensitively.
+ *
+ * Writers must be serialized by the caller. Bitmaps are immutable and swapped
+ * in atomically, so readers never lock.
+ */
+public class TermIndex {
+
+    private static final Map<String, Function<Course, String>> FIELDS = new LinkedHashMap<>();
+
+    static {
+        FIELDS.put("category", Course::getCategory);
+        FIELDS.put("type", Course::getType);
+        FIELDS.put("gradeRange", Course::getGradeRange);
+    }
+
+    private final Map<String, Map<String, IdBitmap>> fields = new LinkedHashMap<>();
+
+    public TermIndex() {
+        for (String field : FIELDS.keySet()) {
+            fields.put(field, new ConcurrentHashMap<>());
+        }
+    }
+
+    public static boolean isTermField(String field) {
+        return FIELDS.containsKey(field);
+    }
+
+    public static String normalize(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    /** Returns the normalized value of a keyword field of the course. */
+    public static String value(Course course, String field) {
+        return normalize(FIELDS.get(field).apply(course));
+    }
+
+    public void add(Course course) {
+        fields.forEach((field, values) -> {
+            String value = value(course, field);
+            if (value != null) {
+                values.put(value, values.getOrDefault(value, IdBitmap.EMPTY).with(course.getId()));
+            }
+        });
+    }
+
+    /** Adds many courses at once, one field per task and one bitmap per value. */
+    public void addAll(Collection<Course> courses) {
+        fields.entrySet().parallelStream().forEach(entry -> {
+            Map<String, int[]> ids = new HashMap<>();
+            Map<String, Integer> counts = new HashMap<>();
+            for (Course course : courses) {
+                String value = value(course, entry.getKey());
+                if (value == null) {
+                    continue;
+                }
+                int n = counts.getOrDefault(value, 0);
+                int[] values = ids.computeIfAbsent(value, v -> new int[16]);
+                if (n == values.length) {
+                    values = Arrays.copyOf(values, n * 2);
+                    ids.put(value, values);
+                }
+                values[n] = course.getId();
+                counts.put(value, n + 1);
+            }
+            Map<String, IdBitmap> bitmaps = entry.getValue();
+            ids.forEach((value, values) -> bitmaps.put(value,
+                    bitmaps.getOrDefault(value, IdBitmap.EMPTY).or(IdBitmap.of(values, counts.get(value)))));
+        });
+    }
+
+    public void remove(Course course) {
+        fields.forEach((field, values) -> {
+            String value = value(course, field);
+            IdBitmap ids = value == null ? null : values.get(value);
+            if (ids != null) {
+                IdBitmap remaining = ids.without(course.getId());
+                if (remaining.isEmpty()) {
+                    values.remove(value);
+                } else {
+                    values.put(value, remaining);
+                }
+            }
+        });
+    }
+
+    public void clear() {
+        for (Map<String, IdBitmap> values : fields.values()) {
+            values.clear();
+        }
+    }
+
+    public IdBitmap get(String field, String value) {
+        return fields.get(field).getOrDefault(normalize(value), IdBitmap.EMPTY);
+    }
+
+    /** Union of the bitmaps of the given values. */
+    public IdBitmap any(String field, Collection<String> values) {
+        IdBitmap result = IdBitmap.EMPTY;
+        for (String value : values) {
+            result = result.or(get(field, value));
+        }
+        return result;
+    }
+
+    public static List<String> fieldNames() {
+        return List.copyOf(FIELDS.keySet());
+    }
+}
@@ -0,0 +1,102 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size, lock-free histogram of durations in nanoseconds, bucketed
+ * like HdrHistogram: values below 64 ns are counted exactly, larger ones in
+ * buckets 1/32 of their power of two wide, so every percentile is reported
+ * within about 3% of the true value over the whole range of a long.
+ * Recording is a few shifts and an atomic increment and never allocates.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 6;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int HALF_COUNT = SUB_COUNT / 2;
+    private static final int BUCKETS = SUB_COUNT + (Long.SIZE - 1 - SUB_BITS) * HALF_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /** The smallest recorded value at or above the given fraction (0 to 1) of all values. */
+    public long valueAt(double quantile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValue(i), max.get());
+            }
+        }
+        return 0;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /** Count, mean, percentiles and maximum, in milliseconds. */
+    public Map<String, Object> stats() {
+        long n = count.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", n);
+        stats.put("meanMs", n == 0 ? 0.0 : millis(sum.sum() / n));
+        stats.put("p50Ms", millis(valueAt(0.50)));
+        stats.put("p90Ms", millis(valueAt(0.90)));
+        stats.put("p99Ms", millis(valueAt(0.99)));
+        stats.put("p999Ms", millis(valueAt(0.999)));
+        stats.put("maxMs", millis(max.get()));
+        return stats;
+    }
+
+    static double millis(long nanos) {
+        return Math.round(nanos / 1e3) / 1e3;
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return SUB_COUNT + (shift - 1) * HALF_COUNT + (int) (value >>> shift) - HALF_COUNT;
+    }
+
+    // the largest value counted in the bucket
+    static long highestValue(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_COUNT) / HALF_COUNT + 1;
+        long sub = (bucket - SUB_COUNT) % HALF_COUNT + HALF_COUNT;
+        // wraps to Long.MAX_VALUE for the last bucket
+        return ((sub + 1) << shift) - 1;
+    }
+}
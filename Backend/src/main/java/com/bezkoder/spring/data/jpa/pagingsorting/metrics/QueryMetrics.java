@@ -0,0 +1,166 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms per endpoint and per query phase, counters of matched
+ * and returned courses, and the slow-query log.
+ *
+ * Requests slower than courses.metrics.slow-query-ms are logged at WARN with
+ * their normalized query and phase timings, and the latest of them are kept
+ * for the metrics endpoint. Recording a request that is not slow allocates
+ * nothing once its endpoint has been seen.
+ */
+@Component
+public class QueryMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryMetrics.class);
+
+    private static final int RECENT_SLOW_QUERIES = 20;
+    private static final QueryPhase[] PHASES = QueryPhase.values();
+
+    private final boolean enabled;
+    // 0 turns the slow-query log off
+    private final long slowQueryNanos;
+    // by path pattern, then by HTTP method
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, EndpointMetrics>> endpoints =
+            new ConcurrentHashMap<>();
+    private final LatencyHistogram[] phases = new LatencyHistogram[PHASES.length];
+    private final LongAdder slowQueries = new LongAdder();
+    private final ArrayDeque<Map<String, Object>> recentSlowQueries = new ArrayDeque<>();
+
+    public QueryMetrics(@Value("${courses.metrics.enabled:true}") boolean enabled,
+                        @Value("${courses.metrics.slow-query-ms:100}") long slowQueryMillis) {
+        if (slowQueryMillis < 0) {
+            throw new IllegalArgumentException("courses.metrics.slow-query-ms must not be negative");
+        }
+        this.enabled = enabled;
+        this.slowQueryNanos = slowQueryMillis * 1_000_000;
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new LatencyHistogram();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Records a finished request; failed means it ended in an error. */
+    void record(String method, String pattern, QueryTrace trace, long nanos, boolean failed) {
+        ConcurrentHashMap<String, EndpointMetrics> byMethod = endpoints.get(pattern);
+        if (byMethod == null) {
+            byMethod = endpoints.computeIfAbsent(pattern, p -> new ConcurrentHashMap<>());
+        }
+        EndpointMetrics endpoint = byMethod.get(method);
+        if (endpoint == null) {
+            endpoint = byMethod.computeIfAbsent(method, m -> new EndpointMetrics());
+        }
+        endpoint.latency.record(nanos);
+        if (failed) {
+            endpoint.errors.increment();
+        }
+        if (trace.getMatched() >= 0) {
+            endpoint.matched.add(trace.getMatched());
+            endpoint.returned.add(trace.getReturned());
+        }
+        for (QueryPhase phase : PHASES) {
+            if (trace.hasPhase(phase)) {
+                phases[phase.ordinal()].record(trace.phaseNanos(phase));
+            }
+        }
+    }
+
+    boolean isSlow(long nanos) {
+        return slowQueryNanos > 0 && nanos >= slowQueryNanos;
+    }
+
+    void slowQuery(String query, QueryTrace trace, long nanos) {
+        slowQueries.increment();
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("time", Instant.now().toString());
+        entry.put("query", query);
+        entry.put("ms", LatencyHistogram.millis(nanos));
+        StringBuilder timings = new StringBuilder();
+        for (QueryPhase phase : PHASES) {
+            if (trace.hasPhase(phase)) {
+                double ms = LatencyHistogram.millis(trace.phaseNanos(phase));
+                entry.put(phase.label + "Ms", ms);
+                timings.append(phase.label).append(' ').append(ms).append(" ms, ");
+            }
+        }
+        if (trace.getMatched() >= 0) {
+            entry.put("matched", trace.getMatched());
+            entry.put("returned", trace.getReturned());
+            timings.append(trace.getMatched()).append(" matched, ").append(trace.getReturned()).append(" returned");
+        } else if (timings.length() > 0) {
+            timings.setLength(timings.length() - 2);
+        }
+        log.warn("Slow query ({} ms): {} [{}]", entry.get("ms"), query, timings);
+        synchronized (recentSlowQueries) {
+            if (recentSlowQueries.size() == RECENT_SLOW_QUERIES) {
+                recentSlowQueries.removeFirst();
+            }
+            recentSlowQueries.addLast(entry);
+        }
+    }
+
+    /** Every endpoint's and phase's latencies and counters, and the latest slow queries. */
+    public Map<String, Object> stats() {
+        Map<String, Object> byEndpoint = new TreeMap<>();
+        endpoints.forEach((pattern, byMethod) -> byMethod.forEach((method, endpoint) -> {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("latency", endpoint.latency.stats());
+            stats.put("errors", endpoint.errors.sum());
+            stats.put("matched", endpoint.matched.sum());
+            stats.put("returned", endpoint.returned.sum());
+            byEndpoint.put(method + " " + pattern, stats);
+        }));
+        Map<String, Object> byPhase = new LinkedHashMap<>();
+        for (QueryPhase phase : PHASES) {
+            byPhase.put(phase.label, phases[phase.ordinal()].stats());
+        }
+        Map<String, Object> slow = new LinkedHashMap<>();
+        slow.put("thresholdMs", slowQueryNanos / 1_000_000);
+        slow.put("count", slowQueries.sum());
+        synchronized (recentSlowQueries) {
+            slow.put("recent", new ArrayList<>(recentSlowQueries));
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("endpoints", byEndpoint);
+        stats.put("phases", byPhase);
+        stats.put("slowQueries", slow);
+        return stats;
+    }
+
+    /** Starts every histogram and counter over, for example between benchmark runs. */
+    public void reset() {
+        endpoints.clear();
+        for (LatencyHistogram phase : phases) {
+            phase.reset();
+        }
+        slowQueries.reset();
+        synchronized (recentSlowQueries) {
+            recentSlowQueries.clear();
+        }
+    }
+
+    private static final class EndpointMetrics {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+        final LongAdder matched = new LongAdder();
+        final LongAdder returned = new LongAdder();
+    }
+}
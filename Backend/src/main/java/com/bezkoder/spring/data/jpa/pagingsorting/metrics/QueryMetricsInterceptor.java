@@ -0,0 +1,80 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.metrics;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Times every API request into {@link QueryMetrics}, from the handler being
+ * picked until the response is written.
+ *
+ * An async request is timed across both of its dispatches. Its query runs on
+ * the task executor, outside the trace, so only its serialization is broken
+ * out into a phase.
+ */
+public class QueryMetricsInterceptor implements AsyncHandlerInterceptor {
+
+    // start of an async request, kept while its result is computed
+    private static final String START = QueryMetricsInterceptor.class.getName() + ".start";
+    private static final String UNMAPPED = "unmapped";
+
+    private final QueryMetrics metrics;
+
+    public QueryMetricsInterceptor(QueryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        long start = System.nanoTime();
+        if (request.getDispatcherType() == DispatcherType.ASYNC && request.getAttribute(START) instanceof Long first) {
+            start = first;
+        }
+        QueryTrace.current().begin(start);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        QueryTrace trace = QueryTrace.current();
+        if (trace.isActive()) {
+            request.setAttribute(START, trace.getStart());
+            trace.end();
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        QueryTrace trace = QueryTrace.current();
+        if (!trace.isActive()) {
+            return;
+        }
+        long nanos = trace.end();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        metrics.record(request.getMethod(), pattern instanceof String p ? p : UNMAPPED, trace, nanos,
+                ex != null || response.getStatus() >= 500);
+        if (metrics.isSlow(nanos)) {
+            metrics.slowQuery(normalize(request), trace, nanos);
+        }
+    }
+
+    // the method, path and parameters in name order, so the same query logs the same way
+    static String normalize(HttpServletRequest request) {
+        StringBuilder query = new StringBuilder(request.getMethod()).append(' ').append(request.getRequestURI());
+        char separator = '?';
+        for (Map.Entry<String, String[]> parameter : new TreeMap<>(request.getParameterMap()).entrySet()) {
+            for (String value : parameter.getValue()) {
+                query.append(separator).append(parameter.getKey()).append('=').append(value);
+                separator = '&';
+            }
+        }
+        return query.toString();
+    }
+}
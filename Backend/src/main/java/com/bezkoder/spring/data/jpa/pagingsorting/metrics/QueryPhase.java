@@ -0,0 +1,17 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.metrics;
+
+/**
+ * The parts a list or search request's time is split into.
+ */
+public enum QueryPhase {
+    /** Finding the candidates: index lookups, bitmap intersections, search scoring. */
+    FILTER,
+    /** Scanning the candidates in order: remaining filters and the top-k or sort. */
+    SORT,
+    /** Building the page: slicing the window and materializing its courses. */
+    PAGE,
+    /** Writing the courses of the response as JSON. */
+    SERIALIZE;
+
+    final String label = name().toLowerCase();
+}
@@ -0,0 +1,99 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.metrics;
+
+/**
+ * The timings of the request running on the current thread, reused from one
+ * request to the next so that tracing allocates nothing.
+ *
+ * {@link QueryMetricsInterceptor} begins and ends the trace around each API
+ * request; in between, the repository and the JSON writer call
+ * {@link #mark()} where a timed section starts and {@link #lap(QueryPhase)}
+ * where a phase ends. Outside a request, such as when the repository runs on
+ * a task executor or in a benchmark, both do nothing.
+ */
+public final class QueryTrace {
+
+    private static final ThreadLocal<QueryTrace> CURRENT = ThreadLocal.withInitial(QueryTrace::new);
+
+    private final long[] phaseNanos = new long[QueryPhase.values().length];
+    // bit per phase that was timed
+    private int phases;
+    private boolean active;
+    private long start;
+    private long last;
+    // -1 until a query reports its documents
+    private long matched;
+    private int returned;
+
+    private QueryTrace() {
+    }
+
+    public static QueryTrace current() {
+        return CURRENT.get();
+    }
+
+    void begin(long start) {
+        this.start = start;
+        this.last = start;
+        this.active = true;
+        phases = 0;
+        matched = -1;
+        returned = 0;
+    }
+
+    /** Stops tracing and returns the nanoseconds since the request began. */
+    long end() {
+        active = false;
+        return System.nanoTime() - start;
+    }
+
+    long getStart() {
+        return start;
+    }
+
+    boolean isActive() {
+        return active;
+    }
+
+    /** Starts timing the next phase from now. */
+    public void mark() {
+        if (active) {
+            last = System.nanoTime();
+        }
+    }
+
+    /** Adds the time since the last mark or lap to the phase. */
+    public void lap(QueryPhase phase) {
+        if (!active) {
+            return;
+        }
+        long now = System.nanoTime();
+        int bit = 1 << phase.ordinal();
+        phaseNanos[phase.ordinal()] = (phases & bit) == 0 ? now - last : phaseNanos[phase.ordinal()] + now - last;
+        phases |= bit;
+        last = now;
+    }
+
+    /** The courses the query matched and the ones it returned in the page. */
+    public void documents(long matched, int returned) {
+        if (active) {
+            this.matched = matched;
+            this.returned = returned;
+        }
+    }
+
+    boolean hasPhase(QueryPhase phase) {
+        return (phases & 1 << phase.ordinal()) != 0;
+    }
+
+    long phaseNanos(QueryPhase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    long getMatched() {
+        return matched;
+    }
+
+    int getReturned() {
+        return returned;
+    }
+}
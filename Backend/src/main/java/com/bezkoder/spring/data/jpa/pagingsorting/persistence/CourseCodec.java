@@ -0,0 +1,79 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.persistence;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Compact binary encoding of a course, shared by log records, snapshots and
+ * the replication stream. Strings are length-prefixed UTF-8 (-1 for null); the date keeps seconds,
+ * nanos and offset so it round-trips exactly.
+ */
+public final class CourseCodec {
+
+    private CourseCodec() {
+    }
+
+    public static void write(DataOutput out, Course course) throws IOException {
+        out.writeInt(course.getId());
+        writeString(out, course.getTitle());
+        writeString(out, course.getDescription());
+        writeString(out, course.getCategory());
+        writeString(out, course.getType());
+        writeString(out, course.getGradeRange());
+        out.writeInt(course.getMinAge());
+        out.writeInt(course.getMaxAge());
+        out.writeDouble(course.getPrice());
+        OffsetDateTime date = course.getNextSessionDate();
+        out.writeBoolean(date != null);
+        if (date != null) {
+            out.writeLong(date.toEpochSecond());
+            out.writeInt(date.getNano());
+            out.writeInt(date.getOffset().getTotalSeconds());
+        }
+    }
+
+    public static Course read(DataInput in) throws IOException {
+        int id = in.readInt();
+        String title = readString(in);
+        String description = readString(in);
+        String category = readString(in);
+        String type = readString(in);
+        String gradeRange = readString(in);
+        int minAge = in.readInt();
+        int maxAge = in.readInt();
+        double price = in.readDouble();
+        OffsetDateTime date = null;
+        if (in.readBoolean()) {
+            Instant instant = Instant.ofEpochSecond(in.readLong(), in.readInt());
+            date = OffsetDateTime.ofInstant(instant, ZoneOffset.ofTotalSeconds(in.readInt()));
+        }
+        return new Course(id, title, description, category, type, gradeRange, minAge, maxAge, price, date);
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
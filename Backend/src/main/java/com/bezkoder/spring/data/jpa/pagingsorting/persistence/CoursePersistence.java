@@ -0,0 +1,281 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.persistence;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.ColumnSegment;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.CourseColumns;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.CourseSnapshot;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.CourseStore;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.TermDictionary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durability for the course repository: a write-ahead log of every mutation
+ * plus periodic snapshots, both under {@code courses.data-dir}. Leaving the
+ * directory empty turns persistence off.
+ *
+ * On startup {@link #recover} loads the newest snapshot and replays the log
+ * written after it. While running, the repository logs each mutation under
+ * its write lock and waits for durability after releasing it, so concurrent
+ * writers share fsyncs. Every snapshot interval the repository writes a new
+ * snapshot and the log generations it covers are deleted.
+ *
+ * The mapped engine checkpoints to {@link ColumnSegment} files instead of
+ * snapshots and recovers by mapping the newest one with
+ * {@link #recoverSegment}. Whichever of the two is newer is recovered, so the
+ * engine can be switched between restarts.
+ */
+@Component
+public class CoursePersistence {
+
+    private static final Logger log = LoggerFactory.getLogger(CoursePersistence.class);
+
+    private final Path dir;
+    private final Durability durability;
+    private final long syncIntervalMillis;
+    private final long snapshotIntervalMillis;
+
+    private WriteAheadLog wal;
+    private ScheduledExecutorService scheduler;
+    private volatile long snapshotSeq;
+
+    public CoursePersistence(@Value("${courses.data-dir:}") String dataDir,
+                             @Value("${courses.wal.durability:REQUEST}") Durability durability,
+                             @Value("${courses.wal.sync-interval-ms:200}") long syncIntervalMillis,
+                             @Value("${courses.snapshot-interval-ms:60000}") long snapshotIntervalMillis) {
+        this.dir = dataDir == null || dataDir.isBlank() ? null : Paths.get(dataDir);
+        this.durability = durability;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+    }
+
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    /**
+     * Rebuilds the catalog from the newest snapshot (or segment) and the log
+     * after it, then opens the log for appending. Returns {@code null} when nothing has
+     * been stored yet.
+     */
+    public List<Course> recover() throws IOException {
+        ColumnSegment segment = openSegment(new TermDictionary());
+        SnapshotFile snapshot = segment == null ? SnapshotFile.readLatest(dir) : null;
+        Map<Integer, Course> courses = new LinkedHashMap<>();
+        long afterSeq = 0;
+        if (segment != null) {
+            afterSeq = segment.seq();
+            CourseColumns columns = segment.columns();
+            for (int row = 0; row < segment.rows(); row++) {
+                Course course = columns.materialize(row);
+                courses.put(course.getId(), course);
+            }
+        } else if (snapshot != null) {
+            afterSeq = snapshot.getSeq();
+            for (Course course : snapshot.getCourses()) {
+                courses.put(course.getId(), course);
+            }
+        }
+        int[] replayed = new int[1];
+        long lastSeq = WriteAheadLog.replay(dir, afterSeq, entry -> {
+            if (entry.isPut()) {
+                courses.put(entry.getCourse().getId(), entry.getCourse());
+            } else if (entry.isDelete()) {
+                courses.remove(entry.getId());
+            } else if (entry.isDeleteAll()) {
+                courses.clear();
+            }
+            replayed[0]++;
+        });
+        snapshotSeq = afterSeq;
+        wal = new WriteAheadLog(dir, lastSeq, durability, syncIntervalMillis);
+        if (segment == null && snapshot == null && replayed[0] == 0) {
+            return null;
+        }
+        log.info("Recovered {} courses from {} ({} at seq {}, {} log records replayed)", courses.size(),
+                dir.toAbsolutePath(), segment != null ? "segment" : "snapshot", afterSeq, replayed[0]);
+        return new ArrayList<>(courses.values());
+    }
+
+    /**
+     * For the mapped engine: maps the newest segment, loading its terms into
+     * the store's dictionary, collects the log written after it and opens the
+     * log for appending. Returns {@code null}, leaving the log closed, when
+     * there is no segment or a snapshot is newer; {@link #recover} then reads
+     * the catalog instead.
+     */
+    public SegmentRecovery recoverSegment(TermDictionary dictionary) throws IOException {
+        ColumnSegment segment = openSegment(dictionary);
+        if (segment == null) {
+            return null;
+        }
+        Map<Integer, Course> changes = new HashMap<>();
+        boolean[] cleared = new boolean[1];
+        int[] replayed = new int[1];
+        long lastSeq = WriteAheadLog.replay(dir, segment.seq(), entry -> {
+            if (entry.isPut()) {
+                changes.put(entry.getCourse().getId(), entry.getCourse());
+            } else if (entry.isDelete()) {
+                changes.put(entry.getId(), null);
+            } else if (entry.isDeleteAll()) {
+                changes.clear();
+                cleared[0] = true;
+            }
+            replayed[0]++;
+        });
+        snapshotSeq = segment.seq();
+        wal = new WriteAheadLog(dir, lastSeq, durability, syncIntervalMillis);
+        log.info("Mapped {} courses ({} MiB) from {} (segment at seq {}, {} log records replayed)", segment.rows(),
+                segment.size() / (1 << 20), segment.path().toAbsolutePath(), segment.seq(), replayed[0]);
+        return new SegmentRecovery(segment, cleared[0], changes);
+    }
+
+    // the newest segment if it is newer than every snapshot, otherwise null
+    private ColumnSegment openSegment(TermDictionary dictionary) throws IOException {
+        Path latest = SegmentFile.latest(dir);
+        if (latest == null || SegmentFile.seqOf(latest) <= SnapshotFile.latestSeq(dir)) {
+            return null;
+        }
+        return ColumnSegment.open(latest, dictionary);
+    }
+
+    /** Runs the checkpoint task every snapshot interval while there are new log records. */
+    public void scheduleSnapshots(Runnable checkpoint) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "course-snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            if (wal.lastSeq() > snapshotSeq) {
+                try {
+                    checkpoint.run();
+                } catch (RuntimeException e) {
+                    log.error("Failed to write the course snapshot; retrying in {} ms", snapshotIntervalMillis, e);
+                }
+            }
+        }, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Why the write-ahead log refuses writes, or {@code null} while it
+     * works. Once the log fails, writes that were applied but not yet
+     * durable would be lost on restart, so the node reports itself down.
+     */
+    public IOException failure() {
+        return wal == null ? null : wal.failure();
+    }
+
+    /** Log a stored course; call under the repository write lock. */
+    public long logPut(Course course) {
+        return wal.put(course);
+    }
+
+    public long logDelete(int id) {
+        return wal.delete(id);
+    }
+
+    public long logDeleteAll() {
+        return wal.deleteAll();
+    }
+
+    /** Waits until the record is durable; call after releasing the write lock. */
+    public void awaitDurable(long seq) {
+        wal.awaitDurable(seq);
+    }
+
+    /**
+     * Starts a new log generation and returns the sequence number a snapshot
+     * taken right now covers; call under the repository write lock.
+     */
+    public long startSnapshot() {
+        return wal.roll();
+    }
+
+    /** Writes the snapshot for {@code seq} and drops the log it makes redundant. */
+    public void writeSnapshot(long seq, Collection<Course> courses) {
+        try {
+            SnapshotFile.write(dir, seq, courses);
+            SegmentFile.deleteUpTo(dir, seq);
+            wal.deleteBefore(seq);
+            snapshotSeq = seq;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write course snapshot", e);
+        }
+    }
+
+    /**
+     * Writes the segment for {@code seq}, drops the snapshots and log it
+     * makes redundant, and returns it mapped.
+     */
+    public ColumnSegment writeSegment(long seq, CourseSnapshot snapshot) {
+        try {
+            Path path = SegmentFile.write(dir, seq, snapshot);
+            ColumnSegment segment = ColumnSegment.open(path, snapshot.columns().dictionary());
+            SnapshotFile.deleteUpTo(dir, seq);
+            wal.deleteBefore(seq);
+            snapshotSeq = seq;
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write course segment", e);
+        }
+    }
+
+    /** A mapped segment and the changes logged after it. */
+    public static final class SegmentRecovery {
+
+        private final ColumnSegment segment;
+        private final boolean cleared;
+        private final Map<Integer, Course> changes;
+
+        SegmentRecovery(ColumnSegment segment, boolean cleared, Map<Integer, Course> changes) {
+            this.segment = segment;
+            this.cleared = cleared;
+            this.changes = changes;
+        }
+
+        public ColumnSegment getSegment() {
+            return segment;
+        }
+
+        /**
+         * Loads the segment into the store, then applies the changes: a
+         * {@code null} course removes its id, and a logged delete-all drops
+         * every course of the segment first.
+         */
+        public void applyTo(CourseStore store) {
+            store.open(segment);
+            if (cleared) {
+                store.clear();
+            }
+            if (!changes.isEmpty()) {
+                store.apply(changes);
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        if (wal != null) {
+            wal.close();
+        }
+    }
+}
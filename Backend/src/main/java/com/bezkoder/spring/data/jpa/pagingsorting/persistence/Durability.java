@@ -0,0 +1,19 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.persistence;
+
+/**
+ * When a write is acknowledged relative to its log record reaching disk.
+ */
+public enum Durability {
+
+    /**
+     * The write returns once its record is fsynced. Concurrent writers share
+     * one fsync (group commit), so the cost per write falls as load rises.
+     */
+    REQUEST,
+
+    /**
+     * The write returns immediately and the log is fsynced in the background
+     * every sync interval; a crash can lose the writes of the last interval.
+     */
+    ASYNC
+}
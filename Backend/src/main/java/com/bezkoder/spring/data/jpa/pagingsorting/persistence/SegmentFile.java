@@ -0,0 +1,81 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.persistence;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.store.ColumnSegment;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.CourseSnapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Checkpoints of the mapped engine: the whole catalog as of one log sequence
+ * number in {@link ColumnSegment} form, named by that number.
+ *
+ * Like snapshots, segments are written to a temporary file, fsynced and
+ * renamed into place. An older segment may still be mapped by readers when a
+ * newer one replaces it; where the platform refuses to delete a mapped file
+ * it is left for a later checkpoint to remove.
+ */
+final class SegmentFile {
+
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".seg";
+
+    private SegmentFile() {
+    }
+
+    /** Writes a segment covering the log up to {@code seq} and removes older segments. */
+    static Path write(Path dir, long seq, CourseSnapshot snapshot) throws IOException {
+        Files.createDirectories(dir);
+        Path target = dir.resolve(String.format("%s%020d%s", PREFIX, seq, SUFFIX));
+        Path tmp = dir.resolve(target.getFileName() + ".tmp");
+        ColumnSegment.write(tmp, seq, snapshot);
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        SnapshotFile.syncDirectory(dir);
+        deleteUpTo(dir, seq - 1);
+        return target;
+    }
+
+    /** Returns the newest segment, or {@code null} if there is none. */
+    static Path latest(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return null;
+        }
+        List<Path> segments = segments(dir);
+        return segments.isEmpty() ? null : segments.get(segments.size() - 1);
+    }
+
+    static long seqOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /** Removes the segments up to and including {@code seq}, as far as the platform allows. */
+    static void deleteUpTo(Path dir, long seq) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        for (Path old : segments(dir)) {
+            if (seqOf(old) <= seq) {
+                try {
+                    Files.deleteIfExists(old);
+                } catch (IOException e) {
+                    // still mapped on a platform that forbids deleting it
+                }
+            }
+        }
+    }
+
+    private static List<Path> segments(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            // zero-padded sequence numbers sort in name order
+            return files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().toList();
+        }
+    }
+}
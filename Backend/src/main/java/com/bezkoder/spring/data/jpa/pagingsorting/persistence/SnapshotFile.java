@@ -0,0 +1,156 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.persistence;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary snapshot of the whole catalog as of one log sequence number:
+ * a header, the courses in {@link CourseCodec} form and a CRC32 trailer.
+ *
+ * Snapshots are written to a temporary file, fsynced and renamed into place,
+ * so a crash leaves either the old snapshot or the new one, never a partial
+ * file under a snapshot name.
+ */
+public final class SnapshotFile {
+
+    private static final int MAGIC = 0x43525331; // "CRS1"
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    private final long seq;
+    private final List<Course> courses;
+
+    private SnapshotFile(long seq, List<Course> courses) {
+        this.seq = seq;
+        this.courses = courses;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public List<Course> getCourses() {
+        return courses;
+    }
+
+    /** Writes a snapshot covering the log up to {@code seq} and removes older snapshots. */
+    public static void write(Path dir, long seq, Collection<Course> courses) throws IOException {
+        Files.createDirectories(dir);
+        Path target = dir.resolve(String.format("%s%020d%s", PREFIX, seq, SUFFIX));
+        Path tmp = dir.resolve(target.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (OutputStream file = Files.newOutputStream(tmp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeLong(seq);
+            out.writeInt(courses.size());
+            for (Course course : courses) {
+                CourseCodec.write(out, course);
+            }
+            out.flush();
+            new DataOutputStream(file).writeInt((int) crc.getValue());
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(dir);
+
+        for (Path old : snapshots(dir)) {
+            if (!old.equals(target)) {
+                Files.deleteIfExists(old);
+            }
+        }
+    }
+
+    /** Sequence number of the newest snapshot, or -1 if there is none. */
+    static long latestSeq(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return -1;
+        }
+        List<Path> snapshots = snapshots(dir);
+        return snapshots.isEmpty() ? -1 : seqOf(snapshots.get(snapshots.size() - 1));
+    }
+
+    /** Removes the snapshots up to and including {@code seq}. */
+    static void deleteUpTo(Path dir, long seq) throws IOException {
+        for (Path old : snapshots(dir)) {
+            if (seqOf(old) <= seq) {
+                Files.deleteIfExists(old);
+            }
+        }
+    }
+
+    /** Reads the newest snapshot, or returns {@code null} if there is none. */
+    public static SnapshotFile readLatest(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return null;
+        }
+        List<Path> snapshots = snapshots(dir);
+        if (snapshots.isEmpty()) {
+            return null;
+        }
+        Path latest = snapshots.get(snapshots.size() - 1);
+        CRC32 crc = new CRC32();
+        try (InputStream file = Files.newInputStream(latest)) {
+            InputStream buffered = new BufferedInputStream(file, 1 << 16);
+            DataInputStream in = new DataInputStream(new CheckedInputStream(buffered, crc));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a course snapshot: " + latest);
+            }
+            long seq = in.readLong();
+            int count = in.readInt();
+            List<Course> courses = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                courses.add(CourseCodec.read(in));
+            }
+            int expected = (int) crc.getValue();
+            if (new DataInputStream(buffered).readInt() != expected) {
+                throw new IOException("Corrupt course snapshot: " + latest);
+            }
+            return new SnapshotFile(seq, courses);
+        }
+    }
+
+    private static List<Path> snapshots(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            // zero-padded sequence numbers sort in name order
+            return files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().toList();
+        }
+    }
+
+    private static long seqOf(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not every platform can fsync a directory; the rename itself is atomic
+        }
+    }
+}
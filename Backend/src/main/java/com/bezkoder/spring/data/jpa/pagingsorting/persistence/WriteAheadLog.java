@@ -0,0 +1,493 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.persistence;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of course mutations, split into generation files named by
+ * the sequence number of their first record.
+ *
+ * Appends only encode the record into an in-memory buffer. A single flusher
+ * thread writes the buffer out and fsyncs it, so every record that arrived
+ * while the previous fsync was running is made durable by the next one
+ * (group commit). With {@link Durability#REQUEST} writers then wait in
+ * {@link #awaitDurable}; with {@link Durability#ASYNC} the flusher runs once
+ * per sync interval and nobody waits.
+ *
+ * Each record is {@code [length][crc32][seq, op, body]}. A torn or corrupt
+ * record ends replay, so a crash mid-write loses at most the records that
+ * were never acknowledged as durable.
+ *
+ * Once a write or fsync fails the log is failed for good: the flusher stops,
+ * waiting writers get the error and every later append is refused, since
+ * nothing appended after the failure could reach the disk.
+ *
+ * Appends must be serialized by the caller.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    static final byte DELETE_ALL = 3;
+
+    // a length beyond this can only come from a torn or corrupt record
+    static final int MAX_RECORD_BYTES = 64 << 20;
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+
+    private final Path dir;
+    private final Durability durability;
+    private final long syncIntervalMillis;
+
+    private final ByteArrayOutputStream scratch = new ByteArrayOutputStream();
+    private final DataOutputStream scratchOut = new DataOutputStream(scratch);
+    private final CRC32 crc = new CRC32();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition work = lock.newCondition();
+    private final Condition synced = lock.newCondition();
+    // guarded by lock
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private byte[] beforeRoll;
+    private long rollSeq;
+    private long lastSeq;
+    private long durableSeq;
+    private IOException failure;
+    private boolean closed;
+
+    // owned by the flusher thread
+    private FileChannel channel;
+    private final Thread flusher;
+
+    /**
+     * Opens a new generation after {@code lastSeq}, the last sequence number
+     * found by {@link #replay}, and starts the flusher.
+     */
+    public WriteAheadLog(Path dir, long lastSeq, Durability durability, long syncIntervalMillis) throws IOException {
+        this.dir = dir;
+        this.durability = durability;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.lastSeq = lastSeq;
+        this.durableSeq = lastSeq;
+        Files.createDirectories(dir);
+        this.channel = openGeneration(lastSeq + 1);
+        this.flusher = new Thread(this::flushLoop, "course-wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    public long put(Course course) {
+        return append(PUT, out -> write(() -> CourseCodec.write(out, course)));
+    }
+
+    public long delete(int id) {
+        return append(DELETE, out -> write(() -> out.writeInt(id)));
+    }
+
+    public long deleteAll() {
+        return append(DELETE_ALL, out -> { });
+    }
+
+    /** Sequence number of the last appended record. */
+    public long lastSeq() {
+        lock.lock();
+        try {
+            return lastSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long append(byte op, Consumer<DataOutputStream> body) {
+        long seq;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Write-ahead log is closed");
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("Write-ahead log failed, writes are refused", failure);
+            }
+            scratch.reset();
+            seq = lastSeq + 1;
+            write(() -> {
+                scratchOut.writeLong(seq);
+                scratchOut.writeByte(op);
+            });
+            body.accept(scratchOut);
+            byte[] payload = scratch.toByteArray();
+            crc.reset();
+            crc.update(payload);
+            DataOutputStream out = new DataOutputStream(pending);
+            write(() -> {
+                out.writeInt(payload.length);
+                out.writeInt((int) crc.getValue());
+                out.write(payload);
+            });
+            lastSeq = seq;
+            if (durability == Durability.REQUEST) {
+                work.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return seq;
+    }
+
+    /** The error that failed the log, or {@code null} while it works. */
+    public IOException failure() {
+        lock.lock();
+        try {
+            return failure;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until the record with the given sequence number is on disk.
+     * Does nothing for {@link Durability#ASYNC}.
+     */
+    public void awaitDurable(long seq) {
+        if (durability == Durability.ASYNC) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (durableSeq < seq && failure == null) {
+                synced.awaitUninterruptibly();
+            }
+            if (durableSeq < seq) {
+                throw new UncheckedIOException("Write-ahead log failed", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts a new generation after the last appended record and returns that
+     * record's sequence number. Once a snapshot covering it is written, the
+     * older generations can be deleted with {@link #deleteBefore}.
+     */
+    public long roll() {
+        lock.lock();
+        try {
+            beforeRoll = beforeRoll == null ? pending.toByteArray() : concat(beforeRoll, pending.toByteArray());
+            pending = new ByteArrayOutputStream();
+            rollSeq = lastSeq;
+            work.signal();
+            return lastSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Deletes the generations whose records all have a sequence number up to {@code seq}. */
+    public void deleteBefore(long seq) throws IOException {
+        List<Long> generations = generations(dir);
+        for (int i = 0; i + 1 < generations.size(); i++) {
+            if (generations.get(i + 1) <= seq + 1) {
+                Files.deleteIfExists(generation(dir, generations.get(i)));
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            byte[] rolled;
+            byte[] batch;
+            long rollAt;
+            long upTo;
+            lock.lock();
+            try {
+                if (durability == Durability.ASYNC && !closed && beforeRoll == null) {
+                    work.await(syncIntervalMillis, TimeUnit.MILLISECONDS);
+                }
+                while (!closed && pending.size() == 0 && beforeRoll == null) {
+                    work.await(syncIntervalMillis, TimeUnit.MILLISECONDS);
+                }
+                if (closed && pending.size() == 0 && beforeRoll == null) {
+                    return;
+                }
+                rolled = beforeRoll;
+                rollAt = rollSeq;
+                beforeRoll = null;
+                batch = pending.toByteArray();
+                pending.reset();
+                upTo = lastSeq;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                if (rolled != null) {
+                    writeFully(rolled);
+                    channel.force(false);
+                    channel.close();
+                    channel = openGeneration(rollAt + 1);
+                }
+                writeFully(batch);
+                channel.force(false);
+            } catch (IOException e) {
+                log.error("Write-ahead log in {} failed after seq {}; refusing further writes", dir, durableSeq, e);
+                lock.lock();
+                try {
+                    failure = e;
+                    // none of it can be written any more
+                    pending = new ByteArrayOutputStream();
+                    synced.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+
+            lock.lock();
+            try {
+                durableSeq = upTo;
+                synced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void writeFully(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // a leftover file with this name can only hold records replay could not read
+    private FileChannel openGeneration(long firstSeq) throws IOException {
+        return FileChannel.open(generation(dir, firstSeq), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /** Flushes what is buffered and stops the flusher. */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            work.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Reads every intact record with a sequence number above {@code afterSeq},
+     * oldest first, and returns the last sequence number seen in the log.
+     *
+     * The log ends at the first torn or corrupt record: nothing after it is
+     * applied, since that would leave a gap. Its generation is truncated to
+     * the records before it and any later generations are renamed to
+     * {@code .corrupt}, so the log appended from here on follows on from the
+     * last record replayed.
+     */
+    public static long replay(Path dir, long afterSeq, Consumer<LogEntry> consumer) throws IOException {
+        long last = afterSeq;
+        if (!Files.isDirectory(dir)) {
+            return last;
+        }
+        List<Long> generations = generations(dir);
+        for (int i = 0; i < generations.size(); i++) {
+            Path file = generation(dir, generations.get(i));
+            long size = Files.size(file);
+            long position = 0;
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                DataInputStream data = new DataInputStream(in);
+                while (position < size) {
+                    byte[] payload = readRecord(data, size - position);
+                    if (payload == null) {
+                        break;
+                    }
+                    position += RECORD_HEADER_BYTES + payload.length;
+                    LogEntry entry = LogEntry.decode(payload);
+                    last = Math.max(last, entry.getSeq());
+                    if (entry.getSeq() > afterSeq) {
+                        consumer.accept(entry);
+                    }
+                }
+            }
+            if (position < size) {
+                endAt(file, position, generations.subList(i + 1, generations.size()), dir, last);
+                break;
+            }
+        }
+        return last;
+    }
+
+    // cuts the log after the last intact record of file
+    private static void endAt(Path file, long position, List<Long> later, Path dir, long last) throws IOException {
+        log.warn("Write-ahead log {} has a torn or corrupt record at byte {}; the log ends at seq {}",
+                file, position, last);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+        for (long first : later) {
+            Path skipped = generation(dir, first);
+            Files.move(skipped, skipped.resolveSibling(skipped.getFileName() + ".corrupt"),
+                    StandardCopyOption.REPLACE_EXISTING);
+            log.warn("Write-ahead log {} follows the corrupt record and was not replayed; renamed to .corrupt",
+                    skipped);
+        }
+    }
+
+    // returns null at a torn or corrupt record, including one whose length
+    // is implausible or runs past the available bytes
+    private static byte[] readRecord(DataInputStream in, long available) throws IOException {
+        try {
+            int length = in.readInt();
+            int expected = in.readInt();
+            if (length < 0 || length > MAX_RECORD_BYTES || length > available - RECORD_HEADER_BYTES) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            CRC32 check = new CRC32();
+            check.update(payload);
+            return (int) check.getValue() == expected ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static List<Long> generations(Path dir) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .forEach(name -> generations.add(Long.parseLong(
+                            name.substring(PREFIX.length(), name.length() - SUFFIX.length()))));
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    private static Path generation(Path dir, long firstSeq) {
+        return dir.resolve(String.format("%s%020d%s", PREFIX, firstSeq, SUFFIX));
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] joined = new byte[a.length + b.length];
+        System.arraycopy(a, 0, joined, 0, a.length);
+        System.arraycopy(b, 0, joined, a.length, b.length);
+        return joined;
+    }
+
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    private static void write(IOAction action) {
+        try {
+            action.run();
+        } catch (IOException e) {
+            // only ever writing to in-memory streams
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** One decoded log record. */
+    public static final class LogEntry {
+
+        private final long seq;
+        private final byte op;
+        private final Course course;
+        private final int id;
+
+        private LogEntry(long seq, byte op, Course course, int id) {
+            this.seq = seq;
+            this.op = op;
+            this.course = course;
+            this.id = id;
+        }
+
+        static LogEntry decode(byte[] payload) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            long seq = in.readLong();
+            byte op = in.readByte();
+            switch (op) {
+                case PUT:
+                    return new LogEntry(seq, op, CourseCodec.read(in), 0);
+                case DELETE:
+                    return new LogEntry(seq, op, null, in.readInt());
+                case DELETE_ALL:
+                    return new LogEntry(seq, op, null, 0);
+                default:
+                    throw new IOException("Unknown log operation " + op + " at seq " + seq);
+            }
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public boolean isPut() {
+            return op == PUT;
+        }
+
+        public boolean isDelete() {
+            return op == DELETE;
+        }
+
+        public boolean isDeleteAll() {
+            return op == DELETE_ALL;
+        }
+
+        public Course getCourse() {
+            return course;
+        }
+
+        public int getId() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.replication;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.persistence.CourseCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * One change of the primary's catalog, numbered by its position in the
+ * replication log. Encoded as {@code [seq, op, body]}, the body being the
+ * course for a put and the id for a delete, like a write-ahead log record.
+ */
+public final class Mutation {
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    static final byte DELETE_ALL = 3;
+
+    private final long seq;
+    private final byte op;
+    private final Course course;
+    private final int id;
+
+    private Mutation(long seq, byte op, Course course, int id) {
+        this.seq = seq;
+        this.op = op;
+        this.course = course;
+        this.id = id;
+    }
+
+    static Mutation put(long seq, Course course) {
+        return new Mutation(seq, PUT, course, course.getId());
+    }
+
+    static Mutation delete(long seq, int id) {
+        return new Mutation(seq, DELETE, null, id);
+    }
+
+    static Mutation deleteAll(long seq) {
+        return new Mutation(seq, DELETE_ALL, null, 0);
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeLong(seq);
+        out.writeByte(op);
+        if (op == PUT) {
+            CourseCodec.write(out, course);
+        } else if (op == DELETE) {
+            out.writeInt(id);
+        }
+    }
+
+    static Mutation read(DataInput in) throws IOException {
+        long seq = in.readLong();
+        byte op = in.readByte();
+        switch (op) {
+            case PUT:
+                return put(seq, CourseCodec.read(in));
+            case DELETE:
+                return delete(seq, in.readInt());
+            case DELETE_ALL:
+                return deleteAll(seq);
+            default:
+                throw new IOException("Unknown replicated operation " + op + " at seq " + seq);
+        }
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public boolean isPut() {
+        return op == PUT;
+    }
+
+    public boolean isDelete() {
+        return op == DELETE;
+    }
+
+    public boolean isDeleteAll() {
+        return op == DELETE_ALL;
+    }
+
+    public Course getCourse() {
+        return course;
+    }
+
+    public int getId() {
+        return id;
+    }
+}
@@ -0,0 +1,223 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.replication;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.repository.CourseRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a replica's catalog in step with its primary, on a thread of its own.
+ *
+ * The replica first copies the primary's whole catalog, then long-polls the
+ * primary's log for the mutations after the copy's position and applies each
+ * batch as it arrives (see {@link CourseRepository#replicate}). When the
+ * primary no longer has the mutations it needs, or has restarted, it copies
+ * the catalog again; until then it keeps serving what it has. A failed
+ * request is retried after a second.
+ *
+ * Lag is reported as the changes the primary had at the last poll that are
+ * not applied yet, and as the time since the replica last had every change
+ * the primary had, which is 0 while it is caught up and waiting for more.
+ */
+@Component
+public class ReplicaFollower {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaFollower.class);
+
+    private static final long RETRY_MILLIS = 1000;
+
+    private final ReplicationLog replication;
+    private final CourseRepository repository;
+    private final String primary;
+    private final int batchSize;
+    private final long pollMillis;
+    private final Duration timeout;
+    private final HttpClient client;
+
+    private volatile boolean running;
+    private Thread thread;
+    // set when the primary cannot resume the log at the replica's position
+    private boolean copyNeeded = true;
+
+    private volatile long primarySeq;
+    private volatile boolean caughtUp;
+    private volatile long caughtUpAtMillis = System.currentTimeMillis();
+    private volatile boolean connected;
+    private volatile String lastError;
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong copies = new AtomicLong();
+
+    public ReplicaFollower(ReplicationLog replication,
+                           CourseRepository repository,
+                           @Value("${courses.replication.primary:}") String primary,
+                           @Value("${courses.replication.batch-size:1000}") int batchSize,
+                           @Value("${courses.replication.poll-ms:10000}") long pollMillis,
+                           @Value("${courses.replication.timeout-ms:5000}") long timeoutMillis) {
+        if (replication.isReplica() && primary.isBlank()) {
+            throw new IllegalArgumentException("A replica needs courses.replication.primary");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("courses.replication.batch-size must be positive");
+        }
+        if (pollMillis < 0) {
+            throw new IllegalArgumentException("courses.replication.poll-ms must not be negative");
+        }
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("courses.replication.timeout-ms must be positive");
+        }
+        this.replication = replication;
+        this.repository = repository;
+        this.primary = primary.strip().replaceAll("/+$", "");
+        this.batchSize = batchSize;
+        this.pollMillis = pollMillis;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return replication.isReplica();
+    }
+
+    /** Whether the replica has copied the primary's catalog and can serve reads. */
+    public boolean isReady() {
+        return replication.epoch() != 0;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::follow, "course-replica");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    private void follow() {
+        while (running) {
+            try {
+                if (copyNeeded) {
+                    copy();
+                }
+                long start = System.currentTimeMillis();
+                ReplicationLog.Batch batch = poll();
+                if (batch == null) {
+                    log.info("Primary {} cannot resume its log after seq {}; copying its catalog again",
+                            primary, replication.lastSeq());
+                    copyNeeded = true;
+                    continue;
+                }
+                repository.replicate(batch.getMutations());
+                applied.addAndGet(batch.getMutations().size());
+                primarySeq = batch.getLastSeq();
+                connected = true;
+                caughtUp = replication.lastSeq() >= batch.getLastSeq();
+                if (caughtUp) {
+                    caughtUpAtMillis = start;
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                connected = false;
+                lastError = Instant.now() + " " + e;
+                log.warn("Replication from {} failed: {}", primary, e.toString());
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void copy() throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        ReplicationLog.Snapshot snapshot;
+        try (DataInputStream in = get("/api/courses/_replication/snapshot", null)) {
+            snapshot = ReplicationLog.Snapshot.read(in);
+        }
+        repository.copy(snapshot);
+        copyNeeded = false;
+        copies.incrementAndGet();
+        primarySeq = snapshot.getSeq();
+        connected = true;
+        caughtUp = true;
+        caughtUpAtMillis = start;
+        log.info("Copied {} courses from {} at seq {} in {} ms", snapshot.getCourses().size(), primary,
+                snapshot.getSeq(), System.currentTimeMillis() - start);
+    }
+
+    // the next mutations, waiting up to the poll time for some; null when the log cannot be resumed
+    private ReplicationLog.Batch poll() throws IOException, InterruptedException {
+        String path = "/api/courses/_replication/log?epoch=" + replication.epoch() + "&after=" + replication.lastSeq()
+                + "&max=" + batchSize + "&waitMs=" + pollMillis;
+        try (DataInputStream in = get(path, timeout.plusMillis(pollMillis))) {
+            return in == null ? null : ReplicationLog.Batch.read(in);
+        }
+    }
+
+    // the body of a 200 response, or null for 410 Gone
+    private DataInputStream get(String path, Duration requestTimeout) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(primary + path)).GET();
+        if (requestTimeout != null) {
+            request.timeout(requestTimeout);
+        }
+        HttpResponse<InputStream> response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        int status = response.statusCode();
+        if (status == 200) {
+            return new DataInputStream(new BufferedInputStream(response.body()));
+        }
+        response.body().close();
+        if (status == 410) {
+            return null;
+        }
+        throw new IOException("Primary " + primary + " answered " + status + " to " + path);
+    }
+
+    /** Position, lag and counters of the replica. */
+    public Map<String, Object> stats() {
+        long appliedSeq = replication.lastSeq();
+        boolean current = caughtUp && connected;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("primary", primary);
+        stats.put("connected", connected);
+        stats.put("primarySeq", primarySeq);
+        stats.put("appliedSeq", appliedSeq);
+        stats.put("lagOps", Math.max(0, primarySeq - appliedSeq));
+        stats.put("lagMillis", current ? 0 : System.currentTimeMillis() - caughtUpAtMillis);
+        stats.put("applied", applied.get());
+        stats.put("copies", copies.get());
+        stats.put("lastError", lastError);
+        return stats;
+    }
+}
@@ -0,0 +1,82 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.replication;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.repository.CourseRepository;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Set;
+
+/**
+ * Applies replication to the course endpoints.
+ *
+ * A replica answers writes with 403 Forbidden, since only the primary takes
+ * them, and every request with 503 Service Unavailable until it has copied
+ * the primary's catalog. A read with a minSeq parameter, on a primary or a
+ * replica, first waits until the node's queries see that log position, which
+ * a write on the primary returns in the {@value #SEQ_HEADER} header, and is
+ * answered 503 if the position is not reached in time. Reads return the
+ * position their results include at least in the same header.
+ */
+public class ReplicationInterceptor implements HandlerInterceptor {
+
+    public static final String SEQ_HEADER = "X-Course-Seq";
+
+    private static final Set<String> WRITES = Set.of(
+            "POST /api/courses",
+            "POST /api/courses/_bulk",
+            "PUT /api/courses/{id}",
+            "DELETE /api/courses/{id}",
+            "DELETE /api/courses");
+
+    private final CourseRepository repository;
+    private final ReplicaFollower follower;
+    private final long minSeqTimeoutMillis;
+
+    public ReplicationInterceptor(CourseRepository repository, ReplicaFollower follower, long minSeqTimeoutMillis) {
+        this.repository = repository;
+        this.follower = follower;
+        this.minSeqTimeoutMillis = minSeqTimeoutMillis;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws InterruptedException {
+        // an async request was checked on its first dispatch
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        if (follower.isEnabled()) {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (pattern instanceof String p && WRITES.contains(request.getMethod() + " " + p)) {
+                response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+                return false;
+            }
+            if (!follower.isReady()) {
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                return false;
+            }
+        }
+        if (!"GET".equals(request.getMethod())) {
+            return true;
+        }
+        String minSeq = request.getParameter("minSeq");
+        if (minSeq != null) {
+            long seq;
+            try {
+                seq = Long.parseLong(minSeq);
+            } catch (NumberFormatException e) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                return false;
+            }
+            if (!repository.awaitVisible(seq, minSeqTimeoutMillis)) {
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                return false;
+            }
+        }
+        response.setHeader(SEQ_HEADER, Long.toString(repository.visibleSeq()));
+        return true;
+    }
+}
@@ -0,0 +1,346 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.replication;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.persistence.CourseCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The ordered log of catalog changes that replicas follow, and the position
+ * in it a node's catalog reflects.
+ *
+ * On a primary the repository appends every put and delete under its write
+ * lock, so the sequence numbers follow the order the changes are applied in.
+ * The latest courses.replication.log-size mutations are kept in a ring in
+ * memory, referencing the stored courses rather than copies; a replica that
+ * falls further behind, or that followed an earlier run of the primary (each
+ * run has a random epoch), starts over from a {@link Snapshot}. Replacing the
+ * whole catalog empties the log, so replicas start over then too.
+ *
+ * On a replica the log holds no mutations: it records how far the applied
+ * changes go, in the primary's sequence numbers.
+ */
+@Component
+public class ReplicationLog {
+
+    private final ReplicationRole role;
+    private final int capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    // guarded by lock
+    private final Mutation[] ring;
+    private long epoch;
+    private long lastSeq;
+    // no mutation up to this one is in the ring; a reader must be at least this far
+    private long horizon;
+
+    public ReplicationLog(@Value("${courses.replication.role:NONE}") ReplicationRole role,
+                          @Value("${courses.replication.log-size:100000}") int capacity) {
+        if (role == ReplicationRole.PRIMARY && capacity <= 0) {
+            throw new IllegalArgumentException("courses.replication.log-size must be positive");
+        }
+        this.role = role;
+        this.capacity = capacity;
+        this.ring = role == ReplicationRole.PRIMARY ? new Mutation[capacity] : null;
+        // never 0, which a replica sends before it has copied anything
+        this.epoch = role == ReplicationRole.PRIMARY ? ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE) : 0;
+    }
+
+    public boolean isEnabled() {
+        return role != ReplicationRole.NONE;
+    }
+
+    public boolean isPrimary() {
+        return role == ReplicationRole.PRIMARY;
+    }
+
+    public boolean isReplica() {
+        return role == ReplicationRole.REPLICA;
+    }
+
+    public ReplicationRole getRole() {
+        return role;
+    }
+
+    /** The primary run the positions belong to; 0 on a replica that has not copied a catalog yet. */
+    public long epoch() {
+        lock.lock();
+        try {
+            return epoch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Position of the last change appended (primary) or applied (replica). */
+    public long lastSeq() {
+        lock.lock();
+        try {
+            return lastSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Appends a stored course; call under the repository write lock. */
+    public long put(Course course) {
+        lock.lock();
+        try {
+            return append(Mutation.put(lastSeq + 1, course));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long delete(int id) {
+        lock.lock();
+        try {
+            return append(Mutation.delete(lastSeq + 1, id));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long deleteAll() {
+        lock.lock();
+        try {
+            return append(Mutation.deleteAll(lastSeq + 1));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // call holding lock
+    private long append(Mutation mutation) {
+        if (role != ReplicationRole.PRIMARY) {
+            throw new IllegalStateException("Only a primary appends to the replication log");
+        }
+        ring[(int) (mutation.getSeq() % capacity)] = mutation;
+        lastSeq = mutation.getSeq();
+        appended.signalAll();
+        return lastSeq;
+    }
+
+    /**
+     * Drops every mutation on the primary when the whole catalog is replaced,
+     * so replicas copy the new one, and returns the position it is at.
+     */
+    public long reset() {
+        lock.lock();
+        try {
+            if (role == ReplicationRole.PRIMARY) {
+                lastSeq++;
+                horizon = lastSeq;
+                appended.signalAll();
+            }
+            return lastSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Records on a replica that the changes up to {@code seq} of the primary are applied. */
+    public void applied(long seq) {
+        lock.lock();
+        try {
+            lastSeq = Math.max(lastSeq, seq);
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Records on a replica that its catalog is now a copy of the primary's at {@code seq}. */
+    public void copied(long epoch, long seq) {
+        lock.lock();
+        try {
+            this.epoch = epoch;
+            lastSeq = seq;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the position reaches {@code seq}, for at most the given
+     * time. Returns whether it did.
+     */
+    public boolean awaitSeq(long seq, long timeoutNanos) throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = timeoutNanos;
+            while (lastSeq < seq) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = appended.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code max} mutations after {@code afterSeq}, waiting up
+     * to {@code waitMillis} for one to be appended if there are none yet.
+     * Returns {@code null} when the reader has to start over from a snapshot:
+     * it followed another epoch, or the mutations it needs are no longer kept.
+     */
+    public Batch read(long epoch, long afterSeq, int max, long waitMillis) throws InterruptedException {
+        if (max <= 0) {
+            throw new IllegalArgumentException("max must be positive");
+        }
+        lock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(waitMillis);
+            while (resumable(epoch, afterSeq) && lastSeq == afterSeq && remaining > 0) {
+                remaining = appended.awaitNanos(remaining);
+            }
+            if (!resumable(epoch, afterSeq)) {
+                return null;
+            }
+            int count = (int) Math.min(max, lastSeq - afterSeq);
+            List<Mutation> mutations = new ArrayList<>(count);
+            for (long seq = afterSeq + 1; seq <= afterSeq + count; seq++) {
+                mutations.add(ring[(int) (seq % capacity)]);
+            }
+            return new Batch(this.epoch, lastSeq, mutations);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // call holding lock
+    private boolean resumable(long epoch, long afterSeq) {
+        return role == ReplicationRole.PRIMARY && epoch == this.epoch && afterSeq <= lastSeq
+                && afterSeq >= Math.max(horizon, lastSeq - capacity);
+    }
+
+    /** Role and position, and on a primary the oldest position a replica can resume after. */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            stats.put("role", role.name());
+            stats.put("epoch", epoch);
+            stats.put("lastSeq", lastSeq);
+            if (role == ReplicationRole.PRIMARY) {
+                stats.put("resumableAfter", Math.max(horizon, lastSeq - capacity));
+                stats.put("logSize", capacity);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return stats;
+    }
+
+    /** Mutations read from a primary, with the primary's position when they were read. */
+    public static final class Batch {
+
+        private final long epoch;
+        private final long lastSeq;
+        private final List<Mutation> mutations;
+
+        Batch(long epoch, long lastSeq, List<Mutation> mutations) {
+            this.epoch = epoch;
+            this.lastSeq = lastSeq;
+            this.mutations = mutations;
+        }
+
+        public long getEpoch() {
+            return epoch;
+        }
+
+        /** The primary's position; the replica is caught up once it has applied this far. */
+        public long getLastSeq() {
+            return lastSeq;
+        }
+
+        public List<Mutation> getMutations() {
+            return mutations;
+        }
+
+        /** Encodes the batch as {@code [epoch, lastSeq, count, mutation...]}. */
+        public void write(DataOutput out) throws IOException {
+            out.writeLong(epoch);
+            out.writeLong(lastSeq);
+            out.writeInt(mutations.size());
+            for (Mutation mutation : mutations) {
+                mutation.write(out);
+            }
+        }
+
+        public static Batch read(DataInput in) throws IOException {
+            long epoch = in.readLong();
+            long lastSeq = in.readLong();
+            int count = in.readInt();
+            List<Mutation> mutations = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                mutations.add(Mutation.read(in));
+            }
+            return new Batch(epoch, lastSeq, mutations);
+        }
+    }
+
+    /** The primary's whole catalog as of a position, for a replica to start from. */
+    public static final class Snapshot {
+
+        private final long epoch;
+        private final long seq;
+        private final List<Course> courses;
+
+        public Snapshot(long epoch, long seq, List<Course> courses) {
+            this.epoch = epoch;
+            this.seq = seq;
+            this.courses = courses;
+        }
+
+        public long getEpoch() {
+            return epoch;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public List<Course> getCourses() {
+            return courses;
+        }
+
+        /** Encodes the snapshot as {@code [epoch, seq, count, course...]}. */
+        public void write(DataOutput out) throws IOException {
+            out.writeLong(epoch);
+            out.writeLong(seq);
+            out.writeInt(courses.size());
+            for (Course course : courses) {
+                CourseCodec.write(out, course);
+            }
+        }
+
+        public static Snapshot read(DataInput in) throws IOException {
+            long epoch = in.readLong();
+            long seq = in.readLong();
+            int count = in.readInt();
+            List<Course> courses = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                courses.add(CourseCodec.read(in));
+            }
+            return new Snapshot(epoch, seq, courses);
+        }
+    }
+}
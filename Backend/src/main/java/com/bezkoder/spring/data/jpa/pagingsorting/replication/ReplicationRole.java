@@ -0,0 +1,22 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.replication;
+
+/**
+ * The part a node plays in replicating its catalog.
+ */
+public enum ReplicationRole {
+
+    /** The node neither ships nor follows a log. */
+    NONE,
+
+    /**
+     * The node takes writes and keeps its latest mutations in a
+     * {@link ReplicationLog} that replicas read.
+     */
+    PRIMARY,
+
+    /**
+     * The node copies the catalog of courses.replication.primary, applies
+     * the primary's log as it arrives and serves reads only.
+     */
+    REPLICA
+}
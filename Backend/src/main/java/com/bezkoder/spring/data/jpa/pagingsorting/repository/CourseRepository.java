@@ -1,21 +1,80 @@
 package com.bezkoder.spring.data.jpa.pagingsorting.repository;
 
+import com.bezkoder.spring.data.jpa.pagingsorting.bulk.BulkAction;
+import com.bezkoder.spring.data.jpa.pagingsorting.cache.CourseJsonCache;
+import com.bezkoder.spring.data.jpa.pagingsorting.cache.QueryCache;
+import com.bezkoder.spring.data.jpa.pagingsorting.cluster.ShardRouter;
+import com.bezkoder.spring.data.jpa.pagingsorting.bulk.BulkItemResult;
+import com.bezkoder.spring.data.jpa.pagingsorting.bulk.CourseLoader;
+import com.bezkoder.spring.data.jpa.pagingsorting.index.Analyzer;
+import com.bezkoder.spring.data.jpa.pagingsorting.index.IdBitmap;
+import com.bezkoder.spring.data.jpa.pagingsorting.index.InvertedIndex;
+import com.bezkoder.spring.data.jpa.pagingsorting.index.ScoreDoc;
+import com.bezkoder.spring.data.jpa.pagingsorting.index.SortIndex;
+import com.bezkoder.spring.data.jpa.pagingsorting.index.SuggestIndex;
+import com.bezkoder.spring.data.jpa.pagingsorting.index.Suggestion;
+import com.bezkoder.spring.data.jpa.pagingsorting.index.TermIndex;
+import com.bezkoder.spring.data.jpa.pagingsorting.metrics.QueryPhase;
+import com.bezkoder.spring.data.jpa.pagingsorting.metrics.QueryTrace;
 import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.bezkoder.spring.data.jpa.pagingsorting.persistence.CoursePersistence;
+import com.bezkoder.spring.data.jpa.pagingsorting.replication.Mutation;
+import com.bezkoder.spring.data.jpa.pagingsorting.replication.ReplicationLog;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.Aggregation;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.CourseQuery;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.QueryExecutor;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.ScoredPage;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.SearchAfter;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.SlotTopKCollector;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.TopKCollector;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.ColumnSegment;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.CourseColumns;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.CourseSnapshot;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.CourseStore;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.IntColumn;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.SlotComparator;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.StorageEngine;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Repository;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger; 
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 
 import org.springframework.data.domain.Page;
@@ -27,186 +86,1563 @@ import org.springframework.data.domain.Sort;
 @Repository
 public class CourseRepository {
 
-    private List<Course> courses;
+    private static final Logger log = LoggerFactory.getLogger(CourseRepository.class);
+
+    // use a bounded heap when the requested window is at most 1/8 of the candidates
+    private static final int PARTIAL_SORT_RATIO = 8;
+
+    // optimistic runs of a query before it waits for the running refresh
+    private static final int CONSISTENT_READ_ATTEMPTS = 3;
+
+    // marks a buffered delete
+    private static final Course DELETED = new Course();
+
+    // Readers take store.snapshot() once per call and never lock. Writers
+    // serialize on writeLock, log their change and buffer it in pending; a
+    // refresh publishes the buffer to the store and the indexes under
+    // refreshLock, so listings and searches trail writes by at most the
+    // refresh interval. Lock order is refreshLock, then writeLock. With
+    // persistence on, a logged write waits in unsynced until its fsync, so
+    // neither queries nor replicas see a write the log could still lose.
+    //
+    // A query that reads the indexes as well as the snapshot runs through
+    // consistently(): publishing is odd while a refresh changes the store
+    // and the indexes, and a query that saw it move is run again, so it never
+    // pairs the snapshot of one refresh with the indexes of another.
+    private final CourseStore store;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile Map<Integer, Course> pending = new ConcurrentHashMap<>();
+    // the buffer being published by a running refresh
+    private volatile Map<Integer, Course> refreshing = Map.of();
+    // logged writes waiting for their fsync, in log order, and the newest of
+    // each id; guarded by writeLock
+    private final ArrayDeque<Unsynced> unsynced = new ArrayDeque<>();
+    private final Map<Integer, Unsynced> unsyncedById = new HashMap<>();
+    // 0 publishes each write before it returns
+    private final long refreshIntervalMillis;
+    // runs scheduled refreshes and index merges
+    private final ScheduledExecutorService background = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "course-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean mergeScheduled = new AtomicBoolean();
+    // bumped before and after every change to the store and the indexes
+    private final AtomicLong publishing = new AtomicLong();
+    // bumped once a change is visible to queries, after the indexes are updated
+    private final AtomicLong generation = new AtomicLong();
+    // results of the hot list queries; null when caching is off
+    private final QueryCache queryCache;
+    // encoded JSON of listed courses, dropped for the ids a refresh changes
+    private final CourseJsonCache jsonCache;
+    // scans large candidate sets in parallel partitions
+    private final QueryExecutor queryExecutor;
     private final ObjectMapper objectMapper;
-    private AtomicInteger idCounter = new AtomicInteger(0);
+    private AtomicInteger idCounter = new AtomicInteger(1);
+    private final InvertedIndex invertedIndex = new InvertedIndex(new Analyzer());
+    // title words for completions
+    private final SuggestIndex suggestIndex = new SuggestIndex(invertedIndex.getAnalyzer());
+    // the columnar and mapped engines scan their columns instead and keep no sort index
+    private final boolean columnar;
+    // checkpoints to mapped segments instead of snapshots
+    private final boolean mapped;
+    private final SortIndex sortIndex = new SortIndex();
+    private final TermIndex termIndex = new TermIndex();
+    // write-ahead log and snapshots; null when persistence is off
+    private final CoursePersistence persistence;
+    // JSON array or NDJSON file to load at startup instead of sample-courses.json
+    private final String loadPath;
+    // the shard this node holds; loads keep only its courses and new ids route to it
+    private final ShardRouter shard;
+    // log position of the changes, on a primary or a replica; null when replication is off
+    private final ReplicationLog replication;
+    // position of the last change visible to queries; set when a refresh publishes
+    // the buffer drained at refreshingSeq
+    private volatile long visibleSeq;
+    private long refreshingSeq;
 
     public CourseRepository() {
+        this(StorageEngine.OBJECTS);
+    }
+
+    public CourseRepository(StorageEngine engine) {
+        this(engine, null, null, 0, null, null, null, null, null);
+    }
+
+    @Autowired
+    public CourseRepository(@Value("${courses.storage-engine:OBJECTS}") StorageEngine engine,
+                            CoursePersistence persistence,
+                            @Value("${courses.load-path:}") String loadPath,
+                            @Value("${courses.refresh-interval-ms:0}") long refreshIntervalMillis,
+                            QueryCache queryCache,
+                            CourseJsonCache jsonCache,
+                            QueryExecutor queryExecutor,
+                            ShardRouter shard,
+                            ReplicationLog replication) {
+        if (refreshIntervalMillis < 0) {
+            throw new IllegalArgumentException("courses.refresh-interval-ms must not be negative");
+        }
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.loadPath = loadPath == null || loadPath.isBlank() ? null : loadPath;
+        this.store = new CourseStore(engine);
+        this.columnar = engine != StorageEngine.OBJECTS;
+        this.mapped = engine == StorageEngine.MAPPED;
+        this.persistence = persistence != null && persistence.isEnabled() ? persistence : null;
+        if (mapped && this.persistence == null) {
+            throw new IllegalArgumentException("courses.storage-engine=MAPPED needs courses.data-dir");
+        }
+        this.queryCache = queryCache != null && queryCache.isEnabled() ? queryCache : null;
+        this.jsonCache = jsonCache != null && jsonCache.isEnabled() ? jsonCache : null;
+        this.queryExecutor = queryExecutor != null ? queryExecutor : QueryExecutor.sequential();
+        this.shard = shard != null ? shard : ShardRouter.single();
+        this.replication = replication != null && replication.isEnabled() ? replication : null;
+        if (this.replication != null && this.replication.isReplica() && this.persistence != null) {
+            throw new IllegalArgumentException(
+                    "A replica copies its catalog from the primary; leave courses.data-dir empty");
+        }
         this.objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
     }
 
+    /**
+     * Loads the catalog: from the data directory when persistence is on and
+     * it holds a snapshot or log, otherwise from courses.load-path (a JSON
+     * array or NDJSON file) or sample-courses.json, which is then snapshotted
+     * so later restarts start from the data directory. The mapped engine maps
+     * its newest segment instead of reading the courses. A replica starts
+     * empty and copies the primary's catalog (see {@link #copy}).
+     */
     @PostConstruct
     public void init() {
+        List<Course> courses = null;
+        CoursePersistence.SegmentRecovery segment = null;
+        if (persistence != null) {
+            try {
+                segment = mapped ? persistence.recoverSegment(store.dictionary()) : null;
+                courses = segment == null ? persistence.recover() : null;
+            } catch (IOException e) {
+                // refuse to start rather than serve (and then overwrite) a partial catalog
+                throw new UncheckedIOException("Failed to recover courses", e);
+            }
+        }
+        if (replication != null && replication.isReplica()) {
+            reindex(new ArrayList<>());
+        } else if (segment != null) {
+            reindex(segment::applyTo);
+        } else if (courses != null) {
+            reindex(courses);
+            if (mapped) {
+                // recovered from a snapshot: move the catalog off the heap now
+                checkpoint();
+            }
+        } else {
+            String source = loadPath != null ? loadPath : "sample-courses.json";
+            try (InputStream inputStream = loadPath != null
+                    ? Files.newInputStream(Path.of(loadPath))
+                    : new ClassPathResource("sample-courses.json").getInputStream()) {
+                load(inputStream, source);
+            } catch (IOException e) {
+                log.error("Failed to load courses from {}", source, e);
+                reindex(new ArrayList<>());
+                checkpoint();
+            }
+        }
+
+        if (persistence != null) {
+            persistence.scheduleSnapshots(this::checkpoint);
+        }
+        if (refreshIntervalMillis > 0) {
+            background.scheduleWithFixedDelay(() -> {
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    log.error("Refresh failed", e);
+                }
+            }, refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Replaces the whole catalog with the courses streamed from a JSON array
+     * or NDJSON source and reports load throughput. Courses are put into the
+     * store chunk by chunk as they are parsed and the indexes are then built
+     * from the store, so the source is never held as one list.
+     * A shard node keeps only the courses whose ids route to it, so every
+     * shard of a cluster can load the same file.
+     */
+    public void load(InputStream inputStream, String source) throws IOException {
+        long start = System.nanoTime();
+        CourseLoader loader = new CourseLoader(objectMapper);
+        long[] parsed = new long[1];
         try {
-            ClassPathResource resource = new ClassPathResource("sample-courses.json");
-            try (InputStream inputStream = resource.getInputStream()) {
-                this.courses = objectMapper.readValue(inputStream, new TypeReference<List<Course>>() {});
-                System.out.println("Loaded " + courses.size() + " courses from sample-courses.json");
+            reindex(s -> {
+                s.clear();
+                try {
+                    loader.read(inputStream, chunk -> {
+                        Map<Integer, Course> courses = new LinkedHashMap<>();
+                        for (Course course : chunk) {
+                            if (!shard.isEnabled() || shard.owns(course.getId())) {
+                                courses.put(course.getId(), course);
+                            }
+                        }
+                        s.apply(courses);
+                    });
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                parsed[0] = System.nanoTime();
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        checkpoint();
+        long indexed = System.nanoTime();
+        int count = store.snapshot().size();
+        double seconds = Math.max(indexed - start, 1) / 1e9;
+        log.info("Loaded {} courses from {} in {} ms (parse {} ms, index {} ms, {} courses/s)",
+                count, source, (indexed - start) / 1_000_000, (parsed[0] - start) / 1_000_000,
+                (indexed - parsed[0]) / 1_000_000, Math.round(count / seconds));
+    }
 
+    /**
+     * Replaces the whole catalog, keeping the courses' ids, and builds the
+     * indexes in bulk. With persistence on, it is durable once this returns.
+     */
+    public void replaceAll(List<Course> courses) {
+        reindex(courses);
+        checkpoint();
+    }
 
-                this.courses.stream().mapToInt(Course::getId).max().ifPresent(maxId -> idCounter.set(maxId + 1));
+    /**
+     * Writes a snapshot of the catalog and drops the log records it covers.
+     * The log is rolled, the writes it held are made durable and buffered,
+     * and the buffer is published before the snapshot is taken, so the
+     * snapshot holds every logged write; it is then written while writes go on. The mapped
+     * engine writes a segment instead and then reads the catalog from it.
+     */
+    public void checkpoint() {
+        if (persistence == null) {
+            return;
+        }
+        long seq;
+        CourseSnapshot snapshot;
+        refreshLock.lock();
+        try {
+            writeLock.lock();
+            try {
+                seq = persistence.startSnapshot();
+            } finally {
+                writeLock.unlock();
+            }
+            // the snapshot must hold every write the rolled log did; writes
+            // logged after it may be in the snapshot too, replaying them is harmless
+            persistence.awaitDurable(seq);
+            promote(seq);
+            writeLock.lock();
+            try {
+                drainPending();
+            } finally {
+                writeLock.unlock();
+            }
+            publishRefreshing();
+            snapshot = store.snapshot();
+        } finally {
+            refreshLock.unlock();
+        }
+        if (mapped) {
+            ColumnSegment segment = persistence.writeSegment(seq, snapshot);
+            refreshLock.lock();
+            try {
+                // if writes were published meanwhile, their snapshot keeps
+                // its heap pages until the next checkpoint
+                store.remap(segment, snapshot);
+            } finally {
+                refreshLock.unlock();
+            }
+        } else {
+            persistence.writeSnapshot(seq, snapshot.asList());
+        }
+    }
+
+    /**
+     * Publishes every buffered write to the store and the indexes, making it
+     * visible to listings and searches, then schedules index merges. Runs
+     * every refresh interval, and after each write when the interval is 0.
+     */
+    public void refresh() {
+        refreshLock.lock();
+        try {
+            writeLock.lock();
+            try {
+                drainPending();
+            } finally {
+                writeLock.unlock();
+            }
+            publishRefreshing();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
 
+    // call holding both locks
+    private void drainPending() {
+        if (!pending.isEmpty()) {
+            refreshing = pending;
+            pending = new ConcurrentHashMap<>();
+        }
+        if (replication != null) {
+            refreshingSeq = replication.lastSeq();
+        }
+    }
+
+    // call holding refreshLock only, so writers keep buffering meanwhile
+    private void publishRefreshing() {
+        Map<Integer, Course> buffered = refreshing;
+        if (buffered.isEmpty()) {
+            visibleSeq = refreshingSeq;
+            return;
+        }
+        Map<Integer, Course> changes = new HashMap<>(buffered.size());
+        buffered.forEach((id, course) -> changes.put(id, course == DELETED ? null : course));
+        publish(() -> applyChanges(store.snapshot(), changes));
+        refreshing = Map.of();
+        generation.incrementAndGet();
+        visibleSeq = refreshingSeq;
+        scheduleMerge();
+    }
+
+    // makes a change to the store and the indexes; call holding refreshLock
+    private void publish(Runnable change) {
+        publishing.incrementAndGet();
+        try {
+            change.run();
+        } finally {
+            publishing.incrementAndGet();
+        }
+    }
+
+    /**
+     * Runs a query that reads the indexes as well as the store against a
+     * single publication of both. The query runs without locks and is run
+     * again if a refresh published meanwhile; after a few such runs it waits
+     * for the refresh and runs holding refreshLock.
+     */
+    private <T> T consistently(Supplier<T> query) {
+        for (int attempt = 0; attempt < CONSISTENT_READ_ATTEMPTS; attempt++) {
+            long before = publishing.get();
+            if ((before & 1) == 0) {
+                T result = query.get();
+                if (publishing.get() == before) {
+                    return result;
+                }
+            }
+        }
+        refreshLock.lock();
+        try {
+            return query.get();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void scheduleMerge() {
+        if (background.isShutdown() || !mergeScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        background.execute(() -> {
+            try {
+                while (invertedIndex.maybeMerge()) {
+                    // merge until the policy is satisfied
+                }
+            } catch (RuntimeException e) {
+                log.error("Index merge failed", e);
+            } finally {
+                mergeScheduled.set(false);
+            }
+        });
+    }
+
+    // a writer publishes its own change before returning unless refreshes are scheduled
+    private void refreshIfImmediate() {
+        if (refreshIntervalMillis == 0) {
+            refresh();
+        }
+    }
+
+    /**
+     * Returns the latest version of a course, buffered writes included, or
+     * {@code null}. The reads go from the newest buffer to the store, the
+     * reverse of the order a refresh hands a write along, so a write is never
+     * missed while it moves.
+     */
+    private Course latest(int id) {
+        Course course = pending.get(id);
+        if (course == null) {
+            course = refreshing.get(id);
+        }
+        if (course == null) {
+            return store.snapshot().findById(id);
+        }
+        return course == DELETED ? null : course;
+    }
+
+    // the latest version of a course as writers see it, logged writes that
+    // wait for their fsync included; call holding writeLock
+    private Course current(int id) {
+        Unsynced write = unsyncedById.get(id);
+        if (write == null) {
+            return latest(id);
+        }
+        return write.course == DELETED ? null : write.course;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        background.shutdown();
+        if (persistence != null) {
+            try {
+                checkpoint();
+            } finally {
+                persistence.close();
+            }
+        } else {
+            refresh();
+        }
+    }
+
+    private void reindex(List<Course> courses) {
+        reindex(s -> s.replaceAll(courses));
+    }
+
+    // loads the store, then rebuilds every index from it; on a primary the
+    // replacement starts the replication log over
+    private void reindex(Consumer<CourseStore> load) {
+        refreshLock.lock();
+        writeLock.lock();
+        publishing.incrementAndGet();
+        try {
+            pending = new ConcurrentHashMap<>();
+            unsynced.clear();
+            unsyncedById.clear();
+            load.accept(store);
+            CourseSnapshot snapshot = store.snapshot();
+            IntColumn ids = snapshot.columns().id();
+            int maxId = 0;
+            for (int slot = 0; slot < snapshot.size(); slot++) {
+                maxId = slot == 0 ? ids.get(slot) : Math.max(maxId, ids.get(slot));
+            }
+            idCounter.set(maxId + 1);
+            invertedIndex.clear();
+            sortIndex.clear();
+            termIndex.clear();
+            suggestIndex.clear();
+            List<Course> stored = snapshot.asList();
+            invertedIndex.addAll(stored);
+            suggestIndex.addAll(stored);
+            if (!columnar) {
+                sortIndex.addAll(stored);
+            }
+            termIndex.addAll(stored);
+            generation.incrementAndGet();
+            if (replication != null) {
+                visibleSeq = replication.reset();
+            }
+            if (jsonCache != null) {
+                jsonCache.clear();
             }
-        } catch (IOException e) {
-            System.err.println("Failed to load courses from sample-courses.json: " + e.getMessage());
-            this.courses = new ArrayList<>();
+        } finally {
+            publishing.incrementAndGet();
+            writeLock.unlock();
+            refreshLock.unlock();
         }
     }
 
+    /** Returns a read-only view of every course as of this call. */
     public List<Course> findAll() {
-        return new ArrayList<>(courses); 
+        return store.snapshot().asList();
     }
 
+    /** Looks a course up by id, seeing writes that are not refreshed yet. */
     public Optional<Course> findById(int id) { 
-        return courses.stream()
-                      .filter(course -> course.getId() == id)
-                      .findFirst();
+        return Optional.ofNullable(latest(id));
     }
 
     public List<Course> findByTitleContaining(String title, Sort sort) {
-        List<Course> filteredCourses = courses.stream()
-                .filter(course -> course.getTitle().toLowerCase().contains(title.toLowerCase()))
-                .collect(Collectors.toList());
-        return applySort(filteredCourses, sort);
+        List<Course> courses;
+        if (queryCache == null) {
+            courses = sortedByTitle(title, sort);
+        } else {
+            String key = "title|" + normalizeTitle(title) + '|' + sort;
+            courses = queryCache.get(key, generation.get(),
+                    () -> Collections.unmodifiableList(sortedByTitle(title, sort)), List::size);
+        }
+        QueryTrace.current().documents(courses.size(), courses.size());
+        return courses;
     }
 
-    public Page<Course> findByType(String type, Pageable pageable) {
-        List<Course> filteredCourses = courses.stream()
-                .filter(course -> course.getType().equalsIgnoreCase(type))
-                .collect(Collectors.toList());
+    private List<Course> sortedByTitle(String title, Sort sort) {
+        QueryTrace trace = QueryTrace.current();
+        trace.mark();
+        List<Course> matches = consistently(() -> matchTitle(title));
+        trace.lap(QueryPhase.FILTER);
+        applySort(matches, sort);
+        trace.lap(QueryPhase.SORT);
+        return matches;
+    }
+
+    /**
+     * Serves a page from the query cache when it is on. Pages after a
+     * searchAfter cursor are always computed: deep pagination rarely repeats.
+     * Computed pages read one publication of the store and the indexes.
+     */
+    private <P extends Page<Course>> P cached(String kind, String value, Pageable pageable, Course searchAfter,
+                                              Supplier<P> query) {
+        if (queryCache == null || searchAfter != null || pageable.isUnpaged()) {
+            return traced(consistently(query));
+        }
+        String key = kind + '|' + value + '|' + pageable.getPageNumber() + '|' + pageable.getPageSize()
+                + '|' + pageable.getSort();
+        return traced(queryCache.get(key, generation.get(), () -> consistently(query), Page::getNumberOfElements));
+    }
+
+    // reports the page's matched and returned courses to the request's trace
+    private static <P extends Page<Course>> P traced(P page) {
+        QueryTrace.current().documents(page.getTotalElements(), page.getNumberOfElements());
+        return page;
+    }
+
+    // the terms the inverted index will match, so equivalent titles share an entry
+    private String normalizeTitle(String title) {
+        return title == null ? "" : String.join(" ", invertedIndex.getAnalyzer().analyze(title));
+    }
+
+    /** Query cache counters, or {@code null} when caching is off. */
+    public Map<String, Object> queryCacheStats() {
+        return queryCache == null ? null : queryCache.stats();
+    }
+
+    private List<Course> matchTitle(String title) {
+        return matchTitle(title, 0);
+    }
+
+    private List<Course> matchTitle(String title, int fuzziness) {
+        CourseSnapshot snapshot = store.snapshot();
+        int[] ids = invertedIndex.matchTitle(title, fuzziness);
+        if (ids == null) {
+            return new ArrayList<>(snapshot.asList());
+        }
+        List<Course> matches = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Course course = snapshot.findById(id);
+            if (course != null) {
+                matches.add(course);
+            }
+        }
+        return matches;
+    }
+
+    /** Ranks the courses matching any word of the query by BM25, best first. */
+    public ScoredPage search(String query, Pageable pageable) {
+        return cached("search", normalizeTitle(query), pageable, null, () -> rankedPage(query, pageable));
+    }
 
-        filteredCourses = applySort(filteredCourses, pageable.getSort()); 
+    private ScoredPage rankedPage(String query, Pageable pageable) {
+        QueryTrace trace = QueryTrace.current();
+        trace.mark();
+        CourseSnapshot snapshot = store.snapshot();
+        List<ScoreDoc> hits = invertedIndex.search(query);
+        // drop hits for courses the snapshot does not contain (deleted concurrently)
+        hits.removeIf(hit -> snapshot.findById(hit.getId()) == null);
+        trace.lap(QueryPhase.FILTER);
 
         int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), filteredCourses.size());
+        int end = Math.min((start + pageable.getPageSize()), hits.size());
 
         List<Course> pagedCourses = new ArrayList<>();
-        if (start < end) {
-            pagedCourses = filteredCourses.subList(start, end);
+        double[] scores = new double[Math.max(end - start, 0)];
+        for (int i = start; i < end; i++) {
+            pagedCourses.add(snapshot.findById(hits.get(i).getId()));
+            scores[i - start] = hits.get(i).getScore();
         }
-        return new PageImpl<>(pagedCourses, pageable, filteredCourses.size());
+        trace.lap(QueryPhase.PAGE);
+        return new ScoredPage(pagedCourses, pageable, hits.size(), scores);
     }
 
-    public Course save(Course course) {
-        if (course.getId() == 0) { 
-            course.setId(idCounter.getAndIncrement()); 
-            this.courses.add(course);
+    /**
+     * Completes the last word of a partially typed title with the title words
+     * found in the most courses. Like listings, completions reflect the last
+     * refresh.
+     */
+    public List<Suggestion> suggest(String text, int size) {
+        return suggestIndex.suggest(text, size);
+    }
+
+    public Page<Course> findByType(String type, Pageable pageable) {
+        return findByType(type, pageable, null);
+    }
+
+    /**
+     * Like {@link #findByType(String, Pageable)}, but when {@code searchAfter}
+     * is given the page starts right after that course in sort order and the
+     * page number is ignored. See {@link SearchAfter}.
+     */
+    public Page<Course> findByType(String type, Pageable pageable, Course searchAfter) {
+        return cached("type", TermIndex.normalize(type), pageable, searchAfter,
+                () -> findByQuery(new CourseQuery().term("type", List.of(type)), pageable, searchAfter));
+    }
+
+    /**
+     * Runs a structured query. Title and term filters become id bitmaps (from
+     * the inverted index and the term index) and are intersected first; range
+     * filters are then turned into bitmaps from the sort index and intersected
+     * too, until the candidates are few enough that checking the remaining
+     * ranges course by course is cheaper. Every candidate is re-checked against
+     * the reader's snapshot before it is returned.
+     *
+     * The columnar engine has no sort index: it checks the ranges on the
+     * columns while selecting the page from them.
+     */
+    public Page<Course> findByQuery(CourseQuery query, Pageable pageable, Course searchAfter) {
+        return traced(consistently(() -> queryPage(query, pageable, searchAfter)));
+    }
+
+    private Page<Course> queryPage(CourseQuery query, Pageable pageable, Course searchAfter) {
+        QueryTrace trace = QueryTrace.current();
+        trace.mark();
+        CourseSnapshot snapshot = store.snapshot();
+        IdBitmap candidates = null;
+        if (query.hasTitle()) {
+            int[] ids = invertedIndex.matchTitle(query.getTitle());
+            if (ids != null) {
+                candidates = IdBitmap.of(ids, ids.length);
+            }
+        }
+        for (Map.Entry<String, Set<String>> term : query.getTerms().entrySet()) {
+            candidates = and(candidates, termIndex.any(term.getKey(), term.getValue()));
+        }
+        if (columnar) {
+            trace.lap(QueryPhase.FILTER);
+            return pageFromColumns(snapshot, candidates, query.slotFilter(snapshot.columns()), pageable, searchAfter);
+        }
+        for (CourseQuery.RangeFilter range : query.getRanges()) {
+            if (candidates != null && (long) candidates.cardinality() * PARTIAL_SORT_RATIO < snapshot.size()) {
+                break;
+            }
+            candidates = and(candidates, rangeBitmap(range));
+        }
+
+        trace.lap(QueryPhase.FILTER);
+        if (candidates == null) {
+            Predicate<Course> filter = query.isEmpty() ? null : query::matches;
+            if (filter == null) {
+                return findAll(pageable, searchAfter);
+            }
+            return page(snapshot.asList(), filter, pageable, searchAfter);
+        }
+
+        IdBitmap matches = candidates;
+        if ((long) matches.cardinality() * PARTIAL_SORT_RATIO >= snapshot.size() && isIndexSorted(pageable.getSort())) {
+            Predicate<Course> filter = course -> matches.contains(course.getId()) && query.matches(course);
+            return pageFromSortIndex(snapshot, filter, matches.cardinality(), pageable, searchAfter);
+        }
+        List<Course> courses = new ArrayList<>(matches.cardinality());
+        matches.forEach(id -> {
+            Course course = snapshot.findById(id);
+            if (course != null && query.matches(course)) {
+                courses.add(course);
+            }
+        });
+        return page(courses, null, pageable, searchAfter);
+    }
+
+    /**
+     * Computes the aggregations over every course matching the query in a
+     * single pass over the snapshot's primitive columns. A selective title or
+     * term filter is walked through its id bitmap; otherwise every slot is
+     * scanned and the filters are checked on the columns.
+     */
+    public Map<String, Object> aggregate(CourseQuery query, List<Aggregation> aggregations) {
+        CourseSnapshot[] read = new CourseSnapshot[1];
+        IdBitmap candidates = consistently(() -> {
+            read[0] = store.snapshot();
+            IdBitmap ids = null;
+            if (query.hasTitle()) {
+                int[] matches = invertedIndex.matchTitle(query.getTitle());
+                if (matches != null) {
+                    ids = IdBitmap.of(matches, matches.length);
+                }
+            }
+            for (Map.Entry<String, Set<String>> term : query.getTerms().entrySet()) {
+                ids = and(ids, termIndex.any(term.getKey(), term.getValue()));
+            }
+            return ids;
+        });
+        CourseSnapshot snapshot = read[0];
+        CourseColumns columns = snapshot.columns();
+        for (Aggregation aggregation : aggregations) {
+            aggregation.begin(columns);
+        }
+
+        IntPredicate filter = query.slotFilter(columns);
+        IntConsumer collect = slot -> {
+            if (filter.test(slot)) {
+                for (Aggregation aggregation : aggregations) {
+                    aggregation.collect(slot);
+                }
+            }
+        };
+        if (candidates != null && (long) candidates.cardinality() * PARTIAL_SORT_RATIO < snapshot.size()) {
+            candidates.forEach(id -> {
+                int slot = snapshot.slotOf(id);
+                if (slot >= 0) {
+                    collect.accept(slot);
+                }
+            });
         } else {
-   
-            Optional<Course> existingCourseOpt = findById(course.getId());
-            if (existingCourseOpt.isPresent()) {
-                Course existingCourse = existingCourseOpt.get();
-                existingCourse.setTitle(course.getTitle());
-                existingCourse.setDescription(course.getDescription());
-                existingCourse.setCategory(course.getCategory());
-                existingCourse.setType(course.getType());
-                existingCourse.setGradeRange(course.getGradeRange());
-                existingCourse.setMinAge(course.getMinAge());
-                existingCourse.setMaxAge(course.getMaxAge());
-                existingCourse.setPrice(course.getPrice());
-                existingCourse.setNextSessionDate(course.getNextSessionDate());
+            IdBitmap matches = query.hasTitle() ? candidates : null;
+            IntColumn ids = columns.id();
+            for (int slot = 0, size = snapshot.size(); slot < size; slot++) {
+                if (matches == null || matches.contains(ids.get(slot))) {
+                    collect.accept(slot);
+                }
+            }
+        }
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (Aggregation aggregation : aggregations) {
+            results.put(aggregation.getName(), aggregation.result());
+        }
+        return results;
+    }
+
+    private static IdBitmap and(IdBitmap candidates, IdBitmap filter) {
+        return candidates == null ? filter : candidates.and(filter);
+    }
+
+    private IdBitmap rangeBitmap(CourseQuery.RangeFilter range) {
+        int[] ids = new int[16];
+        int n = 0;
+        for (Course course : sortIndex.range(range.getField(), range.getFrom(), range.getTo())) {
+            if (n == ids.length) {
+                ids = Arrays.copyOf(ids, n * 2);
+            }
+            ids[n++] = course.getId();
+        }
+        return IdBitmap.of(ids, n);
+    }
+
+    public Course save(Course course) {
+        long seq;
+        writeLock.lock();
+        try {
+            if (course.getId() == 0) { 
+                course.setId(nextId()); 
+                seq = stage(course.getId(), course);
+            } else if (current(course.getId()) != null) {
+                // published courses are never modified in place; store a copy
+                // so readers of older snapshots keep seeing the old values
+                Course updatedCourse = new Course(course.getId(), course.getTitle(), course.getDescription(),
+                        course.getCategory(), course.getType(), course.getGradeRange(), course.getMinAge(),
+                        course.getMaxAge(), course.getPrice(), course.getNextSessionDate());
+                seq = stage(course.getId(), updatedCourse);
             } else {
-                this.courses.add(course); 
+                // nextId() must never hand out a client-chosen id again
+                seq = stage(course.getId(), course);
+                idCounter.accumulateAndGet(course.getId() + 1, Math::max);
             }
+        } finally {
+            writeLock.unlock();
         }
+        awaitDurable(seq);
+        refreshIfImmediate();
         return course;
     }
 
     public void deleteById(int id) { 
-        courses.removeIf(course -> course.getId() == id);
+        long seq = 0;
+        writeLock.lock();
+        try {
+            if (current(id) != null) {
+                seq = stage(id, DELETED);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(seq);
+        refreshIfImmediate();
+    }
+
+    /**
+     * Applies a batch of bulk actions in order and returns one result each.
+     * The whole batch takes the write lock once and is published by a single
+     * refresh; with persistence on, every applied action is logged and the
+     * batch waits for one fsync before any of it is published or shipped.
+     */
+    public List<BulkItemResult> bulk(List<BulkAction> actions) {
+        List<BulkItemResult> results = new ArrayList<>(actions.size());
+        long seq = 0;
+        writeLock.lock();
+        try {
+            for (BulkAction action : actions) {
+                BulkAction.Type type = action.getType();
+                int id = action.getId();
+                if (action.getError() != null) {
+                    results.add(BulkItemResult.failed(type, id, 400, action.getError()));
+                    continue;
+                }
+                if (id == 0 && type != BulkAction.Type.CREATE) {
+                    results.add(BulkItemResult.failed(type, id, 400, "_id is required"));
+                    continue;
+                }
+                Course existing = id == 0 ? null : current(id);
+                switch (type) {
+                    case CREATE:
+                        if (existing != null) {
+                            results.add(BulkItemResult.failed(type, id, 409, "Course " + id + " already exists"));
+                            continue;
+                        }
+                        Course created = action.getCourse();
+                        if (id == 0) {
+                            id = nextId();
+                        } else {
+                            idCounter.accumulateAndGet(id + 1, Math::max);
+                        }
+                        created.setId(id);
+                        seq = stage(id, created);
+                        results.add(BulkItemResult.ok(type, id, 201));
+                        break;
+                    case UPDATE:
+                        if (existing == null) {
+                            results.add(BulkItemResult.failed(type, id, 404, "Course " + id + " not found"));
+                            continue;
+                        }
+                        Course course = action.getCourse();
+                        Course updated = new Course(id, course.getTitle(), course.getDescription(),
+                                course.getCategory(), course.getType(), course.getGradeRange(), course.getMinAge(),
+                                course.getMaxAge(), course.getPrice(), course.getNextSessionDate());
+                        seq = stage(id, updated);
+                        results.add(BulkItemResult.ok(type, id, 200));
+                        break;
+                    case DELETE:
+                        if (existing == null) {
+                            results.add(BulkItemResult.failed(type, id, 404, "Course " + id + " not found"));
+                            continue;
+                        }
+                        seq = stage(id, DELETED);
+                        results.add(BulkItemResult.ok(type, id, 200));
+                        break;
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(seq);
+        refreshIfImmediate();
+        return results;
+    }
+
+    // publishes the net effect of a batch of changes, null marking a delete,
+    // to the indexes and then the store; the snapshot is the one it applies
+    // to. Call through publish(), so queries see both changes at once.
+    private void applyChanges(CourseSnapshot before, Map<Integer, Course> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<Course> removed = new ArrayList<>();
+        List<Course> added = new ArrayList<>();
+        for (Map.Entry<Integer, Course> change : changes.entrySet()) {
+            Course previous = before.findById(change.getKey());
+            if (previous != null) {
+                removed.add(previous);
+            }
+            if (change.getValue() != null) {
+                added.add(change.getValue());
+            }
+        }
+        invertedIndex.update(removed, added);
+        suggestIndex.update(removed, added);
+        if (!columnar) {
+            sortIndex.update(removed, added);
+        }
+        for (Course course : removed) {
+            termIndex.remove(course);
+        }
+        for (Course course : added) {
+            termIndex.add(course);
+        }
+        store.apply(changes);
+        if (jsonCache != null) {
+            changes.keySet().forEach(jsonCache::invalidate);
+        }
     }
 
     public void deleteAll() {
-        this.courses.clear();
-        this.idCounter.set(1); 
+        clear(0);
+    }
+
+    // empties the catalog and the write buffers at once, once the log holds
+    // the delete-all durably; replicatedSeq is the position of a delete-all
+    // shipped from the primary, 0 for one made here
+    private void clear(long replicatedSeq) {
+        refreshLock.lock();
+        writeLock.lock();
+        try {
+            if (persistence != null) {
+                // rare enough to hold both locks through the fsync
+                persistence.awaitDurable(persistence.logDeleteAll());
+            }
+            pending = new ConcurrentHashMap<>();
+            unsynced.clear();
+            unsyncedById.clear();
+            publish(() -> {
+                this.store.clear();
+                this.invertedIndex.clear();
+                this.suggestIndex.clear();
+                this.sortIndex.clear();
+                this.termIndex.clear();
+            });
+            this.idCounter.set(1); 
+            if (replication != null) {
+                if (replication.isPrimary()) {
+                    replication.deleteAll();
+                } else {
+                    replication.applied(replicatedSeq);
+                }
+                visibleSeq = replication.lastSeq();
+            }
+            generation.incrementAndGet();
+            if (jsonCache != null) {
+                jsonCache.clear();
+            }
+        } finally {
+            writeLock.unlock();
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Applies mutations shipped from the primary to a replica, in order, and
+     * publishes them before returning, so the replica's position is visible
+     * to its queries once the batch is applied.
+     */
+    public void replicate(List<Mutation> mutations) {
+        int i = 0;
+        while (i < mutations.size()) {
+            if (mutations.get(i).isDeleteAll()) {
+                clear(mutations.get(i++).getSeq());
+                continue;
+            }
+            long seq = 0;
+            writeLock.lock();
+            try {
+                for (; i < mutations.size() && !mutations.get(i).isDeleteAll(); i++) {
+                    Mutation mutation = mutations.get(i);
+                    int id = mutation.getId();
+                    if (mutation.isPut()) {
+                        idCounter.accumulateAndGet(id + 1, Math::max);
+                        pending.put(id, mutation.getCourse());
+                    } else if (latest(id) != null) {
+                        pending.put(id, DELETED);
+                    }
+                    seq = mutation.getSeq();
+                }
+                replication.applied(seq);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        refresh();
+    }
+
+    /** Replaces a replica's catalog with a copy of the primary's. */
+    public void copy(ReplicationLog.Snapshot snapshot) {
+        reindex(s -> {
+            s.replaceAll(snapshot.getCourses());
+            replication.copied(snapshot.getEpoch(), snapshot.getSeq());
+        });
+    }
+
+    /**
+     * The primary's catalog as of its current log position, for a replica to
+     * start from. The write buffer is published first, as for a checkpoint,
+     * so the copy holds every change up to the position.
+     */
+    public ReplicationLog.Snapshot replicationSnapshot() {
+        long seq;
+        CourseSnapshot snapshot;
+        refreshLock.lock();
+        try {
+            writeLock.lock();
+            try {
+                drainPending();
+            } finally {
+                writeLock.unlock();
+            }
+            publishRefreshing();
+            snapshot = store.snapshot();
+            seq = visibleSeq;
+        } finally {
+            refreshLock.unlock();
+        }
+        return new ReplicationLog.Snapshot(replication.epoch(), seq, snapshot.asList());
+    }
+
+    /** Log position of the last change visible to queries; 0 when replication is off. */
+    public long visibleSeq() {
+        return visibleSeq;
+    }
+
+    /**
+     * Waits up to the given time until the changes up to log position
+     * {@code seq} are visible to queries, so a client reads its own writes.
+     * Changes that only wait for a scheduled refresh are published right
+     * away. Returns whether the position was reached.
+     */
+    public boolean awaitVisible(long seq, long timeoutMillis) throws InterruptedException {
+        if (replication == null) {
+            return true;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (visibleSeq < seq) {
+            if (replication.lastSeq() >= seq) {
+                refresh();
+            } else if (!replication.awaitSeq(seq, deadline - System.nanoTime())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the next unused id that routes to this node's shard; call holding writeLock
+    private int nextId() {
+        int id;
+        do {
+            id = idCounter.getAndIncrement();
+        } while (!shard.owns(id));
+        return id;
+    }
+
+    // writes are logged under the write lock in the order they are applied,
+    // and waited for after it is released so concurrent writers share an
+    // fsync. Until then a logged write waits in unsynced: it is buffered for
+    // the next refresh, and a primary appends it to the replication log, only
+    // once durable, so a write the log loses is neither visible nor shipped.
+    // Without persistence a write is buffered and shipped right away.
+    // Returns the log position to wait for; call holding writeLock.
+    private long stage(int id, Course course) {
+        if (persistence == null) {
+            ship(id, course);
+            pending.put(id, course);
+            return 0;
+        }
+        long seq = course == DELETED ? persistence.logDelete(id) : persistence.logPut(course);
+        Unsynced write = new Unsynced(seq, id, course);
+        unsynced.add(write);
+        unsyncedById.put(id, write);
+        return seq;
+    }
+
+    private void ship(int id, Course course) {
+        if (replication != null && replication.isPrimary()) {
+            if (course == DELETED) {
+                replication.delete(id);
+            } else {
+                replication.put(course);
+            }
+        }
+    }
+
+    // waits for the fsync of every write up to seq, then hands them on; an
+    // fsync failure is thrown and leaves them unpublished
+    private void awaitDurable(long seq) {
+        if (persistence != null && seq > 0) {
+            persistence.awaitDurable(seq);
+            promote(seq);
+        }
+    }
+
+    // buffers and ships the durable writes up to seq, in log order; whichever
+    // writer gets here first hands on the writes of the others too
+    private void promote(long seq) {
+        writeLock.lock();
+        try {
+            while (!unsynced.isEmpty() && unsynced.peek().seq <= seq) {
+                Unsynced write = unsynced.poll();
+                unsyncedById.remove(write.id, write);
+                ship(write.id, write.course);
+                pending.put(write.id, write.course);
+            }
+        } finally {
+            writeLock.unlock();
+        }
     }
 
 
     public List<Course> applySort(List<Course> list, Sort sort) {
+        Comparator<Course> comparator = comparatorFor(sort);
+        if (comparator != null) {
+            queryExecutor.sort(list, comparator);
+        }
+        return list;
+    }
+
+    /**
+     * Builds the comparator for a sort spec, or returns {@code null} when no
+     * supported property is requested. Ties are broken by id in the direction
+     * of the leading key, matching the order of the sort indexes, so the order
+     * is total and a course always lands on the same page.
+     */
+    public static Comparator<Course> comparatorFor(Sort sort) {
         if (sort == null || !sort.iterator().hasNext()) {
-            return list;
+            return null;
         }
 
         Comparator<Course> comparator = null;
+        Boolean leadingDescending = null;
         for (Sort.Order order : sort) {
-            Comparator<Course> currentComparator = null;
-            switch (order.getProperty()) {
-                case "id":
-                    currentComparator = Comparator.comparingInt(Course::getId); 
-                    break;
-                case "title":
-                    currentComparator = Comparator.comparing(Course::getTitle);
-                    break;
-                case "category":
-                    currentComparator = Comparator.comparing(Course::getCategory);
-                    break;
-                case "type":
-                    currentComparator = Comparator.comparing(Course::getType);
-                    break;
-                case "minAge":
-                    currentComparator = Comparator.comparingInt(Course::getMinAge);
-                    break;
-                case "maxAge":
-                    currentComparator = Comparator.comparingInt(Course::getMaxAge);
-                    break;
-                case "price":
-                    currentComparator = Comparator.comparingDouble(Course::getPrice); 
-                    break;
-                case "nextSessionDate":
-                    currentComparator = Comparator.comparing(Course::getNextSessionDate);
-                    break;
-                default:
+            Comparator<Course> currentComparator = SortIndex.comparator(order.getProperty());
+            if (currentComparator == null) {
+                continue;
+            }
+            if (order.isDescending()) {
+                currentComparator = currentComparator.reversed();
+            }
+            if (comparator == null) {
+                comparator = currentComparator;
+                leadingDescending = order.isDescending();
+            } else {
+                comparator = comparator.thenComparing(currentComparator);
+            }
+        }
+
+        if (comparator != null) {
+            Comparator<Course> byId = Comparator.comparingInt(Course::getId);
+            comparator = comparator.thenComparing(leadingDescending ? byId.reversed() : byId);
+        }
+        return comparator;
+    }
+
+   
+    public Page<Course> findAll(Pageable pageable) {
+        return findAll(pageable, null);
+    }
+
+    public Page<Course> findAll(Pageable pageable, Course searchAfter) {
+        return cached("all", "", pageable, searchAfter, () -> pageAll(pageable, searchAfter));
+    }
+
+    private Page<Course> pageAll(Pageable pageable, Course searchAfter) {
+        QueryTrace.current().mark();
+        CourseSnapshot snapshot = store.snapshot();
+        if (columnar) {
+            return pageFromColumns(snapshot, null, null, pageable, searchAfter);
+        }
+        Page<Course> page = pageFromSortIndex(snapshot, null, snapshot.size(), pageable, searchAfter);
+        return page != null ? page : page(snapshot.asList(), null, pageable, searchAfter);
+    }
+
+    public Page<Course> findByTitleContaining(String title, Pageable pageable) {
+        return findByTitleContaining(title, pageable, null);
+    }
+
+    public Page<Course> findByTitleContaining(String title, Pageable pageable, Course searchAfter) {
+        return findByTitleContaining(title, 0, pageable, searchAfter);
+    }
+
+    /**
+     * Like {@link #findByTitleContaining(String, Pageable, Course)}, but title
+     * terms may be up to {@code fuzziness} edits off, so typos like
+     * "chemestry" still match. See {@link InvertedIndex#matchTitle(String, int)}.
+     */
+    public Page<Course> findByTitleContaining(String title, int fuzziness, Pageable pageable, Course searchAfter) {
+        return cached(fuzziness == 0 ? "title" : "title~" + fuzziness, normalizeTitle(title), pageable, searchAfter,
+                () -> pageByTitle(title, fuzziness, pageable, searchAfter));
+    }
+
+    private Page<Course> pageByTitle(String title, int fuzziness, Pageable pageable, Course searchAfter) {
+        QueryTrace trace = QueryTrace.current();
+        trace.mark();
+        if (columnar) {
+            int[] ids = invertedIndex.matchTitle(title, fuzziness);
+            IdBitmap candidates = ids == null ? null : IdBitmap.of(ids, ids.length);
+            trace.lap(QueryPhase.FILTER);
+            return pageFromColumns(store.snapshot(), candidates, null, pageable, searchAfter);
+        }
+        List<Course> matches = matchTitle(title, fuzziness);
+        trace.lap(QueryPhase.FILTER);
+        return page(matches, null, pageable, searchAfter);
+    }
+
+    private boolean isIndexSorted(Sort sort) {
+        return !columnar && sort != null && sort.iterator().hasNext()
+                && SortIndex.comparator(sort.iterator().next().getProperty()) != null;
+    }
+
+    /**
+     * Reads a page in order straight from the sort index of the leading sort
+     * key, or returns {@code null} if that key has no index. A single-key sort
+     * skips the offset and stops after pageSize courses; for a multi-key sort
+     * the run of courses sharing the last leading value is read as well and
+     * then ordered by the full comparator. Courses the index yields that are
+     * not in the snapshot, or are a different version, are skipped.
+     *
+     * With a searchAfter probe the scan starts at the probe's position in the
+     * index instead of skipping an offset, so every page costs the same.
+     */
+    private Page<Course> pageFromSortIndex(CourseSnapshot snapshot, Predicate<Course> filter, long total,
+                                           Pageable pageable, Course searchAfter) {
+        if (!isIndexSorted(pageable.getSort())) {
+            return null;
+        }
+        Sort sort = pageable.getSort();
+        Sort.Order leading = sort.iterator().next();
+        Comparator<Course> leadingComparator = SortIndex.comparator(leading.getProperty());
+        Comparator<Course> comparator = comparatorFor(sort);
+        boolean singleKey = sort.stream().count() == 1;
+
+        NavigableSet<Course> ordered = sortIndex.ordered(leading.getProperty(), leading.isDescending());
+        if (searchAfter != null) {
+            // start at the first course sharing the probe's leading value; the
+            // comparator check below drops the ones not strictly after it
+            Course from = new Course();
+            copySortFields(searchAfter, from);
+            if ("id".equals(leading.getProperty())) {
+                from.setId(searchAfter.getId());
+            } else {
+                from.setId(leading.isDescending() ? Integer.MAX_VALUE : Integer.MIN_VALUE);
+            }
+            ordered = ordered.tailSet(from, true);
+        }
+
+        int start = searchAfter != null ? 0 : (int) pageable.getOffset();
+        int end = start + pageable.getPageSize();
+        List<Course> window = new ArrayList<>();
+        int skipped = 0;
+        Course last = null;
+        for (Course course : ordered) {
+            if (snapshot.findById(course.getId()) != course || (filter != null && !filter.test(course))) {
+                continue;
+            }
+            if (searchAfter != null && comparator.compare(course, searchAfter) <= 0) {
+                continue;
+            }
+            if (singleKey) {
+                if (skipped < start) {
+                    skipped++;
                     continue;
+                }
+                if (window.size() == pageable.getPageSize()) {
+                    break;
+                }
+            } else if (window.size() >= end && leadingComparator.compare(course, last) != 0) {
+                break;
             }
+            window.add(course);
+            last = course;
+        }
 
-            if (currentComparator != null) {
-                if (order.isDescending()) {
-                    currentComparator = currentComparator.reversed();
+        List<Course> pagedCourses = window;
+        if (!singleKey) {
+            window.sort(comparator);
+            pagedCourses = start < window.size() ? window.subList(start, Math.min(end, window.size())) : new ArrayList<>();
+        }
+        QueryTrace.current().lap(QueryPhase.SORT);
+        return new PageImpl<>(pagedCourses, pageable, total);
+    }
+
+    /**
+     * Selects a page for the columnar engine without materializing anything
+     * but the page itself: the candidate slots (those of the id bitmap, or
+     * every slot) are filtered and ordered by reading the columns, the page
+     * is picked with a heap of slots, and only then are its courses built.
+     */
+    private Page<Course> pageFromColumns(CourseSnapshot snapshot, IdBitmap candidates, IntPredicate filter,
+                                         Pageable pageable, Course searchAfter) {
+        CourseColumns columns = snapshot.columns();
+        SlotComparator comparator = slotComparatorFor(columns, pageable.getSort());
+        int start = searchAfter != null ? 0 : (int) pageable.getOffset();
+        int end = start + pageable.getPageSize();
+        if (searchAfter != null && comparator == null) {
+            comparator = SlotComparator.of(columns, "id");
+        }
+
+        SlotComparator order = comparator;
+        Supplier<PartialSlots> partial = () -> new PartialSlots(filter, order, searchAfter, end);
+        PartialSlots result;
+        if (candidates != null && (long) candidates.cardinality() * PARTIAL_SORT_RATIO < snapshot.size()) {
+            PartialSlots selective = partial.get();
+            candidates.forEach(id -> {
+                int slot = snapshot.slotOf(id);
+                if (slot >= 0) {
+                    selective.accept(slot);
                 }
-                if (comparator == null) {
-                    comparator = currentComparator;
-                } else {
-                    comparator = comparator.thenComparing(currentComparator);
+            });
+            result = selective;
+        } else {
+            IntColumn ids = columns.id();
+            result = queryExecutor.scan(snapshot.size(), partial, (slots, from, to) -> {
+                for (int slot = from; slot < to; slot++) {
+                    if (candidates == null || candidates.contains(ids.get(slot))) {
+                        slots.accept(slot);
+                    }
+                }
+            }, PartialSlots::merge);
+        }
+
+        int[] slots;
+        int total = result.total;
+        if (order == null) {
+            slots = start < result.size ? Arrays.copyOfRange(result.window, start, result.size) : new int[0];
+        } else {
+            total += result.top.getTotalHits();
+            int[] top = result.top.results();
+            slots = start < top.length ? Arrays.copyOfRange(top, start, top.length) : new int[0];
+        }
+        QueryTrace trace = QueryTrace.current();
+        trace.lap(QueryPhase.SORT);
+        List<Course> pagedCourses = new ArrayList<>(slots.length);
+        for (int slot : slots) {
+            pagedCourses.add(snapshot.get(slot));
+        }
+        trace.lap(QueryPhase.PAGE);
+        return new PageImpl<>(pagedCourses, pageable, total);
+    }
+
+    // what one partition of a column scan found: the first end slots in slot
+    // order when there is no sort, else the top end slots
+    private static final class PartialSlots {
+        final IntPredicate filter;
+        final SlotComparator order;
+        final Course searchAfter;
+        final SlotTopKCollector top;
+        final int[] window;
+        int size;
+        // matches not in the collector
+        int total;
+
+        PartialSlots(IntPredicate filter, SlotComparator order, Course searchAfter, int end) {
+            this.filter = filter;
+            this.order = order;
+            this.searchAfter = searchAfter;
+            this.top = order == null ? null : new SlotTopKCollector(end, order);
+            this.window = new int[order == null ? end : 0];
+        }
+
+        void accept(int slot) {
+            if (filter != null && !filter.test(slot)) {
+                return;
+            }
+            if (order == null) {
+                if (size < window.length) {
+                    window[size++] = slot;
                 }
+                total++;
+            } else if (searchAfter == null || order.compare(slot, searchAfter) > 0) {
+                top.collect(slot);
+            } else {
+                total++;
+            }
+        }
+
+        PartialSlots merge(PartialSlots next) {
+            if (order == null) {
+                int n = Math.min(next.size, window.length - size);
+                System.arraycopy(next.window, 0, window, size, n);
+                size += n;
+            } else {
+                top.merge(next.top);
+            }
+            total += next.total;
+            return this;
+        }
+    }
+
+    /** The column counterpart of {@link #comparatorFor(Sort)}. */
+    private static SlotComparator slotComparatorFor(CourseColumns columns, Sort sort) {
+        if (sort == null || !sort.iterator().hasNext()) {
+            return null;
+        }
+
+        SlotComparator comparator = null;
+        Boolean leadingDescending = null;
+        for (Sort.Order order : sort) {
+            SlotComparator currentComparator = SlotComparator.of(columns, order.getProperty());
+            if (currentComparator == null) {
+                continue;
+            }
+            if (order.isDescending()) {
+                currentComparator = currentComparator.reversed();
+            }
+            if (comparator == null) {
+                comparator = currentComparator;
+                leadingDescending = order.isDescending();
+            } else {
+                comparator = comparator.thenComparing(currentComparator);
             }
         }
 
         if (comparator != null) {
-            list.sort(comparator);
+            SlotComparator byId = SlotComparator.of(columns, "id");
+            comparator = comparator.thenComparing(leadingDescending ? byId.reversed() : byId);
         }
-        return list;
+        return comparator;
     }
 
-   
-    public Page<Course> findAll(Pageable pageable) {
-        List<Course> allCourses = new ArrayList<>(courses);
-        allCourses = applySort(allCourses, pageable.getSort());
+    private static void copySortFields(Course from, Course to) {
+        to.setTitle(from.getTitle());
+        to.setCategory(from.getCategory());
+        to.setType(from.getType());
+        to.setMinAge(from.getMinAge());
+        to.setMaxAge(from.getMaxAge());
+        to.setPrice(from.getPrice());
+        to.setNextSessionDate(from.getNextSessionDate());
+    }
 
+    /**
+     * Pages through the candidates accepted by the filter. Shallow pages keep
+     * only the first offset + pageSize courses in a bounded heap; pages deeper
+     * than 1/PARTIAL_SORT_RATIO of the candidates fall back to a full sort,
+     * which is cheaper once k approaches n. A searchAfter page always uses the
+     * heap, sized to just the page, over the courses after the probe.
+     *
+     * Large candidate lists are scanned in parallel partitions by the
+     * {@link QueryExecutor}, each with its own heap, window or sorted run,
+     * merged in candidate order.
+     */
+    private Page<Course> page(List<Course> candidates, Predicate<Course> filter, Pageable pageable, Course searchAfter) {
+        QueryTrace trace = QueryTrace.current();
         int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), allCourses.size());
+        int end = start + pageable.getPageSize();
+        Comparator<Course> comparator = comparatorFor(pageable.getSort());
+
+        if (searchAfter != null) {
+            Comparator<Course> order = comparator != null ? comparator : Comparator.comparingInt(Course::getId);
+            int size = pageable.getPageSize();
+            PartialPage result = queryExecutor.scan(candidates.size(),
+                    () -> new PartialPage(new TopKCollector<>(size, order)),
+                    (partial, from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            Course course = candidates.get(i);
+                            if (filter == null || filter.test(course)) {
+                                partial.total++;
+                                if (order.compare(course, searchAfter) > 0) {
+                                    partial.top.collect(course);
+                                }
+                            }
+                        }
+                    }, PartialPage::mergeTop);
+            List<Course> pagedCourses = result.top.results();
+            trace.lap(QueryPhase.SORT);
+            return new PageImpl<>(pagedCourses, pageable, result.total);
+        }
+
+        if (comparator == null) {
+            PartialPage result = queryExecutor.scan(candidates.size(), () -> new PartialPage(null),
+                    (partial, from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            Course course = candidates.get(i);
+                            if (filter == null || filter.test(course)) {
+                                if (partial.courses.size() < end) {
+                                    partial.courses.add(course);
+                                }
+                                partial.total++;
+                            }
+                        }
+                    }, (left, right) -> left.append(right, end));
+            trace.lap(QueryPhase.SORT);
+            List<Course> window = result.courses;
+            List<Course> pagedCourses = start < window.size() ? window.subList(start, window.size()) : new ArrayList<>();
+            trace.lap(QueryPhase.PAGE);
+            return new PageImpl<>(pagedCourses, pageable, result.total);
+        }
+
+        if ((long) end * PARTIAL_SORT_RATIO <= candidates.size()) {
+            PartialPage result = queryExecutor.scan(candidates.size(),
+                    () -> new PartialPage(new TopKCollector<>(end, comparator)),
+                    (partial, from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            Course course = candidates.get(i);
+                            if (filter == null || filter.test(course)) {
+                                partial.top.collect(course);
+                            }
+                        }
+                    }, PartialPage::mergeTop);
+            List<Course> top = result.top.results();
+            trace.lap(QueryPhase.SORT);
+            List<Course> pagedCourses = start < top.size() ? top.subList(start, top.size()) : new ArrayList<>();
+            trace.lap(QueryPhase.PAGE);
+            return new PageImpl<>(pagedCourses, pageable, result.top.getTotalHits());
+        }
+
+        // each partition sorts its matches; only the first end of them matter
+        PartialPage result = queryExecutor.scan(candidates.size(), () -> new PartialPage(null),
+                (partial, from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        Course course = candidates.get(i);
+                        if (filter == null || filter.test(course)) {
+                            partial.courses.add(course);
+                        }
+                    }
+                    partial.total = partial.courses.size();
+                    partial.courses.sort(comparator);
+                    if (partial.courses.size() > end) {
+                        partial.courses = new ArrayList<>(partial.courses.subList(0, end));
+                    }
+                }, (left, right) -> left.mergeSorted(right, comparator, end));
+        trace.lap(QueryPhase.SORT);
+        List<Course> sortedCourses = result.courses;
 
         List<Course> pagedCourses = new ArrayList<>();
-        if (start < end) {
-            pagedCourses = allCourses.subList(start, end);
+        if (start < sortedCourses.size()) {
+            pagedCourses = sortedCourses.subList(start, Math.min(end, sortedCourses.size()));
         }
-        return new PageImpl<>(pagedCourses, pageable, allCourses.size());
+        trace.lap(QueryPhase.PAGE);
+        return new PageImpl<>(pagedCourses, pageable, result.total);
     }
 
-    public Page<Course> findByTitleContaining(String title, Pageable pageable) {
-        List<Course> filteredCourses = courses.stream()
-                .filter(course -> course.getTitle().toLowerCase().contains(title.toLowerCase()))
-                .collect(Collectors.toList());
+    // what one partition of a page scan found
+    private static final class PartialPage {
+        final TopKCollector<Course> top;
+        List<Course> courses = new ArrayList<>();
+        int total;
 
-        filteredCourses = applySort(filteredCourses, pageable.getSort());
+        PartialPage(TopKCollector<Course> top) {
+            this.top = top;
+        }
 
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), filteredCourses.size());
+        PartialPage mergeTop(PartialPage next) {
+            top.merge(next.top);
+            total += next.total;
+            return this;
+        }
 
-        List<Course> pagedCourses = new ArrayList<>();
-        if (start < end) {
-            pagedCourses = filteredCourses.subList(start, end);
+        // the window of the first limit matches, this partition's first
+        PartialPage append(PartialPage next, int limit) {
+            for (int i = 0; i < next.courses.size() && courses.size() < limit; i++) {
+                courses.add(next.courses.get(i));
+            }
+            total += next.total;
+            return this;
+        }
+
+        PartialPage mergeSorted(PartialPage next, Comparator<Course> comparator, int limit) {
+            courses = QueryExecutor.merge(courses, next.courses, comparator, limit);
+            total += next.total;
+            return this;
+        }
+    }
+
+    // a logged write waiting for its fsync; DELETED marks a delete
+    private static final class Unsynced {
+        final long seq;
+        final int id;
+        final Course course;
+
+        Unsynced(long seq, int id, Course course) {
+            this.seq = seq;
+            this.id = id;
+            this.course = course;
         }
-        return new PageImpl<>(pagedCourses, pageable, filteredCourses.size());
     }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.search;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.store.CourseColumns;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.NumericColumn;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A facet computed over the columns of the matching courses. Aggregations are
+ * stateful and single use: {@link #begin} binds one to the columns of the
+ * snapshot being scanned, {@link #collect} is called once per matching slot
+ * and {@link #result} renders the outcome. On a cluster coordinator,
+ * {@link #reduce} instead combines the outcomes rendered by the shards.
+ *
+ * Specs have the form {@code kind:field[:args]}:
+ * <ul>
+ *   <li>{@code terms:category[:size]} - counts per keyword value</li>
+ *   <li>{@code histogram:price:50} - counts per fixed interval; dates take
+ *       {@code hour}, {@code day} or {@code week}</li>
+ *   <li>{@code range:price:50:100} - counts below, between and above the
+ *       given boundaries</li>
+ *   <li>{@code stats:price} - count, min, max, avg and sum</li>
+ * </ul>
+ */
+public abstract class Aggregation {
+
+    protected final String field;
+
+    protected Aggregation(String field) {
+        this.field = field;
+    }
+
+    /** Name of the aggregation in the response, e.g. {@code price_histogram}. */
+    public abstract String getName();
+
+    public abstract void begin(CourseColumns columns);
+
+    public abstract void collect(int slot);
+
+    public abstract Object result();
+
+    /**
+     * Combines the results this aggregation rendered on each shard of a
+     * cluster into the result it would have over all of their courses.
+     */
+    public abstract Object reduce(List<Map<String, Object>> results);
+
+    public static Aggregation parse(String spec) {
+        String[] parts = spec.split(":");
+        if (parts.length < 2) {
+            throw new IllegalArgumentException("Invalid aggregation: " + spec);
+        }
+        String[] args = Arrays.copyOfRange(parts, 2, parts.length);
+        switch (parts[0]) {
+            case "terms":
+                return new TermsAggregation(parts[1],
+                        args.length > 0 ? Integer.parseInt(args[0]) : TermsAggregation.DEFAULT_SIZE);
+            case "histogram":
+                if (args.length != 1) {
+                    throw new IllegalArgumentException("histogram needs an interval: " + spec);
+                }
+                return new HistogramAggregation(parts[1], interval(parts[1], args[0]));
+            case "range":
+                double[] bounds = new double[args.length];
+                for (int i = 0; i < args.length; i++) {
+                    bounds[i] = Double.parseDouble(args[i]);
+                }
+                return new RangeAggregation(parts[1], bounds);
+            case "stats":
+                return new StatsAggregation(parts[1]);
+            default:
+                throw new IllegalArgumentException("Unknown aggregation: " + parts[0]);
+        }
+    }
+
+    private static double interval(String field, String interval) {
+        if (isDate(field)) {
+            switch (interval) {
+                case "hour":
+                    return 3_600_000d;
+                case "day":
+                    return 86_400_000d;
+                case "week":
+                    return 7 * 86_400_000d;
+                default:
+                    break;
+            }
+        }
+        return Double.parseDouble(interval);
+    }
+
+    static boolean isDate(String field) {
+        return "nextSessionDate".equals(field);
+    }
+
+    /** Looks up a numeric column, rejecting fields that are not numeric. */
+    protected NumericColumn numeric(CourseColumns columns) {
+        NumericColumn column = columns.numeric(field);
+        if (column == null) {
+            throw new IllegalArgumentException("Not a numeric field: " + field);
+        }
+        return column;
+    }
+
+    /** Renders a column value for the response; dates come back as ISO instants. */
+    protected Object key(double value) {
+        return isDate(field) ? Instant.ofEpochMilli((long) value).toString() : value;
+    }
+
+    /** Reads back a value rendered by {@link #key}. */
+    protected double value(Object key) {
+        return isDate(field) ? Instant.parse((String) key).toEpochMilli() : ((Number) key).doubleValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static List<Map<String, Object>> buckets(Map<String, Object> result) {
+        return (List<Map<String, Object>>) result.get("buckets");
+    }
+
+    protected static long count(Object count) {
+        return ((Number) count).longValue();
+    }
+}
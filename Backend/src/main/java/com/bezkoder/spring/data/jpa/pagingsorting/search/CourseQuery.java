@@ -0,0 +1,225 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.search;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.index.SortIndex;
+import com.bezkoder.spring.data.jpa.pagingsorting.index.TermIndex;
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.CourseColumns;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.IntColumn;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.NumericColumn;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.SlotComparator;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.TermDictionary;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+
+/**
+ * A structured course query: an optional title match, term filters on keyword
+ * fields (any of the values within a field, all fields must match) and
+ * inclusive range filters on sortable fields.
+ */
+public class CourseQuery {
+
+    private String title;
+    private final Map<String, Set<String>> terms = new LinkedHashMap<>();
+    private final List<RangeFilter> ranges = new ArrayList<>();
+
+    public CourseQuery title(String title) {
+        this.title = title;
+        return this;
+    }
+
+    public CourseQuery term(String field, Collection<String> values) {
+        if (!TermIndex.isTermField(field)) {
+            throw new IllegalArgumentException("Not a keyword field: " + field);
+        }
+        if (values != null && !values.isEmpty()) {
+            terms.put(field, values.stream().map(TermIndex::normalize).collect(Collectors.toSet()));
+        }
+        return this;
+    }
+
+    public CourseQuery priceBetween(Double min, Double max) {
+        return range("price", min == null ? null : probe(c -> c.setPrice(min)), max == null ? null : probe(c -> c.setPrice(max)));
+    }
+
+    public CourseQuery minAgeBetween(Integer min, Integer max) {
+        return range("minAge", min == null ? null : probe(c -> c.setMinAge(min)), max == null ? null : probe(c -> c.setMinAge(max)));
+    }
+
+    public CourseQuery maxAgeBetween(Integer min, Integer max) {
+        return range("maxAge", min == null ? null : probe(c -> c.setMaxAge(min)), max == null ? null : probe(c -> c.setMaxAge(max)));
+    }
+
+    /**
+     * Sessions from one instant to another. Dates sort by instant and then by
+     * offset, so the bounds are moved to the lowest and highest offset: a
+     * session at a bound's instant matches whatever offset it was written in.
+     */
+    public CourseQuery nextSessionBetween(OffsetDateTime from, OffsetDateTime to) {
+        return range("nextSessionDate",
+                from == null ? null : probe(c -> c.setNextSessionDate(from.withOffsetSameInstant(ZoneOffset.MIN))),
+                to == null ? null : probe(c -> c.setNextSessionDate(to.withOffsetSameInstant(ZoneOffset.MAX))));
+    }
+
+    /** Courses whose age band includes the given age. */
+    public CourseQuery suitableForAge(int age) {
+        return minAgeBetween(null, age).maxAgeBetween(age, null);
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public Map<String, Set<String>> getTerms() {
+        return terms;
+    }
+
+    public List<RangeFilter> getRanges() {
+        return ranges;
+    }
+
+    public boolean hasTitle() {
+        return title != null && !title.isBlank();
+    }
+
+    public boolean isEmpty() {
+        return !hasTitle() && terms.isEmpty() && ranges.isEmpty();
+    }
+
+    /**
+     * Checks the term and range filters against a course. The title match is
+     * only answered by the inverted index and is not re-checked here.
+     */
+    public boolean matches(Course course) {
+        for (Map.Entry<String, Set<String>> term : terms.entrySet()) {
+            if (!term.getValue().contains(TermIndex.value(course, term.getKey()))) {
+                return false;
+            }
+        }
+        for (RangeFilter range : ranges) {
+            if (!range.matches(course)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compiles the term and range filters into a predicate over the slots of
+     * the given columns, so they can be checked without touching courses.
+     * Like {@link #matches(Course)} it ignores the title.
+     */
+    public IntPredicate slotFilter(CourseColumns columns) {
+        IntPredicate filter = slot -> true;
+        for (Map.Entry<String, Set<String>> term : terms.entrySet()) {
+            IntColumn ordinals = columns.ordinals(term.getKey());
+            TermDictionary dictionary = columns.dictionary();
+            boolean[] accepted = new boolean[dictionary.size()];
+            for (int ordinal = 0; ordinal < accepted.length; ordinal++) {
+                accepted[ordinal] = term.getValue().contains(TermIndex.normalize(dictionary.term(ordinal)));
+            }
+            filter = filter.and(slot -> {
+                int ordinal = ordinals.get(slot);
+                return ordinal != TermDictionary.MISSING && accepted[ordinal];
+            });
+        }
+        for (RangeFilter range : ranges) {
+            if ("nextSessionDate".equals(range.getField())) {
+                // millis alone would let in sessions a fraction of a millisecond past a bound
+                SlotComparator dates = SlotComparator.of(columns, range.getField());
+                Course from = range.getFrom();
+                Course to = range.getTo();
+                filter = filter.and(slot -> (from == null || dates.compare(slot, from) >= 0)
+                        && (to == null || dates.compare(slot, to) <= 0));
+                continue;
+            }
+            NumericColumn column = columns.numeric(range.getField());
+            double lower = range.getFrom() == null ? Double.NEGATIVE_INFINITY : numericValue(range.getField(), range.getFrom());
+            double upper = range.getTo() == null ? Double.POSITIVE_INFINITY : numericValue(range.getField(), range.getTo());
+            filter = filter.and(slot -> {
+                double value = column.value(slot);
+                return value >= lower && value <= upper;
+            });
+        }
+        return filter;
+    }
+
+    // the column value of a numeric range field
+    private static double numericValue(String field, Course course) {
+        switch (field) {
+            case "price":
+                return course.getPrice();
+            case "minAge":
+                return course.getMinAge();
+            default:
+                return course.getMaxAge();
+        }
+    }
+
+    private CourseQuery range(String field, Course from, Course to) {
+        if (from != null || to != null) {
+            ranges.add(new RangeFilter(field, from, to));
+        }
+        return this;
+    }
+
+    private static Course probe(Consumer<Course> setter) {
+        Course probe = new Course();
+        setter.accept(probe);
+        return probe;
+    }
+
+    /**
+     * Inclusive range on one sortable field. Bounds are probe courses carrying
+     * just the bound value, compared with the field's sort comparator; a
+     * {@code null} bound is open. The probes' ids sit below and above every
+     * real id so they also bound an inclusive sort index range.
+     */
+    public static class RangeFilter {
+
+        private final String field;
+        private final Course from;
+        private final Course to;
+        private final Comparator<Course> comparator;
+
+        RangeFilter(String field, Course from, Course to) {
+            this.field = field;
+            this.from = from;
+            this.to = to;
+            this.comparator = SortIndex.comparator(field);
+            if (from != null) {
+                from.setId(Integer.MIN_VALUE);
+            }
+            if (to != null) {
+                to.setId(Integer.MAX_VALUE);
+            }
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public Course getFrom() {
+            return from;
+        }
+
+        public Course getTo() {
+            return to;
+        }
+
+        public boolean matches(Course course) {
+            return (from == null || comparator.compare(course, from) >= 0)
+                    && (to == null || comparator.compare(course, to) <= 0);
+        }
+    }
+}
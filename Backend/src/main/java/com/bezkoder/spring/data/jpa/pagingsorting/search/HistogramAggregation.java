@@ -0,0 +1,106 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.search;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.store.CourseColumns;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.NumericColumn;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts matching courses per fixed-width interval of a numeric field. Each
+ * bucket is keyed by its lower bound; empty buckets are left out.
+ *
+ * Counts live in a dense array covering the buckets seen so far, which grows
+ * in either direction as needed up to {@link #MAX_BUCKETS}.
+ */
+public class HistogramAggregation extends Aggregation {
+
+    static final int MAX_BUCKETS = 10_000;
+
+    private final double interval;
+    private NumericColumn column;
+    private long[] counts = new long[0];
+    private long first;
+
+    public HistogramAggregation(String field, double interval) {
+        super(field);
+        if (!(interval > 0)) {
+            throw new IllegalArgumentException("histogram interval must be positive");
+        }
+        this.interval = interval;
+    }
+
+    @Override
+    public String getName() {
+        return field + "_histogram";
+    }
+
+    @Override
+    public void begin(CourseColumns columns) {
+        column = numeric(columns);
+    }
+
+    @Override
+    public void collect(int slot) {
+        if (!column.exists(slot)) {
+            return;
+        }
+        long bucket = (long) Math.floor(column.value(slot) / interval);
+        if (bucket < first || bucket >= first + counts.length) {
+            grow(bucket);
+        }
+        counts[(int) (bucket - first)]++;
+    }
+
+    private void grow(long bucket) {
+        if (counts.length == 0) {
+            first = bucket;
+            counts = new long[1];
+            return;
+        }
+        long from = Math.min(first, bucket);
+        long to = Math.max(first + counts.length, bucket + 1);
+        if (to - from > MAX_BUCKETS) {
+            throw new IllegalArgumentException("histogram on " + field + " needs more than " + MAX_BUCKETS
+                    + " buckets; use a larger interval");
+        }
+        long[] grown = new long[(int) (to - from)];
+        System.arraycopy(counts, 0, grown, (int) (first - from), counts.length);
+        counts = grown;
+        first = from;
+    }
+
+    @Override
+    public Object result() {
+        List<Map<String, Object>> buckets = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                Map<String, Object> bucket = new LinkedHashMap<>();
+                bucket.put("key", key((first + i) * interval));
+                bucket.put("count", counts[i]);
+                buckets.add(bucket);
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("interval", interval);
+        result.put("buckets", buckets);
+        return result;
+    }
+
+    @Override
+    public Object reduce(List<Map<String, Object>> results) {
+        for (Map<String, Object> result : results) {
+            for (Map<String, Object> bucket : buckets(result)) {
+                // keys are multiples of the interval
+                long index = Math.round(value(bucket.get("key")) / interval);
+                if (index < first || index >= first + counts.length) {
+                    grow(index);
+                }
+                counts[(int) (index - first)] += count(bucket.get("count"));
+            }
+        }
+        return result();
+    }
+}
@@ -0,0 +1,156 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.search;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Runs the scans of large queries over partitions of the candidates in
+ * parallel, on a fork-join pool of its own so that queries never compete with
+ * other users of the common pool.
+ *
+ * A scan over positions [0, size) is split in halves down to partitions of a
+ * few thousand candidates; each partition is scanned into its own
+ * accumulator (a top-k heap, a count, a sorted run) and the two halves of
+ * every split are combined, left before right, as they complete. Scans of
+ * fewer than courses.query.parallel-threshold candidates run on the calling
+ * thread as a single partition: below that, forking costs more than it saves.
+ */
+@Component
+public class QueryExecutor {
+
+    // smallest partition worth a task of its own
+    private static final int MIN_PARTITION_SIZE = 4096;
+    // partitions per thread, so threads that finish early can steal work
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+    private final int parallelism;
+    private final int threshold;
+
+    public QueryExecutor(@Value("${courses.query.parallelism:0}") int parallelism,
+                         @Value("${courses.query.parallel-threshold:50000}") int threshold) {
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.threshold = threshold;
+        this.pool = this.parallelism > 1 ? new ForkJoinPool(this.parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("course-query-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false) : null;
+    }
+
+    /** An executor that scans every query on the calling thread. */
+    public static QueryExecutor sequential() {
+        return new QueryExecutor(1, Integer.MAX_VALUE);
+    }
+
+    public int getParallelism() {
+        return pool == null ? 1 : parallelism;
+    }
+
+    /** Scans a range of candidate positions into an accumulator. */
+    @FunctionalInterface
+    public interface RangeScan<A> {
+        void scan(A accumulator, int from, int to);
+    }
+
+    /**
+     * Scans positions [0, size) and returns the combined accumulator. The
+     * combiner gets the accumulators of two adjacent ranges, the lower one
+     * first, and may return either of them.
+     */
+    public <A> A scan(int size, Supplier<A> accumulator, RangeScan<A> scan, BinaryOperator<A> combiner) {
+        if (pool == null || size < threshold) {
+            A result = accumulator.get();
+            scan.scan(result, 0, size);
+            return result;
+        }
+        int partitionSize = Math.max(MIN_PARTITION_SIZE, -Math.floorDiv(-size, parallelism * PARTITIONS_PER_THREAD));
+        return pool.invoke(new ScanTask<>(0, size, partitionSize, accumulator, scan, combiner));
+    }
+
+    /**
+     * Sorts the list in place, sorting partitions in parallel and merging the
+     * sorted runs when it is large enough.
+     */
+    public <T> void sort(List<T> list, Comparator<? super T> comparator) {
+        if (pool == null || list.size() < threshold) {
+            list.sort(comparator);
+            return;
+        }
+        Supplier<List<T>> runs = ArrayList::new;
+        List<T> sorted = scan(list.size(), runs, (run, from, to) -> {
+            run.addAll(list.subList(from, to));
+            run.sort(comparator);
+        }, (left, right) -> merge(left, right, comparator, Integer.MAX_VALUE));
+        for (int i = 0; i < sorted.size(); i++) {
+            list.set(i, sorted.get(i));
+        }
+    }
+
+    /** Merges two sorted runs, keeping at most the first limit items. */
+    public static <T> List<T> merge(List<T> left, List<T> right, Comparator<? super T> comparator, int limit) {
+        int size = (int) Math.min(limit, (long) left.size() + right.size());
+        List<T> merged = new ArrayList<>(size);
+        int i = 0, j = 0;
+        while (merged.size() < size) {
+            if (j == right.size() || (i < left.size() && comparator.compare(left.get(i), right.get(j)) <= 0)) {
+                merged.add(left.get(i++));
+            } else {
+                merged.add(right.get(j++));
+            }
+        }
+        return merged;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static final class ScanTask<A> extends RecursiveTask<A> {
+
+        private final int from;
+        private final int to;
+        private final int partitionSize;
+        private final Supplier<A> accumulator;
+        private final RangeScan<A> scan;
+        private final BinaryOperator<A> combiner;
+
+        ScanTask(int from, int to, int partitionSize, Supplier<A> accumulator, RangeScan<A> scan,
+                 BinaryOperator<A> combiner) {
+            this.from = from;
+            this.to = to;
+            this.partitionSize = partitionSize;
+            this.accumulator = accumulator;
+            this.scan = scan;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from <= partitionSize) {
+                A result = accumulator.get();
+                scan.scan(result, from, to);
+                return result;
+            }
+            int mid = (from + to) >>> 1;
+            ScanTask<A> left = new ScanTask<>(from, mid, partitionSize, accumulator, scan, combiner);
+            left.fork();
+            A right = new ScanTask<>(mid, to, partitionSize, accumulator, scan, combiner).compute();
+            return combiner.apply(left.join(), right);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.search;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.store.CourseColumns;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.NumericColumn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts matching courses in the ranges delimited by sorted boundaries: n
+ * boundaries give n + 1 ranges, each including its lower bound and excluding
+ * its upper bound, the first and last being open-ended.
+ */
+public class RangeAggregation extends Aggregation {
+
+    private final double[] bounds;
+    private NumericColumn column;
+    private long[] counts;
+
+    public RangeAggregation(String field, double[] bounds) {
+        super(field);
+        if (bounds.length == 0) {
+            throw new IllegalArgumentException("range needs at least one boundary");
+        }
+        this.bounds = bounds.clone();
+        Arrays.sort(this.bounds);
+    }
+
+    @Override
+    public String getName() {
+        return field + "_range";
+    }
+
+    @Override
+    public void begin(CourseColumns columns) {
+        column = numeric(columns);
+        counts = new long[bounds.length + 1];
+    }
+
+    @Override
+    public void collect(int slot) {
+        if (!column.exists(slot)) {
+            return;
+        }
+        int i = Arrays.binarySearch(bounds, column.value(slot));
+        // a value equal to a boundary belongs to the range starting there
+        counts[i >= 0 ? i + 1 : -i - 1]++;
+    }
+
+    @Override
+    public Object result() {
+        List<Map<String, Object>> buckets = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            Map<String, Object> bucket = new LinkedHashMap<>();
+            bucket.put("from", i == 0 ? null : key(bounds[i - 1]));
+            bucket.put("to", i == bounds.length ? null : key(bounds[i]));
+            bucket.put("count", counts[i]);
+            buckets.add(bucket);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("buckets", buckets);
+        return result;
+    }
+
+    @Override
+    public Object reduce(List<Map<String, Object>> results) {
+        counts = new long[bounds.length + 1];
+        for (Map<String, Object> result : results) {
+            List<Map<String, Object>> buckets = buckets(result);
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += count(buckets.get(i).get("count"));
+            }
+        }
+        return result();
+    }
+}
@@ -0,0 +1,29 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.search;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * A page of ranked search results with the relevance score of each course,
+ * best first. The scores let results ranked on different shards be merged.
+ */
+public class ScoredPage extends PageImpl<Course> {
+
+    private final double[] scores;
+
+    public ScoredPage(List<Course> content, Pageable pageable, long total, double[] scores) {
+        super(content, pageable, total);
+        if (scores.length != content.size()) {
+            throw new IllegalArgumentException("Expected a score per course");
+        }
+        this.scores = scores;
+    }
+
+    /** Scores of the courses on this page, in page order. */
+    public double[] getScores() {
+        return scores;
+    }
+}
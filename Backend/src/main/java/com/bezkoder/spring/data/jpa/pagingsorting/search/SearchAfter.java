@@ -0,0 +1,86 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.search;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.data.domain.Sort;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Opaque cursor tokens for search-after paging.
+ *
+ * A token records the sort it was issued for plus the sort-key values and id
+ * of the last course on a page. Decoding turns it back into a probe
+ * {@link Course} carrying just those values, so "after the cursor" is simply
+ * {@code comparator.compare(course, probe) > 0} with the query's comparator.
+ */
+public final class SearchAfter {
+
+    private static final String SORT_KEY = "_sort";
+
+    // Dates keep the offset they were written with: sort keys order equal
+    // instants by offset, so a probe normalized to UTC would land beside the
+    // course it came from instead of on it.
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.ADJUST_DATES_TO_CONTEXT_TIME_ZONE)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private SearchAfter() {
+    }
+
+    public static String encode(Course last, Sort sort) {
+        Map<String, Object> all = MAPPER.convertValue(last, new TypeReference<Map<String, Object>>() {});
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put(SORT_KEY, describe(sort));
+        for (Sort.Order order : sort) {
+            values.put(order.getProperty(), all.get(order.getProperty()));
+        }
+        values.put("id", last.getId());
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(values));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot encode searchAfter token", e);
+        }
+    }
+
+    /**
+     * Decodes a token issued by {@link #encode} for the same sort.
+     *
+     * @throws IllegalArgumentException if the token is malformed or was issued
+     *                                  for a different sort
+     */
+    public static Course decode(String token, Sort sort) {
+        Map<String, Object> values;
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(token.getBytes(StandardCharsets.US_ASCII));
+            values = MAPPER.readValue(json, new TypeReference<Map<String, Object>>() {});
+        } catch (IllegalArgumentException | IOException e) {
+            throw new IllegalArgumentException("Malformed searchAfter token", e);
+        }
+        if (!describe(sort).equals(values.remove(SORT_KEY))) {
+            throw new IllegalArgumentException("searchAfter token was issued for a different sort");
+        }
+        try {
+            return MAPPER.convertValue(values, Course.class);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed searchAfter token", e);
+        }
+    }
+
+    private static String describe(Sort sort) {
+        return sort.stream()
+                .map(order -> order.getProperty() + "," + (order.isDescending() ? "desc" : "asc"))
+                .collect(Collectors.joining(";"));
+    }
+}
@@ -0,0 +1,92 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.search;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.store.SlotComparator;
+
+/**
+ * {@link TopKCollector} for snapshot slots: a bounded max-heap on a plain
+ * {@code int[]}, so selecting a page from a columnar scan allocates nothing
+ * per row.
+ */
+public class SlotTopKCollector {
+
+    private final int k;
+    private final SlotComparator comparator;
+    private final int[] heap;
+    private int size;
+    private int totalHits;
+
+    public SlotTopKCollector(int k, SlotComparator comparator) {
+        this.k = k;
+        this.comparator = comparator;
+        this.heap = new int[k];
+    }
+
+    public void collect(int slot) {
+        totalHits++;
+        if (size < k) {
+            heap[size] = slot;
+            siftUp(size++);
+        } else if (k > 0 && comparator.compare(slot, heap[0]) < 0) {
+            heap[0] = slot;
+            siftDown(0);
+        }
+    }
+
+    public int getTotalHits() {
+        return totalHits;
+    }
+
+    /** Adds the slots and hits of a collector over another part of the scan. */
+    public void merge(SlotTopKCollector other) {
+        int hits = totalHits + other.totalHits;
+        for (int i = 0; i < other.size; i++) {
+            collect(other.heap[i]);
+        }
+        totalHits = hits;
+    }
+
+    /** Returns the collected slots best first. Consumes the collector. */
+    public int[] results() {
+        int[] sorted = new int[size];
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            sorted[i] = heap[0];
+            heap[0] = heap[--size];
+            siftDown(0);
+        }
+        return sorted;
+    }
+
+    // the heap keeps the worst slot at the root
+    private void siftUp(int i) {
+        int slot = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (comparator.compare(slot, heap[parent]) <= 0) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = slot;
+    }
+
+    private void siftDown(int i) {
+        if (size == 0) {
+            return;
+        }
+        int slot = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && comparator.compare(heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (comparator.compare(slot, heap[child]) >= 0) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = slot;
+    }
+}
@@ -0,0 +1,76 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.search;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.store.CourseColumns;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.NumericColumn;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Count, min, max, avg and sum of a numeric field over the matching courses.
+ * Dates report min, max and avg as ISO instants and no sum.
+ */
+public class StatsAggregation extends Aggregation {
+
+    private NumericColumn column;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+
+    public StatsAggregation(String field) {
+        super(field);
+    }
+
+    @Override
+    public String getName() {
+        return field + "_stats";
+    }
+
+    @Override
+    public void begin(CourseColumns columns) {
+        column = numeric(columns);
+    }
+
+    @Override
+    public void collect(int slot) {
+        if (!column.exists(slot)) {
+            return;
+        }
+        double value = column.value(slot);
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += value;
+    }
+
+    @Override
+    public Object result() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", count);
+        result.put("min", count == 0 ? null : key(min));
+        result.put("max", count == 0 ? null : key(max));
+        result.put("avg", count == 0 ? null : key(sum / count));
+        if (!isDate(field)) {
+            result.put("sum", sum);
+        }
+        return result;
+    }
+
+    @Override
+    public Object reduce(List<Map<String, Object>> results) {
+        for (Map<String, Object> result : results) {
+            long shardCount = count(result.get("count"));
+            if (shardCount == 0) {
+                continue;
+            }
+            count += shardCount;
+            min = Math.min(min, value(result.get("min")));
+            max = Math.max(max, value(result.get("max")));
+            // dates have no sum; their avg is whole milliseconds
+            sum += isDate(field) ? value(result.get("avg")) * shardCount : ((Number) result.get("sum")).doubleValue();
+        }
+        return result();
+    }
+}
@@ -0,0 +1,132 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.search;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.store.CourseColumns;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.IntColumn;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.TermDictionary;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts matching courses per value of a keyword field, returning the most
+ * frequent values first. Counting is a plain array increment per course,
+ * indexed by the value's dictionary ordinal.
+ *
+ * Reduced across shards, a value's count is exact when every shard returned
+ * it among its buckets, and short of the courses of the shards that did not
+ * otherwise; asking shards for {@link #shardSize} buckets makes that rare for
+ * the values that end up on top.
+ */
+public class TermsAggregation extends Aggregation {
+
+    /** Buckets returned when the spec gives no size. */
+    public static final int DEFAULT_SIZE = 10;
+
+    private final int size;
+    private IntColumn ordinals;
+    private TermDictionary dictionary;
+    private int[] counts;
+    private int missing;
+
+    public TermsAggregation(String field, int size) {
+        super(field);
+        if (size < 1) {
+            throw new IllegalArgumentException("terms size must be positive");
+        }
+        this.size = size;
+    }
+
+    /** Buckets to request from each shard when the results are to be reduced. */
+    public static int shardSize(int size) {
+        return size * 3 / 2 + 10;
+    }
+
+    @Override
+    public String getName() {
+        return field + "_terms";
+    }
+
+    @Override
+    public void begin(CourseColumns columns) {
+        ordinals = columns.ordinals(field);
+        if (ordinals == null) {
+            throw new IllegalArgumentException("Not a keyword field: " + field);
+        }
+        dictionary = columns.dictionary();
+        // ordinals in this snapshot are all below the current dictionary size
+        counts = new int[dictionary.size()];
+    }
+
+    @Override
+    public void collect(int slot) {
+        int ordinal = ordinals.get(slot);
+        if (ordinal == TermDictionary.MISSING) {
+            missing++;
+        } else {
+            counts[ordinal]++;
+        }
+    }
+
+    @Override
+    public Object result() {
+        // ties go by value, as in reduce, so a cluster orders buckets like one node
+        TopKCollector<Integer> top = new TopKCollector<>(size, (a, b) -> counts[a] != counts[b]
+                ? Integer.compare(counts[b], counts[a]) : dictionary.term(a).compareTo(dictionary.term(b)));
+        long other = 0;
+        for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+            if (counts[ordinal] > 0) {
+                top.collect(ordinal);
+                other += counts[ordinal];
+            }
+        }
+        List<Map<String, Object>> buckets = new ArrayList<>();
+        for (int ordinal : top.results()) {
+            Map<String, Object> bucket = new LinkedHashMap<>();
+            bucket.put("key", dictionary.term(ordinal));
+            bucket.put("count", counts[ordinal]);
+            buckets.add(bucket);
+            other -= counts[ordinal];
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("buckets", buckets);
+        result.put("otherCount", other);
+        result.put("missing", missing);
+        return result;
+    }
+
+    @Override
+    public Object reduce(List<Map<String, Object>> results) {
+        Map<String, Long> totals = new HashMap<>();
+        long other = 0;
+        long missing = 0;
+        for (Map<String, Object> result : results) {
+            for (Map<String, Object> bucket : buckets(result)) {
+                long count = count(bucket.get("count"));
+                totals.merge((String) bucket.get("key"), count, Long::sum);
+                other += count;
+            }
+            other += count(result.get("otherCount"));
+            missing += count(result.get("missing"));
+        }
+        TopKCollector<Map.Entry<String, Long>> top = new TopKCollector<>(size,
+                (a, b) -> !a.getValue().equals(b.getValue())
+                        ? Long.compare(b.getValue(), a.getValue()) : a.getKey().compareTo(b.getKey()));
+        totals.entrySet().forEach(top::collect);
+        List<Map<String, Object>> buckets = new ArrayList<>();
+        for (Map.Entry<String, Long> term : top.results()) {
+            Map<String, Object> bucket = new LinkedHashMap<>();
+            bucket.put("key", term.getKey());
+            bucket.put("count", term.getValue());
+            buckets.add(bucket);
+            other -= term.getValue();
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("buckets", buckets);
+        result.put("otherCount", other);
+        result.put("missing", missing);
+        return result;
+    }
+}
@@ -0,0 +1,68 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the first {@code k} items of a stream in comparator order using a
+ * bounded max-heap, so selecting a page costs O(n log k) time and O(k) memory
+ * instead of sorting everything.
+ *
+ * The comparator must be a total order (break ties, e.g. by id); otherwise
+ * items that compare equal may land on different pages between requests.
+ */
+public class TopKCollector<T> {
+
+    private final int k;
+    private final Comparator<? super T> comparator;
+    private final PriorityQueue<T> heap;
+    private int totalHits;
+
+    public TopKCollector(int k, Comparator<? super T> comparator) {
+        this.k = k;
+        this.comparator = comparator;
+        this.heap = new PriorityQueue<>(Math.max(1, k), comparator.reversed());
+    }
+
+    public void collect(T item) {
+        totalHits++;
+        if (k == 0) {
+            return;
+        }
+        if (heap.size() < k) {
+            heap.add(item);
+        } else if (comparator.compare(item, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(item);
+        }
+    }
+
+    public int getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * Adds the items and hits of a collector over another part of the same
+     * stream, as for partitions scanned in parallel.
+     */
+    public void merge(TopKCollector<T> other) {
+        int hits = totalHits + other.totalHits;
+        for (T item : other.heap) {
+            collect(item);
+        }
+        totalHits = hits;
+    }
+
+    /** Returns the collected items best first. Consumes the collector. */
+    @SuppressWarnings("unchecked")
+    public List<T> results() {
+        Object[] sorted = new Object[heap.size()];
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            sorted[i] = heap.poll();
+        }
+        return new ArrayList<>((List<T>) Arrays.asList(sorted));
+    }
+}
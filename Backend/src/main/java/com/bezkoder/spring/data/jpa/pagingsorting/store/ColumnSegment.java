@@ -0,0 +1,271 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Immutable on-disk form of a complete snapshot's columns, for the
+ * {@link StorageEngine#MAPPED} engine: read through a memory mapping, so the
+ * catalog lives in the OS page cache instead of on the heap.
+ *
+ * The file is a header, one region per column with a value per row (ints,
+ * longs and doubles, little-endian and 8-byte aligned), the keyword terms in
+ * ordinal order, and the UTF-8 bytes of the titles and descriptions, which
+ * the title and description columns address by offset and length. Every
+ * region's position follows from the row count, so a segment is written in
+ * one pass over the rows with a small buffer per region, and opening it reads
+ * the header and the terms only.
+ */
+public final class ColumnSegment {
+
+    private static final int MAGIC = 0x43534731; // "CSG1"
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // regions, in file order, and the width of their values in bytes
+    static final int ID = 0;
+    static final int PRICE = 1;
+    static final int MIN_AGE = 2;
+    static final int MAX_AGE = 3;
+    static final int NEXT_SESSION_DATE = 4;
+    static final int CATEGORY = 5;
+    static final int TYPE = 6;
+    static final int GRADE_RANGE = 7;
+    static final int NEXT_SESSION_NANOS = 8;
+    static final int NEXT_SESSION_OFFSET = 9;
+    static final int TITLE_OFFSET = 10;
+    static final int TITLE_LENGTH = 11;
+    static final int DESCRIPTION_OFFSET = 12;
+    static final int DESCRIPTION_LENGTH = 13;
+    private static final int[] WIDTHS = {4, 8, 4, 4, 8, 4, 4, 4, 4, 4, 8, 4, 8, 4};
+
+    private final MappedFile file;
+    private final long seq;
+    private final int rows;
+    private final TermDictionary dictionary;
+    private final MappedRegion[] regions;
+
+    private ColumnSegment(MappedFile file, long seq, int rows, TermDictionary dictionary, MappedRegion[] regions) {
+        this.file = file;
+        this.seq = seq;
+        this.rows = rows;
+        this.dictionary = dictionary;
+        this.regions = regions;
+    }
+
+    public Path path() {
+        return file.path();
+    }
+
+    /** Sequence number of the last log record the segment holds. */
+    public long seq() {
+        return seq;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    /** Size of the file, i.e. of the page cache it can take up. */
+    public long size() {
+        return file.size();
+    }
+
+    MappedRegion region(int region) {
+        return regions[region];
+    }
+
+    TermDictionary dictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns new columns reading every row from the segment; writes to them
+     * copy the pages they touch to the heap.
+     */
+    public CourseColumns columns() {
+        return new CourseColumns(this, (rows + CourseSnapshot.PAGE_MASK) >>> CourseSnapshot.PAGE_SHIFT);
+    }
+
+    /** Writes the rows of a snapshot with complete columns to a new file. */
+    public static void write(Path path, long seq, CourseSnapshot snapshot) throws IOException {
+        CourseColumns columns = snapshot.columns;
+        if (!columns.isComplete()) {
+            throw new IllegalArgumentException("Only complete columns can be written to a segment");
+        }
+        int rows = snapshot.size;
+        TermDictionary dictionary = columns.dictionary();
+        // every ordinal in the snapshot is below the size read now
+        int terms = dictionary.size();
+        long[] offsets = regionOffsets(rows);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Writer[] regions = new Writer[WIDTHS.length];
+            for (int r = 0; r < regions.length; r++) {
+                regions[r] = new Writer(channel, offsets[r]);
+            }
+            long termsOffset = offsets[WIDTHS.length];
+            Writer termLengths = new Writer(channel, termsOffset);
+            Writer bytes = new Writer(channel, termsOffset + align((long) terms * 4));
+            for (int t = 0; t < terms; t++) {
+                byte[] term = dictionary.term(t).getBytes(StandardCharsets.UTF_8);
+                termLengths.putInt(term.length);
+                bytes.put(term);
+            }
+            for (int row = 0; row < rows; row++) {
+                regions[ID].putInt(columns.id().get(row));
+                regions[PRICE].putDouble(columns.price().get(row));
+                regions[MIN_AGE].putInt(columns.minAge().get(row));
+                regions[MAX_AGE].putInt(columns.maxAge().get(row));
+                regions[NEXT_SESSION_DATE].putLong(columns.nextSessionDate().get(row));
+                regions[CATEGORY].putInt(columns.category().get(row));
+                regions[TYPE].putInt(columns.type().get(row));
+                regions[GRADE_RANGE].putInt(columns.gradeRange().get(row));
+                regions[NEXT_SESSION_NANOS].putInt(columns.nextSessionNanos().get(row));
+                regions[NEXT_SESSION_OFFSET].putInt(columns.nextSessionOffset().get(row));
+                putString(regions[TITLE_OFFSET], regions[TITLE_LENGTH], bytes, columns.title().get(row));
+                putString(regions[DESCRIPTION_OFFSET], regions[DESCRIPTION_LENGTH], bytes,
+                        columns.description().get(row));
+            }
+            for (Writer region : regions) {
+                region.flush();
+            }
+            termLengths.flush();
+            bytes.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(MappedFile.ORDER);
+            header.putInt(MAGIC).putInt(FORMAT).putLong(seq).putInt(rows).putInt(terms).putLong(bytes.position());
+            header.clear();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Maps a segment and loads its terms into the dictionary, which must be
+     * empty or the dictionary the segment was written from.
+     */
+    public static ColumnSegment open(Path path, TermDictionary dictionary) throws IOException {
+        MappedFile file = MappedFile.map(path);
+        if (file.size() < HEADER_SIZE || file.getInt(0) != MAGIC) {
+            throw new IOException("Not a course segment: " + path);
+        }
+        if (file.getInt(4) != FORMAT) {
+            throw new IOException("Unsupported format " + file.getInt(4) + " of course segment " + path);
+        }
+        long seq = file.getLong(8);
+        int rows = file.getInt(16);
+        int terms = file.getInt(20);
+        if (file.getLong(24) != file.size()) {
+            throw new IOException("Truncated course segment: " + path);
+        }
+        long[] offsets = regionOffsets(rows);
+        MappedRegion[] regions = new MappedRegion[WIDTHS.length];
+        for (int r = 0; r < regions.length; r++) {
+            regions[r] = new MappedRegion(file, offsets[r], rows);
+        }
+        long termsOffset = offsets[WIDTHS.length];
+        long position = termsOffset + align((long) terms * 4);
+        for (int t = 0; t < terms; t++) {
+            byte[] bytes = new byte[file.getInt(termsOffset + 4L * t)];
+            file.get(position, bytes);
+            position += bytes.length;
+            String term = new String(bytes, StandardCharsets.UTF_8);
+            boolean matches = t < dictionary.size() ? term.equals(dictionary.term(t)) : dictionary.add(term) == t;
+            if (!matches) {
+                throw new IOException("Terms of course segment " + path + " do not match the dictionary");
+            }
+        }
+        return new ColumnSegment(file, seq, rows, dictionary, regions);
+    }
+
+    // start of each region, then of the terms
+    private static long[] regionOffsets(int rows) {
+        long[] offsets = new long[WIDTHS.length + 1];
+        offsets[0] = HEADER_SIZE;
+        for (int r = 0; r < WIDTHS.length; r++) {
+            offsets[r + 1] = offsets[r] + align((long) rows * WIDTHS[r]);
+        }
+        return offsets;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static void putString(Writer offsets, Writer lengths, Writer bytes, String value)
+            throws IOException {
+        if (value == null) {
+            offsets.putLong(-1);
+            lengths.putInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        offsets.putLong(bytes.position());
+        lengths.putInt(utf8.length);
+        bytes.put(utf8);
+    }
+
+    /** Buffered writer appending at its own position of the file. */
+    private static final class Writer {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(MappedFile.ORDER);
+        private long position;
+
+        Writer(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        long position() {
+            return position + buffer.position();
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(8);
+            buffer.putDouble(value);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int done = 0;
+            while (done < bytes.length) {
+                ensure(1);
+                int n = Math.min(bytes.length - done, buffer.remaining());
+                buffer.put(bytes, done, n);
+                done += n;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+}
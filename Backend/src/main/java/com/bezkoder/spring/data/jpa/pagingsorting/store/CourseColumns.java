@@ -0,0 +1,241 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.store;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Primitive columns of a snapshot, addressed by the same slots as its course
+ * pages: ids, price, the age band, the next session date as epoch
+ * milliseconds, and dictionary ordinals for the keyword fields.
+ *
+ * Scans that only need these fields (filters, facets, statistics) read
+ * contiguous arrays instead of chasing a pointer to every course.
+ *
+ * For the {@link StorageEngine#COLUMNAR} and {@link StorageEngine#MAPPED}
+ * engines the columns also keep title, description and the rest of the date
+ * (sub-millisecond nanos and offset), so a course can be rebuilt from them
+ * exactly with {@link #materialize}. Columns opened from a
+ * {@link ColumnSegment} read its mapped rows until a write copies a page.
+ */
+public final class CourseColumns {
+
+    private final TermDictionary dictionary;
+    private final IntColumn id;
+    private final DoubleColumn price;
+    private final IntColumn minAge;
+    private final IntColumn maxAge;
+    private final LongColumn nextSessionDate;
+    private final IntColumn category;
+    private final IntColumn type;
+    private final IntColumn gradeRange;
+    // only kept by the columnar engine, otherwise null
+    private final StringColumn title;
+    private final StringColumn description;
+    private final IntColumn nextSessionNanos;
+    private final IntColumn nextSessionOffset;
+
+    CourseColumns(TermDictionary dictionary, int pageCount, boolean complete) {
+        this(dictionary, new IntColumn(pageCount), new DoubleColumn(pageCount), new IntColumn(pageCount),
+                new IntColumn(pageCount), new LongColumn(pageCount), new IntColumn(pageCount),
+                new IntColumn(pageCount), new IntColumn(pageCount),
+                complete ? new StringColumn(pageCount) : null, complete ? new StringColumn(pageCount) : null,
+                complete ? new IntColumn(pageCount) : null, complete ? new IntColumn(pageCount) : null);
+    }
+
+    // every column reads the rows of the segment until they are written
+    CourseColumns(ColumnSegment segment, int pageCount) {
+        this(segment.dictionary(), new IntColumn(segment.region(ColumnSegment.ID), pageCount),
+                new DoubleColumn(segment.region(ColumnSegment.PRICE), pageCount),
+                new IntColumn(segment.region(ColumnSegment.MIN_AGE), pageCount),
+                new IntColumn(segment.region(ColumnSegment.MAX_AGE), pageCount),
+                new LongColumn(segment.region(ColumnSegment.NEXT_SESSION_DATE), pageCount),
+                new IntColumn(segment.region(ColumnSegment.CATEGORY), pageCount),
+                new IntColumn(segment.region(ColumnSegment.TYPE), pageCount),
+                new IntColumn(segment.region(ColumnSegment.GRADE_RANGE), pageCount),
+                new StringColumn(segment.region(ColumnSegment.TITLE_OFFSET),
+                        segment.region(ColumnSegment.TITLE_LENGTH), pageCount),
+                new StringColumn(segment.region(ColumnSegment.DESCRIPTION_OFFSET),
+                        segment.region(ColumnSegment.DESCRIPTION_LENGTH), pageCount),
+                new IntColumn(segment.region(ColumnSegment.NEXT_SESSION_NANOS), pageCount),
+                new IntColumn(segment.region(ColumnSegment.NEXT_SESSION_OFFSET), pageCount));
+    }
+
+    private CourseColumns(TermDictionary dictionary, IntColumn id, DoubleColumn price, IntColumn minAge,
+                          IntColumn maxAge, LongColumn nextSessionDate, IntColumn category, IntColumn type,
+                          IntColumn gradeRange, StringColumn title, StringColumn description,
+                          IntColumn nextSessionNanos, IntColumn nextSessionOffset) {
+        this.dictionary = dictionary;
+        this.id = id;
+        this.price = price;
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+        this.nextSessionDate = nextSessionDate;
+        this.category = category;
+        this.type = type;
+        this.gradeRange = gradeRange;
+        this.title = title;
+        this.description = description;
+        this.nextSessionNanos = nextSessionNanos;
+        this.nextSessionOffset = nextSessionOffset;
+    }
+
+    /** Returns a writable copy sharing every page, with room for pageCount pages. */
+    CourseColumns fork(int pageCount) {
+        boolean complete = isComplete();
+        return new CourseColumns(dictionary, id.fork(pageCount), price.fork(pageCount), minAge.fork(pageCount),
+                maxAge.fork(pageCount), nextSessionDate.fork(pageCount), category.fork(pageCount),
+                type.fork(pageCount), gradeRange.fork(pageCount),
+                complete ? title.fork(pageCount) : null, complete ? description.fork(pageCount) : null,
+                complete ? nextSessionNanos.fork(pageCount) : null, complete ? nextSessionOffset.fork(pageCount) : null);
+    }
+
+    /** True if every field is stored, so courses can be materialized. */
+    public boolean isComplete() {
+        return title != null;
+    }
+
+    void set(int slot, Course course) {
+        OffsetDateTime date = course.getNextSessionDate();
+        id.set(slot, course.getId());
+        price.set(slot, course.getPrice());
+        minAge.set(slot, course.getMinAge());
+        maxAge.set(slot, course.getMaxAge());
+        nextSessionDate.set(slot, date == null ? LongColumn.MISSING : date.toInstant().toEpochMilli());
+        category.set(slot, dictionary.add(course.getCategory()));
+        type.set(slot, dictionary.add(course.getType()));
+        gradeRange.set(slot, dictionary.add(course.getGradeRange()));
+        if (isComplete()) {
+            title.set(slot, course.getTitle());
+            description.set(slot, course.getDescription());
+            nextSessionNanos.set(slot, date == null ? 0 : date.getNano() % 1_000_000);
+            nextSessionOffset.set(slot, date == null ? 0 : date.getOffset().getTotalSeconds());
+        }
+    }
+
+    /** Copies every column value of one slot into another. */
+    void move(int from, int to) {
+        id.set(to, id.get(from));
+        price.set(to, price.get(from));
+        minAge.set(to, minAge.get(from));
+        maxAge.set(to, maxAge.get(from));
+        nextSessionDate.set(to, nextSessionDate.get(from));
+        category.set(to, category.get(from));
+        type.set(to, type.get(from));
+        gradeRange.set(to, gradeRange.get(from));
+        if (isComplete()) {
+            title.set(to, title.get(from));
+            description.set(to, description.get(from));
+            nextSessionNanos.set(to, nextSessionNanos.get(from));
+            nextSessionOffset.set(to, nextSessionOffset.get(from));
+        }
+    }
+
+    /** Drops the references a vacated slot still holds. */
+    void clear(int slot) {
+        if (isComplete()) {
+            title.set(slot, null);
+            description.set(slot, null);
+        }
+    }
+
+    /** Builds a new course from the columns of a slot; only for complete columns. */
+    public Course materialize(int slot) {
+        long millis = nextSessionDate.get(slot);
+        OffsetDateTime date = millis == LongColumn.MISSING ? null : OffsetDateTime.ofInstant(
+                Instant.ofEpochMilli(millis).plusNanos(nextSessionNanos.get(slot)),
+                ZoneOffset.ofTotalSeconds(nextSessionOffset.get(slot)));
+        return new Course(id.get(slot), title.get(slot), description.get(slot), term(category.get(slot)),
+                term(type.get(slot)), term(gradeRange.get(slot)), minAge.get(slot), maxAge.get(slot),
+                price.get(slot), date);
+    }
+
+    private String term(int ordinal) {
+        return ordinal == TermDictionary.MISSING ? null : dictionary.term(ordinal);
+    }
+
+    public TermDictionary dictionary() {
+        return dictionary;
+    }
+
+    public IntColumn id() {
+        return id;
+    }
+
+    public DoubleColumn price() {
+        return price;
+    }
+
+    public IntColumn minAge() {
+        return minAge;
+    }
+
+    public IntColumn maxAge() {
+        return maxAge;
+    }
+
+    public LongColumn nextSessionDate() {
+        return nextSessionDate;
+    }
+
+    public IntColumn category() {
+        return category;
+    }
+
+    public IntColumn type() {
+        return type;
+    }
+
+    public IntColumn gradeRange() {
+        return gradeRange;
+    }
+
+    /** Title column; {@code null} unless the columns are complete. */
+    public StringColumn title() {
+        return title;
+    }
+
+    public StringColumn description() {
+        return description;
+    }
+
+    public IntColumn nextSessionNanos() {
+        return nextSessionNanos;
+    }
+
+    public IntColumn nextSessionOffset() {
+        return nextSessionOffset;
+    }
+
+    /** Returns the numeric column for a field name, or {@code null} if the field is not numeric. */
+    public NumericColumn numeric(String field) {
+        switch (field) {
+            case "price":
+                return price;
+            case "minAge":
+                return minAge;
+            case "maxAge":
+                return maxAge;
+            case "nextSessionDate":
+                return nextSessionDate;
+            default:
+                return null;
+        }
+    }
+
+    /** Returns the ordinal column for a keyword field name, or {@code null}. */
+    public IntColumn ordinals(String field) {
+        switch (field) {
+            case "category":
+                return category;
+            case "type":
+                return type;
+            case "gradeRange":
+                return gradeRange;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.store;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.index.IntIntHashMap;
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable view of every stored course at one version of the store.
+ *
+ * Courses sit in fixed-size pages addressed by slot, and the id index maps a
+ * course id to its slot. The scalar fields are also kept in primitive
+ * {@link CourseColumns} under the same slots. None of these is modified after
+ * the snapshot is published, so readers need no locking.
+ *
+ * With the {@link StorageEngine#COLUMNAR} and {@link StorageEngine#MAPPED}
+ * engines there are no course pages; {@link #get} and {@link #findById}
+ * materialize a new course from the columns on every call, so callers must
+ * not rely on instance identity.
+ */
+public final class CourseSnapshot {
+
+    static final int PAGE_SHIFT = 10;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    final Course[][] pages;
+    final CourseColumns columns;
+    final int size;
+    final IntIntHashMap ids;
+    final long version;
+
+    CourseSnapshot(Course[][] pages, CourseColumns columns, int size, IntIntHashMap ids, long version) {
+        this.pages = pages;
+        this.columns = columns;
+        this.size = size;
+        this.ids = ids;
+        this.version = version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public Course get(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " out of bounds for size " + size);
+        }
+        return course(slot);
+    }
+
+    public CourseColumns columns() {
+        return columns;
+    }
+
+    /** Returns the slot holding the course with the given id, or -1. */
+    public int slotOf(int id) {
+        return ids.get(id, -1);
+    }
+
+    public Course findById(int id) {
+        int slot = ids.get(id, -1);
+        return slot < 0 ? null : course(slot);
+    }
+
+    private Course course(int slot) {
+        return pages == null ? columns.materialize(slot) : pages[slot >>> PAGE_SHIFT][slot & PAGE_MASK];
+    }
+
+    /** Read-only list view over the snapshot; no copy is made. */
+    public List<Course> asList() {
+        return new SnapshotList();
+    }
+
+    private final class SnapshotList extends AbstractList<Course> implements RandomAccess {
+
+        @Override
+        public Course get(int index) {
+            return CourseSnapshot.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.store;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.index.IntIntHashMap;
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Copy-on-write course storage with lock-free, snapshot-isolated reads.
+ *
+ * Every write builds a new {@link CourseSnapshot} that shares all untouched
+ * pages with the previous one, copying only the page directory and the pages
+ * it modifies, and then publishes it through a volatile reference. Readers
+ * grab the current snapshot once and see a consistent catalog for as long as
+ * they hold it.
+ *
+ * Writes are not synchronized here; callers must serialize them.
+ */
+public class CourseStore {
+
+    private final StorageEngine engine;
+    private final TermDictionary dictionary = new TermDictionary();
+    private volatile CourseSnapshot current;
+
+    public CourseStore() {
+        this(StorageEngine.OBJECTS);
+    }
+
+    public CourseStore(StorageEngine engine) {
+        this.engine = engine;
+        this.current = empty(0);
+    }
+
+    public StorageEngine engine() {
+        return engine;
+    }
+
+    public CourseSnapshot snapshot() {
+        return current;
+    }
+
+    public TermDictionary dictionary() {
+        return dictionary;
+    }
+
+    /** Inserts the course, or replaces the stored course with the same id. */
+    public void put(Course course) {
+        CourseSnapshot s = current;
+        IntIntHashMap ids = s.ids.fork();
+        int slot = ids.get(course.getId(), -1);
+        int size = s.size;
+        if (slot < 0) {
+            slot = size++;
+            ids.put(course.getId(), slot);
+        }
+        int pageCount = pageCount(size);
+        Course[][] pages = null;
+        if (s.pages != null) {
+            pages = Arrays.copyOf(s.pages, pageCount);
+            set(pages, slot, course);
+        }
+        CourseColumns columns = s.columns.fork(pageCount);
+        columns.set(slot, course);
+        current = new CourseSnapshot(pages, columns, size, ids, s.version + 1);
+    }
+
+    /** Removes the course with the given id and returns it, or {@code null}. */
+    public Course remove(int id) {
+        CourseSnapshot s = current;
+        int slot = s.ids.get(id, -1);
+        if (slot < 0) {
+            return null;
+        }
+        Course removed = s.get(slot);
+        IntIntHashMap ids = s.ids.fork();
+        ids.remove(id, -1);
+        Course[][] pages = s.pages == null ? null : s.pages.clone();
+        CourseColumns columns = s.columns.fork(pageCount(s.size));
+        int last = s.size - 1;
+        // move the last course into the freed slot so removal stays O(1)
+        if (slot != last) {
+            int moved = columns.id().get(last);
+            if (pages != null) {
+                set(pages, slot, s.get(last));
+            }
+            columns.move(last, slot);
+            ids.put(moved, slot);
+        }
+        if (pages != null) {
+            set(pages, last, null);
+        }
+        columns.clear(last);
+        current = new CourseSnapshot(pages, columns, last, ids, s.version + 1);
+        return removed;
+    }
+
+    /**
+     * Applies many changes as one new snapshot: each entry puts its course,
+     * or removes the id when the course is {@code null}. A page touched by
+     * several changes is copied only once.
+     */
+    public void apply(Map<Integer, Course> changes) {
+        CourseSnapshot s = current;
+        int finalSize = s.size;
+        for (Map.Entry<Integer, Course> change : changes.entrySet()) {
+            boolean present = s.ids.get(change.getKey(), -1) >= 0;
+            if (change.getValue() == null && present) {
+                finalSize--;
+            } else if (change.getValue() != null && !present) {
+                finalSize++;
+            }
+        }
+        int pageCount = pageCount(Math.max(s.size, finalSize));
+        Course[][] pages = s.pages == null ? null : Arrays.copyOf(s.pages, pageCount);
+        boolean[] ownedPages = new boolean[pageCount];
+        CourseColumns columns = s.columns.fork(pageCount);
+        IntIntHashMap ids = s.ids.fork();
+        int size = s.size;
+
+        // removals first, so the size never exceeds the final one
+        for (Map.Entry<Integer, Course> change : changes.entrySet()) {
+            int slot = change.getValue() == null ? ids.get(change.getKey(), -1) : -1;
+            if (slot < 0) {
+                continue;
+            }
+            ids.remove(change.getKey(), -1);
+            int last = --size;
+            if (slot != last) {
+                int moved = columns.id().get(last);
+                if (pages != null) {
+                    set(pages, ownedPages, slot, pages[last >>> CourseSnapshot.PAGE_SHIFT][last & CourseSnapshot.PAGE_MASK]);
+                }
+                columns.move(last, slot);
+                ids.put(moved, slot);
+            }
+            if (pages != null) {
+                set(pages, ownedPages, last, null);
+            }
+            columns.clear(last);
+        }
+        for (Map.Entry<Integer, Course> change : changes.entrySet()) {
+            Course course = change.getValue();
+            if (course == null) {
+                continue;
+            }
+            int slot = ids.get(course.getId(), -1);
+            if (slot < 0) {
+                slot = size++;
+                ids.put(course.getId(), slot);
+            }
+            if (pages != null) {
+                set(pages, ownedPages, slot, course);
+            }
+            columns.set(slot, course);
+        }
+        current = new CourseSnapshot(pages, columns, size, ids, s.version + 1);
+    }
+
+    public void clear() {
+        current = empty(current.version + 1);
+    }
+
+    /** Replaces the whole catalog, building the new snapshot in one pass. */
+    public void replaceAll(Collection<Course> courses) {
+        int pageCount = pageCount(courses.size());
+        Course[][] pages = null;
+        if (engine == StorageEngine.OBJECTS) {
+            pages = new Course[pageCount][];
+            for (int p = 0; p < pages.length; p++) {
+                pages[p] = new Course[CourseSnapshot.PAGE_SIZE];
+            }
+        }
+        CourseColumns columns = new CourseColumns(dictionary, pageCount, engine != StorageEngine.OBJECTS);
+        IntIntHashMap ids = new IntIntHashMap(courses.size());
+        int slot = 0;
+        for (Course course : courses) {
+            int existing = ids.get(course.getId(), -1);
+            int target = existing >= 0 ? existing : slot++;
+            if (pages != null) {
+                pages[target >>> CourseSnapshot.PAGE_SHIFT][target & CourseSnapshot.PAGE_MASK] = course;
+            }
+            columns.set(target, course);
+            ids.put(course.getId(), target);
+        }
+        current = new CourseSnapshot(pages, columns, slot, ids, current.version + 1);
+    }
+
+    /**
+     * Replaces the whole catalog with the rows of a segment opened on this
+     * store's dictionary; only the id map is built on the heap.
+     */
+    public void open(ColumnSegment segment) {
+        if (engine != StorageEngine.MAPPED || segment.dictionary() != dictionary) {
+            throw new IllegalArgumentException("Segment " + segment.path() + " does not belong to this store");
+        }
+        CourseColumns columns = segment.columns();
+        IntIntHashMap ids = new IntIntHashMap(segment.rows());
+        for (int slot = 0; slot < segment.rows(); slot++) {
+            ids.put(columns.id().get(slot), slot);
+        }
+        current = new CourseSnapshot(null, columns, segment.rows(), ids, current.version + 1);
+    }
+
+    /**
+     * Swaps the columns of a snapshot for the rows of the segment it was
+     * written to, dropping its heap pages, if it is still the current
+     * snapshot. Returns false when writes have been applied since.
+     */
+    public boolean remap(ColumnSegment segment, CourseSnapshot written) {
+        if (current != written || segment.dictionary() != dictionary || segment.rows() != written.size) {
+            return false;
+        }
+        // same rows in the same slots, so the id map and version carry over
+        current = new CourseSnapshot(null, segment.columns(), written.size, written.ids, written.version);
+        return true;
+    }
+
+    private CourseSnapshot empty(long version) {
+        return new CourseSnapshot(engine == StorageEngine.OBJECTS ? new Course[0][] : null,
+                new CourseColumns(dictionary, 0, engine != StorageEngine.OBJECTS), 0, new IntIntHashMap(), version);
+    }
+
+    private static int pageCount(int size) {
+        return (size + CourseSnapshot.PAGE_MASK) >>> CourseSnapshot.PAGE_SHIFT;
+    }
+
+    private static void set(Course[][] pages, boolean[] owned, int slot, Course course) {
+        int p = slot >>> CourseSnapshot.PAGE_SHIFT;
+        if (!owned[p]) {
+            pages[p] = pages[p] == null ? new Course[CourseSnapshot.PAGE_SIZE] : pages[p].clone();
+            owned[p] = true;
+        }
+        pages[p][slot & CourseSnapshot.PAGE_MASK] = course;
+    }
+
+    private static void set(Course[][] pages, int slot, Course course) {
+        int p = slot >>> CourseSnapshot.PAGE_SHIFT;
+        Course[] page = pages[p] == null ? new Course[CourseSnapshot.PAGE_SIZE] : pages[p].clone();
+        page[slot & CourseSnapshot.PAGE_MASK] = course;
+        pages[p] = page;
+    }
+}
@@ -0,0 +1,69 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.store;
+
+import java.util.Arrays;
+
+/**
+ * Paged {@code int} column. Like the course pages of a snapshot, pages are
+ * shared between versions and copied the first time a writer touches them.
+ */
+public final class IntColumn implements NumericColumn {
+
+    final int[][] pages;
+    private final boolean[] owned;
+    // rows of a mapped segment, read where no page has been written; null if none
+    private final MappedRegion base;
+
+    IntColumn(int pageCount) {
+        this(new int[pageCount][], null);
+    }
+
+    IntColumn(MappedRegion base, int pageCount) {
+        this(new int[pageCount][], base);
+    }
+
+    private IntColumn(int[][] pages, MappedRegion base) {
+        this.pages = pages;
+        this.owned = new boolean[pages.length];
+        this.base = base;
+    }
+
+    /** Returns a writable copy sharing every page, with room for pageCount pages. */
+    IntColumn fork(int pageCount) {
+        return new IntColumn(Arrays.copyOf(pages, pageCount), base);
+    }
+
+    public int get(int slot) {
+        int[] page = pages[slot >>> CourseSnapshot.PAGE_SHIFT];
+        return page != null ? page[slot & CourseSnapshot.PAGE_MASK] : base.intAt(slot);
+    }
+
+    void set(int slot, int value) {
+        int p = slot >>> CourseSnapshot.PAGE_SHIFT;
+        if (!owned[p]) {
+            pages[p] = pages[p] == null ? newPage(p) : pages[p].clone();
+            owned[p] = true;
+        }
+        pages[p][slot & CourseSnapshot.PAGE_MASK] = value;
+    }
+
+    // the first write to a mapped page copies its rows to the heap
+    private int[] newPage(int p) {
+        int[] page = new int[CourseSnapshot.PAGE_SIZE];
+        int from = p << CourseSnapshot.PAGE_SHIFT;
+        int rows = base == null ? 0 : Math.min(CourseSnapshot.PAGE_SIZE, base.rows - from);
+        for (int i = 0; i < rows; i++) {
+            page[i] = base.intAt(from + i);
+        }
+        return page;
+    }
+
+    @Override
+    public double value(int slot) {
+        return get(slot);
+    }
+
+    @Override
+    public boolean exists(int slot) {
+        return true;
+    }
+}
@@ -0,0 +1,72 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.store;
+
+import java.util.Arrays;
+
+/**
+ * Paged {@code long} column, used for dates as epoch milliseconds with
+ * {@link #MISSING} standing in for no date. Pages are shared between versions
+ * and copied the first time a writer touches them.
+ */
+public final class LongColumn implements NumericColumn {
+
+    public static final long MISSING = Long.MIN_VALUE;
+
+    final long[][] pages;
+    private final boolean[] owned;
+    // rows of a mapped segment, read where no page has been written; null if none
+    private final MappedRegion base;
+
+    LongColumn(int pageCount) {
+        this(new long[pageCount][], null);
+    }
+
+    LongColumn(MappedRegion base, int pageCount) {
+        this(new long[pageCount][], base);
+    }
+
+    private LongColumn(long[][] pages, MappedRegion base) {
+        this.pages = pages;
+        this.owned = new boolean[pages.length];
+        this.base = base;
+    }
+
+    /** Returns a writable copy sharing every page, with room for pageCount pages. */
+    LongColumn fork(int pageCount) {
+        return new LongColumn(Arrays.copyOf(pages, pageCount), base);
+    }
+
+    public long get(int slot) {
+        long[] page = pages[slot >>> CourseSnapshot.PAGE_SHIFT];
+        return page != null ? page[slot & CourseSnapshot.PAGE_MASK] : base.longAt(slot);
+    }
+
+    void set(int slot, long value) {
+        int p = slot >>> CourseSnapshot.PAGE_SHIFT;
+        if (!owned[p]) {
+            pages[p] = pages[p] == null ? newPage(p) : pages[p].clone();
+            owned[p] = true;
+        }
+        pages[p][slot & CourseSnapshot.PAGE_MASK] = value;
+    }
+
+    // the first write to a mapped page copies its rows to the heap
+    private long[] newPage(int p) {
+        long[] page = new long[CourseSnapshot.PAGE_SIZE];
+        int from = p << CourseSnapshot.PAGE_SHIFT;
+        int rows = base == null ? 0 : Math.min(CourseSnapshot.PAGE_SIZE, base.rows - from);
+        for (int i = 0; i < rows; i++) {
+            page[i] = base.longAt(from + i);
+        }
+        return page;
+    }
+
+    @Override
+    public double value(int slot) {
+        return get(slot);
+    }
+
+    @Override
+    public boolean exists(int slot) {
+        return get(slot) != MISSING;
+    }
+}
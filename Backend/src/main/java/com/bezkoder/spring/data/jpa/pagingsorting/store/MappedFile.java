@@ -0,0 +1,82 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.store;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A whole file mapped read-only, in chunks of 1 GiB so that files larger than
+ * a single {@link MappedByteBuffer} can be read by long offsets.
+ *
+ * The data lives in the OS page cache, not on the heap; pages are read in on
+ * first access and evicted under memory pressure like any cached file. Reads
+ * are absolute, so any number of threads can share the mapping. Fixed-width
+ * values must be aligned to their width, which keeps them within one chunk.
+ */
+final class MappedFile {
+
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private final Path path;
+    private final long size;
+    private final MappedByteBuffer[] chunks;
+
+    private MappedFile(Path path, long size, MappedByteBuffer[] chunks) {
+        this.path = path;
+        this.size = size;
+        this.chunks = chunks;
+    }
+
+    static MappedFile map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT)];
+            for (int c = 0; c < chunks.length; c++) {
+                long position = (long) c << CHUNK_SHIFT;
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHUNK_MASK + 1, size - position));
+                chunks[c].order(ORDER);
+            }
+            // the mapping stays valid after the channel is closed
+            return new MappedFile(path, size, chunks);
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long size() {
+        return size;
+    }
+
+    int getInt(long offset) {
+        return chunks[(int) (offset >>> CHUNK_SHIFT)].getInt((int) (offset & CHUNK_MASK));
+    }
+
+    long getLong(long offset) {
+        return chunks[(int) (offset >>> CHUNK_SHIFT)].getLong((int) (offset & CHUNK_MASK));
+    }
+
+    double getDouble(long offset) {
+        return chunks[(int) (offset >>> CHUNK_SHIFT)].getDouble((int) (offset & CHUNK_MASK));
+    }
+
+    /** Copies bytes starting at offset into dst, across chunks if need be. */
+    void get(long offset, byte[] dst) {
+        int done = 0;
+        while (done < dst.length) {
+            long at = offset + done;
+            MappedByteBuffer chunk = chunks[(int) (at >>> CHUNK_SHIFT)];
+            int position = (int) (at & CHUNK_MASK);
+            int n = Math.min(dst.length - done, chunk.capacity() - position);
+            chunk.get(position, dst, done, n);
+            done += n;
+        }
+    }
+}
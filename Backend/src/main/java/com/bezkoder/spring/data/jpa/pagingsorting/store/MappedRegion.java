@@ -0,0 +1,30 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.store;
+
+/**
+ * One fixed-width column of a {@link ColumnSegment}: a value per row, for
+ * rows [0, rows), starting at an aligned offset of the mapped file.
+ */
+final class MappedRegion {
+
+    final MappedFile file;
+    final long offset;
+    final int rows;
+
+    MappedRegion(MappedFile file, long offset, int rows) {
+        this.file = file;
+        this.offset = offset;
+        this.rows = rows;
+    }
+
+    int intAt(int row) {
+        return file.getInt(offset + ((long) row << 2));
+    }
+
+    long longAt(int row) {
+        return file.getLong(offset + ((long) row << 3));
+    }
+
+    double doubleAt(int row) {
+        return file.getDouble(offset + ((long) row << 3));
+    }
+}
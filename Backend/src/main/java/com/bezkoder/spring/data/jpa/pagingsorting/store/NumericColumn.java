@@ -0,0 +1,13 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.store;
+
+/**
+ * Read access to a numeric column by slot, widened to {@code double} so
+ * aggregations can treat int, double and epoch-millis columns alike.
+ */
+public interface NumericColumn {
+
+    double value(int slot);
+
+    /** False where the course has no value (only possible for dates). */
+    boolean exists(int slot);
+}
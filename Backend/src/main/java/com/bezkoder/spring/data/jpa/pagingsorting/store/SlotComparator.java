@@ -0,0 +1,184 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.store;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Orders the slots of a snapshot by reading its columns, in the same order
+ * the course comparators of {@code SortIndex} give the courses in them. Slots
+ * can also be compared against a probe course, such as a searchAfter cursor,
+ * without materializing anything.
+ */
+public interface SlotComparator {
+
+    int compare(int slot, int other);
+
+    int compare(int slot, Course probe);
+
+    default SlotComparator reversed() {
+        SlotComparator self = this;
+        return new SlotComparator() {
+            @Override
+            public int compare(int slot, int other) {
+                return self.compare(other, slot);
+            }
+
+            @Override
+            public int compare(int slot, Course probe) {
+                return -self.compare(slot, probe);
+            }
+        };
+    }
+
+    default SlotComparator thenComparing(SlotComparator next) {
+        SlotComparator self = this;
+        return new SlotComparator() {
+            @Override
+            public int compare(int slot, int other) {
+                int c = self.compare(slot, other);
+                return c != 0 ? c : next.compare(slot, other);
+            }
+
+            @Override
+            public int compare(int slot, Course probe) {
+                int c = self.compare(slot, probe);
+                return c != 0 ? c : next.compare(slot, probe);
+            }
+        };
+    }
+
+    /**
+     * Returns the ascending comparator for a sortable field, or {@code null}.
+     * Needs complete columns for title.
+     */
+    static SlotComparator of(CourseColumns columns, String field) {
+        switch (field) {
+            case "id":
+                return ints(columns.id(), Course::getId);
+            case "minAge":
+                return ints(columns.minAge(), Course::getMinAge);
+            case "maxAge":
+                return ints(columns.maxAge(), Course::getMaxAge);
+            case "price": {
+                DoubleColumn price = columns.price();
+                return new SlotComparator() {
+                    @Override
+                    public int compare(int slot, int other) {
+                        return Double.compare(price.get(slot), price.get(other));
+                    }
+
+                    @Override
+                    public int compare(int slot, Course probe) {
+                        return Double.compare(price.get(slot), probe.getPrice());
+                    }
+                };
+            }
+            case "category":
+                return keywords(columns, columns.category(), Course::getCategory);
+            case "type":
+                return keywords(columns, columns.type(), Course::getType);
+            case "title":
+                return titles(columns.title());
+            case "nextSessionDate":
+                return dates(columns);
+            default:
+                return null;
+        }
+    }
+
+    private static SlotComparator ints(IntColumn column, ToIntFunction<Course> value) {
+        return new SlotComparator() {
+            @Override
+            public int compare(int slot, int other) {
+                return Integer.compare(column.get(slot), column.get(other));
+            }
+
+            @Override
+            public int compare(int slot, Course probe) {
+                return Integer.compare(column.get(slot), value.applyAsInt(probe));
+            }
+        };
+    }
+
+    // keyword ordinals are assigned in arrival order, so rank them by term first
+    private static SlotComparator keywords(CourseColumns columns, IntColumn ordinals,
+                                           Function<Course, String> value) {
+        TermDictionary dictionary = columns.dictionary();
+        Integer[] byTerm = new Integer[dictionary.size()];
+        for (int i = 0; i < byTerm.length; i++) {
+            byTerm[i] = i;
+        }
+        Arrays.sort(byTerm, Comparator.comparing(dictionary::term));
+        int[] rank = new int[byTerm.length];
+        for (int i = 0; i < byTerm.length; i++) {
+            rank[byTerm[i]] = i;
+        }
+        Comparator<String> terms = Comparator.nullsFirst(Comparator.naturalOrder());
+        return new SlotComparator() {
+            @Override
+            public int compare(int slot, int other) {
+                return Integer.compare(rankOf(ordinals.get(slot)), rankOf(ordinals.get(other)));
+            }
+
+            @Override
+            public int compare(int slot, Course probe) {
+                int ordinal = ordinals.get(slot);
+                return terms.compare(ordinal == TermDictionary.MISSING ? null : dictionary.term(ordinal), value.apply(probe));
+            }
+
+            private int rankOf(int ordinal) {
+                return ordinal == TermDictionary.MISSING ? -1 : rank[ordinal];
+            }
+        };
+    }
+
+    private static SlotComparator titles(StringColumn title) {
+        Comparator<String> strings = Comparator.nullsFirst(Comparator.naturalOrder());
+        return new SlotComparator() {
+            @Override
+            public int compare(int slot, int other) {
+                return strings.compare(title.get(slot), title.get(other));
+            }
+
+            @Override
+            public int compare(int slot, Course probe) {
+                return strings.compare(title.get(slot), probe.getTitle());
+            }
+        };
+    }
+
+    // OffsetDateTime orders by instant, then by local time, i.e. by offset
+    private static SlotComparator dates(CourseColumns columns) {
+        LongColumn millis = columns.nextSessionDate();
+        IntColumn nanos = columns.nextSessionNanos();
+        IntColumn offset = columns.nextSessionOffset();
+        return new SlotComparator() {
+            @Override
+            public int compare(int slot, int other) {
+                int c = Long.compare(millis.get(slot), millis.get(other));
+                if (c != 0 || nanos == null) {
+                    return c;
+                }
+                c = Integer.compare(nanos.get(slot), nanos.get(other));
+                return c != 0 ? c : Integer.compare(offset.get(slot), offset.get(other));
+            }
+
+            @Override
+            public int compare(int slot, Course probe) {
+                OffsetDateTime date = probe.getNextSessionDate();
+                long probeMillis = date == null ? LongColumn.MISSING : date.toInstant().toEpochMilli();
+                int c = Long.compare(millis.get(slot), probeMillis);
+                if (c != 0 || nanos == null || date == null) {
+                    return c;
+                }
+                c = Integer.compare(nanos.get(slot), date.getNano() % 1_000_000);
+                return c != 0 ? c : Integer.compare(offset.get(slot), date.getOffset().getTotalSeconds());
+            }
+        };
+    }
+}
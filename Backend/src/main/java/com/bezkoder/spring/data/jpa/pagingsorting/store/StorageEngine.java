@@ -0,0 +1,31 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.store;
+
+/**
+ * How a {@link CourseStore} keeps its courses.
+ */
+public enum StorageEngine {
+
+    /**
+     * Course objects in pages, with primitive columns alongside for scans.
+     * Reads return the stored instances.
+     */
+    OBJECTS,
+
+    /**
+     * Columns only: numbers and dates in primitive arrays, keyword fields as
+     * dictionary ordinals, title and description as string columns. No course
+     * objects are kept; reads materialize a new {@code Course} per row, so only
+     * the rows actually returned are ever allocated.
+     */
+    COLUMNAR,
+
+    /**
+     * The columnar layout, read from an immutable {@link ColumnSegment} file
+     * through a memory mapping: the OS page cache holds the rows, so the heap
+     * only keeps the id map, the search indexes and the pages changed since
+     * the last checkpoint, which writes a new segment and maps it instead.
+     * Restarts map the newest segment rather than parse the catalog again.
+     * Needs persistence (courses.data-dir).
+     */
+    MAPPED
+}
@@ -0,0 +1,74 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.store;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Paged column of strings for the free-text fields of the columnar engine.
+ * Pages are shared between versions and copied the first time a writer
+ * touches them.
+ */
+public final class StringColumn {
+
+    final String[][] pages;
+    private final boolean[] owned;
+    // UTF-8 rows of a mapped segment: where each starts and its length in
+    // bytes (-1 for null), read where no page has been written; null if none
+    private final MappedRegion offsets;
+    private final MappedRegion lengths;
+
+    StringColumn(int pageCount) {
+        this(new String[pageCount][], null, null);
+    }
+
+    StringColumn(MappedRegion offsets, MappedRegion lengths, int pageCount) {
+        this(new String[pageCount][], offsets, lengths);
+    }
+
+    private StringColumn(String[][] pages, MappedRegion offsets, MappedRegion lengths) {
+        this.pages = pages;
+        this.owned = new boolean[pages.length];
+        this.offsets = offsets;
+        this.lengths = lengths;
+    }
+
+    /** Returns a writable copy sharing every page, with room for pageCount pages. */
+    StringColumn fork(int pageCount) {
+        return new StringColumn(Arrays.copyOf(pages, pageCount), offsets, lengths);
+    }
+
+    public String get(int slot) {
+        String[] page = pages[slot >>> CourseSnapshot.PAGE_SHIFT];
+        return page != null ? page[slot & CourseSnapshot.PAGE_MASK] : mapped(slot);
+    }
+
+    void set(int slot, String value) {
+        int p = slot >>> CourseSnapshot.PAGE_SHIFT;
+        if (!owned[p]) {
+            pages[p] = pages[p] == null ? newPage(p) : pages[p].clone();
+            owned[p] = true;
+        }
+        pages[p][slot & CourseSnapshot.PAGE_MASK] = value;
+    }
+
+    // the first write to a mapped page copies its rows to the heap
+    private String[] newPage(int p) {
+        String[] page = new String[CourseSnapshot.PAGE_SIZE];
+        int from = p << CourseSnapshot.PAGE_SHIFT;
+        int rows = offsets == null ? 0 : Math.min(CourseSnapshot.PAGE_SIZE, offsets.rows - from);
+        for (int i = 0; i < rows; i++) {
+            page[i] = mapped(from + i);
+        }
+        return page;
+    }
+
+    private String mapped(int slot) {
+        int length = lengths.intAt(slot);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        offsets.file.get(offsets.longAt(slot), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
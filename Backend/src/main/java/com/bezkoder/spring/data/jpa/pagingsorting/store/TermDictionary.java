@@ -0,0 +1,55 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.store;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only dictionary giving each distinct keyword value a dense ordinal,
+ * so keyword columns can hold ints and facet counts can live in an array.
+ *
+ * Ordinals are never reused, so a snapshot's columns stay valid while later
+ * writes add terms. Only the (serialized) writer adds terms; readers look
+ * terms up without locking.
+ */
+public final class TermDictionary {
+
+    public static final int MISSING = -1;
+
+    private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+    private volatile String[] terms = new String[16];
+    private volatile int size;
+
+    int add(String term) {
+        if (term == null) {
+            return MISSING;
+        }
+        Integer ordinal = ordinals.get(term);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        String[] t = terms;
+        if (size == t.length) {
+            t = Arrays.copyOf(t, t.length << 1);
+        }
+        t[size] = term;
+        terms = t;
+        ordinals.put(term, size);
+        return size++;
+    }
+
+    /** Returns the ordinal of the term, or {@link #MISSING}. */
+    public int ordinal(String term) {
+        Integer ordinal = term == null ? null : ordinals.get(term);
+        return ordinal == null ? MISSING : ordinal;
+    }
+
+    public String term(int ordinal) {
+        return terms[ordinal];
+    }
+
+    /** Upper bound of every ordinal handed out so far. */
+    public int size() {
+        return size;
+    }
+}
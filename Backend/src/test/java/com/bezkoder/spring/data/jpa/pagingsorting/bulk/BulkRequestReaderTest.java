@@ -0,0 +1,95 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.bulk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+class BulkRequestReaderTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+	private BulkRequestReader reader(String... lines) {
+		String body = String.join("\n", lines);
+		return new BulkRequestReader(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), objectMapper);
+	}
+
+	@Test
+	void readsActionsInBatchesSkippingBlankLines() throws Exception {
+		BulkRequestReader reader = reader(
+				"{\"create\":{}}",
+				"{\"title\":\"algebra\",\"price\":10}",
+				"",
+				"{\"update\":{\"_id\":5}}",
+				"{\"title\":\"biology\",\"nextSessionDate\":\"2025-03-01T09:00:00+01:00\"}",
+				"   ",
+				"{\"delete\":{\"_id\":7}}");
+
+		List<BulkAction> first = reader.next(2);
+		List<BulkAction> second = reader.next(2);
+
+		assertEquals(2, first.size());
+		assertEquals(BulkAction.Type.CREATE, first.get(0).getType());
+		assertEquals(0, first.get(0).getId());
+		assertEquals("algebra", first.get(0).getCourse().getTitle());
+		assertEquals(BulkAction.Type.UPDATE, first.get(1).getType());
+		assertEquals(5, first.get(1).getId());
+		assertEquals(OffsetDateTime.parse("2025-03-01T08:00:00Z").toInstant(),
+				first.get(1).getCourse().getNextSessionDate().toInstant());
+		assertEquals(1, second.size());
+		assertEquals(BulkAction.Type.DELETE, second.get(0).getType());
+		assertEquals(7, second.get(0).getId());
+		assertNull(second.get(0).getCourse());
+		assertTrue(reader.next(2).isEmpty());
+	}
+
+	@Test
+	void anInvalidCourseFailsOnlyItsOwnAction() throws Exception {
+		BulkRequestReader reader = reader(
+				"{\"create\":{\"_id\":3}}",
+				"{\"title\":\"algebra\",\"price\":\"cheap\"}",
+				"{\"delete\":{\"_id\":4}}");
+
+		List<BulkAction> actions = reader.next(10);
+
+		assertEquals(2, actions.size());
+		assertEquals(3, actions.get(0).getId());
+		assertNull(actions.get(0).getCourse());
+		assertTrue(actions.get(0).getError().startsWith("Invalid course on line 2"), actions.get(0).getError());
+		assertNull(actions.get(1).getError());
+	}
+
+	@Test
+	void aMalformedActionLineRejectsTheRestOfTheBody() {
+		for (String[] body : List.of(
+				new String[] { "not json" },
+				new String[] { "[\"create\"]" },
+				new String[] { "{\"create\":{},\"delete\":{\"_id\":1}}" },
+				new String[] { "{\"upsert\":{}}", "{\"title\":\"algebra\"}" },
+				new String[] { "{\"delete\":{\"_id\":\"seven\"}}" },
+				new String[] { "{\"create\":{}}" })) {
+			assertThrows(IllegalArgumentException.class, () -> reader(body).next(10), String.join("\\n", body));
+		}
+	}
+
+	@Test
+	void theErrorNamesTheLineOfTheBadAction() {
+		BulkRequestReader reader = reader(
+				"{\"delete\":{\"_id\":1}}",
+				"",
+				"{\"delete\":{\"_id\":2}");
+
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> reader.next(10));
+		assertTrue(e.getMessage().endsWith("line 3"), e.getMessage());
+	}
+}
@@ -0,0 +1,105 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.repository.CourseRepository;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.StorageEngine;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+class CourseJsonCacheTest {
+
+	private static final OffsetDateTime SESSION = OffsetDateTime.of(2025, 3, 1, 9, 0, 0, 0, ZoneOffset.ofHours(1));
+	private static final PageRequest BY_ID = PageRequest.of(0, 10, Sort.by("id"));
+
+	private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+			.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+	private final CourseJsonCache cache = new CourseJsonCache(objectMapper, 100);
+
+	private static Course course(int id, String title, double price) {
+		return new Course(id, title, "generated course", "Math", "COURSE", "7th-8th", 10, 12, price, SESSION);
+	}
+
+	private CourseRepository repository(StorageEngine engine) {
+		CourseRepository repository = new CourseRepository(engine, null, null, 0, null, cache, null, null, null);
+		List<Course> catalog = new ArrayList<>();
+		for (int id = 1; id <= 20; id++) {
+			catalog.add(course(id, "course " + id, id));
+		}
+		repository.replaceAll(catalog);
+		return repository;
+	}
+
+	private JsonNode json(List<Course> courses, CourseProjection projection) throws Exception {
+		return objectMapper.readTree(objectMapper.writeValueAsString(cache.encode(courses, projection)));
+	}
+
+	private List<Course> firstPage(CourseRepository repository) {
+		return repository.findAll(BY_ID).getContent();
+	}
+
+	@Test
+	void anUpdatedCourseIsWrittenWithItsNewValues() throws Exception {
+		for (StorageEngine engine : List.of(StorageEngine.OBJECTS, StorageEngine.COLUMNAR)) {
+			CourseRepository repository = repository(engine);
+			CourseProjection titleAndPrice = CourseProjection.of("title,price", null);
+			// the first listing caches the fragments
+			assertEquals("course 2", json(firstPage(repository), null).get(1).get("title").asText());
+			List<Course> before = firstPage(repository);
+
+			repository.save(course(2, "renamed", 99.5));
+
+			for (CourseProjection projection : new CourseProjection[] { null, titleAndPrice }) {
+				JsonNode course = json(firstPage(repository), projection).get(1);
+				assertEquals(2, course.get("id").asInt(), engine + " " + projection);
+				assertEquals("renamed", course.get("title").asText(), engine + " " + projection);
+				assertEquals(99.5, course.get("price").asDouble(), engine + " " + projection);
+				// a page read before the update still writes the course as it was then
+				JsonNode old = json(before, projection).get(1);
+				assertEquals("course 2", old.get("title").asText(), engine + " " + projection);
+				assertEquals(2.0, old.get("price").asDouble(), engine + " " + projection);
+			}
+			assertEquals(3, json(firstPage(repository), titleAndPrice).get(1).size());
+			assertEquals("generated course", json(firstPage(repository), null).get(1).get("description").asText());
+			assertEquals("course 1", json(firstPage(repository), null).get(0).get("title").asText());
+		}
+	}
+
+	@Test
+	void aDeletedAndRecreatedCourseIsNotWrittenFromItsOldFragment() throws Exception {
+		CourseRepository repository = repository(StorageEngine.OBJECTS);
+		json(firstPage(repository), null);
+
+		repository.deleteById(1);
+		repository.save(course(1, "recreated", 7));
+
+		assertEquals("recreated", json(firstPage(repository), null).get(0).get("title").asText());
+		repository.deleteAll();
+		repository.save(course(1, "after clearing", 8));
+		assertEquals("after clearing", json(firstPage(repository), null).get(0).get("title").asText());
+	}
+
+	@Test
+	void aCourseChangedOutsideTheRepositoryIsReEncoded() throws Exception {
+		Course course = course(1, "course 1", 1);
+		assertEquals("course 1", json(List.of(course), null).get(0).get("title").asText());
+
+		// a copy with other values under the same id, as a concurrent reader's newer snapshot would hold
+		Course newer = course(1, "course 1", 1);
+		newer.setNextSessionDate(SESSION.plusDays(1));
+		assertEquals("2025-03-02T09:00:00+01:00", json(List.of(newer), null).get(0).get("nextSessionDate").asText());
+		assertEquals("2025-03-01T09:00:00+01:00", json(List.of(course), null).get(0).get("nextSessionDate").asText());
+	}
+}
@@ -0,0 +1,60 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+class CourseJsonListTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+	// fragments in snake case, to tell them apart from courses written property by property
+	private final CourseJsonCache cache = new CourseJsonCache(
+			new ObjectMapper().registerModule(new JavaTimeModule()).setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE),
+			100);
+	private final List<Course> courses = List.of(
+			new Course(1, "Algebra", "equations", "Math", "COURSE", "7th-8th", 12, 14, 100, null),
+			new Course(2, "Piano", "scales", "Music", "LESSON", "K-12", 6, 99, 40, null));
+
+	@Test
+	void jsonIsAssembledFromTheCachedFragments() throws Exception {
+		String json = objectMapper.writeValueAsString(cache.encode(courses));
+
+		assertTrue(json.contains("\"grade_range\":\"7th-8th\""), json);
+		assertEquals(2, objectMapper.readTree(json).size());
+	}
+
+	@Test
+	void binaryFormatsAndTokenBuffersGetEachProperty() throws Exception {
+		ObjectMapper smile = objectMapper.copyWith(new SmileFactory());
+		JsonNode fromSmile = smile.readTree(smile.writeValueAsBytes(cache.encode(courses)));
+		JsonNode buffered = objectMapper.valueToTree(cache.encode(courses));
+
+		for (JsonNode tree : List.of(fromSmile, buffered)) {
+			assertEquals(2, tree.size());
+			assertEquals("7th-8th", tree.get(0).get("gradeRange").asText());
+			assertFalse(tree.get(0).has("grade_range"));
+			assertEquals("Piano", tree.get(1).get("title").asText());
+		}
+	}
+
+	@Test
+	void aProjectionWritesOnlyTheIdAndTheFieldsAskedFor() throws Exception {
+		JsonNode tree = objectMapper.readTree(
+				objectMapper.writeValueAsString(cache.encode(courses, CourseProjection.of("title", null))));
+
+		assertEquals(2, tree.get(0).size());
+		assertEquals(1, tree.get(0).get("id").asInt());
+		assertEquals("Algebra", tree.get(0).get("title").asText());
+	}
+}
@@ -0,0 +1,69 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class QueryCacheTest {
+
+	private final QueryCache cache = new QueryCache(100);
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private String get(String key, long generation, String value) {
+		return cache.get(key, generation, () -> {
+			loads.incrementAndGet();
+			return value;
+		}, String::length);
+	}
+
+	@Test
+	void aNewerGenerationDropsEveryEntry() {
+		assertEquals("a1", get("a", 1, "a1"));
+		assertEquals("b1", get("b", 1, "b1"));
+		assertEquals("a1", get("a", 1, "a2"));
+		assertEquals(2, loads.get());
+
+		assertEquals("a2", get("a", 2, "a2"));
+		assertEquals("b2", get("b", 2, "b2"));
+		assertEquals(4, loads.get());
+		assertEquals(2L, cache.stats().get("invalidations"));
+		assertEquals(2L, cache.stats().get("generation"));
+	}
+
+	@Test
+	void aResultComputedAtAnOlderGenerationIsNotCached() {
+		// a change becomes visible while the result is computed
+		String stale = cache.get("a", 1, () -> {
+			get("b", 2, "b2");
+			return "a1";
+		}, String::length);
+
+		assertEquals("a1", stale);
+		assertEquals("a2", get("a", 2, "a2"));
+		// nor is a late reader still at the old generation served from, or allowed to fill, the cache
+		assertEquals("a1 again", get("a", 1, "a1 again"));
+		assertEquals("a2", get("a", 2, "a3"));
+		assertEquals(2, cache.stats().get("entries"));
+	}
+
+	@Test
+	void theLeastRecentlyUsedEntriesAreEvictedByWeight() {
+		get("a", 1, "x".repeat(40));
+		get("b", 1, "x".repeat(40));
+		get("a", 1, "unused");
+		get("c", 1, "x".repeat(40));
+
+		assertEquals(2, cache.stats().get("entries"));
+		assertEquals(1L, cache.stats().get("evictions"));
+		int before = loads.get();
+		get("a", 1, "unused");
+		get("b", 1, "x".repeat(40));
+		assertEquals(before + 1, loads.get());
+		// heavier than the whole cache: returned, never cached
+		get("d", 1, "x".repeat(200));
+		get("d", 1, "x".repeat(200));
+		assertEquals(before + 3, loads.get());
+	}
+}
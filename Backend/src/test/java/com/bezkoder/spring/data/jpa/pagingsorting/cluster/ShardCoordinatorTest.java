@@ -0,0 +1,171 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.cluster;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.repository.CourseRepository;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.SearchAfter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+class ShardCoordinatorTest {
+
+	private static final int COURSES = 101;
+	private static final Sort BY_PRICE = Sort.by(Sort.Direction.ASC, "price");
+
+	private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+	private final List<HttpServer> servers = new ArrayList<>();
+	// the query parameters of every request a shard received
+	private final Queue<Map<String, String>> requests = new ConcurrentLinkedQueue<>();
+	private CourseRepository reference;
+	private ShardCoordinator coordinator;
+
+	private static Course course(int id) {
+		// few distinct prices, so pages cut through runs of ties
+		return new Course(id, "course " + id, "generated course", "Math", "COURSE", "7th-8th", 10, 12, id % 7, null);
+	}
+
+	@BeforeEach
+	void startShards() throws IOException {
+		reference = new CourseRepository();
+		List<Course> all = new ArrayList<>();
+		for (int id = 1; id <= COURSES; id++) {
+			all.add(course(id));
+		}
+		reference.replaceAll(all);
+
+		List<String> urls = new ArrayList<>();
+		for (int index = 0; index < 2; index++) {
+			ShardRouter router = new ShardRouter(index, 2);
+			CourseRepository shard = new CourseRepository();
+			shard.replaceAll(all.stream().filter(course -> router.owns(course.getId())).collect(Collectors.toList()));
+			HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+			server.createContext("/api/courses", exchange -> answer(shard, exchange));
+			server.start();
+			servers.add(server);
+			urls.add("http://localhost:" + server.getAddress().getPort());
+		}
+		coordinator = new ShardCoordinator(objectMapper, String.join(",", urls), 5_000);
+	}
+
+	@AfterEach
+	void stopShards() {
+		servers.forEach(server -> server.stop(0));
+	}
+
+	// GET /api/courses as a shard node answers it, sorted by one property
+	private void answer(CourseRepository shard, HttpExchange exchange) throws IOException {
+		Map<String, String> params = new LinkedHashMap<>();
+		for (String param : exchange.getRequestURI().getRawQuery().split("&")) {
+			String[] pair = param.split("=", 2);
+			params.put(URLDecoder.decode(pair[0], StandardCharsets.UTF_8), URLDecoder.decode(pair[1], StandardCharsets.UTF_8));
+		}
+		requests.add(params);
+		String[] sort = params.get("sort").split(",");
+		Pageable pageable = PageRequest.of(Integer.parseInt(params.get("page")), Integer.parseInt(params.get("size")),
+				Sort.by(Sort.Direction.fromString(sort[1]), sort[0]));
+		Course after = params.containsKey("searchAfter") ? SearchAfter.decode(params.get("searchAfter"), pageable.getSort())
+				: null;
+		Page<Course> page = shard.findAll(pageable, after);
+
+		Map<String, Object> response = new LinkedHashMap<>();
+		response.put("courses", page.getContent());
+		response.put("totalItems", page.getTotalElements());
+		byte[] body = objectMapper.writeValueAsBytes(response);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static List<Integer> ids(Page<Course> page) {
+		return page.getContent().stream().map(Course::getId).collect(Collectors.toList());
+	}
+
+	private static Map<String, List<String>> params(String... pairs) {
+		Map<String, List<String>> params = new LinkedHashMap<>();
+		params.put("sort", List.of("price,asc"));
+		for (int i = 0; i < pairs.length; i += 2) {
+			params.put(pairs[i], List.of(pairs[i + 1]));
+		}
+		return params;
+	}
+
+	@Test
+	void offsetPagesMergeTheShardsFirstMatchesLikeOneNode() {
+		for (int page = 0; page * 7 < COURSES + 7; page++) {
+			requests.clear();
+			Pageable pageable = PageRequest.of(page, 7, BY_PRICE);
+
+			Page<Course> merged = coordinator.findPage("/api/courses", params("fields", "title"), pageable, List.of());
+
+			assertEquals(ids(reference.findAll(pageable, null)), ids(merged), "page " + page);
+			assertEquals(COURSES, merged.getTotalElements());
+			assertEquals(2, requests.size());
+			for (Map<String, String> request : requests) {
+				// every shard is asked for its first (page + 1) * size matches, with whole courses
+				assertEquals("0", request.get("page"));
+				assertEquals(Integer.toString((page + 1) * 7), request.get("size"));
+				assertFalse(request.containsKey("fields"));
+			}
+		}
+	}
+
+	@Test
+	void searchAfterIsPassedToTheShardsAndOnlyAPageIsAsked() {
+		Pageable first = PageRequest.of(2, 7, BY_PRICE);
+		List<Course> page = reference.findAll(first, null).getContent();
+		String token = SearchAfter.encode(page.get(page.size() - 1), BY_PRICE);
+		Pageable next = PageRequest.of(0, 7, BY_PRICE);
+
+		Page<Course> merged = coordinator.findPage("/api/courses", params("searchAfter", token), next, List.of());
+
+		assertEquals(ids(reference.findAll(PageRequest.of(3, 7, BY_PRICE), null)), ids(merged));
+		assertEquals(COURSES, merged.getTotalElements());
+		for (Map<String, String> request : requests) {
+			assertEquals(token, request.get("searchAfter"));
+			assertEquals("7", request.get("size"));
+		}
+	}
+
+	@Test
+	void deepOffsetPagesAreRefusedBeforeAnyShardIsAsked() {
+		Pageable tooDeep = PageRequest.of(100, 100, BY_PRICE);
+		Pageable overflowing = PageRequest.of(Integer.MAX_VALUE, 1_000, BY_PRICE);
+
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+				() -> coordinator.findPage("/api/courses", params(), tooDeep, List.of()));
+		assertTrue(e.getMessage().contains("searchAfter"), e.getMessage());
+		assertThrows(IllegalArgumentException.class,
+				() -> coordinator.findPage("/api/courses", params(), overflowing, List.of()));
+		assertThrows(IllegalArgumentException.class, () -> coordinator.search("course", overflowing));
+		assertEquals(0, requests.size());
+	}
+}
@@ -0,0 +1,190 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.index;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.repository.CourseRepository;
+
+class InvertedIndexTest {
+
+	private static final String[] WORDS = { "piano", "pianos", "lessons", "intro", "to", "python", "art", "history",
+			"algebra", "advanced", "beginner", "the", "of" };
+
+	private final Analyzer analyzer = new Analyzer();
+
+	private static Course course(int id, String title, String description) {
+		return new Course(id, title, description, "Music", "COURSE", "7th-8th", 10, 12, 100, null);
+	}
+
+	private static String text(Random random, int maxWords) {
+		StringBuilder text = new StringBuilder();
+		for (int i = random.nextInt(maxWords + 1); i > 0; i--) {
+			text.append(text.length() == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return text.toString();
+	}
+
+	private static List<Integer> ids(List<ScoreDoc> hits) {
+		return hits.stream().map(ScoreDoc::getId).toList();
+	}
+
+	// BM25 as documented: k1 1.2, b 0.75, titles boosted twice, summed over the query terms and both fields
+	private List<ScoreDoc> bm25(Map<Integer, Course> courses, String query) {
+		List<String> terms = analyzer.analyze(query);
+		Map<Integer, Double> scores = new HashMap<>();
+		for (int f = 0; f < 2; f++) {
+			Map<Integer, List<String>> fields = new HashMap<>();
+			long total = 0;
+			for (Course course : courses.values()) {
+				List<String> field = analyzer.analyze(f == 0 ? course.getTitle() : course.getDescription());
+				fields.put(course.getId(), field);
+				total += field.size();
+			}
+			double avgLength = courses.isEmpty() ? 0 : (double) total / courses.size();
+			for (String term : terms) {
+				long matching = fields.values().stream().filter(field -> field.contains(term)).count();
+				if (matching == 0) {
+					continue;
+				}
+				double idf = Math.log(1 + (courses.size() - matching + 0.5) / (matching + 0.5));
+				for (Map.Entry<Integer, List<String>> field : fields.entrySet()) {
+					int tf = Collections.frequency(field.getValue(), term);
+					if (tf > 0) {
+						double norm = avgLength == 0 ? 1 : 1 - 0.75 + 0.75 * field.getValue().size() / avgLength;
+						double score = (f == 0 ? 2.0 : 1.0) * idf * (tf * 2.2) / (tf + 1.2 * norm);
+						scores.merge(field.getKey(), score, Double::sum);
+					}
+				}
+			}
+		}
+		List<ScoreDoc> hits = new ArrayList<>();
+		scores.forEach((id, score) -> hits.add(new ScoreDoc(id, score)));
+		hits.sort((a, b) -> a.getScore() != b.getScore() ? Double.compare(b.getScore(), a.getScore())
+				: Integer.compare(a.getId(), b.getId()));
+		return hits;
+	}
+
+	private static void assertSameHits(List<ScoreDoc> expected, List<ScoreDoc> actual, String query) {
+		assertEquals(expected.size(), actual.size(), query);
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getScore(), actual.get(i).getScore(), 1e-9, query + " hit " + i);
+		}
+		// equal scores may be summed in another order, so compare the ids of clearly ranked hits only
+		for (int i = 0; i < expected.size(); i++) {
+			boolean tied = (i > 0 && expected.get(i).getScore() - expected.get(i - 1).getScore() > -1e-9)
+					|| (i + 1 < expected.size() && expected.get(i).getScore() - expected.get(i + 1).getScore() < 1e-9);
+			if (!tied) {
+				assertEquals(expected.get(i).getId(), actual.get(i).getId(), query + " hit " + i);
+			}
+		}
+	}
+
+	@Test
+	void searchScoresMatchBm25ThroughUpdatesAndMerges() {
+		InvertedIndex index = new InvertedIndex(analyzer);
+		Random random = new Random(11);
+		Map<Integer, Course> courses = new HashMap<>();
+		List<Course> initial = new ArrayList<>();
+		for (int id = 1; id <= 400; id++) {
+			Course course = course(id, text(random, 4), random.nextInt(6) == 0 ? null : text(random, 12));
+			courses.put(id, course);
+			initial.add(course);
+		}
+		index.addAll(initial);
+
+		for (int round = 0; round < 6; round++) {
+			for (String query : List.of("piano", "pianos lessons", "intro to python", "art of the piano",
+					"Advanced ALGEBRA", "history history", "missing")) {
+				assertSameHits(bm25(courses, query), index.search(query), "round " + round + ": " + query);
+			}
+			List<Course> removed = new ArrayList<>();
+			List<Course> added = new ArrayList<>();
+			for (int i = 0; i < 30; i++) {
+				int id = 1 + random.nextInt(450);
+				if (courses.containsKey(id) && removed.stream().noneMatch(course -> course.getId() == id)
+						&& added.stream().noneMatch(course -> course.getId() == id)) {
+					removed.add(courses.remove(id));
+					if (random.nextBoolean()) {
+						Course course = course(id, text(random, 4), text(random, 12));
+						courses.put(id, course);
+						added.add(course);
+					}
+				}
+			}
+			index.update(removed, added);
+			index.maybeMerge();
+		}
+	}
+
+	@Test
+	void titlesOutrankDescriptionsAndRepeatedTermsRankHigher() {
+		InvertedIndex index = new InvertedIndex(analyzer);
+		index.addAll(List.of(
+				course(1, "cooking basics", "piano basics"),
+				course(2, "piano basics", "cooking basics"),
+				course(3, "guitar", "piano guitar lessons"),
+				course(4, "guitar", "piano piano lessons"),
+				course(5, "piano", "games"),
+				course(6, "piano for the whole family", "games"),
+				course(7, "piano basics", "cooking basics"),
+				course(8, "chess", "board games")));
+
+		List<Integer> ranked = ids(index.search("piano"));
+
+		// the same words score higher in the boosted title than in the description
+		assertTrue(ranked.indexOf(2) < ranked.indexOf(1), ranked.toString());
+		// at equal length, the term twice beats the term once
+		assertTrue(ranked.indexOf(4) < ranked.indexOf(3), ranked.toString());
+		// a shorter title weighs each match more
+		assertTrue(ranked.indexOf(5) < ranked.indexOf(6), ranked.toString());
+		// equal scores go by id
+		assertEquals(ranked.indexOf(2) + 1, ranked.indexOf(7), ranked.toString());
+		assertEquals(7, ranked.size());
+		assertEquals(List.of(), index.search("violin"));
+	}
+
+	@Test
+	void theLastTitleTermMatchesAsAPrefix() {
+		InvertedIndex index = new InvertedIndex(analyzer);
+		index.addAll(List.of(course(1, "Intro to Python", null), course(2, "Python for the intrepid", null),
+				course(3, "Pythagoras", "intro to python"), course(4, "Piano lessons", null)));
+
+		assertArrayEquals(new int[] { 1 }, index.matchTitle("intro pyth"));
+		assertArrayEquals(new int[] { 1, 2 }, index.matchTitle("python intr"));
+		assertArrayEquals(new int[] { 1, 2, 3 }, index.matchTitle("PYTH"));
+		// only the last term is a prefix, and descriptions are not titles
+		assertArrayEquals(new int[0], index.matchTitle("pyth intro"));
+		// "lessons" is stemmed, so typing the plural still finds it
+		assertArrayEquals(new int[] { 4 }, index.matchTitle("piano lessons"));
+		assertArrayEquals(new int[] { 4 }, index.matchTitle("piano lesso"));
+	}
+
+	@Test
+	void aQueryWithoutTermsMatchesEverything() {
+		InvertedIndex index = new InvertedIndex(analyzer);
+		index.addAll(List.of(course(1, "Intro to Python", null), course(2, "Piano lessons", null)));
+
+		for (String query : new String[] { null, "", "   ", " , - !" }) {
+			assertNull(index.matchTitle(query), "\"" + query + "\"");
+			assertNull(index.matchTitle(query, 2), "\"" + query + "\"");
+			assertEquals(List.of(), index.search(query));
+		}
+
+		CourseRepository repository = new CourseRepository();
+		repository.replaceAll(List.of(course(1, "Intro to Python", null), course(2, "Piano lessons", null)));
+		assertEquals(2, repository.findByTitleContaining(" - ", PageRequest.of(0, 10)).getTotalElements());
+	}
+}
@@ -0,0 +1,138 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.repository.CourseRepository;
+
+class SuggestIndexTest {
+
+	private static final String[] WORDS = { "algebra", "algorithms", "algae", "alg", "art", "arts", "artist",
+			"python", "pythagoras", "piano", "intro", "to", "t", "history", "histology", "Algebra", "ART" };
+
+	private static Course course(int id, String title) {
+		return new Course(id, title, "generated course", "Math", "COURSE", "7th-8th", 10, 12, 100, null);
+	}
+
+	private static Course course(int id, Random random) {
+		StringBuilder title = new StringBuilder();
+		for (int i = 1 + random.nextInt(4); i > 0; i--) {
+			title.append(title.length() == 0 ? "" : random.nextBoolean() ? " " : ", ")
+					.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return course(id, title.toString());
+	}
+
+	private static List<String> texts(List<Suggestion> suggestions) {
+		return suggestions.stream().map(suggestion -> suggestion.getText() + "=" + suggestion.getWeight()).toList();
+	}
+
+	// the words of the titles starting with the prefix, heaviest first and then alphabetically
+	private static List<String> expected(Map<Integer, Course> courses, String prefix, int size) {
+		Map<String, Integer> weights = new HashMap<>();
+		for (Course course : courses.values()) {
+			for (String word : new LinkedHashSet<>(List.of(course.getTitle().toLowerCase().split("[ ,]+")))) {
+				weights.merge(word, 1, Integer::sum);
+			}
+		}
+		return weights.entrySet().stream()
+				.filter(entry -> entry.getKey().startsWith(prefix.toLowerCase()))
+				.sorted(Map.Entry.<String, Integer>comparingByValue().reversed()
+						.thenComparing(Map.Entry.comparingByKey()))
+				.limit(size)
+				.map(entry -> entry.getKey() + "=" + entry.getValue())
+				.toList();
+	}
+
+	@Test
+	void completionsAreTheHeaviestWordsWithThePrefixThroughUpdates() {
+		SuggestIndex index = new SuggestIndex(new Analyzer());
+		Random random = new Random(5);
+		Map<Integer, Course> courses = new HashMap<>();
+		for (int id = 1; id <= 300; id++) {
+			courses.put(id, course(id, random));
+		}
+		index.addAll(courses.values());
+
+		for (int round = 0; round < 20; round++) {
+			for (String prefix : List.of("a", "al", "alg", "ALG", "algebra", "art", "p", "py", "h", "t", "z", "x1")) {
+				for (int size : new int[] { 1, 3, 50 }) {
+					assertEquals(expected(courses, prefix, size), texts(index.suggest(prefix, size)),
+							"round " + round + ": " + prefix + " " + size);
+				}
+			}
+			// updates, deletes and inserts, some of them repeating a word within a title
+			List<Course> removed = new ArrayList<>();
+			List<Course> added = new ArrayList<>();
+			for (int i = 0; i < 20; i++) {
+				int id = 1 + random.nextInt(330);
+				if (courses.containsKey(id)) {
+					removed.add(courses.remove(id));
+				}
+				if (random.nextInt(3) > 0) {
+					Course course = course(id, random);
+					courses.put(id, course);
+					added.add(course);
+				}
+			}
+			index.update(removed, added);
+		}
+	}
+
+	@Test
+	void tiesAreAlphabeticalAndTheLimitIsKept() {
+		SuggestIndex index = new SuggestIndex(new Analyzer());
+		index.addAll(List.of(course(1, "art history"), course(2, "artist art"), course(3, "arts and art"),
+				course(4, "artist"), course(5, "Art, art, ART")));
+
+		assertEquals(List.of("art=4", "artist=2", "and=1", "arts=1"), texts(index.suggest("a", 10)));
+		assertEquals(List.of("art=4", "artist=2", "arts=1"), texts(index.suggest("ar", 10)));
+		assertEquals(List.of("art=4", "artist=2"), texts(index.suggest("ar", 2)));
+		assertEquals(List.of("artist=2"), texts(index.suggest("arti", 10)));
+	}
+
+	@Test
+	void theLastWordIsCompletedCaseInsensitivelyAndTheRestKeptAsTyped() {
+		SuggestIndex index = new SuggestIndex(new Analyzer());
+		index.addAll(List.of(course(1, "Algebra I"), course(2, "ALGEBRA II"), course(3, "Algorithms")));
+
+		assertEquals(List.of("algebra=2", "algorithms=1"), texts(index.suggest("ALG", 5)));
+		assertEquals(List.of("Intro to algebra=2", "Intro to algorithms=1"), texts(index.suggest("Intro to Alg", 5)));
+		// nothing to complete
+		for (String text : new String[] { null, "", "alg ", "Intro to ", "alg," }) {
+			assertTrue(index.suggest(text, 5).isEmpty(), "\"" + text + "\"");
+		}
+		assertTrue(index.suggest("alg", 0).isEmpty());
+		assertTrue(index.suggest("algx", 5).isEmpty());
+	}
+
+	@Test
+	void deletedAndRenamedCoursesStopBeingSuggested() {
+		CourseRepository repository = new CourseRepository();
+		repository.replaceAll(List.of(course(1, "algebra basics"), course(2, "algebra"), course(3, "algorithms")));
+		assertEquals(List.of("algebra=2", "algorithms=1"), texts(repository.suggest("alg", 5)));
+
+		repository.save(course(2, "geometry"));
+		assertEquals(List.of("algebra=1", "algorithms=1"), texts(repository.suggest("alg", 5)));
+		assertEquals(List.of("geometry=1"), texts(repository.suggest("geo", 5)));
+
+		repository.deleteById(3);
+		repository.deleteById(1);
+		assertTrue(repository.suggest("alg", 5).isEmpty());
+		assertTrue(repository.suggest("bas", 5).isEmpty());
+		assertEquals(List.of("geometry=1"), texts(repository.suggest("g", 5)));
+
+		repository.deleteAll();
+		assertTrue(repository.suggest("g", 5).isEmpty());
+	}
+}
@@ -0,0 +1,154 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.cache.CourseJsonCache;
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.repository.CourseRepository;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.CourseQuery;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+class QueryMetricsTest {
+
+	private static final String PATTERN = "/api/courses/query";
+
+	private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+	private final CourseJsonCache jsonCache = new CourseJsonCache(objectMapper, 100);
+	private final CourseRepository repository = repository();
+
+	private static CourseRepository repository() {
+		CourseRepository repository = new CourseRepository();
+		List<Course> catalog = new ArrayList<>();
+		for (int id = 1; id <= 1_000; id++) {
+			catalog.add(new Course(id, "course " + id, "generated course", "category " + id % 10, "COURSE",
+					"7th-8th", 10, 12, id % 50, null));
+		}
+		repository.replaceAll(catalog);
+		return repository;
+	}
+
+	private static MockHttpServletRequest request() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", PATTERN);
+		request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, PATTERN);
+		request.setParameter("category", "category 3");
+		return request;
+	}
+
+	// what the controller does for the request: a selective query, then its page written as JSON
+	private void query() throws Exception {
+		CourseQuery query = new CourseQuery().term("category", List.of("category 3"));
+		Page<Course> page = repository.findByQuery(query, PageRequest.of(0, 5, Sort.by("price")), null);
+		objectMapper.writeValueAsString(jsonCache.encode(page.getContent()));
+	}
+
+	private static void handle(QueryMetricsInterceptor interceptor, int status, Request handler) throws Exception {
+		MockHttpServletRequest request = request();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		interceptor.preHandle(request, response, null);
+		handler.run();
+		response.setStatus(status);
+		interceptor.afterCompletion(request, response, null, null);
+	}
+
+	@FunctionalInterface
+	private interface Request {
+		void run() throws Exception;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> map(Map<String, Object> stats, String... path) {
+		Map<String, Object> map = stats;
+		for (String key : path) {
+			map = (Map<String, Object>) map.get(key);
+		}
+		return map;
+	}
+
+	private static double phaseMaxMs(Map<String, Object> stats, String phase) {
+		return (Double) map(stats, "phases", phase).get("maxMs");
+	}
+
+	@Test
+	void aQueryRecordsEveryPhaseWithItsDocuments() throws Exception {
+		QueryMetrics metrics = new QueryMetrics(true, 0);
+		QueryMetricsInterceptor interceptor = new QueryMetricsInterceptor(metrics);
+
+		handle(interceptor, 200, this::query);
+
+		Map<String, Object> stats = metrics.stats();
+		Map<String, Object> endpoint = map(stats, "endpoints", "GET " + PATTERN);
+		assertEquals(1L, map(endpoint, "latency").get("count"));
+		assertEquals(0L, endpoint.get("errors"));
+		assertEquals(100L, endpoint.get("matched"));
+		assertEquals(5L, endpoint.get("returned"));
+		double phases = 0;
+		for (String phase : List.of("filter", "sort", "page", "serialize")) {
+			assertEquals(1L, map(stats, "phases", phase).get("count"), phase);
+			phases += phaseMaxMs(stats, phase);
+		}
+		// the phases are parts of the request, rounded to the microsecond
+		assertTrue(phases <= (Double) map(endpoint, "latency").get("maxMs") + 0.004, stats.toString());
+		assertEquals(0L, map(stats, "slowQueries").get("count"));
+	}
+
+	@Test
+	void onlyTheTimedPhasesAndFailuresAreCounted() throws Exception {
+		QueryMetrics metrics = new QueryMetrics(true, 0);
+		QueryMetricsInterceptor interceptor = new QueryMetricsInterceptor(metrics);
+
+		// a lookup by id runs no query phases and reports no documents
+		handle(interceptor, 200, () -> repository.findById(3));
+		handle(interceptor, 500, this::query);
+		// outside a request nothing is recorded
+		query();
+
+		Map<String, Object> stats = metrics.stats();
+		Map<String, Object> endpoint = map(stats, "endpoints", "GET " + PATTERN);
+		assertEquals(2L, map(endpoint, "latency").get("count"));
+		assertEquals(1L, endpoint.get("errors"));
+		assertEquals(100L, endpoint.get("matched"));
+		assertEquals(1L, map(stats, "phases", "filter").get("count"));
+		assertEquals(1L, map(stats, "phases", "serialize").get("count"));
+
+		metrics.reset();
+		assertTrue(map(metrics.stats(), "endpoints").isEmpty());
+		assertEquals(0L, map(metrics.stats(), "phases", "filter").get("count"));
+	}
+
+	@Test
+	void aSlowQueryIsKeptWithItsPhaseTimings() throws Exception {
+		QueryMetrics metrics = new QueryMetrics(true, 1);
+		QueryMetricsInterceptor interceptor = new QueryMetricsInterceptor(metrics);
+
+		handle(interceptor, 200, () -> {
+			query();
+			Thread.sleep(5);
+		});
+
+		Map<String, Object> slow = map(metrics.stats(), "slowQueries");
+		assertEquals(1L, slow.get("count"));
+		@SuppressWarnings("unchecked")
+		Map<String, Object> entry = ((List<Map<String, Object>>) slow.get("recent")).get(0);
+		assertEquals("GET " + PATTERN + "?category=category 3", entry.get("query"));
+		assertTrue((Double) entry.get("ms") >= 5, entry.toString());
+		for (String phase : List.of("filterMs", "sortMs", "pageMs", "serializeMs")) {
+			assertTrue(entry.containsKey(phase), phase + " in " + entry);
+		}
+		assertEquals(100L, entry.get("matched"));
+		assertEquals(5, entry.get("returned"));
+	}
+}
@@ -0,0 +1,66 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+
+class CoursePersistenceTest {
+
+	@TempDir
+	Path dir;
+
+	private CoursePersistence persistence() {
+		return new CoursePersistence(dir.toString(), Durability.REQUEST, 200, 60_000);
+	}
+
+	private static Course course(int id, String title) {
+		return new Course(id, title, "generated course", "Math", "COURSE", "7th-8th", 10, 12, id, null);
+	}
+
+	private static Map<Integer, String> titles(List<Course> courses) {
+		return courses.stream().collect(Collectors.toMap(Course::getId, Course::getTitle));
+	}
+
+	@Test
+	void recoversNothingFromAnEmptyDirectory() throws Exception {
+		CoursePersistence persistence = persistence();
+		assertNull(persistence.recover());
+		persistence.close();
+	}
+
+	@Test
+	void recoversTheSnapshotPlusTheLogWrittenAfterIt() throws Exception {
+		CoursePersistence persistence = persistence();
+		persistence.recover();
+		Course first = course(1, "first");
+		Course second = course(2, "second");
+		persistence.logPut(first);
+		persistence.logPut(second);
+		long seq = persistence.startSnapshot();
+		persistence.writeSnapshot(seq, List.of(first, second));
+		persistence.logPut(course(1, "first, updated"));
+		persistence.logDelete(2);
+		persistence.awaitDurable(persistence.logPut(course(3, "third")));
+		persistence.close();
+
+		CoursePersistence restarted = persistence();
+		assertEquals(Map.of(1, "first, updated", 3, "third"), titles(restarted.recover()));
+		// the log goes on after the recovered records
+		restarted.awaitDurable(restarted.logDeleteAll());
+		restarted.awaitDurable(restarted.logPut(course(4, "fourth")));
+		restarted.close();
+
+		CoursePersistence again = persistence();
+		assertEquals(Map.of(4, "fourth"), titles(again.recover()));
+		again.close();
+	}
+}
@@ -0,0 +1,177 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.persistence.WriteAheadLog.LogEntry;
+
+class WriteAheadLogTest {
+
+	@TempDir
+	Path dir;
+
+	private static Course course(int id) {
+		return new Course(id, "course " + id, "generated course", "Math", "COURSE", "7th-8th", 10, 12, id, null);
+	}
+
+	private List<LogEntry> replay(long afterSeq) throws IOException {
+		List<LogEntry> entries = new ArrayList<>();
+		WriteAheadLog.replay(dir, afterSeq, entries::add);
+		return entries;
+	}
+
+	private List<Path> files(String suffix) throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.filter(p -> p.getFileName().toString().endsWith(suffix)).sorted().collect(Collectors.toList());
+		}
+	}
+
+	@Test
+	void replaysRecordsInOrderAcrossGenerations() throws IOException {
+		try (WriteAheadLog log = new WriteAheadLog(dir, 0, Durability.REQUEST, 200)) {
+			log.put(course(1));
+			log.put(course(2));
+			log.roll();
+			log.delete(1);
+			log.deleteAll();
+			log.awaitDurable(log.put(course(3)));
+		}
+
+		List<LogEntry> entries = replay(0);
+		assertEquals(List.of(1L, 2L, 3L, 4L, 5L), entries.stream().map(LogEntry::getSeq).collect(Collectors.toList()));
+		assertTrue(entries.get(0).isPut());
+		assertEquals("course 2", entries.get(1).getCourse().getTitle());
+		assertTrue(entries.get(2).isDelete());
+		assertEquals(1, entries.get(2).getId());
+		assertTrue(entries.get(3).isDeleteAll());
+		assertEquals(3, entries.get(4).getCourse().getId());
+		assertEquals(2, files(".log").size());
+
+		assertEquals(List.of(4L, 5L), replay(3).stream().map(LogEntry::getSeq).collect(Collectors.toList()));
+		assertEquals(5, WriteAheadLog.replay(dir, 5, entry -> { }));
+	}
+
+	@Test
+	void tornTailIsTruncatedAndTheLogContinuesAfterIt() throws IOException {
+		try (WriteAheadLog log = new WriteAheadLog(dir, 0, Durability.REQUEST, 200)) {
+			log.put(course(1));
+			log.put(course(2));
+			log.awaitDurable(log.put(course(3)));
+		}
+		Path file = files(".log").get(0);
+		long intact = Files.size(file);
+		// half a record, as a crash in the middle of a write leaves it
+		Files.write(file, new byte[] {0, 0, 0, 40, 1, 2, 3, 4, 5, 6}, StandardOpenOption.APPEND);
+
+		assertEquals(3, WriteAheadLog.replay(dir, 0, entry -> { }));
+		assertEquals(intact, Files.size(file));
+
+		try (WriteAheadLog log = new WriteAheadLog(dir, 3, Durability.REQUEST, 200)) {
+			log.awaitDurable(log.put(course(4)));
+		}
+		assertEquals(List.of(1L, 2L, 3L, 4L), replay(0).stream().map(LogEntry::getSeq).collect(Collectors.toList()));
+	}
+
+	@Test
+	void corruptRecordEndsReplayAndSetsLaterGenerationsAside() throws IOException {
+		try (WriteAheadLog log = new WriteAheadLog(dir, 0, Durability.REQUEST, 200)) {
+			log.put(course(1));
+			log.put(course(2));
+			log.roll();
+			log.put(course(3));
+			log.awaitDurable(log.put(course(4)));
+		}
+		Path first = files(".log").get(0);
+		byte[] bytes = Files.readAllBytes(first);
+		// flip a byte in the body of the last record of the first generation
+		bytes[bytes.length - 1] ^= 0x5a;
+		Files.write(first, bytes);
+
+		List<LogEntry> entries = replay(0);
+		assertEquals(List.of(1L), entries.stream().map(LogEntry::getSeq).collect(Collectors.toList()));
+		assertEquals(1, files(".log").size());
+		assertEquals(1, files(".corrupt").size());
+		assertEquals(1, WriteAheadLog.replay(dir, 0, entry -> { }));
+	}
+
+	@Test
+	void implausibleLengthEndsTheLogWithoutReadingIt() throws IOException {
+		try (WriteAheadLog log = new WriteAheadLog(dir, 0, Durability.REQUEST, 200)) {
+			log.awaitDurable(log.put(course(1)));
+		}
+		Path file = files(".log").get(0);
+		long intact = Files.size(file);
+		ByteBuffer header = ByteBuffer.allocate(8).putInt(Integer.MAX_VALUE - 1).putInt(0);
+		Files.write(file, header.array(), StandardOpenOption.APPEND);
+
+		assertEquals(1, replay(0).size());
+		assertEquals(intact, Files.size(file));
+	}
+
+	@Test
+	void groupCommitMakesEveryConcurrentWriteDurable() throws Exception {
+		int writers = 8;
+		int writesPerWriter = 200;
+		Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+		try (WriteAheadLog log = new WriteAheadLog(dir, 0, Durability.REQUEST, 200)) {
+			List<Thread> threads = new ArrayList<>();
+			for (int w = 0; w < writers; w++) {
+				int writer = w;
+				Thread thread = new Thread(() -> {
+					try {
+						for (int i = 0; i < writesPerWriter; i++) {
+							long seq;
+							// appends are serialized by the caller, as the repository's write lock does
+							synchronized (log) {
+								seq = log.put(course(writer * writesPerWriter + i + 1));
+							}
+							log.awaitDurable(seq);
+						}
+					} catch (Throwable t) {
+						failures.add(t);
+					}
+				});
+				threads.add(thread);
+				thread.start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			assertEquals(writers * writesPerWriter, log.lastSeq());
+		}
+
+		assertTrue(failures.isEmpty(), "writers failed: " + failures);
+		List<LogEntry> entries = replay(0);
+		assertEquals(writers * writesPerWriter, entries.size());
+		assertEquals(writers * writesPerWriter,
+				entries.stream().map(entry -> entry.getCourse().getId()).distinct().count());
+	}
+
+	@Test
+	void asyncLogIsWrittenOutOnClose() throws IOException {
+		try (WriteAheadLog log = new WriteAheadLog(dir, 0, Durability.ASYNC, 60_000)) {
+			log.put(course(1));
+			log.put(course(2));
+			log.awaitDurable(2);
+		}
+		assertEquals(2, replay(0).size());
+		assertFalse(files(".log").isEmpty());
+	}
+}
@@ -0,0 +1,105 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.replication;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.repository.CourseRepository;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.StorageEngine;
+
+import jakarta.servlet.DispatcherType;
+
+class ReplicationInterceptorTest {
+
+	private static Course course(int id) {
+		return new Course(id, "course " + id, "generated course", "Math", "COURSE", "7th-8th", 10, 12, id, null);
+	}
+
+	private static MockHttpServletRequest request(String method, String pattern) {
+		MockHttpServletRequest request = new MockHttpServletRequest(method, pattern);
+		request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+		return request;
+	}
+
+	private static final class Node {
+
+		final ReplicationLog log;
+		final CourseRepository repository;
+		final ReplicationInterceptor interceptor;
+
+		Node(ReplicationRole role) {
+			log = new ReplicationLog(role, 1_000);
+			repository = new CourseRepository(StorageEngine.OBJECTS, null, null, 0, null, null, null, null, log);
+			ReplicaFollower follower = new ReplicaFollower(log, repository, "http://primary:8080", 1_000, 10_000, 5_000);
+			interceptor = new ReplicationInterceptor(repository, follower, 50);
+		}
+
+		MockHttpServletResponse handle(MockHttpServletRequest request) throws Exception {
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			boolean proceed = interceptor.preHandle(request, response, null);
+			assertEquals(proceed, response.getStatus() == 200, "proceeds exactly when nothing was answered");
+			return response;
+		}
+	}
+
+	@Test
+	void aReplicaRefusesWritesAndServesReadsOnlyOnceItHasCopiedThePrimary() throws Exception {
+		Node replica = new Node(ReplicationRole.REPLICA);
+
+		assertEquals(503, replica.handle(request("GET", "/api/courses")).getStatus());
+		for (String write : List.of("POST /api/courses", "POST /api/courses/_bulk", "PUT /api/courses/{id}",
+				"DELETE /api/courses/{id}", "DELETE /api/courses")) {
+			String[] parts = write.split(" ");
+			assertEquals(403, replica.handle(request(parts[0], parts[1])).getStatus(), write);
+		}
+
+		replica.repository.copy(new ReplicationLog.Snapshot(7, 42, List.of(course(1))));
+
+		MockHttpServletResponse read = replica.handle(request("GET", "/api/courses"));
+		assertEquals(200, read.getStatus());
+		assertEquals("42", read.getHeader(ReplicationInterceptor.SEQ_HEADER));
+		assertEquals(403, replica.handle(request("POST", "/api/courses")).getStatus());
+		// a refresh only publishes what the replica has applied
+		assertEquals(200, replica.handle(request("POST", "/api/courses/_refresh")).getStatus());
+	}
+
+	@Test
+	void minSeqWaitsForThePositionAndAnswers503WhenItIsNotReached() throws Exception {
+		Node primary = new Node(ReplicationRole.PRIMARY);
+		primary.repository.save(course(1));
+		long seq = primary.log.lastSeq();
+
+		MockHttpServletRequest reached = request("GET", "/api/courses");
+		reached.setParameter("minSeq", Long.toString(seq));
+		MockHttpServletResponse response = primary.handle(reached);
+		assertEquals(200, response.getStatus());
+		assertEquals(Long.toString(seq), response.getHeader(ReplicationInterceptor.SEQ_HEADER));
+
+		MockHttpServletRequest ahead = request("GET", "/api/courses");
+		ahead.setParameter("minSeq", Long.toString(seq + 1));
+		assertEquals(503, primary.handle(ahead).getStatus());
+
+		MockHttpServletRequest malformed = request("GET", "/api/courses");
+		malformed.setParameter("minSeq", "soon");
+		assertEquals(400, primary.handle(malformed).getStatus());
+	}
+
+	@Test
+	void asyncDispatchesAreNotCheckedAgain() throws Exception {
+		Node replica = new Node(ReplicationRole.REPLICA);
+		MockHttpServletRequest request = request("GET", "/api/courses/async");
+		request.setDispatcherType(DispatcherType.ASYNC);
+
+		assertTrue(replica.interceptor.preHandle(request, new MockHttpServletResponse(), null));
+		assertFalse(replica.interceptor.preHandle(request("GET", "/api/courses/async"), new MockHttpServletResponse(),
+				null));
+	}
+}
@@ -0,0 +1,123 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.PageRequest;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.bulk.BulkAction;
+import com.bezkoder.spring.data.jpa.pagingsorting.bulk.BulkItemResult;
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.persistence.CoursePersistence;
+import com.bezkoder.spring.data.jpa.pagingsorting.persistence.Durability;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.StorageEngine;
+
+class CourseRepositoryBulkTest {
+
+	@TempDir
+	Path dir;
+
+	private static Course course(String title) {
+		return new Course(0, title, "generated course", "Math", "COURSE", "7th-8th", 10, 12, 100, null);
+	}
+
+	private static BulkAction create(int id, String title) {
+		return new BulkAction(BulkAction.Type.CREATE, id, course(title));
+	}
+
+	private static BulkAction update(int id, String title) {
+		return new BulkAction(BulkAction.Type.UPDATE, id, course(title));
+	}
+
+	private static BulkAction delete(int id) {
+		return new BulkAction(BulkAction.Type.DELETE, id, null);
+	}
+
+	private static String describe(BulkItemResult result) {
+		return result.getAction() + " " + result.getId() + " " + result.getStatus();
+	}
+
+	private static Map<Integer, String> titles(CourseRepository repository) {
+		Map<Integer, String> titles = new TreeMap<>();
+		repository.findAll().forEach(course -> titles.put(course.getId(), course.getTitle()));
+		return titles;
+	}
+
+	@Test
+	void everyActionGetsItsOwnResultInOrder() {
+		CourseRepository repository = new CourseRepository();
+		repository.save(new Course(1, "algebra", null, "Math", "COURSE", "7th-8th", 10, 12, 100, null));
+
+		List<BulkItemResult> results = repository.bulk(List.of(
+				create(0, "biology"),
+				create(10, "chemistry"),
+				create(1, "algebra again"),
+				update(1, "algebra II"),
+				update(99, "missing"),
+				update(0, "no id"),
+				delete(98),
+				BulkAction.invalid(BulkAction.Type.CREATE, 0, "Invalid course on line 14"),
+				// later actions see the earlier ones of the same batch
+				update(10, "chemistry II"),
+				delete(2),
+				create(0, "drawing")));
+
+		assertEquals(List.of("create 2 201", "create 10 201", "create 1 409", "update 1 200", "update 99 404",
+				"update 0 400", "delete 98 404", "create 0 400", "update 10 200", "delete 2 200", "create 11 201"),
+				results.stream().map(CourseRepositoryBulkTest::describe).toList());
+		assertNull(results.get(0).getError());
+		assertFalse(results.get(0).isFailed());
+		assertTrue(results.get(2).isFailed());
+		assertEquals("Course 1 already exists", results.get(2).getError());
+		assertEquals("_id is required", results.get(5).getError());
+		assertEquals("Invalid course on line 14", results.get(7).getError());
+
+		assertEquals(Map.of(1, "algebra II", 10, "chemistry II", 11, "drawing"), titles(repository));
+		assertEquals(1, repository.findByTitleContaining("chemistry", PageRequest.of(0, 10)).getTotalElements());
+		assertEquals(12, repository.save(course("next")).getId());
+	}
+
+	@Test
+	void aBufferedBatchIsFoundByIdAndListedAfterARefresh() {
+		CourseRepository repository = new CourseRepository(StorageEngine.COLUMNAR, null, null, 60_000, null, null,
+				null, null, null);
+
+		repository.bulk(List.of(create(0, "algebra"), create(0, "biology"), delete(1)));
+
+		assertEquals("biology", repository.findById(2).get().getTitle());
+		assertFalse(repository.findById(1).isPresent());
+		assertEquals(0, repository.findAll().size());
+		repository.refresh();
+		assertEquals(Map.of(2, "biology"), titles(repository));
+	}
+
+	@Test
+	void anAppliedBatchIsRecoveredAfterARestart() throws Exception {
+		CourseRepository repository = new CourseRepository(StorageEngine.OBJECTS,
+				new CoursePersistence(dir.toString(), Durability.REQUEST, 200, 60_000), null, 0, null, null, null, null,
+				null);
+		repository.init();
+		repository.deleteAll();
+
+		repository.bulk(List.of(create(0, "algebra"), create(5, "biology"), update(5, "biology II"), delete(99)));
+
+		// no close: what bulk returned for must be in the log already
+		CourseRepository restarted = new CourseRepository(StorageEngine.OBJECTS,
+				new CoursePersistence(dir.toString(), Durability.REQUEST, 200, 60_000), null, 0, null, null, null, null,
+				null);
+		restarted.init();
+		assertEquals(titles(repository), titles(restarted));
+		assertEquals("biology II", restarted.findById(5).get().getTitle());
+		restarted.close();
+		repository.close();
+	}
+}
@@ -0,0 +1,147 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.cache.QueryCache;
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.StorageEngine;
+
+class CourseRepositoryCacheTest {
+
+	private static Course course(int id, String title, double price) {
+		return new Course(id, title, "generated course", "Math", "COURSE", "7th-8th", 10, 12, price, null);
+	}
+
+	private static CourseRepository repository(StorageEngine engine, long refreshIntervalMillis) {
+		CourseRepository repository = new CourseRepository(engine, null, null, refreshIntervalMillis,
+				new QueryCache(10_000), null, null, null, null);
+		List<Course> catalog = new ArrayList<>();
+		for (int id = 1; id <= 100; id++) {
+			catalog.add(course(id, id % 2 == 0 ? "algebra " + id : "piano " + id, id));
+		}
+		repository.replaceAll(catalog);
+		return repository;
+	}
+
+	private static List<String> titles(List<Course> courses) {
+		return courses.stream().map(Course::getTitle).toList();
+	}
+
+	// every cached kind of query, each reduced to the titles it answered with
+	private static Map<String, Supplier<List<String>>> queries(CourseRepository repository) {
+		Map<String, Supplier<List<String>>> queries = new LinkedHashMap<>();
+		PageRequest byPrice = PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "price"));
+		queries.put("all", () -> titles(repository.findAll(byPrice).getContent()));
+		queries.put("title", () -> titles(repository.findByTitleContaining("algebra", byPrice).getContent()));
+		queries.put("fuzzy title", () -> titles(repository.findByTitleContaining("algebre", 1, byPrice, null)
+				.getContent()));
+		queries.put("type", () -> titles(repository.findByType("course", byPrice).getContent()));
+		queries.put("search", () -> titles(repository.search("algebra", PageRequest.of(0, 100)).getContent()));
+		queries.put("title list", () -> titles(repository.findByTitleContaining("algebra", Sort.by("price"))));
+		return queries;
+	}
+
+	private static Map<String, List<String>> answers(CourseRepository repository) {
+		Map<String, List<String>> answers = new LinkedHashMap<>();
+		queries(repository).forEach((name, query) -> answers.put(name, query.get()));
+		return answers;
+	}
+
+	private static long hits(CourseRepository repository) {
+		return (Long) repository.queryCacheStats().get("hits");
+	}
+
+	@Test
+	void writesAndRefreshesInvalidateCachedResults() {
+		for (StorageEngine engine : List.of(StorageEngine.OBJECTS, StorageEngine.COLUMNAR)) {
+			CourseRepository repository = repository(engine, 0);
+			Map<String, List<String>> before = answers(repository);
+			long hits = hits(repository);
+			assertEquals(before, answers(repository));
+			assertEquals(hits + before.size(), hits(repository), engine + " repeated queries are hits");
+
+			repository.save(course(100, "algebra renamed", 1_000));
+			Map<String, List<String>> afterSave = answers(repository);
+			afterSave.forEach((name, titles) -> assertTrue(titles.contains("algebra renamed"), engine + " " + name));
+			assertEquals("algebra renamed", afterSave.get("all").get(0));
+
+			repository.deleteById(100);
+			answers(repository).forEach((name, titles) -> assertTrue(!titles.contains("algebra renamed"),
+					engine + " " + name));
+			assertEquals(titles(repository.findAll(PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "price")))
+					.getContent()), List.of("piano 99", "algebra 98", "piano 97", "algebra 96", "piano 95"));
+		}
+	}
+
+	@Test
+	void bufferedWritesInvalidateWhenARefreshMakesThemVisible() {
+		CourseRepository repository = repository(StorageEngine.OBJECTS, 60_000);
+		Map<String, List<String>> before = answers(repository);
+
+		repository.save(course(100, "algebra renamed", 1_000));
+		// not yet visible, so the cached results still stand
+		assertEquals(before, answers(repository));
+		repository.refresh();
+		answers(repository).forEach((name, titles) -> assertTrue(titles.contains("algebra renamed"), name));
+	}
+
+	@Test
+	void aCachedPageIsNeverOlderThanTheLastCompletedWrite() throws Exception {
+		CourseRepository repository = repository(StorageEngine.OBJECTS, 0);
+		PageRequest first = PageRequest.of(0, 3, Sort.by("id"));
+		AtomicInteger written = new AtomicInteger();
+		AtomicBoolean writing = new AtomicBoolean(true);
+		Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+		CountDownLatch readersDone = new CountDownLatch(4);
+
+		for (int r = 0; r < 4; r++) {
+			new Thread(() -> {
+				try {
+					while (writing.get()) {
+						int atLeast = written.get();
+						Page<Course> page = repository.findAll(first);
+						double price = page.getContent().get(0).getPrice();
+						if (price < atLeast) {
+							throw new AssertionError("read price " + price + " after write " + atLeast);
+						}
+						repository.findByTitleContaining("piano", first);
+					}
+				} catch (Throwable t) {
+					failures.add(t);
+				} finally {
+					readersDone.countDown();
+				}
+			}).start();
+		}
+		try {
+			for (int price = 1; price <= 3_000; price++) {
+				repository.save(course(1, "piano 1", price));
+				written.set(price);
+			}
+		} finally {
+			writing.set(false);
+		}
+
+		assertTrue(readersDone.await(30, TimeUnit.SECONDS));
+		assertTrue(failures.isEmpty(), "reader failed: " + failures);
+		assertTrue(hits(repository) > 0);
+	}
+}
@@ -0,0 +1,231 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.bulk.BulkAction;
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.CourseQuery;
+
+class CourseRepositoryConcurrencyTest {
+
+	private static final int INITIAL_COURSES = 2000;
+	private static final int WRITERS = 2;
+	private static final int READERS = 4;
+	private static final int WRITES_PER_WRITER = 5000;
+
+	// Every course is written with a title derived from its price, so a reader
+	// seeing a title that does not match the price has observed a torn write.
+	private static Course course(int id, int price) {
+		return new Course(id, "course p" + price, "generated course", "Math", "COURSE", "7th-8th", 10, 12, price, null);
+	}
+
+	private static void checkConsistent(Course course) {
+		if (!course.getTitle().equals("course p" + (int) course.getPrice())) {
+			throw new AssertionError("torn read: " + course);
+		}
+	}
+
+	@Test
+	void readersSeeConsistentSnapshotsWhileWritersRun() throws Exception {
+		CourseRepository repository = new CourseRepository();
+		repository.deleteAll();
+		for (int i = 0; i < INITIAL_COURSES; i++) {
+			repository.save(course(0, i));
+		}
+
+		Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+		AtomicBoolean writing = new AtomicBoolean(true);
+		CountDownLatch writersDone = new CountDownLatch(WRITERS);
+		CountDownLatch readersDone = new CountDownLatch(READERS);
+
+		for (int w = 0; w < WRITERS; w++) {
+			long seed = w;
+			new Thread(() -> {
+				Random random = new Random(seed);
+				try {
+					for (int i = 0; i < WRITES_PER_WRITER; i++) {
+						int id = 1 + random.nextInt(INITIAL_COURSES * 2);
+						switch (random.nextInt(3)) {
+							case 0 -> repository.save(course(id, random.nextInt(10000)));
+							case 1 -> repository.deleteById(id);
+							default -> repository.save(course(0, random.nextInt(10000)));
+						}
+					}
+				} catch (Throwable t) {
+					failures.add(t);
+				} finally {
+					writersDone.countDown();
+				}
+			}).start();
+		}
+
+		for (int r = 0; r < READERS; r++) {
+			long seed = 100 + r;
+			new Thread(() -> {
+				Random random = new Random(seed);
+				try {
+					while (writing.get()) {
+						List<Course> all = repository.findAll();
+						Set<Integer> ids = new HashSet<>();
+						for (Course course : all) {
+							checkConsistent(course);
+							assertTrue(ids.add(course.getId()), "duplicate id " + course.getId());
+						}
+
+						Page<Course> page = repository.findAll(PageRequest.of(random.nextInt(5), 20, Sort.by(Sort.Direction.ASC, "price")));
+						double previous = Double.NEGATIVE_INFINITY;
+						for (Course course : page.getContent()) {
+							checkConsistent(course);
+							assertTrue(course.getPrice() >= previous, "page not sorted by price");
+							previous = course.getPrice();
+						}
+
+						repository.findById(1 + random.nextInt(INITIAL_COURSES * 2)).ifPresent(CourseRepositoryConcurrencyTest::checkConsistent);
+						repository.findByTitleContaining("course", PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "id")))
+								.forEach(CourseRepositoryConcurrencyTest::checkConsistent);
+					}
+				} catch (Throwable t) {
+					failures.add(t);
+				} finally {
+					readersDone.countDown();
+				}
+			}).start();
+		}
+
+		assertTrue(writersDone.await(60, TimeUnit.SECONDS), "writers did not finish");
+		writing.set(false);
+		assertTrue(readersDone.await(60, TimeUnit.SECONDS), "readers did not finish");
+		failures.forEach(Throwable::printStackTrace);
+		assertTrue(failures.isEmpty(), failures.size() + " reader/writer failures");
+
+		// once writes stop, the id index, the stored list and the text index agree
+		List<Course> all = repository.findAll();
+		for (Course course : all) {
+			assertEquals(course, repository.findById(course.getId()).orElse(null));
+		}
+		assertEquals(all.size(), repository.findByTitleContaining("course", Sort.by("id")).size());
+	}
+
+	@Test
+	void pagesStayWholeWhileRefreshesPublishNewVersions() throws Exception {
+		CourseRepository repository = new CourseRepository();
+		List<Course> catalog = new ArrayList<>();
+		for (int id = 1; id <= INITIAL_COURSES; id++) {
+			catalog.add(course(id, id % 50));
+		}
+		repository.replaceAll(catalog);
+		Sort byPrice = Sort.by(Sort.Direction.ASC, "price");
+		List<Integer> expected = repository.findAll(PageRequest.of(0, INITIAL_COURSES, byPrice)).getContent().stream()
+				.map(Course::getId).collect(Collectors.toList());
+
+		Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+		AtomicBoolean writing = new AtomicBoolean(true);
+		// every refresh replaces courses with equal copies, so the order never changes
+		Thread writer = new Thread(() -> {
+			Random random = new Random(7);
+			try {
+				while (writing.get()) {
+					int id = 1 + random.nextInt(INITIAL_COURSES);
+					repository.save(course(id, id % 50));
+				}
+			} catch (Throwable t) {
+				failures.add(t);
+			}
+		});
+		writer.start();
+
+		try {
+			Random random = new Random(8);
+			CourseQuery everything = new CourseQuery().term("category", List.of("Math"));
+			for (int i = 0; i < 2_000 && failures.isEmpty(); i++) {
+				int pageNumber = random.nextInt(INITIAL_COURSES / 25);
+				List<Integer> want = expected.subList(pageNumber * 25, pageNumber * 25 + 25);
+				PageRequest pageable = PageRequest.of(pageNumber, 25, byPrice);
+
+				Page<Course> page = i % 2 == 0 ? repository.findAll(pageable) : repository.findByQuery(everything, pageable, null);
+
+				assertEquals(want, page.getContent().stream().map(Course::getId).collect(Collectors.toList()),
+						"page " + pageNumber);
+				assertEquals(INITIAL_COURSES, page.getTotalElements());
+			}
+		} finally {
+			writing.set(false);
+			writer.join();
+		}
+		assertTrue(failures.isEmpty(), "writer failed: " + failures);
+	}
+
+	@Test
+	void titleMatchesAndSearchesFollowOneRefresh() throws Exception {
+		CourseRepository repository = new CourseRepository();
+		List<Course> catalog = new ArrayList<>();
+		List<Integer> alpha = new ArrayList<>();
+		List<Integer> beta = new ArrayList<>();
+		for (int id = 1; id <= INITIAL_COURSES; id++) {
+			boolean isAlpha = id % 4 == 0;
+			catalog.add(new Course(id, (isAlpha ? "alpha " : "beta ") + id, "generated course", "Math", "COURSE",
+					"7th-8th", 10, 12, id, null));
+			(isAlpha ? alpha : beta).add(id);
+		}
+		repository.replaceAll(catalog);
+		int alphaCount = alpha.size();
+
+		Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+		AtomicBoolean writing = new AtomicBoolean(true);
+		// each refresh renames one alpha course to beta and one beta course to alpha
+		Thread writer = new Thread(() -> {
+			Random random = new Random(9);
+			try {
+				while (writing.get()) {
+					int a = alpha.remove(random.nextInt(alpha.size()));
+					int b = beta.remove(random.nextInt(beta.size()));
+					repository.bulk(List.of(
+							new BulkAction(BulkAction.Type.UPDATE, a, new Course(0, "beta " + a, "generated course", "Math",
+									"COURSE", "7th-8th", 10, 12, a, null)),
+							new BulkAction(BulkAction.Type.UPDATE, b, new Course(0, "alpha " + b, "generated course", "Math",
+									"COURSE", "7th-8th", 10, 12, b, null))));
+					alpha.add(b);
+					beta.add(a);
+				}
+			} catch (Throwable t) {
+				failures.add(t);
+			}
+		});
+		writer.start();
+
+		try {
+			for (int i = 0; i < 1_000 && failures.isEmpty(); i++) {
+				Page<Course> matches = repository.findByTitleContaining("alpha", PageRequest.of(0, alphaCount));
+				assertEquals(alphaCount, matches.getTotalElements());
+				assertEquals(alphaCount, matches.getNumberOfElements());
+				matches.forEach(course -> assertTrue(course.getTitle().startsWith("alpha "), course.getTitle()));
+
+				Page<Course> ranked = repository.search("alpha", PageRequest.of(0, alphaCount));
+				assertEquals(alphaCount, ranked.getTotalElements());
+				ranked.forEach(course -> assertTrue(course.getTitle().startsWith("alpha "), course.getTitle()));
+			}
+		} finally {
+			writing.set(false);
+			writer.join();
+		}
+		assertTrue(failures.isEmpty(), "writer failed: " + failures);
+	}
+}
@@ -0,0 +1,141 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.bulk.BulkAction;
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.persistence.CoursePersistence;
+import com.bezkoder.spring.data.jpa.pagingsorting.persistence.Durability;
+import com.bezkoder.spring.data.jpa.pagingsorting.replication.ReplicationLog;
+import com.bezkoder.spring.data.jpa.pagingsorting.replication.ReplicationRole;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.StorageEngine;
+
+class CourseRepositoryDurabilityTest {
+
+	@TempDir
+	Path dir;
+
+	private final ReplicationLog replicationLog = new ReplicationLog(ReplicationRole.PRIMARY, 1_000);
+	private SyncControlledPersistence persistence;
+	private CourseRepository repository;
+
+	// a log whose fsync can be made to fail, or to wait until the test lets it finish
+	private static final class SyncControlledPersistence extends CoursePersistence {
+
+		volatile boolean failing;
+		volatile CountDownLatch syncing;
+		volatile CountDownLatch synced;
+
+		SyncControlledPersistence(String dir) {
+			super(dir, Durability.REQUEST, 200, 60_000);
+		}
+
+		@Override
+		public void awaitDurable(long seq) {
+			if (failing) {
+				throw new UncheckedIOException("Failed to sync course log", new IOException("disk full"));
+			}
+			if (synced != null) {
+				syncing.countDown();
+				try {
+					synced.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			super.awaitDurable(seq);
+		}
+	}
+
+	private static Course course(int id, String title) {
+		return new Course(id, title, "generated course", "Math", "COURSE", "7th-8th", 10, 12, 100, null);
+	}
+
+	private Map<Integer, String> titles() {
+		Map<Integer, String> titles = new TreeMap<>();
+		repository.findAll().forEach(course -> titles.put(course.getId(), course.getTitle()));
+		return titles;
+	}
+
+	@BeforeEach
+	void start() {
+		persistence = new SyncControlledPersistence(dir.toString());
+		repository = new CourseRepository(StorageEngine.OBJECTS, persistence, null, 0, null, null, null, null,
+				replicationLog);
+		repository.init();
+		repository.deleteAll();
+		repository.save(course(1, "algebra"));
+		repository.save(course(2, "biology"));
+	}
+
+	@AfterEach
+	void stop() throws IOException {
+		persistence.failing = false;
+		if (persistence.synced != null) {
+			persistence.synced.countDown();
+		}
+		repository.close();
+	}
+
+	@Test
+	void aWriteIsNeitherVisibleNorShippedBeforeItsFsync() throws Exception {
+		long shipped = replicationLog.lastSeq();
+		persistence.syncing = new CountDownLatch(1);
+		persistence.synced = new CountDownLatch(1);
+
+		CompletableFuture<Course> save = CompletableFuture.supplyAsync(() -> repository.save(course(0, "chemistry")));
+		assertTrue(persistence.syncing.await(10, TimeUnit.SECONDS), "the write never reached its fsync");
+
+		assertFalse(repository.findById(3).isPresent());
+		assertEquals(Map.of(1, "algebra", 2, "biology"), titles());
+		assertEquals(shipped, replicationLog.lastSeq());
+		// a writer already sees it, so it is not created twice
+		assertEquals(409, repository.bulk(List.of(new BulkAction(BulkAction.Type.CREATE, 3, course(0, "again"))))
+				.get(0).getStatus());
+
+		persistence.synced.countDown();
+		assertEquals(3, save.get(10, TimeUnit.SECONDS).getId());
+		assertEquals(Map.of(1, "algebra", 2, "biology", 3, "chemistry"), titles());
+		assertEquals(shipped + 1, replicationLog.lastSeq());
+	}
+
+	@Test
+	void aFailedFsyncLeavesTheCatalogAndTheReplicationLogAsTheyWere() {
+		long shipped = replicationLog.lastSeq();
+		persistence.failing = true;
+
+		assertThrows(UncheckedIOException.class, () -> repository.save(course(0, "chemistry")));
+		assertThrows(UncheckedIOException.class, () -> repository.save(course(1, "algebra II")));
+		assertThrows(UncheckedIOException.class, () -> repository.deleteById(2));
+		assertThrows(UncheckedIOException.class, () -> repository.bulk(List.of(
+				new BulkAction(BulkAction.Type.CREATE, 10, course(0, "drawing")),
+				new BulkAction(BulkAction.Type.DELETE, 1, null))));
+		assertThrows(UncheckedIOException.class, () -> repository.deleteAll());
+
+		repository.refresh();
+		assertEquals(Map.of(1, "algebra", 2, "biology"), titles());
+		assertEquals("algebra", repository.findById(1).get().getTitle());
+		assertTrue(repository.findById(2).isPresent());
+		assertFalse(repository.findById(3).isPresent());
+		assertFalse(repository.findById(10).isPresent());
+		assertEquals(shipped, replicationLog.lastSeq());
+	}
+}
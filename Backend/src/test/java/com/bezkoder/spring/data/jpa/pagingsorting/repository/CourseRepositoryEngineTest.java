@@ -0,0 +1,168 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.persistence.CoursePersistence;
+import com.bezkoder.spring.data.jpa.pagingsorting.persistence.Durability;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.CourseQuery;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.SearchAfter;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.StorageEngine;
+
+class CourseRepositoryEngineTest {
+
+	private static final OffsetDateTime START = OffsetDateTime.of(2025, 3, 1, 9, 0, 0, 0, ZoneOffset.UTC);
+	private static final String[] WORDS = { "algebra", "intro", "piano", "python", "art", "history", "advanced" };
+	private static final String[] CATEGORIES = { "Math", "Science", "Music", "Art", null };
+
+	private static final List<Sort> SORTS = List.of(
+			Sort.by("id"),
+			Sort.by(Sort.Direction.DESC, "price"),
+			Sort.by(Sort.Order.asc("category"), Sort.Order.desc("nextSessionDate")),
+			Sort.by(Sort.Order.desc("gradeRange"), Sort.Order.asc("title")),
+			Sort.by(Sort.Order.asc("nextSessionDate"), Sort.Order.asc("maxAge"), Sort.Order.desc("minAge")));
+
+	private static final int[][] PAGES = { { 0, 10 }, { 4, 10 }, { 0, 150 }, { 60, 11 } };
+
+	@TempDir
+	Path dir;
+
+	private static Course course(int id, Random random) {
+		StringBuilder title = new StringBuilder();
+		for (int i = 1 + random.nextInt(3); i > 0; i--) {
+			title.append(title.length() == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		OffsetDateTime session = random.nextInt(8) == 0 ? null
+				: START.plusHours(random.nextInt(48)).plusNanos(random.nextInt(3) * 250_000L)
+						.withOffsetSameInstant(ZoneOffset.ofHours(random.nextInt(5) - 2));
+		int minAge = random.nextInt(15);
+		return new Course(id, title.toString(), random.nextInt(5) == 0 ? null : "course " + id,
+				CATEGORIES[random.nextInt(CATEGORIES.length)], random.nextBoolean() ? "COURSE" : "LESSON",
+				random.nextInt(6) == 0 ? null : "grade " + random.nextInt(3), minAge, minAge + random.nextInt(5),
+				random.nextInt(40) * 2.5, session);
+	}
+
+	private static Map<String, CourseQuery> queries() {
+		Map<String, CourseQuery> queries = new LinkedHashMap<>();
+		queries.put("none", new CourseQuery());
+		queries.put("title", new CourseQuery().title("algebra"));
+		queries.put("title prefix", new CourseQuery().title("intro pyth"));
+		queries.put("terms", new CourseQuery().term("category", List.of("math", "music")).term("type", List.of("LESSON")));
+		queries.put("price", new CourseQuery().priceBetween(20.0, 50.0));
+		queries.put("age", new CourseQuery().suitableForAge(9));
+		queries.put("sessions", new CourseQuery().nextSessionBetween(START.plusHours(6), START.plusHours(30)));
+		queries.put("everything", new CourseQuery().title("art").term("gradeRange", List.of("grade 1", "grade 2"))
+				.priceBetween(null, 60.0).nextSessionBetween(null, START.plusHours(40)));
+		return queries;
+	}
+
+	private CourseRepository open(StorageEngine engine) {
+		CoursePersistence persistence = engine == StorageEngine.MAPPED
+				? new CoursePersistence(dir.toString(), Durability.REQUEST, 200, 60_000)
+				: null;
+		CourseRepository repository = new CourseRepository(engine, persistence, null, 0, null, null, null, null, null);
+		if (persistence != null) {
+			repository.init();
+		}
+		return repository;
+	}
+
+	// every property, as Course has no equals
+	private static List<String> describe(List<Course> courses) {
+		return courses.stream().map(course -> course + " description=" + course.getDescription()).toList();
+	}
+
+	private static List<String> pageThrough(CourseRepository repository, CourseQuery query, Sort sort, int size) {
+		List<String> described = new ArrayList<>();
+		Course after = null;
+		while (true) {
+			List<Course> page = repository.findByQuery(query, PageRequest.of(0, size, sort), after).getContent();
+			described.addAll(describe(page));
+			if (page.size() < size) {
+				return described;
+			}
+			after = SearchAfter.decode(SearchAfter.encode(page.get(size - 1), sort), sort);
+		}
+	}
+
+	// what a client could see of the catalog: pages of every query, cursors, title lists and search hits
+	private static Map<String, Object> answers(CourseRepository repository) {
+		Map<String, Object> answers = new LinkedHashMap<>();
+		queries().forEach((name, query) -> {
+			// unsorted results come in slot or id order depending on the path, so only what matches is compared
+			answers.put(name + " unsorted", describe(repository.findByQuery(query, PageRequest.of(0, 1_000), null)
+					.getContent()).stream().sorted().toList());
+			for (Sort sort : SORTS) {
+				for (int[] page : PAGES) {
+					String key = name + " " + sort + " page " + page[0] + " of " + page[1];
+					var result = repository.findByQuery(query, PageRequest.of(page[0], page[1], sort), null);
+					answers.put(key, describe(result.getContent()));
+					answers.put(key + " total", result.getTotalElements());
+				}
+				answers.put(name + " " + sort + " searchAfter", pageThrough(repository, query, sort, 13));
+			}
+		});
+		for (Sort sort : SORTS) {
+			answers.put("title list " + sort, describe(repository.findByTitleContaining("python", sort)));
+		}
+		answers.put("search", describe(repository.search("advanced piano", PageRequest.of(0, 20)).getContent()));
+		return answers;
+	}
+
+	@Test
+	void everyEngineAnswersTheSameThroughWrites() throws Exception {
+		Random random = new Random(9);
+		List<Course> catalog = new ArrayList<>();
+		for (int id = 1; id <= 600; id++) {
+			catalog.add(course(id, random));
+		}
+		List<CourseRepository> repositories = new ArrayList<>();
+		for (StorageEngine engine : List.of(StorageEngine.OBJECTS, StorageEngine.COLUMNAR, StorageEngine.MAPPED)) {
+			CourseRepository repository = open(engine);
+			repository.replaceAll(catalog);
+			repositories.add(repository);
+		}
+
+		for (int round = 0; round < 3; round++) {
+			Map<String, Object> expected = answers(repositories.get(0));
+			for (CourseRepository repository : repositories.subList(1, repositories.size())) {
+				Map<String, Object> actual = answers(repository);
+				for (String key : expected.keySet()) {
+					assertEquals(expected.get(key), actual.get(key), "round " + round + ": " + key);
+				}
+			}
+			// the same updates, inserts and deletes on every engine
+			for (int i = 0; i < 80; i++) {
+				int id = 1 + random.nextInt(650);
+				Course course = course(id, random);
+				boolean delete = random.nextInt(4) == 0;
+				for (CourseRepository repository : repositories) {
+					if (delete) {
+						repository.deleteById(id);
+					} else {
+						repository.save(new Course(id, course.getTitle(), course.getDescription(),
+								course.getCategory(), course.getType(), course.getGradeRange(), course.getMinAge(),
+								course.getMaxAge(), course.getPrice(), course.getNextSessionDate()));
+					}
+				}
+			}
+		}
+		for (CourseRepository repository : repositories) {
+			repository.close();
+		}
+	}
+}
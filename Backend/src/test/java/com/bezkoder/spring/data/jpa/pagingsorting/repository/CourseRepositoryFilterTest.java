@@ -0,0 +1,115 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.CourseQuery;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.StorageEngine;
+
+class CourseRepositoryFilterTest {
+
+	private static final OffsetDateTime START = OffsetDateTime.of(2025, 3, 1, 9, 0, 0, 0, ZoneOffset.UTC);
+	private static final String[] CATEGORIES = { "Math", "math", "Science", "Music", null };
+
+	private static List<Course> catalog() {
+		List<Course> courses = new ArrayList<>();
+		for (int id = 1; id <= 1_000; id++) {
+			// sessions a few hours apart, written in several offsets, some a fraction of a millisecond off the hour
+			OffsetDateTime session = id % 13 == 0 ? null
+					: START.plusHours(id % 40).plusNanos(id % 4 == 0 ? 400_000 : 0)
+							.withOffsetSameInstant(ZoneOffset.ofHours(id % 5 - 2));
+			courses.add(new Course(id, "course " + id, "generated course", CATEGORIES[id % CATEGORIES.length],
+					id % 3 == 0 ? "LESSON" : "COURSE", id % 11 == 0 ? null : "grade " + id % 3, id % 15,
+					id % 15 + id % 4, id % 20 + (id % 3 == 0 ? 0.5 : 0), session));
+		}
+		return courses;
+	}
+
+	private static boolean between(double value, double min, double max) {
+		return min <= value && value <= max;
+	}
+
+	// a missing session sorts before every date, so only an open lower bound takes it in
+	private static boolean sessionBetween(Course course, OffsetDateTime from, OffsetDateTime to) {
+		OffsetDateTime session = course.getNextSessionDate();
+		if (session == null) {
+			return from == null;
+		}
+		return (from == null || !session.toInstant().isBefore(from.toInstant()))
+				&& (to == null || !session.toInstant().isAfter(to.toInstant()));
+	}
+
+	private static boolean categoryIn(Course course, Set<String> categories) {
+		return course.getCategory() != null && categories.contains(course.getCategory().toLowerCase());
+	}
+
+	// each query with the rule it should follow, checked here without the indexes
+	private static Map<CourseQuery, Predicate<Course>> queries() {
+		OffsetDateTime from = START.plusHours(10);
+		OffsetDateTime to = START.plusHours(20);
+		Map<CourseQuery, Predicate<Course>> queries = new LinkedHashMap<>();
+		queries.put(new CourseQuery().priceBetween(5.0, 10.0), c -> between(c.getPrice(), 5, 10));
+		queries.put(new CourseQuery().priceBetween(4.5, 5.5), c -> between(c.getPrice(), 4.5, 5.5));
+		queries.put(new CourseQuery().priceBetween(4.6, 4.9), c -> false);
+		queries.put(new CourseQuery().priceBetween(18.5, null), c -> c.getPrice() >= 18.5);
+		queries.put(new CourseQuery().priceBetween(null, 0.5), c -> c.getPrice() <= 0.5);
+		queries.put(new CourseQuery().minAgeBetween(3, 3), c -> c.getMinAge() == 3);
+		queries.put(new CourseQuery().suitableForAge(8), c -> c.getMinAge() <= 8 && c.getMaxAge() >= 8);
+		// bounds on the hour take in sessions at that instant whatever their offset, but not ones just after it
+		queries.put(new CourseQuery().nextSessionBetween(from, to), c -> sessionBetween(c, from, to));
+		queries.put(new CourseQuery().nextSessionBetween(from.withOffsetSameInstant(ZoneOffset.ofHours(5)),
+				to.withOffsetSameInstant(ZoneOffset.ofHours(-7))), c -> sessionBetween(c, from, to));
+		queries.put(new CourseQuery().nextSessionBetween(to, to), c -> sessionBetween(c, to, to));
+		queries.put(new CourseQuery().nextSessionBetween(from, null), c -> sessionBetween(c, from, null));
+		queries.put(new CourseQuery().nextSessionBetween(null, to), c -> sessionBetween(c, null, to));
+		queries.put(new CourseQuery().term("category", List.of("MATH")), c -> categoryIn(c, Set.of("math")));
+		queries.put(new CourseQuery().term("category", List.of("math", "Music", "drawing")),
+				c -> categoryIn(c, Set.of("math", "music")));
+		queries.put(new CourseQuery().term("category", List.of("drawing")), c -> false);
+		queries.put(new CourseQuery().term("gradeRange", List.of("grade 1", "grade 2")),
+				c -> c.getGradeRange() != null && !c.getGradeRange().equals("grade 0"));
+		// a broad term and ranges, every filter narrowing the candidates
+		queries.put(new CourseQuery().term("type", List.of("course")).priceBetween(2.0, 12.0).suitableForAge(6),
+				c -> c.getType().equals("COURSE") && between(c.getPrice(), 2, 12) && c.getMinAge() <= 6
+						&& c.getMaxAge() >= 6);
+		// terms selective enough that the ranges are checked on the candidates instead of intersected
+		queries.put(new CourseQuery().term("category", List.of("science")).term("gradeRange", List.of("grade 1"))
+				.priceBetween(3.0, 15.0).nextSessionBetween(from, to),
+				c -> categoryIn(c, Set.of("science")) && "grade 1".equals(c.getGradeRange())
+						&& between(c.getPrice(), 3, 15) && sessionBetween(c, from, to));
+		return queries;
+	}
+
+	private static List<Integer> ids(Page<Course> page) {
+		return page.getContent().stream().map(Course::getId).toList();
+	}
+
+	@Test
+	void rangeAndTermFiltersMatchTheSameCoursesOnEveryEngine() {
+		List<Course> catalog = catalog();
+		for (StorageEngine engine : List.of(StorageEngine.OBJECTS, StorageEngine.COLUMNAR)) {
+			CourseRepository repository = new CourseRepository(engine);
+			repository.replaceAll(catalog);
+			queries().forEach((query, rule) -> {
+				List<Integer> expected = catalog.stream().filter(rule).map(Course::getId).toList();
+				Page<Course> page = repository.findByQuery(query, PageRequest.of(0, 2_000, Sort.by("id")), null);
+				assertEquals(expected, ids(page), engine + " " + query.getTerms() + " " + query.getRanges().size());
+				assertEquals(expected.size(), page.getTotalElements());
+			});
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.index.Analyzer;
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.StorageEngine;
+
+class CourseRepositoryFuzzyTest {
+
+	private static final String[] WORDS = { "algebra", "chemistry", "intro", "to", "physics", "advanced", "python",
+			"art", "math", "history", "of", "piano", "lessons", "programming", "for", "science", "the", "geometry" };
+	private static final String[] QUERIES = { "algebre", "chemestry", "intro to phisics", "Advnced", "pythn", "artt",
+			"mth", "historry of", "pianno les", "xq", "progrmming f", "sciense", "the", "intr", "geo" };
+	private static final Pageable ALL = PageRequest.of(0, 10_000, Sort.by("id"));
+
+	private final Analyzer analyzer = new Analyzer();
+
+	private static Course course(int id, Random random) {
+		StringBuilder title = new StringBuilder();
+		for (int i = 1 + random.nextInt(4); i > 0; i--) {
+			String word = WORDS[random.nextInt(WORDS.length)];
+			if (random.nextInt(4) == 0) {
+				// a typo in the title, so terms a few edits apart are indexed too
+				int at = random.nextInt(word.length());
+				word = word.substring(0, at) + (char) ('a' + random.nextInt(26)) + word.substring(at + 1);
+			}
+			title.append(title.length() == 0 ? "" : " ").append(word);
+		}
+		return new Course(id, title.toString(), "generated course", "Math", "COURSE", "7th-8th", 10, 12, id, null);
+	}
+
+	private static int distance(String a, String b) {
+		int[] previous = new int[b.length() + 1];
+		int[] current = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++) {
+			previous[j] = j;
+		}
+		for (int i = 1; i <= a.length(); i++) {
+			current[0] = i;
+			for (int j = 1; j <= b.length(); j++) {
+				int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+				current[j] = Math.min(substitution, Math.min(current[j - 1], previous[j]) + 1);
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[b.length()];
+	}
+
+	// the documented rule: short terms allow fewer edits, and the last term matches as a prefix
+	private static boolean matches(String queryTerm, String titleTerm, int fuzziness, boolean last) {
+		int maxEdits = Math.min(fuzziness, queryTerm.length() < 3 ? 0 : queryTerm.length() < 6 ? 1 : 2);
+		if (!last) {
+			return distance(queryTerm, titleTerm) <= maxEdits;
+		}
+		for (int end = 0; end <= titleTerm.length(); end++) {
+			if (distance(queryTerm, titleTerm.substring(0, end)) <= maxEdits) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Set<Integer> expected(Map<Integer, Course> courses, String query, int fuzziness) {
+		List<String> queryTerms = analyzer.analyze(query);
+		Set<Integer> ids = new TreeSet<>();
+		for (Course course : courses.values()) {
+			List<String> titleTerms = analyzer.analyze(course.getTitle());
+			boolean all = true;
+			for (int i = 0; i < queryTerms.size() && all; i++) {
+				String queryTerm = queryTerms.get(i);
+				boolean last = i == queryTerms.size() - 1;
+				all = titleTerms.stream().anyMatch(titleTerm -> matches(queryTerm, titleTerm, fuzziness, last));
+			}
+			if (all) {
+				ids.add(course.getId());
+			}
+		}
+		return ids;
+	}
+
+	private static Set<Integer> found(CourseRepository repository, String query, int fuzziness) {
+		return repository.findByTitleContaining(query, fuzziness, ALL, null).getContent().stream().map(Course::getId)
+				.collect(Collectors.toCollection(TreeSet::new));
+	}
+
+	@Test
+	void fuzzyTitleMatchesAgreeWithEditDistanceThroughUpdatesAndDeletes() {
+		for (StorageEngine engine : List.of(StorageEngine.OBJECTS, StorageEngine.COLUMNAR)) {
+			CourseRepository repository = new CourseRepository(engine);
+			Random random = new Random(3);
+			List<Course> catalog = new ArrayList<>();
+			Map<Integer, Course> reference = new HashMap<>();
+			for (int id = 1; id <= 1_000; id++) {
+				Course course = course(id, random);
+				catalog.add(course);
+				reference.put(id, course);
+			}
+			repository.replaceAll(catalog);
+
+			for (int round = 0; round < 5; round++) {
+				for (String query : QUERIES) {
+					for (int fuzziness = 0; fuzziness <= 2; fuzziness++) {
+						assertEquals(expected(reference, query, fuzziness), found(repository, query, fuzziness),
+								engine + " round " + round + ": " + query + "~" + fuzziness);
+					}
+				}
+				for (int i = 0; i < 100; i++) {
+					int id = 1 + random.nextInt(1_100);
+					if (random.nextInt(4) == 0) {
+						repository.deleteById(id);
+						reference.remove(id);
+					} else {
+						Course course = course(id, random);
+						repository.save(course);
+						reference.put(id, course);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void typosFindTheTitleButShortTermsMustMatchExactly() {
+		CourseRepository repository = new CourseRepository();
+		repository.replaceAll(List.of(
+				new Course(1, "Chemistry basics", null, "Science", "COURSE", "7th-8th", 10, 12, 10, null),
+				new Course(2, "Art of the cat", null, "Art", "COURSE", "7th-8th", 10, 12, 10, null)));
+
+		assertEquals(Set.of(), found(repository, "chemestry", 0));
+		assertEquals(Set.of(1), found(repository, "chemestry", 1));
+		assertEquals(Set.of(1), found(repository, "chmistry bas", 2));
+		// two letters allow no edits, whatever the fuzziness
+		assertEquals(Set.of(), found(repository, "ot", 2));
+		assertEquals(Set.of(2), found(repository, "of", 2));
+		assertThrows(IllegalArgumentException.class, () -> found(repository, "chemistry", 3));
+	}
+}
@@ -0,0 +1,114 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.persistence.CoursePersistence;
+import com.bezkoder.spring.data.jpa.pagingsorting.persistence.Durability;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.StorageEngine;
+
+class CourseRepositoryMappedTest {
+
+	@TempDir
+	Path dir;
+
+	private final List<CourseRepository> opened = new ArrayList<>();
+
+	private CourseRepository open() {
+		CourseRepository repository = new CourseRepository(StorageEngine.MAPPED,
+				new CoursePersistence(dir.toString(), Durability.REQUEST, 200, 60_000), null, 0, null, null, null, null,
+				null);
+		opened.add(repository);
+		return repository;
+	}
+
+	@AfterEach
+	void close() throws Exception {
+		// the newest first, so a repository left open as if it had crashed never writes over its successor
+		for (int i = opened.size() - 1; i >= 0; i--) {
+			opened.get(i).close();
+		}
+	}
+
+	private static List<Course> catalog() {
+		List<Course> courses = new ArrayList<>();
+		for (int id = 1; id <= 500; id++) {
+			// every column filled in, with missing values, multi-byte text and sessions in several offsets
+			String category = id % 9 == 0 ? null : "category " + id % 4;
+			String description = id % 7 == 0 ? null : id % 2 == 0 ? "" : "décrit en français, cours n° " + id;
+			OffsetDateTime session = id % 5 == 0 ? null
+					: OffsetDateTime.of(2025, 3, 1 + id % 28, id % 24, id % 60, 0, id * 1_000,
+							ZoneOffset.ofHours(id % 3 - 1));
+			courses.add(new Course(id, "course " + id + (id % 3 == 0 ? " — algebra" : ""), description, category,
+					id % 2 == 0 ? "COURSE" : "LESSON", id % 11 == 0 ? null : "7th-8th", id % 15, id % 15 + 3,
+					id * 1.25, session));
+		}
+		return courses;
+	}
+
+	// every property, as Course has no equals
+	private static String describe(Course course) {
+		return course + " description=" + course.getDescription();
+	}
+
+	private static Map<Integer, String> describe(List<Course> courses) {
+		Map<Integer, String> described = new TreeMap<>();
+		courses.forEach(course -> described.put(course.getId(), describe(course)));
+		return described;
+	}
+
+	@Test
+	void coursesAreReadBackFromTheSegmentAsTheyWereWritten() {
+		CourseRepository repository = open();
+		repository.init();
+		List<Course> catalog = catalog();
+
+		repository.replaceAll(catalog);
+
+		assertEquals(describe(catalog), describe(repository.findAll()));
+		for (Course course : catalog) {
+			assertEquals(describe(course), describe(repository.findById(course.getId()).get()));
+		}
+		assertEquals(166, repository.findByTitleContaining("algebra", PageRequest.of(0, 10)).getTotalElements());
+		List<Course> byPrice = repository.findAll(PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "price"))).getContent();
+		assertEquals(List.of(500, 499, 498), byPrice.stream().map(Course::getId).toList());
+	}
+
+	@Test
+	void aRestartMapsTheSegmentAndReplaysTheWritesLoggedAfterIt() {
+		CourseRepository repository = open();
+		repository.init();
+		repository.replaceAll(catalog());
+		repository.save(new Course(2, "course 2, renamed", "changed", "category 9", "COURSE", "K-12", 1, 2, 9.5,
+				null));
+		repository.deleteById(3);
+		repository.save(new Course(0, "added after the segment", null, null, "LESSON", null, 4, 5, 0, null));
+
+		Map<Integer, String> before = describe(repository.findAll());
+		assertEquals(500, before.size());
+		assertFalse(before.containsKey(3));
+		// no close, so no new segment: a restart maps the old one and replays the log
+		CourseRepository restarted = open();
+		restarted.init();
+
+		assertEquals(before, describe(restarted.findAll()));
+		assertEquals("changed", restarted.findById(2).get().getDescription());
+		assertEquals(1, restarted.findByTitleContaining("renamed", PageRequest.of(0, 10)).getTotalElements());
+		assertEquals(502, restarted.save(new Course(0, "next", null, null, "COURSE", null, 1, 2, 1, null)).getId());
+	}
+}
@@ -0,0 +1,169 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.CourseQuery;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.SearchAfter;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.StorageEngine;
+
+class CourseRepositoryPagingTest {
+
+	private static final OffsetDateTime START = OffsetDateTime.of(2025, 3, 1, 9, 0, 0, 0, ZoneOffset.UTC);
+
+	private static final List<Sort> SORTS = List.of(
+			Sort.by("price"),
+			Sort.by(Sort.Direction.DESC, "price"),
+			Sort.by(Sort.Order.asc("category"), Sort.Order.desc("minAge")),
+			Sort.by(Sort.Order.desc("nextSessionDate"), Sort.Order.asc("title")),
+			Sort.by(Sort.Order.desc("gradeRange"), Sort.Order.asc("price"), Sort.Order.desc("maxAge")),
+			Sort.by("title"));
+
+	// page 0, shallow pages the heap selects, deep pages past its cutoff, and the last, partial page
+	private static final int[][] PAGES = { { 0, 10 }, { 3, 10 }, { 0, 250 }, { 30, 10 }, { 150, 13 }, { 285, 7 },
+			{ 300, 7 } };
+
+	private static List<Course> catalog() {
+		List<Course> courses = new ArrayList<>();
+		for (int id = 1; id <= 2_000; id++) {
+			// few distinct values and some missing ones, so most sort keys are tied
+			String category = id % 9 == 0 ? null : "category " + id % 4;
+			String gradeRange = id % 11 == 0 ? null : "grade " + id % 3;
+			OffsetDateTime session = id % 7 == 0 ? null : START.plusDays(id % 30);
+			courses.add(new Course(id, "course " + id % 500, "generated course", category, "COURSE", gradeRange,
+					id % 15, id % 15 + id % 4, id % 20, session));
+		}
+		return courses;
+	}
+
+	// counts the prices read, which sorting by price does and reading the price index in order does not
+	private static final class CountingCourse extends Course {
+
+		final AtomicInteger priceReads;
+
+		CountingCourse(Course course, AtomicInteger priceReads) {
+			super(course.getId(), course.getTitle(), course.getDescription(), course.getCategory(), course.getType(),
+					course.getGradeRange(), course.getMinAge(), course.getMaxAge(), course.getPrice(),
+					course.getNextSessionDate());
+			this.priceReads = priceReads;
+		}
+
+		@Override
+		public double getPrice() {
+			priceReads.incrementAndGet();
+			return super.getPrice();
+		}
+	}
+
+	private static List<Integer> ids(List<Course> courses) {
+		return courses.stream().map(Course::getId).toList();
+	}
+
+	// the full sort the paging paths stand in for
+	private static List<Integer> fullySorted(List<Course> courses, Sort sort, int page, int size) {
+		List<Course> sorted = new ArrayList<>(courses);
+		sorted.sort(CourseRepository.comparatorFor(sort));
+		int from = Math.min(page * size, sorted.size());
+		return ids(sorted.subList(from, Math.min(from + size, sorted.size())));
+	}
+
+	private static List<Course> filtered(List<Course> courses, Predicate<Course> filter) {
+		return courses.stream().filter(filter).toList();
+	}
+
+	private static void assertPage(List<Course> catalog, Sort sort, int[] page, Page<Course> actual, String path) {
+		assertEquals(fullySorted(catalog, sort, page[0], page[1]), ids(actual.getContent()),
+				path + " " + sort + " page " + page[0] + " of " + page[1]);
+		assertEquals(catalog.size(), actual.getTotalElements(), path + " " + sort);
+	}
+
+	private static List<Integer> pageThrough(CourseRepository repository, CourseQuery query, Sort sort, int size) {
+		List<Integer> ids = new ArrayList<>();
+		Course after = null;
+		while (true) {
+			List<Course> page = repository.findByQuery(query, PageRequest.of(0, size, sort), after).getContent();
+			ids.addAll(ids(page));
+			if (page.size() < size) {
+				return ids;
+			}
+			after = SearchAfter.decode(SearchAfter.encode(page.get(size - 1), sort), sort);
+		}
+	}
+
+	@Test
+	void heapSelectedPagesMatchAFullSort() {
+		List<Course> catalog = catalog();
+		for (StorageEngine engine : List.of(StorageEngine.OBJECTS, StorageEngine.COLUMNAR)) {
+			CourseRepository repository = new CourseRepository(engine);
+			repository.replaceAll(catalog);
+			for (Sort sort : SORTS) {
+				for (int[] page : PAGES) {
+					// every title matches, and title matches are paged from the candidate list
+					assertPage(catalog, sort, page,
+							repository.findByTitleContaining("course", PageRequest.of(page[0], page[1], sort)),
+							engine + " title");
+				}
+			}
+		}
+	}
+
+	@Test
+	void sortIndexPagesMatchAFullSort() {
+		List<Course> catalog = catalog();
+		CourseRepository repository = new CourseRepository(StorageEngine.OBJECTS);
+		repository.replaceAll(catalog);
+		// most categories, so the matches are read from the sort index of the leading key
+		CourseQuery query = new CourseQuery().term("category", List.of("category 1", "category 2", "category 3"));
+		List<Course> matching = filtered(catalog, query::matches);
+
+		for (Sort sort : SORTS) {
+			for (int[] page : PAGES) {
+				assertPage(catalog, sort, page, repository.findAll(PageRequest.of(page[0], page[1], sort)), "all");
+				assertPage(matching, sort, page, repository.findByQuery(query, PageRequest.of(page[0], page[1], sort),
+						null), "query");
+			}
+			assertEquals(fullySorted(matching, sort, 0, matching.size()), pageThrough(repository, query, sort, 9),
+					"searchAfter " + sort);
+		}
+	}
+
+	@Test
+	void largeCandidateSetsAreReadFromTheSortIndex() {
+		AtomicInteger priceReads = new AtomicInteger();
+		List<Course> catalog = catalog().stream().<Course>map(course -> new CountingCourse(course, priceReads))
+				.toList();
+		CourseRepository repository = new CourseRepository(StorageEngine.OBJECTS);
+		repository.replaceAll(catalog);
+		Sort byPrice = Sort.by("price");
+
+		CourseQuery large = new CourseQuery().term("category", List.of("category 1"));
+		priceReads.set(0);
+		List<Course> page = repository.findByQuery(large, PageRequest.of(0, 10, byPrice), null).getContent();
+		int read = priceReads.get();
+		assertEquals(fullySorted(filtered(catalog, large::matches), byPrice, 0, 10), ids(page));
+		assertTrue(read < 50, read + " prices read");
+
+		// fewer than one course in eight is sorted instead
+		CourseQuery selective = new CourseQuery().term("category", List.of("category 1"))
+				.term("gradeRange", List.of("grade 1"));
+		List<Course> matching = filtered(catalog, selective::matches);
+		priceReads.set(0);
+		page = repository.findByQuery(selective, PageRequest.of(0, 10, byPrice), null).getContent();
+		read = priceReads.get();
+		assertEquals(fullySorted(matching, byPrice, 0, 10), ids(page));
+		assertTrue(read >= matching.size(), read + " prices read for " + matching.size());
+	}
+}
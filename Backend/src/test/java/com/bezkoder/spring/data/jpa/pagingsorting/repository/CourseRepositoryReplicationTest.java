@@ -0,0 +1,133 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.replication.ReplicationLog;
+import com.bezkoder.spring.data.jpa.pagingsorting.replication.ReplicationRole;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.StorageEngine;
+
+class CourseRepositoryReplicationTest {
+
+	private final ReplicationLog primaryLog = new ReplicationLog(ReplicationRole.PRIMARY, 1_000);
+	private final ReplicationLog replicaLog = new ReplicationLog(ReplicationRole.REPLICA, 0);
+	private final CourseRepository primary = new CourseRepository(StorageEngine.OBJECTS, null, null, 0, null, null, null,
+			null, primaryLog);
+	private final CourseRepository replica = new CourseRepository(StorageEngine.OBJECTS, null, null, 0, null, null, null,
+			null, replicaLog);
+
+	private static Course course(int id, String title) {
+		return new Course(id, title, "generated course", "Math", "COURSE", "7th-8th", 10, 12, id, null);
+	}
+
+	private static Map<Integer, String> titles(CourseRepository repository) {
+		Map<Integer, String> titles = new TreeMap<>();
+		repository.findAll().forEach(course -> titles.put(course.getId(), course.getTitle()));
+		return titles;
+	}
+
+	// a snapshot as the replica receives it from GET /api/courses/_replication/snapshot
+	private ReplicationLog.Snapshot snapshot() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		primary.replicationSnapshot().write(new DataOutputStream(bytes));
+		return ReplicationLog.Snapshot.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+	}
+
+	// the log after the replica's position, as GET /api/courses/_replication/log sends it
+	private ReplicationLog.Batch batch() throws Exception {
+		ReplicationLog.Batch batch = primaryLog.read(replicaLog.epoch(), replicaLog.lastSeq(), 1_000, 0);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		batch.write(new DataOutputStream(bytes));
+		return ReplicationLog.Batch.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+	}
+
+	@Test
+	void aReplicaCopiesThePrimaryAndThenAppliesItsLog() throws Exception {
+		primary.save(course(1, "algebra"));
+		primary.save(course(2, "biology"));
+
+		replica.copy(snapshot());
+
+		assertEquals(primaryLog.epoch(), replicaLog.epoch());
+		assertEquals(primaryLog.lastSeq(), replica.visibleSeq());
+		assertEquals(titles(primary), titles(replica));
+
+		primary.save(course(3, "chemistry"));
+		primary.save(course(1, "algebra II"));
+		primary.deleteById(2);
+		replica.replicate(batch().getMutations());
+
+		assertEquals(titles(primary), titles(replica));
+		assertEquals(primaryLog.lastSeq(), replica.visibleSeq());
+		assertEquals(1, replica.findByTitleContaining("chemistry", PageRequest.of(0, 10)).getTotalElements());
+
+		primary.deleteAll();
+		primary.save(course(9, "drawing"));
+		replica.replicate(batch().getMutations());
+
+		assertEquals(Map.of(9, "drawing"), titles(replica));
+	}
+
+	@Test
+	void aReplacedCatalogMakesReplicasCopyAgain() throws Exception {
+		primary.save(course(1, "algebra"));
+		replica.copy(snapshot());
+
+		primary.replaceAll(List.of(course(5, "economics")));
+
+		assertNull(primaryLog.read(replicaLog.epoch(), replicaLog.lastSeq(), 1_000, 0));
+		replica.copy(snapshot());
+		assertEquals(Map.of(5, "economics"), titles(replica));
+	}
+
+	@Test
+	void awaitVisibleWaitsForTheReplicaToApplyAPosition() throws Exception {
+		replica.copy(snapshot());
+		primary.save(course(1, "algebra"));
+		long seq = primaryLog.lastSeq();
+
+		assertFalse(replica.awaitVisible(seq, 20));
+
+		CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> {
+			try {
+				return replica.awaitVisible(seq, 10_000);
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		replica.replicate(batch().getMutations());
+
+		assertTrue(waiting.get(10, TimeUnit.SECONDS));
+		assertEquals("algebra", replica.findById(1).get().getTitle());
+		assertTrue(replica.awaitVisible(seq, 0));
+	}
+
+	@Test
+	void awaitVisiblePublishesBufferedWritesOnThePrimary() throws Exception {
+		CourseRepository buffered = new CourseRepository(StorageEngine.OBJECTS, null, null, 60_000, null, null, null,
+				null, primaryLog);
+		buffered.save(course(1, "algebra"));
+		long seq = primaryLog.lastSeq();
+
+		assertEquals(0, buffered.findAll().size());
+		assertTrue(buffered.awaitVisible(seq, 1_000));
+		assertEquals(1, buffered.findAll().size());
+		assertEquals(seq, buffered.visibleSeq());
+	}
+}
@@ -0,0 +1,100 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.StorageEngine;
+
+class CourseRepositoryTest {
+
+	private static Course course(int id, String title) {
+		return new Course(id, title, "generated course", "Math", "COURSE", "7th-8th", 10, 12, 100, null);
+	}
+
+	@Test
+	void createWithExplicitIdMovesTheIdCounterPastIt() {
+		CourseRepository repository = new CourseRepository();
+		repository.deleteAll();
+		repository.save(course(0, "first"));
+		repository.save(course(50, "explicit"));
+
+		Set<Integer> ids = new HashSet<>();
+		for (int i = 0; i < 60; i++) {
+			int id = repository.save(course(0, "auto " + i)).getId();
+			assertNotEquals(50, id);
+			assertTrue(ids.add(id), "id " + id + " handed out twice");
+		}
+
+		assertEquals("explicit", repository.findById(50).get().getTitle());
+		assertEquals(62, repository.findAll().size());
+	}
+
+	@Test
+	void loadReplacesTheCatalogChunkByChunk() throws Exception {
+		CourseRepository repository = new CourseRepository();
+		repository.save(course(0, "replaced by the load"));
+		StringBuilder ndjson = new StringBuilder();
+		// more than one loader chunk, with later lines updating earlier ids
+		for (int i = 0; i < 25_000; i++) {
+			int id = i % 20_000 + 1;
+			ndjson.append("{\"id\":").append(id).append(",\"title\":\"").append(i < 20_000 ? "loaded" : "updated")
+					.append("\",\"category\":\"Math\",\"type\":\"COURSE\",\"minAge\":10,\"maxAge\":12,\"price\":100}\n");
+		}
+
+		repository.load(new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)), "test");
+
+		assertEquals(20_000, repository.findAll().size());
+		assertEquals("updated", repository.findById(1).get().getTitle());
+		assertEquals("loaded", repository.findById(20_000).get().getTitle());
+		assertEquals(20_001, repository.save(course(0, "next")).getId());
+	}
+
+	@Test
+	void withoutARefreshIntervalEveryWriteIsListedAtOnce() {
+		CourseRepository repository = new CourseRepository();
+		repository.save(course(7, "algebra basics"));
+
+		assertEquals(1, repository.findAll().size());
+		assertEquals(1, repository.findByTitleContaining("algebra", PageRequest.of(0, 10)).getTotalElements());
+
+		repository.deleteById(7);
+
+		assertEquals(0, repository.findAll().size());
+		assertEquals(0, repository.findByTitleContaining("algebra", PageRequest.of(0, 10)).getTotalElements());
+	}
+
+	@Test
+	void bufferedWritesAreFoundByIdButListedOnlyAfterARefresh() {
+		CourseRepository repository = new CourseRepository(StorageEngine.OBJECTS, null, null, 60_000, null, null, null,
+				null, null);
+		repository.save(course(7, "algebra basics"));
+
+		assertEquals("algebra basics", repository.findById(7).get().getTitle());
+		assertEquals(0, repository.findAll().size());
+		assertEquals(0, repository.findByTitleContaining("algebra", PageRequest.of(0, 10)).getTotalElements());
+
+		repository.refresh();
+
+		assertEquals(1, repository.findAll().size());
+		assertEquals(1, repository.findByTitleContaining("algebra", PageRequest.of(0, 10)).getTotalElements());
+
+		repository.deleteById(7);
+
+		assertTrue(repository.findById(7).isEmpty());
+		assertEquals(1, repository.findAll().size());
+
+		repository.refresh();
+
+		assertEquals(0, repository.findAll().size());
+	}
+}
@@ -0,0 +1,121 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.cluster.ShardRouter;
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.repository.CourseRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class AggregationTest {
+
+	private static final String[] CATEGORIES = { "Math", "Science", "Music", "Art", "History" };
+	private static final OffsetDateTime START = OffsetDateTime.of(2025, 1, 6, 9, 0, 0, 0, ZoneOffset.UTC);
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private static List<Course> catalog() {
+		List<Course> courses = new ArrayList<>();
+		for (int id = 1; id <= 300; id++) {
+			// skewed categories, some missing, and sessions over a few weeks
+			String category = id % 13 == 0 ? null : CATEGORIES[(id * id) % 7 % CATEGORIES.length];
+			OffsetDateTime session = id % 11 == 0 ? null : START.plusHours(id * 5L);
+			courses.add(new Course(id, "course " + id, "generated course", category, "COURSE", "7th-8th", id % 15,
+					id % 15 + 3, (id * 37) % 250, session));
+		}
+		return courses;
+	}
+
+	private static CourseRepository repository(List<Course> courses) {
+		CourseRepository repository = new CourseRepository();
+		repository.replaceAll(courses);
+		return repository;
+	}
+
+	private static List<Aggregation> parse(List<String> specs) {
+		return specs.stream().map(Aggregation::parse).collect(Collectors.toList());
+	}
+
+	// as a coordinator receives it: each shard's results in JSON
+	private Map<String, Object> overTheWire(Map<String, Object> results) throws Exception {
+		return objectMapper.readValue(objectMapper.writeValueAsBytes(results),
+				new TypeReference<Map<String, Object>>() {});
+	}
+
+	private JsonNode json(Object value) throws Exception {
+		return objectMapper.readTree(objectMapper.writeValueAsBytes(value));
+	}
+
+	@Test
+	void reducingEveryShardsResultsGivesTheResultsOfOneNode() throws Exception {
+		List<String> specs = List.of("terms:category:4", "stats:price", "stats:minAge", "histogram:price:25",
+				"histogram:nextSessionDate:week", "range:price:50:100:200");
+		List<Course> catalog = catalog();
+		Map<String, Object> expected = repository(catalog).aggregate(new CourseQuery(), parse(specs));
+
+		for (int shardCount : new int[] { 1, 2, 3 }) {
+			List<Map<String, Object>> shardResults = new ArrayList<>();
+			for (int index = 0; index < shardCount; index++) {
+				ShardRouter router = new ShardRouter(index, shardCount);
+				CourseRepository shard = repository(
+						catalog.stream().filter(course -> router.owns(course.getId())).collect(Collectors.toList()));
+				// shards are asked for extra terms buckets, as ShardCoordinator does
+				List<String> shardSpecs = specs.stream()
+						.map(spec -> spec.equals("terms:category:4") ? "terms:category:" + TermsAggregation.shardSize(4) : spec)
+						.collect(Collectors.toList());
+				shardResults.add(overTheWire(shard.aggregate(new CourseQuery(), parse(shardSpecs))));
+			}
+
+			for (Aggregation aggregation : parse(specs)) {
+				List<Map<String, Object>> results = new ArrayList<>();
+				for (Map<String, Object> shardResult : shardResults) {
+					@SuppressWarnings("unchecked")
+					Map<String, Object> result = (Map<String, Object>) shardResult.get(aggregation.getName());
+					results.add(result);
+				}
+				assertEquals(json(expected.get(aggregation.getName())), json(aggregation.reduce(results)),
+						aggregation.getName() + " over " + shardCount + " shards");
+			}
+		}
+	}
+
+	@Test
+	void termsReduceSumsCountsAndKeepsWhatIsLeftOutAsOther() throws Exception {
+		List<Map<String, Object>> results = List.of(
+				overTheWire(Map.of("r", Map.of("buckets", List.of(Map.of("key", "Math", "count", 5), Map.of("key", "Art", "count", 3)),
+						"otherCount", 2, "missing", 1))),
+				overTheWire(Map.of("r", Map.of("buckets", List.of(Map.of("key", "Art", "count", 4), Map.of("key", "Music", "count", 1)),
+						"otherCount", 0, "missing", 2))));
+
+		Object reduced = new TermsAggregation("category", 1).reduce(
+				results.stream().map(result -> {
+					@SuppressWarnings("unchecked")
+					Map<String, Object> r = (Map<String, Object>) result.get("r");
+					return r;
+				}).collect(Collectors.toList()));
+
+		assertEquals(json(Map.of("buckets", List.of(Map.of("key", "Art", "count", 7)), "otherCount", 8, "missing", 3)),
+				json(reduced));
+	}
+
+	@Test
+	void statsReduceSkipsShardsWithoutValues() throws Exception {
+		Map<String, Object> empty = overTheWire(Map.of("count", 0, "sum", 0.0));
+		Map<String, Object> shard = overTheWire(Map.of("count", 2, "min", 10.0, "max", 30.0, "avg", 20.0, "sum", 40.0));
+
+		Object reduced = new StatsAggregation("price").reduce(List.of(empty, shard));
+
+		assertEquals(json(Map.of("count", 2, "min", 10.0, "max", 30.0, "avg", 20.0, "sum", 40.0)), json(reduced));
+	}
+}
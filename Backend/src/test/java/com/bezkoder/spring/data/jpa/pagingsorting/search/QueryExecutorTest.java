@@ -0,0 +1,148 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.repository.CourseRepository;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.StorageEngine;
+
+class QueryExecutorTest {
+
+	private static final OffsetDateTime START = OffsetDateTime.of(2025, 3, 1, 9, 0, 0, 0, ZoneOffset.UTC);
+
+	// every scan above a single candidate is split, into partitions of the smallest size
+	private final QueryExecutor parallel = new QueryExecutor(4, 1);
+	private final QueryExecutor sequential = QueryExecutor.sequential();
+
+	@AfterEach
+	void close() {
+		parallel.close();
+	}
+
+	private static List<Integer> positions(QueryExecutor executor, int size) {
+		return executor.scan(size, ArrayList::new, (positions, from, to) -> {
+			for (int i = from; i < to; i++) {
+				positions.add(i);
+			}
+		}, (left, right) -> {
+			left.addAll(right);
+			return left;
+		});
+	}
+
+	@Test
+	void partitionsAreCombinedInPositionOrder() {
+		assertEquals(4, parallel.getParallelism());
+		for (int size : new int[] { 0, 1, 4_095, 4_096, 4_097, 16_385, 65_537 }) {
+			assertEquals(positions(sequential, size), positions(parallel, size), "size " + size);
+		}
+	}
+
+	@Test
+	void aParallelSortKeepsTiesInTheirOriginalOrder() {
+		List<int[]> items = new ArrayList<>();
+		for (int i = 0; i < 60_000; i++) {
+			// seven keys, so every partition boundary falls inside a run of ties
+			items.add(new int[] { (i * 31) % 7, i });
+		}
+		Comparator<int[]> byKey = Comparator.comparingInt(item -> item[0]);
+		List<int[]> expected = new ArrayList<>(items);
+		sequential.sort(expected, byKey);
+		List<int[]> actual = new ArrayList<>(items);
+		parallel.sort(actual, byKey);
+
+		assertEquals(expected.stream().map(item -> item[1]).toList(), actual.stream().map(item -> item[1]).toList());
+	}
+
+	private static List<Course> catalog() {
+		List<Course> courses = new ArrayList<>();
+		for (int id = 1; id <= 20_000; id++) {
+			// few distinct values, so sort keys tie across every partition
+			OffsetDateTime session = id % 17 == 0 ? null : START.plusDays(id % 9);
+			courses.add(new Course(id, "course " + id % 100, "generated course", "category " + id % 3,
+					id % 2 == 0 ? "COURSE" : "LESSON", "grade " + id % 4, id % 5, id % 5 + 3, id % 40 * 2.5,
+					session));
+		}
+		return courses;
+	}
+
+	private static CourseRepository repository(StorageEngine engine, QueryExecutor executor, List<Course> catalog) {
+		CourseRepository repository = new CourseRepository(engine, null, null, 0, null, null, executor, null, null);
+		repository.replaceAll(catalog);
+		return repository;
+	}
+
+	private static List<Integer> ids(Page<Course> page) {
+		return page.getContent().stream().map(Course::getId).toList();
+	}
+
+	private static List<Integer> pageThrough(CourseRepository repository, CourseQuery query, Sort sort) {
+		List<Integer> ids = new ArrayList<>();
+		Course after = null;
+		for (int pages = 0; pages < 20; pages++) {
+			List<Course> page = repository.findByQuery(query, PageRequest.of(0, 500, sort), after).getContent();
+			ids.addAll(page.stream().map(Course::getId).toList());
+			if (page.size() < 500) {
+				break;
+			}
+			after = SearchAfter.decode(SearchAfter.encode(page.get(page.size() - 1), sort), sort);
+		}
+		return ids;
+	}
+
+	// pages, cursors, sorted lists and aggregations over the catalog
+	private static Map<String, Object> answers(CourseRepository repository) {
+		Map<String, Object> answers = new LinkedHashMap<>();
+		List<CourseQuery> queries = List.of(new CourseQuery(), new CourseQuery().title("course 7"),
+				new CourseQuery().term("type", List.of("lesson")).priceBetween(10.0, 60.0),
+				new CourseQuery().priceBetween(null, 20.0));
+		List<Sort> sorts = List.of(Sort.unsorted(), Sort.by("price"), Sort.by(Sort.Direction.DESC, "minAge"),
+				Sort.by(Sort.Order.asc("category"), Sort.Order.desc("nextSessionDate")), Sort.by("title"));
+		for (int q = 0; q < queries.size(); q++) {
+			for (Sort sort : sorts) {
+				for (int[] page : new int[][] { { 0, 20 }, { 3, 700 }, { 40, 500 } }) {
+					Page<Course> result = repository.findByQuery(queries.get(q), PageRequest.of(page[0], page[1], sort),
+							null);
+					answers.put(q + " " + sort + " " + page[0] + "/" + page[1], ids(result));
+					answers.put(q + " " + sort + " total", result.getTotalElements());
+				}
+				if (sort.isSorted()) {
+					answers.put(q + " " + sort + " searchAfter", pageThrough(repository, queries.get(q), sort));
+				}
+			}
+			answers.put(q + " aggregations", repository.aggregate(queries.get(q),
+					List.of("terms:category:5", "stats:price", "histogram:minAge:1", "range:price:20:50")
+							.stream().map(Aggregation::parse).collect(Collectors.toList())).toString());
+		}
+		answers.put("title list", repository.findByTitleContaining("course", Sort.by("maxAge")).stream()
+				.map(Course::getId).toList());
+		return answers;
+	}
+
+	@Test
+	void parallelQueriesAnswerLikeSequentialOnes() {
+		List<Course> catalog = catalog();
+		for (StorageEngine engine : List.of(StorageEngine.OBJECTS, StorageEngine.COLUMNAR)) {
+			Map<String, Object> expected = answers(repository(engine, sequential, catalog));
+			Map<String, Object> actual = answers(repository(engine, parallel, catalog));
+			for (String key : expected.keySet()) {
+				assertEquals(expected.get(key), actual.get(key), engine + " " + key);
+			}
+		}
+	}
+}
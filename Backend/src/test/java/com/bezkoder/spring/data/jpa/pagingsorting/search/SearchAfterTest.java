@@ -0,0 +1,145 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.OffsetDateTime;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.controller.CourseController;
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.repository.CourseRepository;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.StorageEngine;
+
+class SearchAfterTest {
+
+	private static final OffsetDateTime START = OffsetDateTime.of(2025, 3, 1, 9, 0, 0, 0, ZoneOffset.UTC);
+
+	private static List<Course> catalog() {
+		List<Course> courses = new ArrayList<>();
+		for (int id = 1; id <= 200; id++) {
+			// sessions in several offsets, the same instant often written in more than one of them
+			OffsetDateTime session = id % 10 == 0 ? null
+					: START.plusHours(id % 23).withOffsetSameInstant(ZoneOffset.ofHours(id % 5 - 2));
+			courses.add(new Course(id, "course " + id, "generated course", "category " + id % 4, "COURSE",
+					"7th-8th", id % 15, id % 15 + 3, id % 17, session));
+		}
+		return courses;
+	}
+
+	private static CourseRepository repository(StorageEngine engine) {
+		CourseRepository repository = new CourseRepository(engine);
+		repository.replaceAll(catalog());
+		return repository;
+	}
+
+	private static String base64(String json) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static List<Integer> ids(List<Course> courses) {
+		return courses.stream().map(Course::getId).toList();
+	}
+
+	// every page after the first fetched with the token the previous page ended on, as a client would
+	private static List<Integer> pageThrough(BiFunction<Pageable, Course, Page<Course>> query, Sort sort, int size) {
+		List<Integer> ids = new ArrayList<>();
+		Course after = null;
+		while (true) {
+			Page<Course> page = query.apply(PageRequest.of(0, size, sort), after);
+			ids.addAll(ids(page.getContent()));
+			if (page.getContent().size() < size) {
+				return ids;
+			}
+			String token = SearchAfter.encode(page.getContent().get(size - 1), sort);
+			after = SearchAfter.decode(token, sort);
+		}
+	}
+
+	@Test
+	void sessionsInOtherOffsetsAreNeitherRepeatedNorSkipped() {
+		for (StorageEngine engine : List.of(StorageEngine.OBJECTS, StorageEngine.COLUMNAR)) {
+			CourseRepository repository = repository(engine);
+			for (Sort sort : List.of(Sort.by("nextSessionDate"), Sort.by(Sort.Direction.DESC, "nextSessionDate"),
+					Sort.by(Sort.Order.asc("nextSessionDate"), Sort.Order.desc("price")))) {
+				List<Integer> expected = ids(repository.findAll(PageRequest.of(0, 1_000, sort)).getContent());
+				assertEquals(200, expected.size());
+				assertEquals(expected, pageThrough(repository::findAll, sort, 7), engine + " " + sort);
+			}
+		}
+	}
+
+	@Test
+	void aTokenCarriesTheSortKeysAndIdOfTheLastCourse() {
+		Course last = catalog().get(41);
+		Sort sort = Sort.by(Sort.Order.asc("category"), Sort.Order.desc("nextSessionDate"), Sort.Order.asc("price"));
+
+		Course probe = SearchAfter.decode(SearchAfter.encode(last, sort), sort);
+
+		assertEquals(last.getId(), probe.getId());
+		assertEquals(last.getCategory(), probe.getCategory());
+		assertEquals(last.getNextSessionDate(), probe.getNextSessionDate());
+		assertEquals(last.getPrice(), probe.getPrice());
+		// only what the sort needs travels in the token
+		assertNull(probe.getTitle());
+		assertNull(probe.getDescription());
+	}
+
+	@Test
+	void coursesWithEqualSortKeysArePagedInIdOrder() {
+		for (StorageEngine engine : List.of(StorageEngine.OBJECTS, StorageEngine.COLUMNAR)) {
+			CourseRepository repository = repository(engine);
+			// four categories by seventeen prices leaves most pages ending inside a run of ties
+			for (Sort sort : List.of(Sort.by(Sort.Order.asc("category"), Sort.Order.desc("price")),
+					Sort.by(Sort.Order.desc("category"), Sort.Order.asc("price")), Sort.by("type"))) {
+				List<Integer> expected = ids(repository.findAll(PageRequest.of(0, 1_000, sort)).getContent());
+				for (int size : new int[] { 1, 3, 8, 200, 500 }) {
+					assertEquals(expected, pageThrough(repository::findAll, sort, size), engine + " " + sort + " " + size);
+				}
+			}
+		}
+	}
+
+	@Test
+	void titleMatchesArePagedToTheEndWithoutGapsOrDuplicates() {
+		for (StorageEngine engine : List.of(StorageEngine.OBJECTS, StorageEngine.COLUMNAR)) {
+			CourseRepository repository = repository(engine);
+			Sort sort = Sort.by(Sort.Order.desc("minAge"), Sort.Order.asc("title"));
+			List<Integer> expected = ids(
+					repository.findByTitleContaining("course", PageRequest.of(0, 1_000, sort)).getContent());
+			assertEquals(200, expected.size());
+
+			// 200 is a whole number of pages of 8, so the last token leads to an empty page
+			assertEquals(expected, pageThrough(
+					(pageable, after) -> repository.findByTitleContaining("course", pageable, after), sort, 8));
+			assertEquals(expected, pageThrough(
+					(pageable, after) -> repository.findByTitleContaining("course", pageable, after), sort, 9));
+		}
+	}
+
+	@Test
+	void aMalformedTokenIsABadRequest() {
+		Sort sort = Sort.by("price");
+		String issuedForTitle = SearchAfter.encode(catalog().get(0), Sort.by("title"));
+		for (String token : List.of("", "not base64!", base64("not json"), base64("[1, 2]"),
+				base64("{\"price\":3,\"id\":1}"), base64("{\"_sort\":\"price,asc\",\"price\":\"cheap\"}"),
+				issuedForTitle)) {
+			IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+					() -> SearchAfter.decode(token, sort), token);
+			assertEquals(HttpStatus.BAD_REQUEST, new CourseController().badRequest(e).getStatusCode());
+		}
+	}
+}
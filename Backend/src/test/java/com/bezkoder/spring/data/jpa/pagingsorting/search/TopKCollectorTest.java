@@ -0,0 +1,112 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.search;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.SlotComparator;
+
+class TopKCollectorTest {
+
+	private static final int[] KS = { 0, 1, 2, 7, 64, 999, 1_000, 1_005 };
+
+	// a thousand values with only ten distinct keys, so most comparisons are ties broken by slot
+	private static int[] keys() {
+		Random random = new Random(4);
+		int[] keys = new int[1_000];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = random.nextInt(10);
+		}
+		return keys;
+	}
+
+	private static Comparator<Integer> byKey(int[] keys) {
+		return Comparator.<Integer>comparingInt(slot -> keys[slot]).thenComparingInt(slot -> slot);
+	}
+
+	private static SlotComparator slotsByKey(int[] keys) {
+		Comparator<Integer> order = byKey(keys);
+		return new SlotComparator() {
+			@Override
+			public int compare(int slot, int other) {
+				return order.compare(slot, other);
+			}
+
+			@Override
+			public int compare(int slot, Course probe) {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	private static List<Integer> sortedPrefix(int n, Comparator<Integer> order, int k) {
+		List<Integer> sorted = new ArrayList<>();
+		for (int slot = 0; slot < n; slot++) {
+			sorted.add(slot);
+		}
+		sorted.sort(order);
+		return sorted.subList(0, Math.min(k, n));
+	}
+
+	private static int[] toArray(List<Integer> slots) {
+		return slots.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	@Test
+	void theHeapKeepsTheSamePrefixAsAFullSort() {
+		int[] keys = keys();
+		for (boolean descending : new boolean[] { false, true }) {
+			Comparator<Integer> order = descending ? byKey(keys).reversed() : byKey(keys);
+			SlotComparator slotOrder = descending ? slotsByKey(keys).reversed() : slotsByKey(keys);
+			for (int k : KS) {
+				TopKCollector<Integer> top = new TopKCollector<>(k, order);
+				SlotTopKCollector slots = new SlotTopKCollector(k, slotOrder);
+				for (int slot = 0; slot < keys.length; slot++) {
+					top.collect(slot);
+					slots.collect(slot);
+				}
+
+				List<Integer> expected = sortedPrefix(keys.length, order, k);
+				assertEquals(keys.length, top.getTotalHits());
+				assertEquals(keys.length, slots.getTotalHits());
+				assertEquals(expected, top.results(), "k=" + k + " descending=" + descending);
+				assertArrayEquals(toArray(expected), slots.results(), "k=" + k + " descending=" + descending);
+			}
+		}
+	}
+
+	@Test
+	void mergedPartitionsKeepTheSamePrefixAsOneCollector() {
+		int[] keys = keys();
+		Comparator<Integer> order = byKey(keys);
+		for (int k : KS) {
+			// uneven partitions, the way a range-partitioned scan cuts the slots
+			int[] bounds = { 0, 1, 250, 251, 700, keys.length };
+			TopKCollector<Integer> top = new TopKCollector<>(k, order);
+			SlotTopKCollector slots = new SlotTopKCollector(k, slotsByKey(keys));
+			for (int p = 0; p + 1 < bounds.length; p++) {
+				TopKCollector<Integer> partTop = new TopKCollector<>(k, order);
+				SlotTopKCollector partSlots = new SlotTopKCollector(k, slotsByKey(keys));
+				for (int slot = bounds[p]; slot < bounds[p + 1]; slot++) {
+					partTop.collect(slot);
+					partSlots.collect(slot);
+				}
+				top.merge(partTop);
+				slots.merge(partSlots);
+			}
+
+			List<Integer> expected = sortedPrefix(keys.length, order, k);
+			assertEquals(keys.length, top.getTotalHits());
+			assertEquals(keys.length, slots.getTotalHits());
+			assertEquals(expected, top.results(), "k=" + k);
+			assertArrayEquals(toArray(expected), slots.results(), "k=" + k);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.benchmark;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.persistence.CoursePersistence;
+import com.bezkoder.spring.data.jpa.pagingsorting.persistence.Durability;
+import com.bezkoder.spring.data.jpa.pagingsorting.repository.CourseRepository;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.QueryExecutor;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.StorageEngine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Builds synthetic course catalogs of a given size for benchmarks.
+ */
+public final class Catalogs {
+
+    static final String[] CATEGORIES = {"Math", "Science", "History", "Art", "Music", "Language", "Technology", "Sports"};
+    static final String[] TYPES = {"COURSE", "CLUB", "ONE_TIME"};
+    static final String[] GRADE_RANGES = {"1st-3rd", "4th-6th", "7th-8th", "9th-10th", "11th-12th"};
+    static final String[] WORDS = {"introduction", "advanced", "algebra", "chemistry", "painting", "coding",
+            "robotics", "history", "writing", "physics", "music", "theory", "biology", "geometry", "drama",
+            "spanish", "astronomy", "statistics", "design", "photography"};
+
+    private static final OffsetDateTime BASE_DATE = OffsetDateTime.of(2025, 1, 1, 9, 0, 0, 0, ZoneOffset.UTC);
+
+    private Catalogs() {
+    }
+
+    public static Course course(Random random) {
+        String title = words(random, 2 + random.nextInt(3));
+        String description = words(random, 8 + random.nextInt(12));
+        int minAge = 5 + random.nextInt(12);
+        return new Course(0, title, description,
+                CATEGORIES[random.nextInt(CATEGORIES.length)],
+                TYPES[random.nextInt(TYPES.length)],
+                GRADE_RANGES[random.nextInt(GRADE_RANGES.length)],
+                minAge, minAge + 1 + random.nextInt(4),
+                Math.round(random.nextDouble() * 50000) / 100.0,
+                BASE_DATE.plusHours(random.nextInt(24 * 365)));
+    }
+
+    /** Returns an empty repository filled with {@code size} courses with ids 1..size. */
+    public static CourseRepository repository(int size, long seed) {
+        return repository(size, seed, StorageEngine.OBJECTS);
+    }
+
+    public static CourseRepository repository(int size, long seed, StorageEngine engine) {
+        return repository(size, seed, engine, null);
+    }
+
+    /**
+     * As above, scanning queries with the given executor (sequentially when
+     * null). A MAPPED repository keeps its segment in a temporary data
+     * directory that is deleted when the JVM exits.
+     */
+    public static CourseRepository repository(int size, long seed, StorageEngine engine, QueryExecutor executor) {
+        Random random = new Random(seed);
+        List<Course> courses = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Course course = course(random);
+            course.setId(i + 1);
+            courses.add(course);
+        }
+        CourseRepository repository;
+        if (engine == StorageEngine.MAPPED) {
+            CoursePersistence persistence = new CoursePersistence(temporaryDataDir().toString(), Durability.ASYNC,
+                    200, Long.MAX_VALUE / 2);
+            repository = new CourseRepository(engine, persistence, null, 0, null, null, executor, null, null);
+            // opens the log; the sample catalog it loads is replaced below
+            repository.init();
+        } else {
+            repository = executor == null
+                    ? new CourseRepository(engine)
+                    : new CourseRepository(engine, null, null, 0, null, null, executor, null, null);
+        }
+        repository.replaceAll(courses);
+        return repository;
+    }
+
+    private static Path temporaryDataDir() {
+        try {
+            Path dir = Files.createTempDirectory("courses");
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try (Stream<Path> files = Files.walk(dir)) {
+                    files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+                } catch (IOException e) {
+                    // leave it to the OS's temporary file cleanup
+                }
+            }));
+            return dir;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,88 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.benchmark;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.SpringBootJpaPagingSortingApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * End-to-end throughput of a sharded cluster: starts the given number of
+ * shard nodes and a coordinator in this JVM, each on a free loopback port
+ * and in memory only, and runs {@link LoadTest} against the coordinator with
+ * the same paths as {@link ControllerThroughput}. Every shard loads the same
+ * synthetic catalog and keeps the courses whose ids route to it.
+ *
+ * Arguments are the catalog size, shards, clients and seconds per path; any
+ * further --name=value arguments go to every node, for example
+ * --courses.storage-engine=COLUMNAR. Compare with ControllerThroughput on
+ * the same catalog for the cost of the scatter-gather hop; the cluster pays
+ * off once one node's cores or memory are the limit, which takes separate
+ * machines (or containers, see docker-compose.yml) rather than one JVM.
+ *
+ * <pre>
+ * java -Xmx8g -cp target/benchmarks.jar \
+ *     com.bezkoder.spring.data.jpa.pagingsorting.benchmark.ClusterThroughput 1000000 4 64 20
+ * </pre>
+ */
+public final class ClusterThroughput {
+
+    private ClusterThroughput() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> positional = new ArrayList<>();
+        List<String> springArgs = new ArrayList<>();
+        for (String arg : args) {
+            (arg.startsWith("--") ? springArgs : positional).add(arg);
+        }
+        int catalogSize = positional.size() > 0 ? Integer.parseInt(positional.get(0)) : 100_000;
+        int shards = positional.size() > 1 ? Integer.parseInt(positional.get(1)) : 3;
+        int clients = positional.size() > 2 ? Integer.parseInt(positional.get(2)) : 64;
+        int seconds = positional.size() > 3 ? Integer.parseInt(positional.get(3)) : 20;
+
+        Path catalog = ControllerThroughput.writeCatalog(catalogSize);
+        List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+        try {
+            List<String> shardUrls = new ArrayList<>();
+            for (int shard = 0; shard < shards; shard++) {
+                ConfigurableApplicationContext node = start(springArgs,
+                        "--courses.load-path=" + catalog,
+                        "--courses.shard.index=" + shard,
+                        "--courses.shard.count=" + shards);
+                nodes.add(node);
+                shardUrls.add(baseUrl(node));
+            }
+            ConfigurableApplicationContext coordinator = start(springArgs,
+                    "--courses.cluster.shards=" + String.join(",", shardUrls));
+            nodes.add(coordinator);
+
+            System.out.printf("%d courses on %d shards, backend arguments %s%n", catalogSize, shards, springArgs);
+            LoadTest.measure(baseUrl(coordinator), clients, seconds, ControllerThroughput.PATHS);
+        } finally {
+            for (ConfigurableApplicationContext node : nodes) {
+                node.close();
+            }
+            Files.deleteIfExists(catalog);
+        }
+    }
+
+    private static ConfigurableApplicationContext start(List<String> springArgs, String... nodeArgs) {
+        List<String> backendArgs = new ArrayList<>(Arrays.asList(
+                "--server.address=127.0.0.1",
+                "--server.port=0",
+                "--courses.data-dir="));
+        backendArgs.addAll(Arrays.asList(nodeArgs));
+        // later arguments win, so these can override the defaults above
+        backendArgs.addAll(springArgs);
+        return SpringApplication.run(SpringBootJpaPagingSortingApplication.class, backendArgs.toArray(new String[0]));
+    }
+
+    private static String baseUrl(ConfigurableApplicationContext node) {
+        return "http://127.0.0.1:" + node.getEnvironment().getProperty("local.server.port");
+    }
+}
@@ -0,0 +1,101 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.benchmark;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.SpringBootJpaPagingSortingApplication;
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * End-to-end throughput of the CourseController endpoints: starts the
+ * backend in this JVM on a free port with a synthetic catalog, in memory
+ * only, and runs {@link LoadTest} against each read endpoint in turn, so
+ * request parsing, the query and JSON encoding are all measured together.
+ *
+ * Arguments are the catalog size, clients and seconds per path; any further
+ * --name=value arguments go to the backend, for example
+ * --courses.storage-engine=COLUMNAR, --courses.virtual-threads=true or
+ * --courses.query-cache.max-courses=0 to measure uncached queries. The
+ * MAPPED engine also needs --courses.data-dir=<an empty directory>.
+ *
+ * <pre>
+ * java -Xmx4g -cp target/benchmarks.jar \
+ *     com.bezkoder.spring.data.jpa.pagingsorting.benchmark.ControllerThroughput 1000000 64 20
+ * </pre>
+ */
+public final class ControllerThroughput {
+
+    static final String[] PATHS = {
+            "/api/courses/1",
+            "/api/courses?size=20&sort=price,asc",
+            "/api/courses?size=20&sort=price,asc&fields=title,price",
+            "/api/courses?page=50&size=20&sort=category,asc&sort=price,desc",
+            "/api/courses?title=algebra&size=20&sort=nextSessionDate,desc",
+            "/api/courses?title=algebr&fuzziness=1&size=20",
+            "/api/courses/type/CLUB?size=20&sort=price,desc",
+            "/api/courses/query?category=Math&minPrice=100&maxPrice=200&size=20&sort=nextSessionDate,asc",
+            "/api/courses/query?age=10&size=0&aggs=terms:category&aggs=stats:price",
+            "/api/courses/search?q=advanced+coding&size=20",
+            "/api/courses/suggest?q=alg"
+    };
+
+    private ControllerThroughput() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> positional = new ArrayList<>();
+        List<String> springArgs = new ArrayList<>();
+        for (String arg : args) {
+            (arg.startsWith("--") ? springArgs : positional).add(arg);
+        }
+        int catalogSize = positional.size() > 0 ? Integer.parseInt(positional.get(0)) : 100_000;
+        int clients = positional.size() > 1 ? Integer.parseInt(positional.get(1)) : 64;
+        int seconds = positional.size() > 2 ? Integer.parseInt(positional.get(2)) : 20;
+
+        Path catalog = writeCatalog(catalogSize);
+        List<String> backendArgs = new ArrayList<>(Arrays.asList(
+                "--server.port=0",
+                "--courses.data-dir=",
+                "--courses.load-path=" + catalog));
+        // later arguments win, so these can override the defaults above
+        backendArgs.addAll(springArgs);
+        try (ConfigurableApplicationContext context = SpringApplication.run(
+                SpringBootJpaPagingSortingApplication.class, backendArgs.toArray(new String[0]))) {
+            String port = context.getEnvironment().getProperty("local.server.port");
+            System.out.printf("%d courses, backend arguments %s%n", catalogSize, springArgs);
+            LoadTest.measure("http://localhost:" + port, clients, seconds, PATHS);
+        } finally {
+            Files.deleteIfExists(catalog);
+        }
+    }
+
+    // the same catalog as Catalogs.repository(size, 42), as NDJSON
+    static Path writeCatalog(int size) throws Exception {
+        ObjectWriter writer = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .writerFor(Course.class);
+        Path file = Files.createTempFile("courses", ".ndjson");
+        Random random = new Random(42);
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < size; i++) {
+                Course course = Catalogs.course(random);
+                course.setId(i + 1);
+                out.write(writer.writeValueAsString(course));
+                out.newLine();
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,75 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.benchmark;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.repository.CourseRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point lookups, updates and delete/re-insert by primary key. Cost per
+ * operation should stay flat as the catalog grows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdLookupBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int catalogSize;
+
+    private CourseRepository repository;
+    private int[] ids;
+    private int cursor;
+    private Course update;
+
+    @Setup
+    public void setUp() {
+        repository = Catalogs.repository(catalogSize, 42);
+        Random random = new Random(7);
+        ids = new int[4096];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = 1 + random.nextInt(catalogSize);
+        }
+        update = Catalogs.course(random);
+    }
+
+    private int nextId() {
+        cursor = (cursor + 1) & (ids.length - 1);
+        return ids[cursor];
+    }
+
+    @Benchmark
+    public Optional<Course> findById() {
+        return repository.findById(nextId());
+    }
+
+    @Benchmark
+    public Course saveExisting() {
+        update.setId(nextId());
+        return repository.save(update);
+    }
+
+    @Benchmark
+    public Course deleteAndReinsert() {
+        int id = nextId();
+        Course course = repository.findById(id).get();
+        repository.deleteById(id);
+        return repository.save(course);
+    }
+}
@@ -0,0 +1,136 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Closed-loop HTTP load against a running backend: a number of concurrent
+ * clients, each on a virtual thread, send requests back to back to one path
+ * at a time, and throughput and latency percentiles are printed per path.
+ *
+ * To compare request execution models, run the backend once as is and once
+ * with --courses.virtual-threads=true, and point the load test at both with
+ * the same arguments: base URL, clients, seconds per path, then the paths
+ * (the sync and async title search by default). {@link ControllerThroughput}
+ * does the same against a backend it starts itself.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar \
+ *     com.bezkoder.spring.data.jpa.pagingsorting.benchmark.LoadTest http://localhost:8080 400 30
+ * </pre>
+ */
+public final class LoadTest {
+
+    private static final String[] DEFAULT_PATHS = {
+            "/api/courses?title=intro&size=10&sort=price,asc",
+            "/api/courses/async?title=intro&size=10&sort=price,asc",
+            "/api/courses/search?q=painting&size=10",
+            "/api/courses/search/async?q=painting&size=10"
+    };
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        String[] paths = args.length > 3 ? Arrays.copyOfRange(args, 3, args.length) : DEFAULT_PATHS;
+
+        measure(baseUrl, clients, seconds, paths);
+    }
+
+    /** Runs the load against each path in turn and prints a line of results per path. */
+    static void measure(String baseUrl, int clients, int seconds, String... paths) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        System.out.printf("%d clients, %d s per path against %s%n", clients, seconds, baseUrl);
+        System.out.printf("%-56s %10s %9s %9s %9s %9s %7s%n", "path", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "errors");
+        for (String path : paths) {
+            URI uri = URI.create(baseUrl + path);
+            // warm up the JIT and the server's caches before measuring
+            run(client, uri, clients, Math.max(1, seconds / 5));
+            Result result = run(client, uri, clients, seconds);
+            System.out.printf("%-56s %10.0f %9.2f %9.2f %9.2f %9.2f %7d%n", path,
+                    result.latencies.length / (result.elapsedNanos / 1e9),
+                    result.percentile(0.50), result.percentile(0.90), result.percentile(0.99), result.percentile(1.0),
+                    result.errors);
+        }
+    }
+
+    private static Result run(HttpClient client, URI uri, int clients, int seconds) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET().build();
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+        List<Future<long[]>> workers = new ArrayList<>(clients);
+        int[] errors = new int[clients];
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int worker = c;
+                workers.add(executor.submit(() -> {
+                    long[] latencies = new long[1024];
+                    int n = 0;
+                    while (System.nanoTime() < deadline) {
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                            if (response.statusCode() >= 400) {
+                                errors[worker]++;
+                                continue;
+                            }
+                        } catch (Exception e) {
+                            errors[worker]++;
+                            continue;
+                        }
+                        if (n == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, n * 2);
+                        }
+                        latencies[n++] = System.nanoTime() - sent;
+                    }
+                    return Arrays.copyOf(latencies, n);
+                }));
+            }
+            long[] all = new long[0];
+            for (Future<long[]> worker : workers) {
+                long[] latencies = worker.get();
+                int offset = all.length;
+                all = Arrays.copyOf(all, offset + latencies.length);
+                System.arraycopy(latencies, 0, all, offset, latencies.length);
+            }
+            Arrays.sort(all);
+            return new Result(all, System.nanoTime() - start, Arrays.stream(errors).sum());
+        }
+    }
+
+    private static final class Result {
+        final long[] latencies;
+        final long elapsedNanos;
+        final int errors;
+
+        Result(long[] latencies, long elapsedNanos, int errors) {
+            this.latencies = latencies;
+            this.elapsedNanos = elapsedNanos;
+            this.errors = errors;
+        }
+
+        // in milliseconds; q = 1 is the maximum
+        double percentile(double q) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(q * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(index, latencies.length - 1))] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.benchmark;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.repository.CourseRepository;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.CourseQuery;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.QueryExecutor;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.StorageEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-catalog scans split across 1 to 8 query threads, for the speedup of
+ * parallel query execution against the number of cores. Parallelism 1 is the
+ * single-threaded baseline; results beyond the machine's core count only show
+ * the cost of the extra partitions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class ParallelQueryBenchmark {
+
+    @Param({"100000", "1000000"})
+    int catalogSize;
+
+    @Param({"OBJECTS", "COLUMNAR"})
+    StorageEngine engine;
+
+    @Param({"1", "2", "4", "8"})
+    int parallelism;
+
+    private QueryExecutor executor;
+    private CourseRepository repository;
+    private final Pageable byPrice = PageRequest.of(0, 20, Sort.by("price"));
+    private final Pageable deepByDate = PageRequest.of(500, 20, Sort.by("nextSessionDate"));
+
+    @Setup
+    public void setUp() {
+        // a threshold of 0 so that only the parallelism differs between runs
+        executor = new QueryExecutor(parallelism, 0);
+        repository = Catalogs.repository(catalogSize, 42, engine, executor);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.close();
+    }
+
+    @Benchmark
+    public Page<Course> allSortedByPrice() {
+        return repository.findAll(byPrice);
+    }
+
+    @Benchmark
+    public Page<Course> deepPageSortedByDate() {
+        return repository.findAll(deepByDate);
+    }
+
+    @Benchmark
+    public Page<Course> priceRangeSortedByPrice() {
+        return repository.findByQuery(new CourseQuery().priceBetween(100.0, 400.0), byPrice, null);
+    }
+}
@@ -0,0 +1,119 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.benchmark;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.repository.CourseRepository;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.StorageEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The repository calls behind the controller's endpoints, on catalogs of 10k
+ * to 5M courses and under several sort specs (fields separated by ';', each
+ * with an optional ",desc"). The full matrix takes hours; narrow it with
+ * JMH's -p, for example {@code -p catalogSize=1000000 -p engine=OBJECTS}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx8g"})
+public class RepositoryBenchmark {
+
+    @Param({"10000", "100000", "1000000", "5000000"})
+    int catalogSize;
+
+    @Param({"OBJECTS", "COLUMNAR"})
+    StorageEngine engine;
+
+    @Param({"price", "title,desc", "category;price,desc", "nextSessionDate,desc;title"})
+    String sort;
+
+    private CourseRepository repository;
+    private Pageable firstPage;
+    private Pageable deepPage;
+    private Sort sortSpec;
+    private List<Course> titleMatches;
+    private int[] ids;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        repository = Catalogs.repository(catalogSize, 42, engine);
+        sortSpec = parseSort(sort);
+        firstPage = PageRequest.of(0, 20, sortSpec);
+        deepPage = PageRequest.of(200, 20, sortSpec);
+        titleMatches = repository.findByTitleContaining("algebra", Sort.unsorted());
+        Random random = new Random(7);
+        ids = new int[4096];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = 1 + random.nextInt(catalogSize);
+        }
+    }
+
+    static Sort parseSort(String spec) {
+        List<Sort.Order> orders = new ArrayList<>();
+        for (String field : spec.split(";")) {
+            String[] parts = field.split(",");
+            orders.add(parts.length > 1 && parts[1].equalsIgnoreCase("desc")
+                    ? Sort.Order.desc(parts[0]) : Sort.Order.asc(parts[0]));
+        }
+        return Sort.by(orders);
+    }
+
+    @Benchmark
+    public Optional<Course> findById() {
+        cursor = (cursor + 1) & (ids.length - 1);
+        return repository.findById(ids[cursor]);
+    }
+
+    @Benchmark
+    public Page<Course> findAll() {
+        return repository.findAll(firstPage);
+    }
+
+    @Benchmark
+    public Page<Course> findAllDeepPage() {
+        return repository.findAll(deepPage);
+    }
+
+    @Benchmark
+    public Page<Course> findByType() {
+        return repository.findByType("CLUB", firstPage);
+    }
+
+    @Benchmark
+    public Page<Course> findByTitleContaining() {
+        return repository.findByTitleContaining("algebra", firstPage);
+    }
+
+    @Benchmark
+    public Page<Course> findByTitleContainingTwoTerms() {
+        return repository.findByTitleContaining("advanced coding", firstPage);
+    }
+
+    // includes copying the matches, as /sortedcourses does
+    @Benchmark
+    public List<Course> applySort() {
+        return repository.applySort(new ArrayList<>(titleMatches), sortSpec);
+    }
+}
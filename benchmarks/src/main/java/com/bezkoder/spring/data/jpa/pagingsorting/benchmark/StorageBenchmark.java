@@ -0,0 +1,78 @@
+package com.bezkoder.spring.data.jpa.pagingsorting.benchmark;
+
+import com.bezkoder.spring.data.jpa.pagingsorting.model.Course;
+import com.bezkoder.spring.data.jpa.pagingsorting.repository.CourseRepository;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.Aggregation;
+import com.bezkoder.spring.data.jpa.pagingsorting.search.CourseQuery;
+import com.bezkoder.spring.data.jpa.pagingsorting.store.StorageEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scans over the object, columnar and mapped storage engines: filtered and
+ * sorted pages that have to look at most of the catalog, and facets over all
+ * of it.
+ * See {@link StorageFootprint} for the memory side of the comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class StorageBenchmark {
+
+    @Param({"10000", "100000"})
+    int catalogSize;
+
+    @Param({"OBJECTS", "COLUMNAR", "MAPPED"})
+    StorageEngine engine;
+
+    private CourseRepository repository;
+    private final Pageable byPrice = PageRequest.of(0, 20, Sort.by("price"));
+    private final Pageable byDate = PageRequest.of(0, 20, Sort.by("nextSessionDate"));
+
+    @Setup
+    public void setUp() {
+        repository = Catalogs.repository(catalogSize, 42, engine);
+    }
+
+    @Benchmark
+    public Page<Course> findByTypeSortedByPrice() {
+        return repository.findByType("CLUB", byPrice);
+    }
+
+    @Benchmark
+    public Page<Course> priceRangeSortedByDate() {
+        return repository.findByQuery(new CourseQuery().priceBetween(100.0, 200.0), byDate, null);
+    }
+
+    @Benchmark
+    public Page<Course> ageBandSortedByPriceDesc() {
+        return repository.findByQuery(new CourseQuery().suitableForAge(10),
+                PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "price")), null);
+    }
+
+    @Benchmark
+    public Map<String, Object> facets() {
+        return repository.aggregate(new CourseQuery(),
+                List.of(Aggregation.parse("terms:category"), Aggregation.parse("stats:price")));
+    }
+}